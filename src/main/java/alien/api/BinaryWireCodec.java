@@ -0,0 +1,1223 @@
+package alien.api;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+
+/**
+ * Compact binary encoding of the API objects.<br>
+ * <br>
+ * The schema of each class (its serializable fields, in a fixed order) is built once by reflection. On the wire each message carries the name and the field list of every class
+ * the first time it appears, then only the field values: primitive fields as raw (variable length) numbers, the rest as tagged values. Strings and objects seen before in the same
+ * message are sent as back-references, so the owner of ten thousand files or the common parent of a directory listing is encoded only once. The receiver matches the fields by name,
+ * skipping the ones it doesn't know and leaving the missing ones to their default value, so the two ends don't need to run the same version of a class.<br>
+ * <br>
+ * Only plain <code>alien.*</code> classes are encoded field by field. Values of other classes, and classes with custom serialization methods, are embedded as Java serialization
+ * blobs. Should the binary encoding fail for any reason, the whole message is sent with Java serialization instead. The decoder only resolves the names of <code>alien.*</code>
+ * classes and of a few JDK value types, see {@link #isAllowed(String)}.
+ *
+ * @since Oct 17, 2026
+ */
+public class BinaryWireCodec implements WireCodec {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(BinaryWireCodec.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(BinaryWireCodec.class.getCanonicalName());
+
+	/**
+	 * Identifier in the handshake
+	 */
+	public static final byte ID = 1;
+
+	/**
+	 * The message is Java-serialized
+	 */
+	private static final byte FORMAT_JAVA_SERIALIZATION = 0;
+
+	/**
+	 * The message is in the binary format described here
+	 */
+	private static final byte FORMAT_BINARY = 1;
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_REF = 1;
+	private static final byte TAG_STRING = 2;
+	private static final byte TAG_INT = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_TRUE = 5;
+	private static final byte TAG_FALSE = 6;
+	private static final byte TAG_DOUBLE = 7;
+	private static final byte TAG_FLOAT = 8;
+	private static final byte TAG_SHORT = 9;
+	private static final byte TAG_BYTE = 10;
+	private static final byte TAG_CHAR = 11;
+	private static final byte TAG_UUID = 12;
+	private static final byte TAG_DATE = 13;
+	private static final byte TAG_BYTES = 14;
+	private static final byte TAG_COLLECTION = 15;
+	private static final byte TAG_MAP = 16;
+	private static final byte TAG_ENUM = 17;
+	private static final byte TAG_ARRAY = 18;
+	private static final byte TAG_OBJECT = 19;
+	private static final byte TAG_SERIALIZED = 20;
+
+	private static final byte KIND_ARRAYLIST = 0;
+	private static final byte KIND_LINKEDLIST = 1;
+	private static final byte KIND_HASHSET = 2;
+	private static final byte KIND_LINKEDHASHSET = 3;
+	private static final byte KIND_TREESET = 4;
+
+	private static final byte KIND_HASHMAP = 0;
+	private static final byte KIND_LINKEDHASHMAP = 1;
+	private static final byte KIND_TREEMAP = 2;
+	private static final byte KIND_CONCURRENTHASHMAP = 3;
+
+	/**
+	 * Field type code of object references, the primitives use the JVM descriptor letters
+	 */
+	private static final char CODE_OBJECT = 'L';
+
+	/**
+	 * Encoding buffers larger than this are not kept for the next message
+	 */
+	private static final int maxKeptBuffer = ConfigUtils.getConfig().geti("alien.api.BinaryWireCodec.maxKeptBuffer", 4 * 1024 * 1024);
+
+	/**
+	 * JDK classes that can be named in a message besides the <code>alien.*</code> ones, as array component types
+	 */
+	private static final Set<String> allowedJdkClasses = Set.of("java.lang.Object", "java.lang.String", "java.lang.Number", "java.lang.Integer", "java.lang.Long", "java.lang.Short",
+			"java.lang.Byte", "java.lang.Character", "java.lang.Boolean", "java.lang.Double", "java.lang.Float", "java.util.UUID", "java.util.Date");
+
+	/**
+	 * @param className
+	 * @return <code>true</code> if the class can be named in a message, the values of any other class are embedded with Java serialization
+	 */
+	static boolean isAllowed(final String className) {
+		return className.startsWith("alien.") || allowedJdkClasses.contains(className);
+	}
+
+	/**
+	 * <code>sun.reflect.ReflectionFactory</code> (module jdk.unsupported), the only way to create the objects without calling one of their constructors, as Java serialization
+	 * does. It is looked up by reflection so that nothing depends on it at compile time, and should it go away the classes are simply embedded with Java serialization.
+	 */
+	private static final Object reflectionFactory;
+
+	private static final Method newConstructorForSerialization;
+
+	static {
+		Object factory = null;
+		Method method = null;
+
+		try {
+			final Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+
+			factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+			method = factoryClass.getMethod("newConstructorForSerialization", Class.class);
+		}
+		catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
+			logger.log(Level.WARNING, "sun.reflect.ReflectionFactory is not available, all objects will be sent with Java serialization", e);
+			factory = null;
+			method = null;
+		}
+
+		reflectionFactory = factory;
+		newConstructorForSerialization = method;
+	}
+
+	/**
+	 * @param cls
+	 * @return a constructor that creates instances of the class without running its own constructors, or <code>null</code> if this is not possible
+	 */
+	private static Constructor<?> getSerializationConstructor(final Class<?> cls) {
+		if (newConstructorForSerialization == null)
+			return null;
+
+		try {
+			return (Constructor<?>) newConstructorForSerialization.invoke(reflectionFactory, cls);
+		}
+		catch (final ReflectiveOperationException e) {
+			logger.log(Level.FINE, "Cannot get the serialization constructor of " + cls.getCanonicalName(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reused encoding buffer of each thread
+	 */
+	private static final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public byte[] encode(final Object o) throws IOException {
+		final Output out = outputs.get();
+
+		out.pos = 0;
+
+		try {
+			out.writeByte(FORMAT_BINARY);
+			new Encoder(out).writeValue(o, Object.class);
+		}
+		catch (final IOException | RuntimeException e) {
+			logger.log(Level.FINE, "Cannot encode an object of type " + (o != null ? o.getClass().getCanonicalName() : "null") + ", falling back to Java serialization", e);
+
+			if (monitor != null)
+				monitor.incrementCounter("java_serialization_fallback");
+
+			final byte[] serialized = JavaSerializationCodec.serialize(o);
+
+			out.pos = 0;
+			out.writeByte(FORMAT_JAVA_SERIALIZATION);
+			out.writeBytes(serialized, 0, serialized.length);
+		}
+
+		final byte[] ret = Arrays.copyOf(out.buf, out.pos);
+
+		if (out.buf.length > maxKeptBuffer)
+			outputs.remove();
+
+		return ret;
+	}
+
+	@Override
+	public Object decode(final byte[] payload) throws IOException, ClassNotFoundException {
+		if (payload.length == 0)
+			throw new IOException("Empty payload");
+
+		if (payload[0] == FORMAT_JAVA_SERIALIZATION)
+			return JavaSerializationCodec.deserialize(payload, 1, payload.length - 1);
+
+		if (payload[0] != FORMAT_BINARY)
+			throw new IOException("Unknown payload format " + payload[0]);
+
+		final Input in = new Input(payload, 1);
+
+		try {
+			final Object ret = new Decoder(in).readValue();
+
+			if (in.pos != payload.length)
+				throw new IOException("Trailing data after the encoded object: " + (payload.length - in.pos) + " bytes");
+
+			return ret;
+		}
+		catch (final ArrayIndexOutOfBoundsException | IllegalArgumentException | ClassCastException | NegativeArraySizeException e) {
+			throw new IOException("Corrupted payload", e);
+		}
+	}
+
+	/**
+	 * How instances of one class are encoded, built once per class
+	 */
+	static final class Schema {
+		/**
+		 * <code>false</code> if the values of this class have to be embedded with Java serialization
+		 */
+		final boolean binary;
+
+		final Field[] fields;
+
+		final String[] names;
+
+		final char[] codes;
+
+		final Map<String, Integer> byName = new HashMap<>();
+
+		private final Constructor<?> constructor;
+
+		Schema(final Class<?> cls) {
+			Constructor<?> ctor = null;
+
+			if (isPlainSerializable(cls))
+				try {
+					ctor = getSerializationConstructor(cls);
+
+					if (ctor != null)
+						ctor.setAccessible(true);
+				}
+				catch (final RuntimeException e) {
+					logger.log(Level.FINE, "Cannot get the serialization constructor of " + cls.getCanonicalName(), e);
+					ctor = null;
+				}
+
+			final List<Field> fieldList = new ArrayList<>();
+			final List<String> nameList = new ArrayList<>();
+
+			if (ctor != null)
+				try {
+					collectFields(cls, fieldList, nameList);
+				}
+				catch (final RuntimeException e) {
+					logger.log(Level.FINE, "Cannot access the fields of " + cls.getCanonicalName(), e);
+					ctor = null;
+				}
+
+			this.constructor = ctor;
+			this.binary = ctor != null;
+
+			if (!binary) {
+				fieldList.clear();
+				nameList.clear();
+			}
+
+			this.fields = fieldList.toArray(new Field[0]);
+			this.names = nameList.toArray(new String[0]);
+			this.codes = new char[fields.length];
+
+			for (int i = 0; i < fields.length; i++) {
+				codes[i] = getCode(fields[i].getType());
+				byName.put(names[i], Integer.valueOf(i));
+			}
+		}
+
+		Object newInstance() throws IOException {
+			try {
+				return constructor.newInstance();
+			}
+			catch (final ReflectiveOperationException e) {
+				throw new IOException("Cannot instantiate " + constructor.getDeclaringClass().getCanonicalName(), e);
+			}
+		}
+
+		/**
+		 * Serializable fields of the class and its serializable parents, parents first and then by name. A field that hides one with the same name in a parent class is prefixed
+		 * by the name of its class.
+		 */
+		private static void collectFields(final Class<?> cls, final List<Field> fieldList, final List<String> nameList) {
+			final Class<?> parent = cls.getSuperclass();
+
+			if (parent != null && Serializable.class.isAssignableFrom(parent))
+				collectFields(parent, fieldList, nameList);
+
+			final Field[] declared = cls.getDeclaredFields();
+
+			Arrays.sort(declared, Comparator.comparing(Field::getName));
+
+			for (final Field f : declared) {
+				final int mod = f.getModifiers();
+
+				if (Modifier.isStatic(mod) || Modifier.isTransient(mod))
+					continue;
+
+				f.setAccessible(true);
+
+				fieldList.add(f);
+				nameList.add(nameList.contains(f.getName()) ? cls.getName() + "." + f.getName() : f.getName());
+			}
+		}
+
+		/**
+		 * @return <code>true</code> for our own serializable classes that rely on the default serialization mechanism
+		 */
+		private static boolean isPlainSerializable(final Class<?> cls) {
+			if (!cls.getName().startsWith("alien.") || !Serializable.class.isAssignableFrom(cls) || Externalizable.class.isAssignableFrom(cls) || cls.isEnum() || cls.isArray()
+					|| cls.isInterface() || Modifier.isAbstract(cls.getModifiers()) || cls.isAnonymousClass() || cls.isSynthetic())
+				return false;
+
+			for (Class<?> k = cls; k != null && Serializable.class.isAssignableFrom(k); k = k.getSuperclass()) {
+				// Request.readObject() only resets transient fields, which are never sent anyway
+				if (k == Request.class)
+					continue;
+
+				if (hasMethod(k, "writeObject", ObjectOutputStream.class) || hasMethod(k, "readObject", ObjectInputStream.class) || hasMethod(k, "readObjectNoData")
+						|| hasMethod(k, "writeReplace") || hasMethod(k, "readResolve"))
+					return false;
+
+				try {
+					k.getDeclaredField("serialPersistentFields");
+					return false;
+				}
+				catch (@SuppressWarnings("unused") final NoSuchFieldException e) {
+					// expected
+				}
+			}
+
+			return true;
+		}
+
+		private static boolean hasMethod(final Class<?> cls, final String name, final Class<?>... parameterTypes) {
+			try {
+				final Method m = cls.getDeclaredMethod(name, parameterTypes);
+
+				return !Modifier.isStatic(m.getModifiers());
+			}
+			catch (@SuppressWarnings("unused") final NoSuchMethodException e) {
+				return false;
+			}
+		}
+
+		private static char getCode(final Class<?> type) {
+			if (!type.isPrimitive())
+				return CODE_OBJECT;
+
+			if (type == boolean.class)
+				return 'Z';
+			if (type == byte.class)
+				return 'B';
+			if (type == char.class)
+				return 'C';
+			if (type == short.class)
+				return 'S';
+			if (type == int.class)
+				return 'I';
+			if (type == long.class)
+				return 'J';
+			if (type == float.class)
+				return 'F';
+
+			return 'D';
+		}
+	}
+
+	private static final ClassValue<Schema> schemas = new ClassValue<>() {
+		@Override
+		protected Schema computeValue(final Class<?> type) {
+			return new Schema(type);
+		}
+	};
+
+	/**
+	 * Growable output buffer
+	 */
+	static final class Output {
+		byte[] buf = new byte[64 * 1024];
+
+		int pos = 0;
+
+		private void ensure(final int extra) {
+			if (pos + extra > buf.length)
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+		}
+
+		void writeByte(final int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		void writeBytes(final byte[] b, final int off, final int len) {
+			ensure(len);
+			System.arraycopy(b, off, buf, pos, len);
+			pos += len;
+		}
+
+		void writeVarLong(final long value) {
+			ensure(10);
+
+			long v = value;
+
+			while ((v & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+
+			buf[pos++] = (byte) v;
+		}
+
+		void writeSignedVarLong(final long value) {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeFixedLong(final long value) {
+			ensure(8);
+
+			for (int shift = 56; shift >= 0; shift -= 8)
+				buf[pos++] = (byte) (value >>> shift);
+		}
+
+		void writeFixedInt(final int value) {
+			ensure(4);
+
+			for (int shift = 24; shift >= 0; shift -= 8)
+				buf[pos++] = (byte) (value >>> shift);
+		}
+
+		void writeString(final String s) {
+			final int len = s.length();
+
+			boolean ascii = true;
+
+			for (int i = 0; i < len && ascii; i++)
+				ascii = s.charAt(i) < 0x80;
+
+			if (ascii) {
+				writeVarLong(len);
+				ensure(len);
+
+				for (int i = 0; i < len; i++)
+					buf[pos++] = (byte) s.charAt(i);
+			}
+			else {
+				final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+				writeVarLong(b.length);
+				writeBytes(b, 0, b.length);
+			}
+		}
+	}
+
+	/**
+	 * Reading side of {@link Output}
+	 */
+	static final class Input {
+		final byte[] buf;
+
+		int pos;
+
+		Input(final byte[] buf, final int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		int remaining() {
+			return buf.length - pos;
+		}
+
+		byte readByte() {
+			return buf[pos++];
+		}
+
+		long readVarLong() throws IOException {
+			long ret = 0;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				final byte b = buf[pos++];
+
+				ret |= (long) (b & 0x7F) << shift;
+
+				if (b >= 0)
+					return ret;
+			}
+
+			throw new IOException("Malformed variable length number");
+		}
+
+		long readSignedVarLong() throws IOException {
+			final long v = readVarLong();
+
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		/**
+		 * @return a length or a count, checked against what is left in the buffer
+		 */
+		int readLength() throws IOException {
+			final long v = readVarLong();
+
+			if (v < 0 || v > remaining())
+				throw new IOException("Invalid length " + v + " with " + remaining() + " bytes left");
+
+			return (int) v;
+		}
+
+		long readFixedLong() {
+			long ret = 0;
+
+			for (int i = 0; i < 8; i++)
+				ret = (ret << 8) | (buf[pos++] & 0xFF);
+
+			return ret;
+		}
+
+		int readFixedInt() {
+			int ret = 0;
+
+			for (int i = 0; i < 4; i++)
+				ret = (ret << 8) | (buf[pos++] & 0xFF);
+
+			return ret;
+		}
+
+		String readString() throws IOException {
+			final int len = readLength();
+
+			final String ret = new String(buf, pos, len, StandardCharsets.UTF_8);
+
+			pos += len;
+
+			return ret;
+		}
+	}
+
+	/**
+	 * State of encoding one message
+	 */
+	private static final class Encoder {
+		private final Output out;
+
+		private final Map<Object, Integer> handles = new IdentityHashMap<>();
+
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+		private int nextHandle = 0;
+
+		Encoder(final Output out) {
+			this.out = out;
+		}
+
+		private void register(final Object o) {
+			handles.put(o, Integer.valueOf(nextHandle++));
+		}
+
+		private void writeClass(final Class<?> cls) {
+			final Integer idx = classes.get(cls);
+
+			if (idx != null) {
+				out.writeVarLong(idx.intValue());
+				return;
+			}
+
+			final int newIdx = classes.size();
+
+			classes.put(cls, Integer.valueOf(newIdx));
+
+			out.writeVarLong(newIdx);
+			out.writeString(cls.getName());
+
+			final Schema schema = schemas.get(cls);
+
+			out.writeVarLong(schema.fields.length);
+
+			for (int i = 0; i < schema.fields.length; i++) {
+				out.writeString(schema.names[i]);
+				out.writeByte(schema.codes[i]);
+			}
+		}
+
+		void writeValue(final Object v, final Class<?> declaredType) throws IOException {
+			if (v == null) {
+				out.writeByte(TAG_NULL);
+				return;
+			}
+
+			final Class<?> cls = v.getClass();
+
+			if (cls == String.class) {
+				final Integer h = strings.get(v);
+
+				if (h != null) {
+					out.writeByte(TAG_REF);
+					out.writeVarLong(h.intValue());
+				}
+				else {
+					strings.put((String) v, Integer.valueOf(nextHandle++));
+					out.writeByte(TAG_STRING);
+					out.writeString((String) v);
+				}
+
+				return;
+			}
+
+			if (writeSimpleValue(v, cls))
+				return;
+
+			final Integer h = handles.get(v);
+
+			if (h != null) {
+				out.writeByte(TAG_REF);
+				out.writeVarLong(h.intValue());
+				return;
+			}
+
+			if (v instanceof Enum && isAllowed(((Enum<?>) v).getDeclaringClass().getName())) {
+				out.writeByte(TAG_ENUM);
+				writeClass(((Enum<?>) v).getDeclaringClass());
+				writeValue(((Enum<?>) v).name(), String.class);
+				return;
+			}
+
+			if (cls == byte[].class) {
+				register(v);
+
+				final byte[] b = (byte[]) v;
+
+				out.writeByte(TAG_BYTES);
+				out.writeVarLong(b.length);
+				out.writeBytes(b, 0, b.length);
+				return;
+			}
+
+			if (v instanceof Collection) {
+				final int kind = getCollectionKind((Collection<?>) v, declaredType);
+
+				if (kind >= 0) {
+					register(v);
+
+					final Collection<?> c = (Collection<?>) v;
+
+					out.writeByte(TAG_COLLECTION);
+					out.writeByte(kind);
+
+					// work on a snapshot, a concurrent modification cannot make the count and the content disagree
+					final Object[] elements = c.toArray();
+
+					out.writeVarLong(elements.length);
+
+					for (final Object element : elements)
+						writeValue(element, Object.class);
+
+					return;
+				}
+			}
+			else if (v instanceof Map) {
+				final int kind = getMapKind((Map<?, ?>) v, declaredType);
+
+				if (kind >= 0) {
+					register(v);
+
+					final Object[] entries = ((Map<?, ?>) v).entrySet().toArray();
+
+					out.writeByte(TAG_MAP);
+					out.writeByte(kind);
+					out.writeVarLong(entries.length);
+
+					for (final Object o : entries) {
+						final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+
+						writeValue(entry.getKey(), Object.class);
+						writeValue(entry.getValue(), Object.class);
+					}
+
+					return;
+				}
+			}
+			else if (cls.isArray() && !cls.getComponentType().isPrimitive() && isAllowed(cls.getComponentType().getName())) {
+				register(v);
+
+				final Object[] array = (Object[]) v;
+
+				out.writeByte(TAG_ARRAY);
+				writeClass(cls.getComponentType());
+				out.writeVarLong(array.length);
+
+				for (final Object element : array)
+					writeValue(element, Object.class);
+
+				return;
+			}
+			else {
+				final Schema schema = schemas.get(cls);
+
+				if (schema.binary) {
+					register(v);
+
+					out.writeByte(TAG_OBJECT);
+					writeClass(cls);
+					writeFields(v, schema);
+					return;
+				}
+			}
+
+			// anything else goes through Java serialization
+			register(v);
+
+			final byte[] serialized = JavaSerializationCodec.serialize(v);
+
+			out.writeByte(TAG_SERIALIZED);
+			out.writeVarLong(serialized.length);
+			out.writeBytes(serialized, 0, serialized.length);
+		}
+
+		private boolean writeSimpleValue(final Object v, final Class<?> cls) {
+			if (cls == Integer.class) {
+				out.writeByte(TAG_INT);
+				out.writeSignedVarLong(((Integer) v).intValue());
+			}
+			else if (cls == Long.class) {
+				out.writeByte(TAG_LONG);
+				out.writeSignedVarLong(((Long) v).longValue());
+			}
+			else if (cls == Boolean.class)
+				out.writeByte(((Boolean) v).booleanValue() ? TAG_TRUE : TAG_FALSE);
+			else if (cls == Double.class) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeFixedLong(Double.doubleToRawLongBits(((Double) v).doubleValue()));
+			}
+			else if (cls == Float.class) {
+				out.writeByte(TAG_FLOAT);
+				out.writeFixedInt(Float.floatToRawIntBits(((Float) v).floatValue()));
+			}
+			else if (cls == Short.class) {
+				out.writeByte(TAG_SHORT);
+				out.writeSignedVarLong(((Short) v).shortValue());
+			}
+			else if (cls == Byte.class) {
+				out.writeByte(TAG_BYTE);
+				out.writeByte(((Byte) v).byteValue());
+			}
+			else if (cls == Character.class) {
+				out.writeByte(TAG_CHAR);
+				out.writeVarLong(((Character) v).charValue());
+			}
+			else if (cls == UUID.class) {
+				out.writeByte(TAG_UUID);
+				out.writeFixedLong(((UUID) v).getMostSignificantBits());
+				out.writeFixedLong(((UUID) v).getLeastSignificantBits());
+			}
+			else if (cls == Date.class) {
+				out.writeByte(TAG_DATE);
+				out.writeSignedVarLong(((Date) v).getTime());
+			}
+			else
+				return false;
+
+			return true;
+		}
+
+		private void writeFields(final Object v, final Schema schema) throws IOException {
+			try {
+				for (int i = 0; i < schema.fields.length; i++) {
+					final Field f = schema.fields[i];
+
+					switch (schema.codes[i]) {
+						case 'Z':
+							out.writeByte(f.getBoolean(v) ? 1 : 0);
+							break;
+						case 'B':
+							out.writeByte(f.getByte(v));
+							break;
+						case 'C':
+							out.writeVarLong(f.getChar(v));
+							break;
+						case 'S':
+							out.writeSignedVarLong(f.getShort(v));
+							break;
+						case 'I':
+							out.writeSignedVarLong(f.getInt(v));
+							break;
+						case 'J':
+							out.writeSignedVarLong(f.getLong(v));
+							break;
+						case 'F':
+							out.writeFixedInt(Float.floatToRawIntBits(f.getFloat(v)));
+							break;
+						case 'D':
+							out.writeFixedLong(Double.doubleToRawLongBits(f.getDouble(v)));
+							break;
+						default:
+							writeValue(f.get(v), f.getType());
+					}
+				}
+			}
+			catch (final IllegalAccessException e) {
+				throw new IOException("Cannot read the fields of " + v.getClass().getCanonicalName(), e);
+			}
+		}
+
+		/**
+		 * @return the collection type to recreate on the other side, or <code>-1</code> to send it with Java serialization
+		 */
+		private static int getCollectionKind(final Collection<?> c, final Class<?> declaredType) {
+			final Class<?> cls = c.getClass();
+
+			if (cls == ArrayList.class)
+				return KIND_ARRAYLIST;
+
+			if (cls == LinkedList.class)
+				return KIND_LINKEDLIST;
+
+			if (cls == HashSet.class)
+				return KIND_HASHSET;
+
+			if (cls == LinkedHashSet.class)
+				return KIND_LINKEDHASHSET;
+
+			if (cls == TreeSet.class)
+				return ((TreeSet<?>) c).comparator() == null ? KIND_TREESET : -1;
+
+			// the java.util wrappers and immutable collections (Arrays.asList, List.of, unmodifiable views ...) are recreated as plain collections, when the field allows it
+			if (!"java.util".equals(cls.getPackageName()) || c instanceof SortedSet)
+				return -1;
+
+			if (c instanceof List && declaredType.isAssignableFrom(ArrayList.class))
+				return KIND_ARRAYLIST;
+
+			if (c instanceof Set && declaredType.isAssignableFrom(LinkedHashSet.class))
+				return KIND_LINKEDHASHSET;
+
+			return -1;
+		}
+
+		private static int getMapKind(final Map<?, ?> m, final Class<?> declaredType) {
+			final Class<?> cls = m.getClass();
+
+			if (cls == HashMap.class)
+				return KIND_HASHMAP;
+
+			if (cls == LinkedHashMap.class)
+				return KIND_LINKEDHASHMAP;
+
+			if (cls == TreeMap.class)
+				return ((TreeMap<?, ?>) m).comparator() == null ? KIND_TREEMAP : -1;
+
+			if (cls == ConcurrentHashMap.class)
+				return KIND_CONCURRENTHASHMAP;
+
+			if (!"java.util".equals(cls.getPackageName()) || m instanceof SortedMap)
+				return -1;
+
+			if (declaredType.isAssignableFrom(LinkedHashMap.class))
+				return KIND_LINKEDHASHMAP;
+
+			return -1;
+		}
+	}
+
+	/**
+	 * Class as described in the message, with its fields mapped to the local ones
+	 */
+	private static final class WireClass {
+		final Class<?> cls;
+
+		final Schema schema;
+
+		final char[] codes;
+
+		/**
+		 * Local field receiving each field on the wire, <code>null</code> if there is no compatible one
+		 */
+		final Field[] targets;
+
+		WireClass(final Class<?> cls, final char[] codes, final String[] names) {
+			this.cls = cls;
+			this.codes = codes;
+			this.schema = schemas.get(cls);
+			this.targets = new Field[codes.length];
+
+			for (int i = 0; i < codes.length; i++) {
+				final Integer idx = schema.byName.get(names[i]);
+
+				if (idx != null && schema.codes[idx.intValue()] == codes[i])
+					targets[i] = schema.fields[idx.intValue()];
+				else if (logger.isLoggable(Level.FINE))
+					logger.log(Level.FINE, "Ignoring field " + names[i] + " of " + cls.getCanonicalName() + ", not known locally");
+			}
+		}
+	}
+
+	/**
+	 * State of decoding one message
+	 */
+	private static final class Decoder {
+		private final Input in;
+
+		private final List<Object> handles = new ArrayList<>();
+
+		private final List<WireClass> classes = new ArrayList<>();
+
+		Decoder(final Input in) {
+			this.in = in;
+		}
+
+		private WireClass readClass() throws IOException, ClassNotFoundException {
+			final int idx = (int) in.readVarLong();
+
+			if (idx < classes.size())
+				return classes.get(idx);
+
+			if (idx != classes.size())
+				throw new IOException("Invalid class reference " + idx);
+
+			final String className = in.readString();
+
+			if (!isAllowed(className))
+				throw new InvalidClassException(className, "not allowed in a binary message");
+
+			final Class<?> cls = Class.forName(className, false, BinaryWireCodec.class.getClassLoader());
+
+			final int fieldCount = in.readLength();
+
+			final char[] codes = new char[fieldCount];
+			final String[] names = new String[fieldCount];
+
+			for (int i = 0; i < fieldCount; i++) {
+				names[i] = in.readString();
+				codes[i] = (char) in.readByte();
+			}
+
+			final WireClass wc = new WireClass(cls, codes, names);
+
+			classes.add(wc);
+
+			return wc;
+		}
+
+		private Object register(final Object o) {
+			handles.add(o);
+			return o;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Object readValue() throws IOException, ClassNotFoundException {
+			final byte tag = in.readByte();
+
+			switch (tag) {
+				case TAG_NULL:
+					return null;
+				case TAG_REF: {
+					final long h = in.readVarLong();
+
+					if (h < 0 || h >= handles.size())
+						throw new IOException("Invalid back-reference " + h);
+
+					return handles.get((int) h);
+				}
+				case TAG_STRING:
+					return register(in.readString());
+				case TAG_INT:
+					return Integer.valueOf((int) in.readSignedVarLong());
+				case TAG_LONG:
+					return Long.valueOf(in.readSignedVarLong());
+				case TAG_TRUE:
+					return Boolean.TRUE;
+				case TAG_FALSE:
+					return Boolean.FALSE;
+				case TAG_DOUBLE:
+					return Double.valueOf(Double.longBitsToDouble(in.readFixedLong()));
+				case TAG_FLOAT:
+					return Float.valueOf(Float.intBitsToFloat(in.readFixedInt()));
+				case TAG_SHORT:
+					return Short.valueOf((short) in.readSignedVarLong());
+				case TAG_BYTE:
+					return Byte.valueOf(in.readByte());
+				case TAG_CHAR:
+					return Character.valueOf((char) in.readVarLong());
+				case TAG_UUID:
+					return new UUID(in.readFixedLong(), in.readFixedLong());
+				case TAG_DATE:
+					return new Date(in.readSignedVarLong());
+				case TAG_BYTES: {
+					final int len = in.readLength();
+					final byte[] b = Arrays.copyOfRange(in.buf, in.pos, in.pos + len);
+					in.pos += len;
+					return register(b);
+				}
+				case TAG_ENUM: {
+					final Class<?> cls = readClass().cls;
+
+					if (!cls.isEnum())
+						throw new IOException(cls.getCanonicalName() + " is not an enum");
+
+					return Enum.valueOf((Class) cls, (String) readValue());
+				}
+				case TAG_COLLECTION: {
+					final byte kind = in.readByte();
+					final int size = in.readLength();
+
+					final Collection<Object> c;
+
+					switch (kind) {
+						case KIND_ARRAYLIST:
+							c = new ArrayList<>(size);
+							break;
+						case KIND_LINKEDLIST:
+							c = new LinkedList<>();
+							break;
+						case KIND_HASHSET:
+							c = new HashSet<>();
+							break;
+						case KIND_LINKEDHASHSET:
+							c = new LinkedHashSet<>();
+							break;
+						case KIND_TREESET:
+							c = new TreeSet<>();
+							break;
+						default:
+							throw new IOException("Unknown collection type " + kind);
+					}
+
+					register(c);
+
+					for (int i = 0; i < size; i++)
+						c.add(readValue());
+
+					return c;
+				}
+				case TAG_MAP: {
+					final byte kind = in.readByte();
+					final int size = in.readLength();
+
+					final Map<Object, Object> m;
+
+					switch (kind) {
+						case KIND_HASHMAP:
+							m = new HashMap<>();
+							break;
+						case KIND_LINKEDHASHMAP:
+							m = new LinkedHashMap<>();
+							break;
+						case KIND_TREEMAP:
+							m = new TreeMap<>();
+							break;
+						case KIND_CONCURRENTHASHMAP:
+							m = new ConcurrentHashMap<>();
+							break;
+						default:
+							throw new IOException("Unknown map type " + kind);
+					}
+
+					register(m);
+
+					for (int i = 0; i < size; i++) {
+						final Object key = readValue();
+						m.put(key, readValue());
+					}
+
+					return m;
+				}
+				case TAG_ARRAY: {
+					final Class<?> component = readClass().cls;
+					final int len = in.readLength();
+
+					final Object[] array = (Object[]) Array.newInstance(component, len);
+
+					register(array);
+
+					for (int i = 0; i < len; i++)
+						array[i] = readValue();
+
+					return array;
+				}
+				case TAG_OBJECT: {
+					final WireClass wc = readClass();
+
+					if (!wc.schema.binary)
+						throw new IOException(wc.cls.getCanonicalName() + " cannot be decoded field by field on this side");
+
+					final Object o = register(wc.schema.newInstance());
+
+					readFields(o, wc);
+
+					return o;
+				}
+				case TAG_SERIALIZED: {
+					final int len = in.readLength();
+
+					final Object o = JavaSerializationCodec.deserialize(in.buf, in.pos, len);
+
+					in.pos += len;
+
+					return register(o);
+				}
+				default:
+					throw new IOException("Unknown tag " + tag);
+			}
+		}
+
+		private void readFields(final Object o, final WireClass wc) throws IOException, ClassNotFoundException {
+			try {
+				for (int i = 0; i < wc.codes.length; i++) {
+					final Field f = wc.targets[i];
+
+					switch (wc.codes[i]) {
+						case 'Z': {
+							final boolean v = in.readByte() != 0;
+							if (f != null)
+								f.setBoolean(o, v);
+							break;
+						}
+						case 'B': {
+							final byte v = in.readByte();
+							if (f != null)
+								f.setByte(o, v);
+							break;
+						}
+						case 'C': {
+							final char v = (char) in.readVarLong();
+							if (f != null)
+								f.setChar(o, v);
+							break;
+						}
+						case 'S': {
+							final short v = (short) in.readSignedVarLong();
+							if (f != null)
+								f.setShort(o, v);
+							break;
+						}
+						case 'I': {
+							final int v = (int) in.readSignedVarLong();
+							if (f != null)
+								f.setInt(o, v);
+							break;
+						}
+						case 'J': {
+							final long v = in.readSignedVarLong();
+							if (f != null)
+								f.setLong(o, v);
+							break;
+						}
+						case 'F': {
+							final float v = Float.intBitsToFloat(in.readFixedInt());
+							if (f != null)
+								f.setFloat(o, v);
+							break;
+						}
+						case 'D': {
+							final double v = Double.longBitsToDouble(in.readFixedLong());
+							if (f != null)
+								f.setDouble(o, v);
+							break;
+						}
+						case CODE_OBJECT: {
+							final Object v = readValue();
+
+							// a field that changed its type between versions is left to its default value
+							if (f != null && (v == null || f.getType().isInstance(v)))
+								f.set(o, v);
+
+							break;
+						}
+						default:
+							throw new IOException("Unknown field type code " + wc.codes[i]);
+					}
+				}
+			}
+			catch (final IllegalAccessException e) {
+				throw new IOException("Cannot set the fields of " + wc.cls.getCanonicalName(), e);
+			}
+		}
+	}
+}
@@ -1,24 +1,42 @@
 package alien.api;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.StreamCorruptedException;
 import java.net.ConnectException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +67,22 @@ public class DispatchSSLClient {
 	private static String addr = null;
 	private static int port = 0;
 
+	/**
+	 * Try to negotiate the multiplexed protocol with the server. Off by default since only {@link DispatchSSLServerNIO} speaks it and the central services still run
+	 * {@link DispatchSSLServer} by default.
+	 */
+	private static final boolean multiplexingEnabled = ConfigUtils.getConfig().getb("alien.api.DispatchSSLClient.multiplex", false);
+
+	/**
+	 * Set when the server didn't answer the multiplexing handshake, the following connections go directly to the legacy protocol
+	 */
+	private static volatile boolean multiplexingRejected = false;
+
+	/**
+	 * Client expect an answer promptly, the 15 minute default value should be large enough to accommodate even heavy requests
+	 */
+	private static final int readTimeout = ConfigUtils.getConfig().geti("alien.api.DispatchSSLClient.readTimeout_seconds", 900) * 1000;
+
 	private final Socket connection;
 
 	private final ObjectInputStream ois;
@@ -56,6 +90,42 @@ public class DispatchSSLClient {
 
 	private final OutputStream os;
 
+	/**
+	 * Whether this connection talks the multiplexed protocol, see {@link MultiplexProtocol}
+	 */
+	private final boolean multiplexed;
+
+	/**
+	 * Multiplexed mode: encoding agreed with the server
+	 */
+	private final WireCodec codec;
+
+	/**
+	 * Multiplexed mode: reading the reply frames
+	 */
+	private final DataInputStream dis;
+
+	/**
+	 * Multiplexed mode: writing the request frames, shared by all sending threads
+	 */
+	private final DataOutputStream dos;
+
+	/**
+	 * Multiplexed mode: requests waiting for their reply, by correlation ID
+	 */
+	private final Map<Long, CompletableFuture<byte[]>> pendingReplies = new ConcurrentHashMap<>();
+
+	private final AtomicLong correlationIdSequence = new AtomicLong();
+
+	/**
+	 * Requests currently using this connection, it is not considered idle while this is non-zero
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private volatile boolean broken = false;
+
+	private volatile long lastReceived = System.currentTimeMillis();
+
 	private static long idleTimeout = 0;
 
 	private static long lastCommand = System.currentTimeMillis();
@@ -100,15 +170,17 @@ public class DispatchSSLClient {
 	/**
 	 * 
 	 */
-	static synchronized void checkIdleConnection() {
-		if (instance != null && idleTimeout > 0 && System.currentTimeMillis() - lastCommand > idleTimeout) {
-			logger.log(Level.INFO, "Closing idle socket");
+	static void checkIdleConnection() {
+		synchronized (globalLock) {
+			if (instance != null && idleTimeout > 0 && instance.inFlight.get() == 0 && System.currentTimeMillis() - lastCommand > idleTimeout) {
+				logger.log(Level.INFO, "Closing idle socket");
 
-			final var toClose = instance;
+				final var toClose = instance;
 
-			instance = null;
+				instance = null;
 
-			new Thread(() -> toClose.close()).start();
+				new Thread(() -> toClose.close()).start();
+			}
 		}
 	}
 
@@ -129,21 +201,232 @@ public class DispatchSSLClient {
 	 * @throws IOException
 	 */
 	protected DispatchSSLClient(final Socket connection) throws IOException {
+		this(connection, false);
+	}
+
+	/**
+	 * @param connection
+	 * @param tryMultiplexing
+	 *            whether to negotiate the multiplexed protocol
+	 * @throws ProtocolException
+	 *             if the multiplexed protocol was requested but the server didn't agree to it. The connection cannot be used any more in this case.
+	 * @throws IOException
+	 */
+	protected DispatchSSLClient(final Socket connection, final boolean tryMultiplexing) throws IOException {
 		this.connection = connection;
 
 		connection.setTcpNoDelay(true);
 		connection.setTrafficClass(0x10);
 		connection.setSoLinger(false, 0);
 
-		// client expect an answer promptly, the 15 minute default value should be large enough to accommodate even heavy requests
-		connection.setSoTimeout(ConfigUtils.getConfig().geti("alien.api.DispatchSSLClient.readTimeout_seconds", 900) * 1000);
+		connection.setSoTimeout(readTimeout);
 
-		this.ois = new ObjectInputStream(connection.getInputStream());
+		final InputStream is = new BufferedInputStream(connection.getInputStream());
 
 		this.os = connection.getOutputStream();
 
-		this.oos = new ObjectOutputStream(this.os);
-		this.oos.flush();
+		// the server always starts by sending the header of its object stream
+		final byte[] streamHeader = new byte[4];
+
+		final DataInputStream in = new DataInputStream(is);
+		in.readFully(streamHeader);
+
+		if (tryMultiplexing) {
+			this.codec = negotiateMultiplexing(in);
+
+			this.multiplexed = true;
+			this.ois = null;
+			this.oos = null;
+			this.dis = in;
+			this.dos = new DataOutputStream(new BufferedOutputStream(this.os, 64 * 1024));
+
+			// replies can take any time to come back, the requests have their own timeouts
+			connection.setSoTimeout(0);
+
+			final Thread reader = new Thread(this::readReplies, "DispatchSSLClient.Reader - " + connection.getInetAddress());
+			reader.setDaemon(true);
+			reader.start();
+		}
+		else {
+			this.multiplexed = false;
+			this.codec = null;
+			this.dis = null;
+			this.dos = null;
+
+			this.ois = new ObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(streamHeader), is));
+
+			this.oos = new ObjectOutputStream(this.os);
+			this.oos.flush();
+		}
+	}
+
+	private WireCodec negotiateMultiplexing(final DataInputStream in) throws IOException {
+		this.os.write(MultiplexProtocol.getPreamble());
+		this.os.flush();
+
+		// older servers don't understand the preamble and will just wait for a valid object stream header
+		connection.setSoTimeout(ConfigUtils.getConfig().geti("alien.api.DispatchSSLClient.multiplexHandshakeTimeout_seconds", 5) * 1000);
+
+		final byte[] answer = new byte[MultiplexProtocol.ANSWER_LENGTH];
+
+		try {
+			in.readFully(answer);
+		}
+		catch (@SuppressWarnings("unused") final SocketTimeoutException ste) {
+			throw new ProtocolException("Server didn't answer the multiplexing handshake");
+		}
+		catch (final IOException ioe) {
+			// DispatchSSLServer closes the connection when it sees the preamble instead of an object stream header
+			throw new ProtocolException("Server closed the connection during the multiplexing handshake: " + ioe.getMessage());
+		}
+
+		final WireCodec agreed = MultiplexProtocol.getCodec(answer[MultiplexProtocol.MAGIC.length + 1]);
+
+		if (!MultiplexProtocol.startsWithMagic(answer, answer.length) || answer[MultiplexProtocol.MAGIC.length] != MultiplexProtocol.VERSION || agreed == null)
+			throw new ProtocolException("Unexpected answer to the multiplexing handshake: " + Arrays.toString(answer));
+
+		logger.log(Level.FINE, "Multiplexing with " + agreed.getClass().getSimpleName());
+
+		return agreed;
+	}
+
+	/**
+	 * Multiplexed mode: hand over each incoming reply frame to the thread waiting for it, until the connection is closed
+	 */
+	private void readReplies() {
+		try {
+			while (!broken) {
+				final int length = dis.readInt();
+				final long correlationId = dis.readLong();
+
+				MultiplexProtocol.checkFrameLength(length);
+
+				final byte[] payload = new byte[length];
+				dis.readFully(payload);
+
+				lastReceived = System.currentTimeMillis();
+
+				final CompletableFuture<byte[]> future = pendingReplies.remove(Long.valueOf(correlationId));
+
+				if (future != null)
+					future.complete(payload);
+				else
+					logger.log(Level.FINE, "Discarding the reply to an abandoned request: " + correlationId);
+			}
+		}
+		catch (final IOException ioe) {
+			if (!broken)
+				logger.log(Level.WARNING, "Connection to " + this + " was lost", ioe);
+		}
+		finally {
+			broken = true;
+
+			dropInstance(this);
+
+			failPendingReplies();
+		}
+	}
+
+	private void failPendingReplies() {
+		for (final Long id : pendingReplies.keySet()) {
+			final CompletableFuture<byte[]> future = pendingReplies.remove(id);
+
+			if (future != null)
+				future.completeExceptionally(new IOException("Connection to " + this + " was closed"));
+		}
+	}
+
+	/**
+	 * Multiplexed mode: send the request and wait for its reply. Other threads can use the connection in the mean time.
+	 *
+	 * @param r
+	 * @return the serialized reply
+	 * @throws IOException
+	 */
+	private byte[] multiplexedExchange(final Request r) throws IOException {
+		final long lStart = System.currentTimeMillis();
+
+		final byte[] payload = codec.encode(r);
+
+		final Long correlationId = Long.valueOf(correlationIdSequence.incrementAndGet());
+
+		final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+		pendingReplies.put(correlationId, future);
+
+		try {
+			if (broken)
+				throw new IOException("Connection to " + this + " is closed");
+
+			try {
+				synchronized (dos) {
+					dos.writeInt(payload.length);
+					dos.writeLong(correlationId.longValue());
+					dos.write(payload);
+					dos.flush();
+				}
+			}
+			catch (final IOException ioe) {
+				close();
+				throw ioe;
+			}
+
+			final long sent = System.currentTimeMillis();
+
+			lSerialization.addAndGet(sent - lStart);
+
+			try {
+				return future.get(readTimeout, TimeUnit.MILLISECONDS);
+			}
+			catch (@SuppressWarnings("unused") final TimeoutException te) {
+				if (lastReceived < sent) {
+					// nothing at all came back in the mean time, the connection is most likely dead
+					close();
+				}
+
+				throw new SocketTimeoutException("No reply to " + r.getClass().getSimpleName() + " in " + readTimeout + " ms");
+			}
+			catch (final ExecutionException ee) {
+				if (ee.getCause() instanceof IOException)
+					throw (IOException) ee.getCause();
+
+				throw new IOException(ee.getCause());
+			}
+			catch (final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+
+				final InterruptedIOException iioe = new InterruptedIOException("Interrupted while waiting for the reply");
+				iioe.initCause(ie);
+				throw iioe;
+			}
+		}
+		finally {
+			pendingReplies.remove(correlationId);
+		}
+	}
+
+	/**
+	 * Legacy mode: one request at a time on the object streams
+	 *
+	 * @param r
+	 * @return the reply
+	 * @throws IOException
+	 */
+	private synchronized Object legacyExchange(final Request r) throws IOException {
+		final long lStart = System.currentTimeMillis();
+
+		oos.writeUnshared(r);
+
+		oos.flush();
+
+		lSerialization.addAndGet(System.currentTimeMillis() - lStart);
+
+		try {
+			return ois.readObject();
+		}
+		catch (final ClassNotFoundException e) {
+			throw new IOException(e);
+		}
 	}
 
 	@Override
@@ -153,7 +436,23 @@ public class DispatchSSLClient {
 
 	private static final Object globalLock = new Object();
 
-	private static DispatchSSLClient instance = null;
+	private static final Object connectLock = new Object();
+
+	private static volatile DispatchSSLClient instance = null;
+
+	/**
+	 * Forget about a connection that is not usable any more
+	 *
+	 * @param c
+	 */
+	static void dropInstance(final DispatchSSLClient c) {
+		synchronized (globalLock) {
+			if (instance == c)
+				instance = null;
+		}
+
+		c.close();
+	}
 
 	private static void connectTo(final List<InetAddress> allAddresses, final int targetPort, final SSLSocketFactory factory, final Object callback, final AtomicInteger connectionState) {
 		// connect timeout in config should be given in seconds
@@ -169,22 +468,9 @@ public class DispatchSSLClient {
 					return;
 				}
 
-				@SuppressWarnings("resource")
-				// the socket will be passed along to the SSL one below, and to the connection cache
-				final Socket s = new Socket();
-				s.connect(new InetSocketAddress(endpointToTry, targetPort), connectTimeout);
-
 				@SuppressWarnings("resource")
 				// this object is kept in the map, cannot be closed here
-				final SSLSocket client = (SSLSocket) factory.createSocket(s, endpointToTry.getHostAddress(), targetPort, true);
-
-				// 10s to negociate SSL, if it takes more than this to connect just try another endpoint
-				client.setSoTimeout(10 * 1000);
-
-				// print info
-				printSocketInfo(client, Level.FINE);
-
-				client.startHandshake();
+				final SSLSocket client = openSocket(endpointToTry, targetPort, factory, connectTimeout);
 
 				final Certificate[] peerCerts = client.getSession().getPeerCertificates();
 
@@ -201,7 +487,22 @@ public class DispatchSSLClient {
 					}
 
 					if (connectionState.compareAndSet(0, 1)) {
-						final DispatchSSLClient sc = new DispatchSSLClient(client);
+						DispatchSSLClient sc;
+
+						try {
+							sc = new DispatchSSLClient(client, multiplexingEnabled && !multiplexingRejected);
+						}
+						catch (final ProtocolException pe) {
+							logger.log(Level.INFO, "Falling back to the legacy protocol with " + endpointToTry.getHostAddress() + ":" + targetPort + ": " + pe.getMessage());
+
+							multiplexingRejected = true;
+
+							client.close();
+
+							// the server has seen an invalid stream header and has given up on this connection, start over
+							sc = new DispatchSSLClient(openSocket(endpointToTry, targetPort, factory, connectTimeout), false);
+						}
+
 						System.out.println("Connection to JCentral (" + endpointToTry.getHostAddress() + ":" + targetPort + ") established.");
 
 						ret = sc;
@@ -240,11 +541,45 @@ public class DispatchSSLClient {
 		}
 	}
 
+	@SuppressWarnings("resource")
+	private static SSLSocket openSocket(final InetAddress endpoint, final int targetPort, final SSLSocketFactory factory, final int connectTimeout) throws IOException {
+		// the socket will be passed along to the SSL one below, and to the connection cache
+		final Socket s = new Socket();
+		s.connect(new InetSocketAddress(endpoint, targetPort), connectTimeout);
+
+		final SSLSocket client = (SSLSocket) factory.createSocket(s, endpoint.getHostAddress(), targetPort, true);
+
+		// 10s to negociate SSL, if it takes more than this to connect just try another endpoint
+		client.setSoTimeout(10 * 1000);
+
+		// print info
+		printSocketInfo(client, Level.FINE);
+
+		client.startHandshake();
+
+		return client;
+	}
+
 	/**
 	 * @return instance
 	 * @throws IOException
 	 */
 	private static DispatchSSLClient getInstance() throws IOException {
+		final DispatchSSLClient c = instance;
+
+		if (c != null)
+			return c;
+
+		synchronized (connectLock) {
+			return connect();
+		}
+	}
+
+	/**
+	 * @return the new connection, or <code>null</code> if none could be established
+	 * @throws IOException
+	 */
+	private static DispatchSSLClient connect() throws IOException {
 		if (instance == null) {
 			initializeSocketInfo();
 
@@ -413,8 +748,9 @@ public class DispatchSSLClient {
 		return instance;
 	}
 
-	@SuppressWarnings("unused")
 	private void close() {
+		broken = true;
+
 		if (ois != null)
 			try {
 				ois.close();
@@ -435,15 +771,18 @@ public class DispatchSSLClient {
 			try {
 				connection.close();
 			}
-			catch (final IOException ioe) {
+			catch (@SuppressWarnings("unused") final IOException ioe) {
 				// ignore
 			}
+
+		if (multiplexed)
+			failPendingReplies();
 	}
 
 	/**
 	 * Total amount of time (in milliseconds) spent in writing objects to the socket.
 	 */
-	private static long lSerialization = 0;
+	private static final AtomicLong lSerialization = new AtomicLong();
 
 	private static synchronized void initializeSocketInfo() {
 		addr = ConfigUtils.getConfig().gets(serviceName).trim();
@@ -475,7 +814,7 @@ public class DispatchSSLClient {
 	 * @return the reply, or <code>null</code> in case of connectivity problems
 	 * @throws ServerException
 	 */
-	public static synchronized <T extends Request> T dispatchRequest(final T r) throws ServerException {
+	public static <T extends Request> T dispatchRequest(final T r) throws ServerException {
 		try {
 			return dispatchARequest(r);
 		}
@@ -484,12 +823,7 @@ public class DispatchSSLClient {
 				logger.log(Level.SEVERE, "First attempt to deserialize the response failed", e);
 			}
 
-			// Now let's try, if we can reconnect
-			if (instance != null) {
-				instance.close();
-				instance = null;
-			}
-
+			// Now let's try, if we can reconnect (a broken connection was already dropped by dispatchARequest)
 			for (int i = 0; i < ConfigUtils.getConfig().geti("alien.api.DispatchSSLClient.connectAttempts", 5); i++) {
 				try {
 					return dispatchARequest(r);
@@ -523,7 +857,7 @@ public class DispatchSSLClient {
 	 * @throws ServerException
 	 *             if the server didn't like the request content
 	 */
-	public static synchronized <T extends Request> T dispatchARequest(final T r) throws IOException, ServerException {
+	public static <T extends Request> T dispatchARequest(final T r) throws IOException, ServerException {
 		lastCommand = System.currentTimeMillis();
 
 		final DispatchSSLClient c = getInstance();
@@ -531,20 +865,39 @@ public class DispatchSSLClient {
 		if (c == null)
 			throw new IOException("Connection is null");
 
-		final long lStart = System.currentTimeMillis();
+		final Object o;
 
-		c.oos.writeUnshared(r);
+		c.inFlight.incrementAndGet();
 
-		c.oos.flush();
+		try {
+			if (c.multiplexed) {
+				final byte[] payload = c.multiplexedExchange(r);
 
-		lSerialization += System.currentTimeMillis() - lStart;
+				// MultiplexProtocol.errorFrame(), the connection itself is still fine
+				if (payload.length == 0)
+					throw new ServerException("The server could not execute " + r.getClass().getSimpleName() + ", it might not know this request yet", null);
 
-		Object o;
-		try {
-			o = c.ois.readObject();
+				try {
+					o = c.codec.decode(payload);
+				}
+				catch (final ClassNotFoundException e) {
+					throw new IOException(e);
+				}
+			}
+			else
+				o = c.legacyExchange(r);
 		}
-		catch (final ClassNotFoundException e) {
-			throw new IOException(e);
+		catch (final IOException ioe) {
+			// the object streams cannot be trusted any more after an error, a multiplexed connection only if the socket itself failed
+			if (!c.multiplexed || c.broken)
+				dropInstance(c);
+
+			throw ioe;
+		}
+		finally {
+			c.inFlight.decrementAndGet();
+
+			lastCommand = System.currentTimeMillis();
 		}
 
 		if (o == null) {
@@ -576,7 +929,7 @@ public class DispatchSSLClient {
 	 * @return total time in milliseconds spent in serializing objects
 	 */
 	public static long getSerializationTime() {
-		return lSerialization;
+		return lSerialization.get();
 	}
 
 	private static void printSocketInfo(final SSLSocket s, final Level level) {
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -145,8 +146,15 @@ public class DispatchSSLServer extends Thread {
 
 				this.ois = new ObjectInputStream(connection.getInputStream());
 			}
+			catch (final StreamCorruptedException sce) {
+				// most likely a client asking for the multiplexed protocol, closing the connection tells it to reconnect with plain object streams
+				logger.log(Level.FINE, "Invalid object stream header from " + connection.getInetAddress() + ", closing the connection", sce);
+				closeQuietly();
+				return;
+			}
 			catch (final IOException e) {
 				logger.log(Level.SEVERE, "Exception initializing the SSL socket", e);
+				closeQuietly();
 				return;
 			}
 
@@ -322,6 +330,15 @@ public class DispatchSSLServer extends Thread {
 		}
 	}
 
+	private void closeQuietly() {
+		try {
+			connection.close();
+		}
+		catch (@SuppressWarnings("unused") final IOException ioe) {
+			// ignore
+		}
+	}
+
 	private static File accessLogFile = null;
 
 	private static OutputStream accessLogStream = null;
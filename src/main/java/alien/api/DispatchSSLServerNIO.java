@@ -20,6 +20,7 @@ import java.security.SecureRandom;
 import java.security.Security;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
@@ -29,6 +30,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -136,7 +138,65 @@ public class DispatchSSLServerNIO implements Runnable {
 	private PipedOutputStream pos = null;
 	private PipedInputStream pis = null;
 
-	private long lastActive = System.currentTimeMillis();
+	private volatile long lastActive = System.currentTimeMillis();
+
+	private static final int PROTOCOL_UNKNOWN = 0;
+
+	private static final int PROTOCOL_LEGACY = 1;
+
+	private static final int PROTOCOL_MULTIPLEXED = 2;
+
+	/**
+	 * Which protocol the client speaks, decided by the first bytes it sends (see {@link MultiplexProtocol})
+	 */
+	private int protocol = PROTOCOL_UNKNOWN;
+
+	/**
+	 * Bytes received but not yet processed, while sniffing the protocol and then while waiting for complete frames in multiplexed mode
+	 */
+	private byte[] pending = null;
+
+	private int pendingLength = 0;
+
+	/**
+	 * Encoding agreed with a multiplexing client
+	 */
+	private WireCodec codec = null;
+
+	/**
+	 * Multiplexed requests currently executing
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	/**
+	 * Stop reading from a multiplexing client while it has this many requests executing
+	 */
+	private static final int maxInFlight = ConfigUtils.getConfig().geti(DispatchSSLServerNIO.class.getCanonicalName() + ".maxInFlight", 64);
+
+	/**
+	 * Data waiting to be sent to the client, written when the socket can take it. Also the lock for all writes on this connection.
+	 */
+	private final ArrayDeque<ByteBuffer> outputQueue = new ArrayDeque<>();
+
+	/**
+	 * Bytes in {@link #outputQueue}, guarded by it
+	 */
+	private long queuedBytes = 0;
+
+	/**
+	 * Set when the client doesn't read its replies fast enough, no more requests are read until the output queue is drained
+	 */
+	private boolean readPaused = false;
+
+	/**
+	 * Above this amount of pending output stop reading new requests from the client
+	 */
+	private static final long outputHighWatermark = ConfigUtils.getConfig().getl(DispatchSSLServerNIO.class.getCanonicalName() + ".outputHighWatermark", 16 * 1024 * 1024);
+
+	/**
+	 * Connections accumulating more than this in the output queue are closed
+	 */
+	private static final long maxOutputQueue = ConfigUtils.getConfig().getl(DispatchSSLServerNIO.class.getCanonicalName() + ".maxOutputQueue", 1024 * 1024 * 1024);
 
 	private class ByteBufferOutputStream extends ByteArrayOutputStream {
 
@@ -148,50 +208,112 @@ public class DispatchSSLServerNIO implements Runnable {
 		public void flush() throws IOException {
 			super.flush();
 
-			int wrote, toWrite, ret, retries;
+			if (count == 0)
+				return;
 
-			retries = 0;
-			wrote = 0;
+			// hand over the buffer instead of copying it
+			final ByteBuffer bb = ByteBuffer.wrap(buf, 0, count);
 
-			final byte[] content = toByteArray();
+			buf = new byte[Math.min(buf.length, 64 * 1024)];
+			count = 0;
 
-			toWrite = content.length;
+			send(bb);
+		}
+	}
 
-			final ByteBuffer bb = ByteBuffer.wrap(content);
+	/**
+	 * Queue data for the client, then send as much of it as the socket takes right away. The rest is written by the selector thread when the socket becomes writable, so the calling
+	 * thread never waits for a slow client.
+	 *
+	 * @param buffers
+	 *            sent back to back, no other data can come in between
+	 * @throws IOException
+	 *             if the connection is broken or the client doesn't read fast enough
+	 */
+	void send(final ByteBuffer... buffers) throws IOException {
+		synchronized (outputQueue) {
+			for (final ByteBuffer bb : buffers)
+				if (bb.hasRemaining()) {
+					outputQueue.add(bb);
+					queuedBytes += bb.remaining();
+				}
 
-			while (wrote < toWrite) {
-				ret = channel.write(bb);
+			if (queuedBytes > maxOutputQueue) {
+				monitor.incrementCounter("output_queue_overflow");
+				throw new IOException("Too much pending output for " + remoteIdentity + ": " + queuedBytes + " bytes");
+			}
 
-				wrote += ret;
+			drainOutput();
+		}
+	}
 
-				// logger.log(Level.FINEST, "wrote = " + wrote + " ret = " + ret + " toWrite = " + toWrite);
-				if (ret > 0) {
-					retries = 0;
-				}
-				else if (ret < 0) {
-					throw new IOException("Failed to send data to the client");
-				}
-				else if (ret == 0) {
-					retries++;
-					// enter fail condition
-					if (retries == ConfigUtils.getConfig().geti("alien.api.DispatchSSLServer.transferRetries", 30)) {
-						logger.log(Level.SEVERE, "Stuck for too long, will exit");
-						throw new IOException("Failed to send a chunk of data to the client after " + retries + " retries");
-					}
+	/**
+	 * The socket can take more data
+	 */
+	void onWritable() {
+		synchronized (outputQueue) {
+			try {
+				drainOutput();
+			}
+			catch (final IOException ioe) {
+				logger.log(Level.WARNING, "Cannot send data to " + remoteIdentity + ", closing connection", ioe);
+				cleanup();
+			}
+		}
+	}
 
-					// logger.log(Level.FINEST, "Waiting for network buffer to free up");
-					try {
-						Thread.sleep(ConfigUtils.getConfig().geti("alien.api.DispatchSSLServerNIO.transferIntervalms", 100));
-					}
-					catch (final InterruptedException ie) {
-						throw new IOException("Interrupted while waiting to send a chunk of data to the client, was at retry no. " + retries, ie);
-					}
-				}
+	/**
+	 * Write without blocking from the output queue, then ask the selector for the events this connection is waiting for. Must be called while holding the output queue lock.
+	 *
+	 * @throws IOException
+	 */
+	private void drainOutput() throws IOException {
+		ByteBuffer head;
+
+		boolean allSent = false;
+
+		while (true) {
+			head = outputQueue.peek();
+
+			if (head == null) {
+				// everything was passed to the SSL layer, but it might still hold encrypted data
+				allSent = channel.flushPending();
+				break;
 			}
 
-			// System.err.println("Finished sending");
+			final int written = channel.write(head);
+
+			if (written < 0)
+				throw new IOException("Failed to send data to the client");
+
+			if (written > 0) {
+				queuedBytes -= written;
+				lastActive = System.currentTimeMillis();
+			}
+
+			if (head.hasRemaining())
+				break;
 
-			this.reset();
+			outputQueue.poll();
+		}
+
+		if (!readPaused && queuedBytes > outputHighWatermark) {
+			readPaused = true;
+			monitor.incrementCounter("read_paused");
+		}
+		else if (readPaused && queuedBytes < outputHighWatermark / 2)
+			readPaused = false;
+
+		// the frames already received still go to the executor, reading resumes as soon as one of the requests completes
+		final boolean tooManyRequests = inFlight.get() >= maxInFlight;
+
+		if (key != null && key.isValid()) {
+			final int ops = (readPaused || tooManyRequests ? 0 : SelectionKey.OP_READ) | (allSent ? 0 : SelectionKey.OP_WRITE);
+
+			if (key.interestOps() != ops) {
+				key.interestOps(ops);
+				serverSelector.wakeup();
+			}
 		}
 	}
 
@@ -325,6 +447,34 @@ public class DispatchSSLServerNIO implements Runnable {
 	}
 
 	private void newDataBlock(final byte[] buffer) {
+		if (protocol == PROTOCOL_MULTIPLEXED) {
+			newFrameData(buffer);
+			return;
+		}
+
+		if (protocol == PROTOCOL_UNKNOWN) {
+			appendPending(buffer);
+
+			if (pendingLength < MultiplexProtocol.MAGIC.length)
+				return;
+
+			if (MultiplexProtocol.startsWithMagic(pending, pendingLength)) {
+				negotiateMultiplexing();
+				return;
+			}
+
+			// a legacy client, starting its object stream
+			protocol = PROTOCOL_LEGACY;
+
+			final byte[] received = Arrays.copyOf(pending, pendingLength);
+
+			pending = null;
+			pendingLength = 0;
+
+			newDataBlock(received);
+			return;
+		}
+
 		try {
 			pos.write(buffer);
 			// System.err.println("Buffer size is " + pis.available());
@@ -343,6 +493,177 @@ public class DispatchSSLServerNIO implements Runnable {
 		}
 	}
 
+	private void appendPending(final byte[] buffer) {
+		if (pending == null)
+			pending = new byte[Math.max(buffer.length, 32 * 1024)];
+		else if (pending.length - pendingLength < buffer.length)
+			pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + buffer.length));
+
+		System.arraycopy(buffer, 0, pending, pendingLength, buffer.length);
+		pendingLength += buffer.length;
+	}
+
+	/**
+	 * Answer the preamble of a multiplexing client, once it was fully received
+	 */
+	private void negotiateMultiplexing() {
+		final int headerLength = MultiplexProtocol.MAGIC.length + 2;
+
+		if (pendingLength < headerLength)
+			return;
+
+		final int encodings = pending[headerLength - 1] & 0xFF;
+
+		if (pendingLength < headerLength + encodings)
+			return;
+
+		// the first one the client proposed that is also enabled here
+		WireCodec chosen = null;
+
+		for (int i = 0; i < encodings && chosen == null; i++)
+			chosen = MultiplexProtocol.getCodec(pending[headerLength + i]);
+
+		if (pending[headerLength - 2] < 1 || chosen == null) {
+			logger.log(Level.WARNING, "Client " + remoteIdentity + " asked for an unsupported protocol version " + pending[headerLength - 2] + " or encoding, closing connection");
+			cleanup();
+			return;
+		}
+
+		try {
+			send(ByteBuffer.wrap(MultiplexProtocol.getAnswer(chosen.getId())));
+		}
+		catch (final IOException ioe) {
+			logger.log(Level.WARNING, "Cannot answer the multiplexing handshake, closing connection", ioe);
+			cleanup();
+			return;
+		}
+
+		protocol = PROTOCOL_MULTIPLEXED;
+		codec = chosen;
+
+		monitor.incrementCounter("multiplexed_connections");
+		monitor.incrementCounter("codec_" + chosen.getClass().getSimpleName());
+
+		// anything after the preamble is already frame data
+		final byte[] rest = Arrays.copyOfRange(pending, headerLength + encodings, pendingLength);
+
+		pending = null;
+		pendingLength = 0;
+
+		if (rest.length > 0)
+			newFrameData(rest);
+	}
+
+	/**
+	 * Multiplexed mode: cut the received data in frames and hand each of them to the executor. Only buffering is done here, on the selector thread.
+	 *
+	 * @param buffer
+	 */
+	private void newFrameData(final byte[] buffer) {
+		appendPending(buffer);
+
+		final ByteBuffer bb = ByteBuffer.wrap(pending, 0, pendingLength);
+
+		try {
+			while (bb.remaining() >= MultiplexProtocol.FRAME_HEADER_LENGTH) {
+				final int length = bb.getInt(bb.position());
+
+				MultiplexProtocol.checkFrameLength(length);
+
+				if (bb.remaining() < MultiplexProtocol.FRAME_HEADER_LENGTH + length)
+					break;
+
+				bb.getInt();
+
+				final long correlationId = bb.getLong();
+
+				final byte[] payload = new byte[length];
+				bb.get(payload);
+
+				if (inFlight.incrementAndGet() == maxInFlight) {
+					// stop reading until one of the requests completes
+					monitor.incrementCounter("in_flight_limit");
+					onWritable();
+				}
+
+				executor.submit(() -> executeFrame(correlationId, payload));
+			}
+		}
+		catch (final IOException ioe) {
+			logger.log(Level.WARNING, "Protocol error from " + remoteIdentity + ", closing connection", ioe);
+			cleanup();
+			return;
+		}
+
+		// keep the incomplete frame for the next read
+		pendingLength = bb.remaining();
+
+		if (pendingLength > 0)
+			System.arraycopy(pending, bb.position(), pending, 0, pendingLength);
+		else if (pending.length > 1024 * 1024)
+			pending = null; // don't hold on to the buffer of a large request
+	}
+
+	/**
+	 * Multiplexed mode: execute one request and send back the reply, tagged with the same correlation ID. Other requests of the same client run in parallel.
+	 *
+	 * @param correlationId
+	 * @param payload
+	 */
+	private void executeFrame(final long correlationId, final byte[] payload) {
+		try {
+			Object o;
+
+			try {
+				o = codec.decode(payload);
+			}
+			catch (final ClassNotFoundException | RuntimeException e) {
+				// for example a request class that this server doesn't have yet
+				logger.log(Level.SEVERE, "Cannot deserialize a request", e);
+				o = null;
+			}
+
+			if (!(o instanceof Request)) {
+				if (o != null)
+					logger.log(Level.WARNING, "I don't know what to do with an object of type " + o.getClass().getCanonicalName());
+
+				// tell the client right away, instead of leaving it to wait for the reply until its read timeout
+				send(MultiplexProtocol.errorFrame(correlationId));
+				return;
+			}
+
+			final Request r = processRequest((Request) o);
+
+			final double serializationTime;
+
+			final ByteBuffer[] reply;
+
+			try (Timing timing = new Timing()) {
+				reply = MultiplexProtocol.frame(correlationId, codec.encode(r));
+
+				serializationTime = timing.getMillis();
+			}
+
+			send(reply);
+
+			lSerialization.add((long) (serializationTime * 1000));
+
+			if (monitor != null)
+				monitor.addMeasurement("serialization", serializationTime);
+		}
+		catch (final IOException e) {
+			logger.log(Level.WARNING, "IOException running a multiplexed request, closing connection", e);
+			cleanup();
+		}
+		finally {
+			// resume reading if it was paused because of too many requests in flight
+			if (inFlight.getAndDecrement() == maxInFlight)
+				onWritable();
+
+			lastActive = System.currentTimeMillis();
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -358,63 +679,92 @@ public class DispatchSSLServerNIO implements Runnable {
 		key.interestOps(0);
 		key.cancel();
 
+		synchronized (outputQueue) {
+			outputQueue.clear();
+			queuedBytes = 0;
+		}
+
 		close(channel);
 		close(pos);
 		close(pis);
 		close(ois);
 	}
 
-	private double executeOneRequest(final Object o) throws Exception {
-		double ret = -1;
-
-		if (o instanceof Request) {
-			Request r = (Request) o;
+	/**
+	 * Execute a request on behalf of the connected client
+	 *
+	 * @param request
+	 * @return the processed request, to be returned to the client
+	 * @throws IOException
+	 *             if the access log cannot be written
+	 */
+	private Request processRequest(final Request request) throws IOException {
+		Request r = request;
 
-			r.setPartnerIdentity(remoteIdentity);
+		r.setPartnerIdentity(remoteIdentity);
 
-			r.setPartnerCertificate(partnerCerts);
+		r.setPartnerCertificate(partnerCerts);
 
-			final double requestProcessingDuration;
+		final double requestProcessingDuration;
 
-			try (RequestEvent event = new RequestEvent(DispatchSSLServer.getAccessLog())) {
-				event.clientAddress = remoteIdentity.getRemoteEndpoint();
-				event.clientPort = remoteIdentity.getRemotePort();
-				event.command = r.getClass().getSimpleName();
-				event.clientID = r.getVMUUID();
-				event.requestId = r.getRequestID();
-				event.arguments = r.getArguments();
+		try (RequestEvent event = new RequestEvent(DispatchSSLServer.getAccessLog())) {
+			event.clientAddress = remoteIdentity.getRemoteEndpoint();
+			event.clientPort = remoteIdentity.getRemotePort();
+			event.command = r.getClass().getSimpleName();
+			event.clientID = r.getVMUUID();
+			event.requestId = r.getRequestID();
+			event.arguments = r.getArguments();
 
-				try {
-					r.setException(null);
+			try {
+				r.setException(null);
 
-					r = Dispatcher.execute(r, forwardRequest);
+				r = Dispatcher.execute(r, forwardRequest);
 
-					event.exception = r.getException();
+				event.exception = r.getException();
 
-					if (event.exception == null) {
-						event.exitCode = 0;
-					}
-					else {
-						event.exitCode = ErrNo.EBADE.getErrorCode();
-						event.errorMessage = "Request doesn't pass muster";
-					}
+				if (event.exception == null) {
+					event.exitCode = 0;
 				}
-				catch (final Exception e) {
-					logger.log(Level.WARNING, "Returning an exception to the client", e);
-
-					r.setException(new ServerException(e.getMessage(), e));
-
-					event.exception = e;
+				else {
 					event.exitCode = ErrNo.EBADE.getErrorCode();
-					event.errorMessage = "Exception executing request";
+					event.errorMessage = "Request doesn't pass muster";
 				}
+			}
+			catch (final Exception e) {
+				logger.log(Level.WARNING, "Returning an exception to the client", e);
 
-				event.identity = r.getEffectiveRequester();
+				r.setException(new ServerException(e.getMessage(), e));
 
-				requestProcessingDuration = event.timing.getMillis();
+				event.exception = e;
+				event.exitCode = ErrNo.EBADE.getErrorCode();
+				event.errorMessage = "Exception executing request";
 			}
 
-			ret = requestProcessingDuration;
+			event.identity = r.getEffectiveRequester();
+
+			requestProcessingDuration = event.timing.getMillis();
+		}
+
+		if (logger.isLoggable(Level.FINE))
+			logger.log(Level.FINE, "Got request from " + r.getRequesterIdentity() + " : " + r.getClass().getCanonicalName());
+
+		if (monitor != null)
+			monitor.addMeasurement("request_processing", requestProcessingDuration);
+
+		return r;
+	}
+
+	private double executeOneRequest(final Object o) throws Exception {
+		double ret = -1;
+
+		if (o instanceof Request) {
+			final Request r;
+
+			try (Timing timing = new Timing()) {
+				r = processRequest((Request) o);
+
+				ret = timing.getMillis();
+			}
 
 			final double serializationTime;
 
@@ -428,15 +778,10 @@ public class DispatchSSLServerNIO implements Runnable {
 				serializationTime = timing.getMillis();
 			}
 
-			lSerialization += serializationTime;
+			lSerialization.add((long) (serializationTime * 1000));
 
-			if (logger.isLoggable(Level.FINE))
-				logger.log(Level.FINE, "Got request from " + r.getRequesterIdentity() + " : " + r.getClass().getCanonicalName());
-
-			if (monitor != null) {
-				monitor.addMeasurement("request_processing", requestProcessingDuration);
+			if (monitor != null)
 				monitor.addMeasurement("serialization", serializationTime);
-			}
 		}
 		else
 			logger.log(Level.WARNING, "I don't know what to do with an object of type " + o.getClass().getCanonicalName());
@@ -583,6 +928,13 @@ public class DispatchSSLServerNIO implements Runnable {
 								continue;
 							}
 
+							if (key.isValid() && key.isWritable()) {
+								final DispatchSSLServerNIO obj = sessionMap.get(key);
+
+								if (obj != null)
+									obj.onWritable();
+							}
+
 							if (key.isValid() && key.isReadable()) {
 								final DispatchSSLServerNIO obj = sessionMap.get(key);
 
@@ -771,7 +1123,7 @@ public class DispatchSSLServerNIO implements Runnable {
 				final long authGraceReferenceTime = System.currentTimeMillis() - authGraceTime;
 
 				for (DispatchSSLServerNIO instance : sessionMap.values()) {
-					if (!instance.isActive.get() && instance.lastActive < (instance.remoteIdentity != null ? referenceTime : authGraceReferenceTime)) {
+					if (!instance.isActive.get() && instance.inFlight.get() == 0 && instance.lastActive < (instance.remoteIdentity != null ? referenceTime : authGraceReferenceTime)) {
 						try {
 							if (instance.remoteIdentity != null)
 								logger.log(Level.WARNING, "Closing idle connection: " + instance.remoteIdentity.getName() + "@" + instance.remoteIdentity.getRemoteEndpoint());
@@ -815,6 +1167,16 @@ public class DispatchSSLServerNIO implements Runnable {
 
 				names.add("eQueueSize");
 				values.add(Double.valueOf(taskQueue.size()));
+
+				long pendingOutput = 0;
+
+				for (final DispatchSSLServerNIO instance : sessionMap.values())
+					synchronized (instance.outputQueue) {
+						pendingOutput += instance.queuedBytes;
+					}
+
+				names.add("pendingOutputBytes");
+				values.add(Double.valueOf(pendingOutput));
 			});
 
 			ipv6Connections = monitor.getCacheMonitor("ipv6_connections");
@@ -822,15 +1184,15 @@ public class DispatchSSLServerNIO implements Runnable {
 	}
 
 	/**
-	 * Total amount of time (in milliseconds) spent in writing objects to the socket.
+	 * Total amount of time (in microseconds) spent in writing objects to the socket, updated by all the executor threads
 	 */
-	private static double lSerialization = 0;
+	private static final LongAdder lSerialization = new LongAdder();
 
 	/**
 	 * @return total time in milliseconds spent in serializing objects
 	 */
 	public static double getSerializationTime() {
-		return lSerialization;
+		return lSerialization.sum() / 1000d;
 	}
 
 	/**
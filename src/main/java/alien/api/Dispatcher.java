@@ -5,6 +5,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import alien.api.taskQueue.GetMatchJob;
+import alien.api.taskQueue.GetMatchJobs;
 import alien.api.taskQueue.InspectPinning;
 import alien.api.taskQueue.JobKilledException;
 import alien.api.taskQueue.PutJobLog;
@@ -171,7 +172,7 @@ public class Dispatcher {
 
 		if (requester.isJobAgent()) {
 			// Main JobAgent functionality - getting a job from the task queue to run
-			if (r instanceof GetMatchJob)
+			if (r instanceof GetMatchJob || r instanceof GetMatchJobs)
 				return true;
 
 			// Allowing the JobAgent to change the job status enables it to act on possible JobWrapper terminations/faults
@@ -0,0 +1,64 @@
+package alien.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Standard Java serialization, each object in its own stream. Supported by all peers, it is used when the binary encoding cannot be agreed on.
+ *
+ * @since Oct 17, 2026
+ */
+public class JavaSerializationCodec implements WireCodec {
+
+	/**
+	 * Identifier in the handshake
+	 */
+	public static final byte ID = 0;
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public byte[] encode(final Object o) throws IOException {
+		return serialize(o);
+	}
+
+	@Override
+	public Object decode(final byte[] payload) throws IOException, ClassNotFoundException {
+		return deserialize(payload, 0, payload.length);
+	}
+
+	/**
+	 * @param o
+	 * @return the object serialized in a standalone stream
+	 * @throws IOException
+	 */
+	static byte[] serialize(final Object o) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeUnshared(o);
+		}
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @return the object
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	static Object deserialize(final byte[] payload, final int offset, final int length) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload, offset, length))) {
+			return ois.readObject();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package alien.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import alien.config.ConfigUtils;
+
+/**
+ * Wire format of the multiplexed API protocol.<br>
+ * <br>
+ * The server starts, as in the legacy protocol, by sending the header of a Java object stream. A client that wants to multiplex then sends a preamble: the magic bytes
+ * <code>JAMX</code>, the protocol version and the list of payload encodings it supports, in order of preference. A server that understands it answers with the magic bytes, the
+ * version and the first of those encodings that it supports too (see {@link WireCodec}), while an older server sees an invalid object stream header and never answers, so the
+ * client falls back to the legacy protocol after a timeout. Since a Java object stream always starts with <code>0xACED</code> the server can tell the two protocols apart from the
+ * first bytes it receives.<br>
+ * <br>
+ * After the handshake both sides exchange frames of <code>[int payload length][long correlation ID][payload]</code>. Each request carries a client-allocated correlation ID and
+ * the reply to it carries the same ID, so any number of requests can be in flight on the same connection and the replies can come back in any order.
+ *
+ * @since Oct 17, 2026
+ */
+final class MultiplexProtocol {
+
+	/**
+	 * "JAMX"
+	 */
+	static final byte[] MAGIC = { 'J', 'A', 'M', 'X' };
+
+	/**
+	 * Current version of the protocol
+	 */
+	static final byte VERSION = 1;
+
+	/**
+	 * Whether to offer, or accept, the binary encoding. It is opt-in, both sides have to enable it to use it. Java serialization is always available as fallback.
+	 */
+	private static final boolean binaryCodecEnabled = ConfigUtils.getConfig().getb("alien.api.MultiplexProtocol.binaryCodec", false);
+
+	private static final WireCodec javaSerializationCodec = new JavaSerializationCodec();
+
+	private static final WireCodec binaryCodec = new BinaryWireCodec();
+
+	/**
+	 * Size of the server answer to the preamble: magic, version and chosen encoding
+	 */
+	static final int ANSWER_LENGTH = MAGIC.length + 2;
+
+	/**
+	 * Size of the header of each frame: payload length and correlation ID
+	 */
+	static final int FRAME_HEADER_LENGTH = Integer.BYTES + Long.BYTES;
+
+	/**
+	 * Largest accepted payload, larger frames are treated as a protocol error
+	 */
+	static final int maxFrameSize = ConfigUtils.getConfig().geti("alien.api.MultiplexProtocol.maxFrameSize", 256 * 1024 * 1024);
+
+	private MultiplexProtocol() {
+		// constants and helpers only
+	}
+
+	/**
+	 * @param id
+	 * @return the codec with this identifier, if it is supported and enabled, <code>null</code> if not
+	 */
+	static WireCodec getCodec(final byte id) {
+		if (id == BinaryWireCodec.ID && binaryCodecEnabled)
+			return binaryCodec;
+
+		if (id == JavaSerializationCodec.ID)
+			return javaSerializationCodec;
+
+		return null;
+	}
+
+	/**
+	 * @return the client preamble, announcing the supported encodings
+	 */
+	static byte[] getPreamble() {
+		final byte[] encodings = binaryCodecEnabled ? new byte[] { BinaryWireCodec.ID, JavaSerializationCodec.ID } : new byte[] { JavaSerializationCodec.ID };
+
+		final ByteBuffer bb = ByteBuffer.allocate(MAGIC.length + 2 + encodings.length);
+		bb.put(MAGIC);
+		bb.put(VERSION);
+		bb.put((byte) encodings.length);
+		bb.put(encodings);
+
+		return bb.array();
+	}
+
+	/**
+	 * @param encoding
+	 *            the encoding the server picked
+	 * @return the server answer to the preamble
+	 */
+	static byte[] getAnswer(final byte encoding) {
+		final ByteBuffer bb = ByteBuffer.allocate(ANSWER_LENGTH);
+		bb.put(MAGIC);
+		bb.put(VERSION);
+		bb.put(encoding);
+
+		return bb.array();
+	}
+
+	/**
+	 * @param data
+	 * @param length
+	 *            how many bytes of the array are valid, at least <code>MAGIC.length</code>
+	 * @return <code>true</code> if the data starts with the magic bytes
+	 */
+	static boolean startsWithMagic(final byte[] data, final int length) {
+		if (length < MAGIC.length)
+			return false;
+
+		for (int i = 0; i < MAGIC.length; i++)
+			if (data[i] != MAGIC[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * @param frameLength
+	 *            payload length read from a frame header
+	 * @throws IOException
+	 *             if the value is not acceptable
+	 */
+	static void checkFrameLength(final int frameLength) throws IOException {
+		if (frameLength < 0 || frameLength > maxFrameSize)
+			throw new IOException("Invalid frame length: " + frameLength + " (max allowed is " + maxFrameSize + ")");
+	}
+
+	/**
+	 * Small payloads are copied after the header, to go out in one TLS record. Large ones are passed along as they are.
+	 */
+	private static final int COPY_THRESHOLD = 16 * 1024;
+
+	/**
+	 * @param correlationId
+	 * @return a frame with an empty payload, telling the client that the server could not execute this request (for example because it doesn't know its class)
+	 */
+	static ByteBuffer[] errorFrame(final long correlationId) {
+		return frame(correlationId, new byte[0]);
+	}
+
+	/**
+	 * @param correlationId
+	 * @param payload
+	 * @return the complete frame, as one or more buffers to be sent in order
+	 */
+	static ByteBuffer[] frame(final long correlationId, final byte[] payload) {
+		final boolean copy = payload.length <= COPY_THRESHOLD;
+
+		final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_LENGTH + (copy ? payload.length : 0));
+		header.putInt(payload.length);
+		header.putLong(correlationId);
+
+		if (copy) {
+			header.put(payload);
+			header.flip();
+
+			return new ByteBuffer[] { header };
+		}
+
+		header.flip();
+
+		return new ByteBuffer[] { header, ByteBuffer.wrap(payload) };
+	}
+}
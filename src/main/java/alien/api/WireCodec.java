@@ -0,0 +1,35 @@
+package alien.api;
+
+import java.io.IOException;
+
+/**
+ * Encoding of the objects exchanged on a multiplexed API connection. Client and server agree on one of them when the connection is set up, see {@link MultiplexProtocol}.
+ *
+ * @since Oct 17, 2026
+ */
+public interface WireCodec {
+	/**
+	 * @return identifier of this encoding in the handshake
+	 */
+	byte getId();
+
+	/**
+	 * @param o
+	 *            object to encode
+	 * @return the payload of one frame
+	 * @throws IOException
+	 *             if the object cannot be encoded
+	 */
+	byte[] encode(Object o) throws IOException;
+
+	/**
+	 * @param payload
+	 *            the payload of one frame
+	 * @return the decoded object
+	 * @throws IOException
+	 *             if the content is not valid
+	 * @throws ClassNotFoundException
+	 *             if the object is of a class not known locally
+	 */
+	Object decode(byte[] payload) throws IOException, ClassNotFoundException;
+}
@@ -838,6 +838,36 @@ public class CatalogueApiUtils {
 		return false;
 	}
 
+	/**
+	 * Register the LFNs contained in several OutputEntries in the catalogue with a single request. Falls back to one {@link #registerEntry(OutputEntry, String, AliEnPrincipal)}
+	 * call per entry if the bulk request cannot be executed (for example by a central service that doesn't know it yet).
+	 *
+	 * @param entries
+	 * @param outputDir
+	 * @param user
+	 * @return for each entry, in the same order, whether it was registered
+	 */
+	public static boolean[] registerEntries(final List<OutputEntry> entries, final String outputDir, final AliEnPrincipal user) {
+		try {
+			final boolean[] ret = Dispatcher.execute(new RegisterEntries(entries, outputDir, user)).wasRegistered();
+
+			if (ret != null && ret.length == entries.size())
+				return ret;
+
+			logger.log(Level.WARNING, "Unexpected answer to the bulk registration of " + entries.size() + " entries in " + outputDir + ", registering them one by one");
+		}
+		catch (final ServerException e) {
+			logger.log(Level.WARNING, "Could not register " + entries.size() + " entries in one request, registering them one by one", e.getCause());
+		}
+
+		final boolean[] ret = new boolean[entries.size()];
+
+		for (int i = 0; i < entries.size(); i++)
+			ret[i] = registerEntry(entries.get(i), outputDir, user);
+
+		return ret;
+	}
+
 	/**
 	 * Book the LFNs contained in the OutputEntry in catalogue
 	 *
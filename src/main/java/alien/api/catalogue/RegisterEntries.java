@@ -0,0 +1,76 @@
+package alien.api.catalogue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.api.Request;
+import alien.catalogue.Register;
+import alien.config.ConfigUtils;
+import alien.site.OutputEntry;
+import alien.user.AliEnPrincipal;
+
+/**
+ * Register the members of several output archives in one go, instead of one {@link RegisterEntry} round trip for each of them
+ *
+ * @since Oct 17, 2026
+ */
+public class RegisterEntries extends Request {
+	/**
+	 * Logger
+	 */
+	static transient final Logger logger = ConfigUtils.getLogger(RegisterEntries.class.getCanonicalName());
+
+	private static final long serialVersionUID = 6316617911226488436L;
+	private final List<OutputEntry> entries;
+	private final String outputDir;
+	private boolean[] wasRegistered;
+
+	/**
+	 * @param entries lfn entries to register (converted to OutputEntry)
+	 * @param outputDir absolute path
+	 * @param user
+	 */
+	public RegisterEntries(final List<OutputEntry> entries, final String outputDir, final AliEnPrincipal user) {
+		setRequestUser(user);
+		this.entries = entries != null ? new ArrayList<>(entries) : null;
+		this.outputDir = outputDir;
+		this.wasRegistered = null;
+	}
+
+	@Override
+	public List<String> getArguments() {
+		return Arrays.asList(this.outputDir, this.entries != null ? String.valueOf(this.entries.size()) : null);
+	}
+
+	@Override
+	public void run() {
+		if (entries != null && outputDir != null && outputDir.length() != 0) {
+			wasRegistered = new boolean[entries.size()];
+
+			for (int i = 0; i < entries.size(); i++) {
+				final OutputEntry entry = entries.get(i);
+
+				try {
+					wasRegistered[i] = Register.register(entry, outputDir, getEffectiveRequester());
+				}
+				catch (final IOException e) {
+					logger.log(Level.SEVERE, "Could not register entry " + entry.getName(), e);
+				}
+			}
+		}
+		else {
+			logger.log(Level.SEVERE, "Invalid arguments in RegisterEntries");
+		}
+	}
+
+	/**
+	 * @return the status of the registration of each entry, in the order in which they were passed to the constructor, or <code>null</code> if the arguments were invalid
+	 */
+	public boolean[] wasRegistered() {
+		return this.wasRegistered;
+	}
+}
@@ -3,6 +3,7 @@ package alien.api.taskQueue;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -46,6 +47,13 @@ public class GetMasterjob extends Request {
 
 	private final List<String> site;
 
+	/**
+	 * Only count the subjobs in each state, without listing them
+	 */
+	private boolean countsOnly = false;
+
+	private Map<JobStatus, Integer> subjobCounts = null;
+
 	/**
 	 * @param user
 	 * @param jobId
@@ -61,13 +69,39 @@ public class GetMasterjob extends Request {
 		this.site = site;
 	}
 
+	/**
+	 * Ask only for the number of subjobs in each state
+	 *
+	 * @param user
+	 * @param jobId
+	 * @param status
+	 *            states to count, all if <code>null</code> or empty
+	 */
+	public GetMasterjob(final AliEnPrincipal user, final long jobId, final Set<JobStatus> status) {
+		this(user, jobId, status, null, null);
+		this.countsOnly = true;
+	}
+
 	@Override
 	public List<String> getArguments() {
-		return Arrays.asList(String.valueOf(jobId), status != null ? status.toString() : null, id != null ? id.toString() : null, site != null ? site.toString() : null);
+		return Arrays.asList(String.valueOf(jobId), status != null ? status.toString() : null, id != null ? id.toString() : null, site != null ? site.toString() : null,
+				String.valueOf(countsOnly));
 	}
 
 	@Override
 	public void run() {
+		if (countsOnly) {
+			final Map<JobStatus, Integer> counts = TaskQueueUtils.getSubjobStats(jobId);
+
+			if (counts != null && status != null && status.size() > 0 && !status.contains(JobStatus.ANY))
+				counts.keySet().retainAll(status);
+
+			subjobCounts = counts;
+
+			masterJob = TaskQueueUtils.getJob(jobId);
+
+			return;
+		}
 
 		// System.out.println("running with GetMasterJob");
 
@@ -102,6 +136,14 @@ public class GetMasterjob extends Request {
 		return masterjobstatus;
 	}
 
+	/**
+	 * @return the number of subjobs in each state, when only the counters were requested. Can be <code>null</code> if the server doesn't know how to count them, then the
+	 *         subjobs are listed in {@link #subJobStatus()}.
+	 */
+	public Map<JobStatus, Integer> subJobCounts() {
+		return this.subjobCounts;
+	}
+
 	@Override
 	public String toString() {
 		return "Asked for Masterjob status :  reply is: " + this.masterJob;
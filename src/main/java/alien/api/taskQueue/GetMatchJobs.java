@@ -0,0 +1,63 @@
+package alien.api.taskQueue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import alien.api.Request;
+import alien.taskQueue.JobBroker;
+import alien.user.AliEnPrincipal;
+
+/**
+ * Get several jobs at once, matching the free resources of a multi-core JobRunner
+ *
+ * @since Oct 17, 2026
+ */
+public class GetMatchJobs extends Request {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2470317466093384115L;
+
+	private List<HashMap<String, Object>> matches;
+	private final HashMap<String, Object> matchRequest;
+	private final int maxJobs;
+
+	/**
+	 * @param user
+	 * @param siteMap
+	 * @param maxJobs
+	 *            how many jobs the requester can start
+	 */
+	public GetMatchJobs(final AliEnPrincipal user, final HashMap<String, Object> siteMap, final int maxJobs) {
+		setRequestUser(user);
+		this.matchRequest = siteMap;
+		this.maxJobs = maxJobs;
+	}
+
+	@Override
+	public List<String> getArguments() {
+		if (matchRequest != null)
+			return Arrays.asList(matchRequest.toString(), String.valueOf(maxJobs));
+
+		return null;
+	}
+
+	@Override
+	public void run() {
+		this.matchRequest.put("AliEnPrincipal", this.getEffectiveRequester());
+		this.matches = JobBroker.getMatchJobs(matchRequest, maxJobs);
+	}
+
+	/**
+	 * @return the matched jobs, or a single element with the error if nothing could be matched
+	 */
+	public List<HashMap<String, Object>> getMatchJobs() {
+		return this.matches;
+	}
+
+	@Override
+	public String toString() {
+		return "Asked for up to " + maxJobs + " matching jobs with constraints: " + this.matchRequest + " and reply is: " + this.matches;
+	}
+}
@@ -47,6 +47,26 @@ public class GetPS extends Request {
 
 	private int limit = 0;
 
+	/**
+	 * Page size, <code>0</code> to get the entire listing in one go
+	 */
+	private int pageSize = 0;
+
+	/**
+	 * Last queueId of the previous page
+	 */
+	private long afterQueueId = 0;
+
+	/**
+	 * First queueId of the listing, <code>-1</code> until the server has determined it
+	 */
+	private long lowerBound = -1;
+
+	/**
+	 * Set by the server when more pages can follow this one
+	 */
+	private boolean more = false;
+
 	public enum PsFilters {
 		mtime
 	}
@@ -76,15 +96,61 @@ public class GetPS extends Request {
 		this.orderByKey = orderByKey;
 	}
 
+	/**
+	 * Request one page of the listing. The first page is requested with <code>afterQueueId=0</code> and <code>lowerBound=-1</code>, the following ones with the values of
+	 * {@link #getLastQueueId()} and {@link #getLowerBound()} from the previous answer, for as long as {@link #hasMore()} is <code>true</code>. Only listings ordered by queueId
+	 * can be paged, for any other order the entire listing comes in the first page.
+	 *
+	 * @param user
+	 * @param states
+	 * @param users
+	 * @param sites
+	 * @param nodes
+	 * @param mjobs
+	 * @param jobid
+	 * @param filters
+	 * @param orderByKey
+	 * @param limit
+	 *            number of jobs left to list
+	 * @param pageSize
+	 * @param afterQueueId
+	 * @param lowerBound
+	 */
+	public GetPS(final AliEnPrincipal user, final Collection<JobStatus> states, final Collection<String> users, final Collection<String> sites, final Collection<String> nodes,
+			final Collection<Long> mjobs, final Collection<Long> jobid, final HashMap<PsFilters, Collection<Object>> filters, final String orderByKey, final int limit, final int pageSize,
+			final long afterQueueId, final long lowerBound) {
+		this(user, states, users, sites, nodes, mjobs, jobid, filters, orderByKey, limit);
+		this.pageSize = pageSize;
+		this.afterQueueId = afterQueueId;
+		this.lowerBound = lowerBound;
+	}
+
 	@Override
 	public List<String> getArguments() {
 		return Arrays.asList(states != null ? states.toString() : null, users != null ? users.toString() : null, sites != null ? sites.toString() : null, nodes != null ? nodes.toString() : null,
-				mjobs != null ? mjobs.toString() : null, jobid != null ? jobid.toString() : null, filters != null ? filters.toString() : null, String.valueOf(limit), orderByKey);
+				mjobs != null ? mjobs.toString() : null, jobid != null ? jobid.toString() : null, filters != null ? filters.toString() : null, String.valueOf(limit), orderByKey,
+				String.valueOf(pageSize), String.valueOf(afterQueueId));
 	}
 
 	@Override
 	public void run() {
-		this.jobs = TaskQueueUtils.getPS(states, users, sites, nodes, mjobs, jobid, filters, orderByKey, limit);
+		if (pageSize <= 0 || (orderByKey != null && orderByKey.length() > 0 && !"queueId".equals(orderByKey))) {
+			this.jobs = TaskQueueUtils.getPS(states, users, sites, nodes, mjobs, jobid, filters, orderByKey, limit);
+			this.more = false;
+			return;
+		}
+
+		if (lowerBound < 0)
+			lowerBound = TaskQueueUtils.getPSLowerBound(states, users, sites, nodes, mjobs, jobid, filters, limit);
+
+		final int lim = limit > 0 ? Math.min(pageSize, limit) : pageSize;
+
+		this.jobs = TaskQueueUtils.getPSPage(states, users, sites, nodes, mjobs, jobid, filters, lowerBound, afterQueueId, lim);
+
+		this.more = this.jobs != null && this.jobs.size() == lim && (limit <= 0 || limit > lim);
+
+		if (this.jobs != null && this.jobs.size() > 0)
+			afterQueueId = this.jobs.get(this.jobs.size() - 1).queueId;
 	}
 
 	/**
@@ -94,6 +160,27 @@ public class GetPS extends Request {
 		return this.jobs;
 	}
 
+	/**
+	 * @return <code>true</code> if the listing continues after this page
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	/**
+	 * @return the queueId to continue the listing from
+	 */
+	public long getLastQueueId() {
+		return afterQueueId;
+	}
+
+	/**
+	 * @return the first queueId of the listing, to be passed back with the next page request
+	 */
+	public long getLowerBound() {
+		return lowerBound;
+	}
+
 	@Override
 	public String toString() {
 		return "Asked for PS :  reply is: " + this.jobs;
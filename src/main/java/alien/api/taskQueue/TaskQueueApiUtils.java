@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import alien.api.Dispatcher;
 import alien.api.ServerException;
@@ -14,6 +15,7 @@ import alien.shell.commands.JAliEnCOMMander;
 import alien.taskQueue.JDL;
 import alien.taskQueue.Job;
 import alien.taskQueue.JobStatus;
+import alien.taskQueue.TaskQueueUtils;
 import alien.user.AliEnPrincipal;
 
 /**
@@ -76,6 +78,58 @@ public class TaskQueueApiUtils {
 		return null;
 	}
 
+	/**
+	 * Stream a PS listing page by page, handing each page to the caller as soon as it arrives
+	 *
+	 * @param states
+	 * @param users
+	 * @param sites
+	 * @param nodes
+	 * @param mjobs
+	 * @param jobid
+	 * @param filters
+	 * @param orderByKey
+	 * @param limit
+	 * @param pageSize
+	 * @param pageHandler
+	 *            receives each page, returning <code>false</code> stops the listing
+	 * @return <code>true</code> if the listing could be retrieved, <code>false</code> if a request failed
+	 */
+	public boolean getPS(final Collection<JobStatus> states, final Collection<String> users, final Collection<String> sites, final Collection<String> nodes, final Collection<Long> mjobs,
+			final Collection<Long> jobid, final HashMap<GetPS.PsFilters, Collection<Object>> filters, final String orderByKey, final int limit, final int pageSize,
+			final Predicate<List<Job>> pageHandler) {
+		int left = limit > 0 ? Math.min(limit, TaskQueueUtils.job_limit) : TaskQueueUtils.job_limit;
+
+		long afterQueueId = 0;
+		long lowerBound = -1;
+
+		try {
+			while (left > 0) {
+				final GetPS ps = Dispatcher.execute(new GetPS(commander.getUser(), states, users, sites, nodes, mjobs, jobid, filters, orderByKey, left, pageSize, afterQueueId, lowerBound));
+
+				final List<Job> page = ps.returnPS();
+
+				if (page == null)
+					return false;
+
+				if (!pageHandler.test(page) || !ps.hasMore() || page.isEmpty())
+					break;
+
+				left -= page.size();
+				afterQueueId = ps.getLastQueueId();
+				lowerBound = ps.getLowerBound();
+			}
+
+			return true;
+		}
+		catch (final ServerException e) {
+			System.out.println("Could not get a PS listing: " + e.getMessage());
+			e.getCause().printStackTrace();
+		}
+
+		return false;
+	}
+
 	/**
 	 * @param status
 	 * @param id
@@ -99,6 +153,41 @@ public class TaskQueueApiUtils {
 		return null;
 
 	}
+	/**
+	 * @param jobId
+	 *            masterjob ID
+	 * @param status
+	 *            states to count, all if empty
+	 * @return the number of subjobs in each state
+	 */
+	public Map<JobStatus, Integer> getMasterJobStatusCounts(final long jobId, final Set<JobStatus> status) {
+		try {
+			final GetMasterjob mj = Dispatcher.execute(new GetMasterjob(commander.getUser(), jobId, status));
+
+			if (mj.subJobCounts() != null)
+				return mj.subJobCounts();
+
+			// older servers return the full list of subjobs
+			final List<Job> subjobs = mj.subJobStatus();
+
+			if (subjobs == null)
+				return null;
+
+			final Map<JobStatus, Integer> ret = new HashMap<>();
+
+			for (final Job sj : subjobs)
+				ret.merge(sj.status(), Integer.valueOf(1), Integer::sum);
+
+			return ret;
+		}
+		catch (final ServerException e) {
+			System.out.println("Could not get the subjob counters: " + e.getMessage());
+			e.getCause().printStackTrace();
+		}
+
+		return null;
+	}
+
 
 	/**
 	 * @param queueId
@@ -439,6 +528,24 @@ public class TaskQueueApiUtils {
 		return null;
 	}
 
+	/**
+	 * @param matchRequest
+	 * @param maxJobs
+	 * @return matching jobs
+	 */
+	public GetMatchJobs getMatchJobs(final HashMap<String, Object> matchRequest, final int maxJobs) {
+
+		try {
+			final GetMatchJobs gmj = Dispatcher.execute(new GetMatchJobs(commander.getUser(), matchRequest, maxJobs));
+			return gmj;
+		}
+		catch (final ServerException e) {
+			System.out.println("Could not get matching jobs: " + e.getMessage());
+			e.getCause().printStackTrace();
+		}
+		return null;
+	}
+
 	/**
 	 * @param matchRequest
 	 * @return number of matching jobs
@@ -11,15 +11,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -104,12 +100,27 @@ public final class CatalogueUtils {
 		return ret;
 	}
 
-	private static List<GUIDIndex> guidIndexCache = null;
-	private static long guidIndexCacheUpdated = 0;
+	/**
+	 * GUIDINDEX rows sorted by time, with the times in a separate array for binary searching
+	 */
+	private static final class GUIDIndexSnapshot {
+		final List<GUIDIndex> indexes;
+		final long[] guidTimes;
+
+		GUIDIndexSnapshot(final List<GUIDIndex> indexes) {
+			this.indexes = Collections.unmodifiableList(indexes);
 
-	private static final ReentrantReadWriteLock guidIndexRWLock = new ReentrantReadWriteLock();
-	private static final ReadLock guidIndexReadLock = guidIndexRWLock.readLock();
-	private static final WriteLock guidIndexWriteLock = guidIndexRWLock.writeLock();
+			guidTimes = new long[indexes.size()];
+
+			for (int i = 0; i < guidTimes.length; i++)
+				guidTimes[i] = indexes.get(i).guidTime;
+		}
+	}
+
+	private static volatile GUIDIndexSnapshot guidIndexCache = null;
+	private static volatile long guidIndexCacheUpdated = 0;
+
+	private static final ReentrantLock guidIndexUpdateLock = new ReentrantLock();
 
 	/**
 	 * One second definition
@@ -121,57 +132,63 @@ public final class CatalogueUtils {
 	 */
 	public static final long CACHE_TIMEOUT = ONE_SECOND * 60 * 5;
 
+	private static boolean guidIndexCacheExpired() {
+		return System.currentTimeMillis() - guidIndexCacheUpdated > CACHE_TIMEOUT || guidIndexCache == null || guidIndexCache.indexes.size() == 0;
+	}
+
+	/**
+	 * Reload the GUIDINDEX content if it is too old. Only one thread does the reload, while the others keep using the previous content if there is any.
+	 */
 	private static void updateGuidIndexCache() {
-		guidIndexReadLock.lock();
+		if (!guidIndexCacheExpired())
+			return;
+
+		if (guidIndexCache != null) {
+			if (!guidIndexUpdateLock.tryLock())
+				return;
+		}
+		else
+			guidIndexUpdateLock.lock();
 
 		try {
-			if (System.currentTimeMillis() - guidIndexCacheUpdated > CACHE_TIMEOUT || guidIndexCache == null || guidIndexCache.size() == 0) {
-				guidIndexReadLock.unlock();
+			if (guidIndexCacheExpired()) {
+				if (logger.isLoggable(Level.FINER))
+					logger.log(Level.FINER, "Updating GUIDINDEX cache");
 
-				guidIndexWriteLock.lock();
+				try (DBFunctions db = ConfigUtils.getDB("alice_users")) {
+					if (db != null) {
+						db.setReadOnly(true);
+						db.setQueryTimeout(60);
 
-				try {
-					if (System.currentTimeMillis() - guidIndexCacheUpdated > CACHE_TIMEOUT || guidIndexCache == null || guidIndexCache.size() == 0) {
-						if (logger.isLoggable(Level.FINER))
-							logger.log(Level.FINER, "Updating GUIDINDEX cache");
+						if (db.query("SELECT SQL_NO_CACHE * FROM GUIDINDEX ORDER BY guidTime ASC;")) {
+							final List<GUIDIndex> ret = new ArrayList<>();
 
-						try (DBFunctions db = ConfigUtils.getDB("alice_users")) {
-							if (db != null) {
-								db.setReadOnly(true);
-								db.setQueryTimeout(60);
+							while (db.moveNext())
+								ret.add(new GUIDIndex(db));
 
-								if (db.query("SELECT SQL_NO_CACHE * FROM GUIDINDEX ORDER BY guidTime ASC;")) {
-									final LinkedList<GUIDIndex> ret = new LinkedList<>();
+							if (ret.size() > 0) {
+								// the query sorts the rows, but binary searching relies on it so make sure they are
+								ret.sort((a, b) -> Long.compare(a.guidTime, b.guidTime));
 
-									while (db.moveNext())
-										ret.add(new GUIDIndex(db));
+								guidIndexCache = new GUIDIndexSnapshot(ret);
 
-									if (ret.size() > 0) {
-										guidIndexCache = ret;
+								guidIndexCacheUpdated = System.currentTimeMillis();
 
-										guidIndexCacheUpdated = System.currentTimeMillis();
-
-										logger.log(Level.FINER, "Finished updating GUIDINDEX cache");
-									}
-									else
-										logger.log(Level.WARNING, "Empty GUID index cache after query");
-								}
-								else
-									logger.log(Level.WARNING, "DB query failed updating GUID index cache");
+								logger.log(Level.FINER, "Finished updating GUIDINDEX cache");
 							}
 							else
-								logger.log(Level.WARNING, "Cannot get a DB connection to update GUID Index cache");
+								logger.log(Level.WARNING, "Empty GUID index cache after query");
 						}
+						else
+							logger.log(Level.WARNING, "DB query failed updating GUID index cache");
 					}
-				}
-				finally {
-					guidIndexWriteLock.unlock();
-					guidIndexReadLock.lock();
+					else
+						logger.log(Level.WARNING, "Cannot get a DB connection to update GUID Index cache");
 				}
 			}
 		}
 		finally {
-			guidIndexReadLock.unlock();
+			guidIndexUpdateLock.unlock();
 		}
 	}
 
@@ -184,19 +201,25 @@ public final class CatalogueUtils {
 	public static GUIDIndex getGUIDIndex(final long timestamp) {
 		updateGuidIndexCache();
 
-		if (guidIndexCache == null)
+		final GUIDIndexSnapshot snapshot = guidIndexCache;
+
+		if (snapshot == null)
 			return null;
 
-		GUIDIndex old = null;
+		// last entry with guidTime <= timestamp
+		int low = 0;
+		int high = snapshot.guidTimes.length;
 
-		for (final GUIDIndex idx : guidIndexCache) {
-			if (idx.guidTime > timestamp)
-				return old;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
 
-			old = idx;
+			if (snapshot.guidTimes[mid] > timestamp)
+				high = mid;
+			else
+				low = mid + 1;
 		}
 
-		return old;
+		return low > 0 ? snapshot.indexes.get(low - 1) : null;
 	}
 
 	/**
@@ -207,20 +230,22 @@ public final class CatalogueUtils {
 	public static List<GUIDIndex> getAllGUIDIndexes() {
 		updateGuidIndexCache();
 
-		if (guidIndexCache == null)
+		final GUIDIndexSnapshot snapshot = guidIndexCache;
+
+		if (snapshot == null)
 			return null;
 
-		return Collections.unmodifiableList(guidIndexCache);
+		return snapshot.indexes;
 	}
 
-	private static List<IndexTableEntry> indextable = null;
-	private static Map<String, IndexTableEntry> tableentries = null;
+	/**
+	 * Routing structure built from the current INDEXTABLE content, replaced as a whole on each refresh
+	 */
+	private static volatile IndexTableTrie indextable = null;
 	private static volatile long lastIndexTableUpdate = 0;
 	private static volatile long lastIndexTableCheck = 0;
 
-	private static final ReentrantReadWriteLock indextableRWLock = new ReentrantReadWriteLock();
-	private static final ReadLock indextableReadLock = indextableRWLock.readLock();
-	private static final WriteLock indextableWriteLock = indextableRWLock.writeLock();
+	private static final ReentrantLock indextableUpdateLock = new ReentrantLock();
 
 	private static boolean indexTableUpdated() {
 		if (indextable == null || indextable.size() == 0 || lastIndexTableUpdate == 0)
@@ -243,68 +268,59 @@ public final class CatalogueUtils {
 		return false;
 	}
 
+	/**
+	 * Reload the INDEXTABLE content if it has changed or is too old. Only one thread does the reload, while the others keep using the previous content if there is any.
+	 */
 	private static void updateIndexTableCache() {
-		indextableReadLock.lock();
+		if (!indexTableUpdated())
+			return;
+
+		if (indextable != null) {
+			if (!indextableUpdateLock.tryLock())
+				return;
+		}
+		else
+			indextableUpdateLock.lock();
 
 		try {
 			if (indexTableUpdated()) {
-				indextableReadLock.unlock();
-
-				indextableWriteLock.lock();
-
-				try {
-					if (indexTableUpdated()) {
-						if (logger.isLoggable(Level.FINER))
-							logger.log(Level.FINER, "Updating INDEXTABLE cache");
-						
-						if (monitor != null)
-							monitor.incrementCounter("indexCacheRefresh");
+				if (logger.isLoggable(Level.FINER))
+					logger.log(Level.FINER, "Updating INDEXTABLE cache");
 
-						try (DBFunctions db = ConfigUtils.getDB("alice_users")) {
-							if (db != null) {
-								db.setReadOnly(true);
-								db.setQueryTimeout(60);
+				if (monitor != null)
+					monitor.incrementCounter("indexCacheRefresh");
 
-								if (db.query("SELECT SQL_NO_CACHE * FROM INDEXTABLE order by length(lfn) desc,lfn;")) {
-									final List<IndexTableEntry> newIndextable = new ArrayList<>();
-									final Map<String, IndexTableEntry> newTableentries = new HashMap<>();
+				try (DBFunctions db = ConfigUtils.getDB("alice_users")) {
+					if (db != null) {
+						db.setReadOnly(true);
+						db.setQueryTimeout(60);
 
-									while (db.moveNext()) {
-										final IndexTableEntry entry = new IndexTableEntry(db);
+						if (db.query("SELECT SQL_NO_CACHE * FROM INDEXTABLE order by length(lfn) desc,lfn;")) {
+							final List<IndexTableEntry> newIndextable = new ArrayList<>();
 
-										newIndextable.add(entry);
+							while (db.moveNext())
+								newIndextable.add(new IndexTableEntry(db));
 
-										newTableentries.put(db.gets("lfn"), entry);
-									}
+							if (newIndextable.size() > 0) {
+								logger.log(Level.FINER, "INDEXTABLE cache updated successfully");
 
-									if (newIndextable.size() > 0) {
-										logger.log(Level.FINER, "INDEXTABLE cache updated successfully");
+								indextable = new IndexTableTrie(newIndextable);
 
-										indextable = newIndextable;
-										tableentries = newTableentries;
-
-										lastIndexTableCheck = lastIndexTableUpdate = System.currentTimeMillis();
-									}
-									else
-										logger.log(Level.WARNING, "Empty list of INDEXTABLE entries");
-								}
-								else
-									logger.log(Level.WARNING, "DB query error updating the INDEXTABLE entries");
+								lastIndexTableCheck = lastIndexTableUpdate = System.currentTimeMillis();
 							}
 							else
-								logger.log(Level.WARNING, "Could not get a DB connection to update INDEXTABLE cache");
+								logger.log(Level.WARNING, "Empty list of INDEXTABLE entries");
 						}
+						else
+							logger.log(Level.WARNING, "DB query error updating the INDEXTABLE entries");
 					}
+					else
+						logger.log(Level.WARNING, "Could not get a DB connection to update INDEXTABLE cache");
 				}
-				finally {
-					indextableWriteLock.unlock();
-				}
-
-				indextableReadLock.lock();
 			}
 		}
 		finally {
-			indextableReadLock.unlock();
+			indextableUpdateLock.unlock();
 		}
 	}
 
@@ -403,14 +419,12 @@ public final class CatalogueUtils {
 	public static IndexTableEntry getIndexTable(final int hostId, final int tableName) {
 		updateIndexTableCache();
 
-		if (indextable == null)
-			return null;
+		final IndexTableTrie routing = indextable;
 
-		for (final IndexTableEntry ite : indextable)
-			if (ite.tableName == tableName && ite.hostIndex == hostId)
-				return ite;
+		if (routing == null)
+			return null;
 
-		return null;
+		return routing.get(hostId, tableName);
 	}
 
 	/**
@@ -419,10 +433,12 @@ public final class CatalogueUtils {
 	public static Collection<IndexTableEntry> getAllIndexTables() {
 		updateIndexTableCache();
 
-		if (indextable == null)
+		final IndexTableTrie routing = indextable;
+
+		if (routing == null)
 			return null;
 
-		return Collections.unmodifiableList(indextable);
+		return routing.getEntries();
 	}
 
 	/**
@@ -434,29 +450,15 @@ public final class CatalogueUtils {
 	public static IndexTableEntry getClosestMatch(final String pattern) {
 		updateIndexTableCache();
 
-		if (indextable == null)
+		final IndexTableTrie routing = indextable;
+
+		if (routing == null)
 			return null;
 
 		if (monitor != null)
 			monitor.incrementCounter("INDEXTABLE_lookup");
 
-		String searchFor = pattern;
-
-		while (searchFor.length() > 0) {
-			final IndexTableEntry entry = tableentries.get(searchFor);
-
-			if (entry != null)
-				return entry;
-
-			final int idx = searchFor.lastIndexOf('/', searchFor.length() - 2);
-
-			if (idx >= 0)
-				searchFor = searchFor.substring(0, idx + 1);
-			else
-				break;
-		}
-
-		return null;
+		return routing.getClosestMatch(pattern);
 	}
 
 	/**
@@ -464,20 +466,17 @@ public final class CatalogueUtils {
 	 * @return all tables that belong to this tree
 	 */
 	public static Set<IndexTableEntry> getAllMatchingTables(final String pattern) {
-		final IndexTableEntry best = getClosestMatch(pattern);
-
-		if (best == null)
-			return Collections.emptySet();
+		updateIndexTableCache();
 
-		final Set<IndexTableEntry> ret = new LinkedHashSet<>();
+		final IndexTableTrie routing = indextable;
 
-		ret.add(best);
+		if (routing == null)
+			return Collections.emptySet();
 
-		for (final IndexTableEntry ite : indextable)
-			if (ite.lfn.startsWith(pattern))
-				ret.add(ite);
+		if (monitor != null)
+			monitor.incrementCounter("INDEXTABLE_lookup");
 
-		return ret;
+		return routing.getAllMatchingTables(pattern);
 	}
 
 	/**
@@ -504,10 +503,15 @@ public final class CatalogueUtils {
 
 		updateIndexTableCache();
 
+		final IndexTableTrie routing = indextable;
+
+		if (routing == null)
+			return null;
+
 		if (!path.endsWith("/"))
-			return tableentries.get(path + "/");
+			return routing.get(path + "/");
 
-		return tableentries.get(path);
+		return routing.get(path);
 	}
 
 	/**
@@ -0,0 +1,435 @@
+package alien.catalogue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import alien.monitoring.Monitor;
+
+/**
+ * Concurrent, size-bounded trie of directory UUIDs, used to resolve Cassandra catalogue paths. Each level of a path is a node holding the UUID of that directory, so a lookup walks
+ * the path components once and returns the deepest cached level, leaving only the missing suffix to be fetched from the database.<br>
+ * <br>
+ * Lookups are lock-free. Entries expire after a TTL that is randomly spread between 75% and 100% of the configured value, so the levels of a hot path don't all expire at the same
+ * moment. When the cache grows over its limit the expired entries and then the least recently used leaves are dropped by a single evicting thread.
+ *
+ * @since Oct 17, 2026
+ */
+public class DirectoryTrieCache {
+
+	/**
+	 * One cached directory
+	 */
+	static final class Node {
+		/**
+		 * Directory UUID
+		 */
+		final UUID id;
+
+		/**
+		 * Number of path levels resolved by this node (0 for the sentinel above "/")
+		 */
+		final int depth;
+
+		/**
+		 * Parent node, <code>null</code> for the sentinel
+		 */
+		final Node parent;
+
+		/**
+		 * Name of this level
+		 */
+		final String name;
+
+		/**
+		 * Expiration time, epoch millis
+		 */
+		volatile long expires;
+
+		/**
+		 * Last time this entry was returned by a lookup, for the LRU eviction
+		 */
+		volatile long lastAccess;
+
+		/**
+		 * Subdirectories
+		 */
+		final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+
+		Node(final Node parent, final String name, final UUID id, final long expires) {
+			this.parent = parent;
+			this.name = name;
+			this.id = id;
+			this.expires = expires;
+			this.depth = parent != null ? parent.depth + 1 : 0;
+			this.lastAccess = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return the full path of this node, with a trailing slash
+		 */
+		String getPath() {
+			if (parent == null)
+				return "";
+
+			if (parent.parent == null)
+				return "/";
+
+			return parent.getPath() + name + "/";
+		}
+	}
+
+	private final int maxSize;
+
+	private final long ttl;
+
+	private final Monitor monitor;
+
+	private final Node top;
+
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	private final AtomicLong puts = new AtomicLong(0);
+
+	private final AtomicLong evictions = new AtomicLong(0);
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	/**
+	 * @param topId
+	 *            UUID under which the "/" entry is stored in the index
+	 * @param maxSize
+	 *            maximum number of cached directories
+	 * @param ttl
+	 *            lifetime of an entry, in milliseconds
+	 * @param monitor
+	 *            where to report the cache statistics, can be <code>null</code>
+	 */
+	public DirectoryTrieCache(final UUID topId, final int maxSize, final long ttl, final Monitor monitor) {
+		this.top = new Node(null, null, topId, Long.MAX_VALUE);
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.monitor = monitor;
+
+		if (monitor != null)
+			monitor.addMonitoring("dirCache", (names, values) -> {
+				names.add("dirCache_size");
+				values.add(Integer.valueOf(size.get()));
+			});
+	}
+
+	/**
+	 * Split a path in the levels of the index: "/" followed by each non-empty component
+	 *
+	 * @param path
+	 * @return the levels
+	 */
+	static List<String> getLevels(final String path) {
+		final List<String> levels = new ArrayList<>();
+		levels.add("/");
+
+		int start = 0;
+		final int len = path.length();
+
+		while (start < len) {
+			int end = path.indexOf('/', start);
+
+			if (end < 0)
+				end = len;
+
+			if (end > start)
+				levels.add(path.substring(start, end));
+
+			start = end + 1;
+		}
+
+		return levels;
+	}
+
+	/**
+	 * Find the deepest valid cached node on the given path
+	 *
+	 * @param levels
+	 *            as returned by {@link #getLevels(String)}
+	 * @return the deepest cached node, its <code>depth</code> tells how many levels were resolved. The sentinel node (depth 0) is returned if nothing is cached.
+	 */
+	Node longestPrefix(final List<String> levels) {
+		final long now = System.currentTimeMillis();
+
+		Node current = top;
+
+		for (final String level : levels) {
+			final Node next = current.children.get(level);
+
+			if (next == null)
+				break;
+
+			if (next.expires < now) {
+				// don't remove it, refreshing the level with the same UUID keeps the subtree
+				break;
+			}
+
+			current = next;
+		}
+
+		if (current.depth == levels.size()) {
+			hits.incrementAndGet();
+
+			if (monitor != null)
+				monitor.incrementCacheHits("dirCache");
+		}
+		else {
+			misses.incrementAndGet();
+
+			if (monitor != null)
+				monitor.incrementCacheMisses("dirCache");
+		}
+
+		current.lastAccess = now;
+
+		return current;
+	}
+
+	/**
+	 * Add (or refresh) a subdirectory of a cached node
+	 *
+	 * @param parent
+	 * @param name
+	 * @param id
+	 * @return the new node, to continue resolving the path from it
+	 */
+	Node addChild(final Node parent, final String name, final UUID id) {
+		final long expires = System.currentTimeMillis() + ttl - ThreadLocalRandom.current().nextLong(ttl / 4 + 1);
+
+		puts.incrementAndGet();
+
+		final Node existing = parent.children.get(name);
+
+		if (existing != null && existing.id.equals(id)) {
+			// the same directory, keep what is known below it
+			existing.expires = expires;
+			return existing;
+		}
+
+		final Node node = new Node(parent, name, id, expires);
+
+		final Node old = parent.children.put(name, node);
+
+		if (old == null)
+			size.incrementAndGet();
+		else
+			size.addAndGet(-countSubtree(old) + 1);
+
+		if (size.get() > maxSize)
+			evict();
+
+		return node;
+	}
+
+	/**
+	 * @param path
+	 * @return the cached UUID of this directory, or <code>null</code> if not (or no longer) cached
+	 */
+	public UUID get(final String path) {
+		final List<String> levels = getLevels(path);
+
+		final Node n = longestPrefix(levels);
+
+		return n.depth == levels.size() ? n.id : null;
+	}
+
+	/**
+	 * Cache a directory. Intermediate levels must already be cached, otherwise the entry is ignored.
+	 *
+	 * @param path
+	 * @param id
+	 */
+	public void put(final String path, final UUID id) {
+		final List<String> levels = getLevels(path);
+
+		Node current = top;
+
+		for (int i = 0; i < levels.size() - 1 && current != null; i++)
+			current = current.children.get(levels.get(i));
+
+		if (current != null)
+			addChild(current, levels.get(levels.size() - 1), id);
+	}
+
+	/**
+	 * Drop a directory and everything cached below it
+	 *
+	 * @param path
+	 */
+	public void invalidate(final String path) {
+		final List<String> levels = getLevels(path);
+
+		Node current = top;
+
+		for (int i = 0; i < levels.size() - 1 && current != null; i++)
+			current = current.children.get(levels.get(i));
+
+		if (current == null)
+			return;
+
+		final Node removed = current.children.remove(levels.get(levels.size() - 1));
+
+		if (removed != null)
+			size.addAndGet(-countSubtree(removed));
+	}
+
+	private static int countSubtree(final Node n) {
+		int cnt = 1;
+
+		for (final Node child : n.children.values())
+			cnt += countSubtree(child);
+
+		return cnt;
+	}
+
+	/**
+	 * Remove expired entries, then the least recently used leaves until the cache is back to 90% of its capacity. Only one thread does the cleanup, the others carry on.
+	 */
+	private void evict() {
+		if (!evictionLock.tryLock())
+			return;
+
+		try {
+			final long now = System.currentTimeMillis();
+
+			final List<Node> leaves = new ArrayList<>();
+
+			int removed = 0;
+
+			// recount while walking, concurrent updates on detached nodes could have skewed the counter
+			final int remaining = collect(top, now, leaves) - 1;
+
+			size.set(remaining);
+
+			final int target = maxSize * 9 / 10;
+
+			if (remaining > target) {
+				leaves.sort(Comparator.comparingLong(n -> n.lastAccess));
+
+				for (final Node leaf : leaves) {
+					if (size.get() <= target)
+						break;
+
+					if (leaf.parent.children.remove(leaf.name, leaf)) {
+						size.addAndGet(-countSubtree(leaf));
+						removed++;
+					}
+				}
+			}
+
+			if (removed > 0) {
+				evictions.addAndGet(removed);
+
+				if (monitor != null)
+					monitor.incrementCounter("dirCache_evictions", removed);
+			}
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Drop expired subtrees below <code>n</code> and collect the remaining leaves
+	 *
+	 * @return number of nodes left in this subtree, including <code>n</code>
+	 */
+	private int collect(final Node n, final long now, final List<Node> leaves) {
+		int cnt = 1;
+
+		for (final Map.Entry<String, Node> entry : n.children.entrySet()) {
+			final Node child = entry.getValue();
+
+			if (child.expires < now) {
+				if (n.children.remove(entry.getKey(), child)) {
+					final int dropped = countSubtree(child);
+
+					evictions.addAndGet(dropped);
+
+					if (monitor != null)
+						monitor.incrementCounter("dirCache_evictions", dropped);
+				}
+
+				continue;
+			}
+
+			cnt += collect(child, now, leaves);
+
+			if (child.children.isEmpty())
+				leaves.add(child);
+		}
+
+		return cnt;
+	}
+
+	/**
+	 * @return number of cached directories
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return all cached paths, sorted
+	 */
+	public Set<String> getKeys() {
+		final Set<String> ret = new TreeSet<>();
+
+		addKeys(top, ret);
+
+		return ret;
+	}
+
+	private static void addKeys(final Node n, final Set<String> keys) {
+		for (final Node child : n.children.values()) {
+			keys.add(child.getPath());
+			addKeys(child, keys);
+		}
+	}
+
+	/**
+	 * @return number of lookups that were fully answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that needed at least one level from the database
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of entries added to the cache
+	 */
+	public long getPuts() {
+		return puts.get();
+	}
+
+	/**
+	 * @return number of entries dropped because of expiration or size limit
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
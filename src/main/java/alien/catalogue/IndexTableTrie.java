@@ -0,0 +1,212 @@
+package alien.catalogue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable routing structure built from the INDEXTABLE content: a tree of path components, each node knowing the table that starts exactly at that path. A new instance is
+ * built on each refresh of the cache and replaces the previous one, so lookups never block.
+ *
+ * @since Oct 17, 2026
+ */
+final class IndexTableTrie {
+
+	private static final class Node {
+		final Map<String, Node> children = new HashMap<>(4);
+
+		/**
+		 * Table starting at this path, if any
+		 */
+		IndexTableEntry entry = null;
+
+		/**
+		 * Positions in the original list of all the tables starting at this path (normally just one)
+		 */
+		final List<Integer> ordinals = new ArrayList<>(1);
+	}
+
+	private final Node root = new Node();
+
+	private final List<IndexTableEntry> entries;
+
+	private final Map<String, IndexTableEntry> byPath = new HashMap<>();
+
+	private final Map<Long, IndexTableEntry> byTable = new HashMap<>();
+
+	/**
+	 * @param entries
+	 *            all INDEXTABLE rows, in the order in which they should be enumerated
+	 */
+	IndexTableTrie(final List<IndexTableEntry> entries) {
+		this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+
+		for (int i = 0; i < entries.size(); i++) {
+			final IndexTableEntry ite = entries.get(i);
+
+			Node n = root;
+
+			int pos = 0;
+
+			while (pos < ite.lfn.length()) {
+				final int end = segmentEnd(ite.lfn, pos);
+
+				n = n.children.computeIfAbsent(ite.lfn.substring(pos, end), (k) -> new Node());
+
+				pos = end;
+			}
+
+			n.entry = ite;
+			n.ordinals.add(Integer.valueOf(i));
+
+			byPath.put(ite.lfn, ite);
+			byTable.putIfAbsent(Long.valueOf(tableKey(ite.hostIndex, ite.tableName)), ite);
+		}
+	}
+
+	private static long tableKey(final int hostIndex, final int tableName) {
+		return ((long) hostIndex << 32) | (tableName & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param path
+	 * @param from
+	 * @return the end (exclusive) of the path component starting at <code>from</code>, including the trailing slash
+	 */
+	private static int segmentEnd(final String path, final int from) {
+		final int idx = path.indexOf('/', from);
+
+		return idx < 0 ? path.length() : idx + 1;
+	}
+
+	/**
+	 * @return number of tables
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return all tables, in the original order
+	 */
+	List<IndexTableEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param path
+	 * @return the table starting exactly at this path, if any
+	 */
+	IndexTableEntry get(final String path) {
+		return byPath.get(path);
+	}
+
+	/**
+	 * @param hostIndex
+	 * @param tableName
+	 * @return the first table with these coordinates
+	 */
+	IndexTableEntry get(final int hostIndex, final int tableName) {
+		return byTable.get(Long.valueOf(tableKey(hostIndex, tableName)));
+	}
+
+	/**
+	 * @param path
+	 * @return the table with the longest path that is either the given path or one of its parent directories
+	 */
+	IndexTableEntry getClosestMatch(final String path) {
+		Node n = root;
+
+		IndexTableEntry best = null;
+
+		int pos = 0;
+
+		while (pos < path.length()) {
+			final int end = segmentEnd(path, pos);
+
+			n = n.children.get(path.substring(pos, end));
+
+			if (n == null)
+				break;
+
+			if (n.entry != null)
+				best = n.entry;
+
+			pos = end;
+		}
+
+		return best;
+	}
+
+	/**
+	 * @param pattern
+	 * @return the closest match of the pattern followed by all tables whose path starts with the pattern, in the original order
+	 */
+	Set<IndexTableEntry> getAllMatchingTables(final String pattern) {
+		final IndexTableEntry best = getClosestMatch(pattern);
+
+		if (best == null)
+			return Collections.emptySet();
+
+		final Set<IndexTableEntry> ret = new LinkedHashSet<>();
+
+		ret.add(best);
+
+		Node n = root;
+
+		int pos = 0;
+
+		while (n != null) {
+			final int end = segmentEnd(pattern, pos);
+
+			if (end == pattern.length() && pattern.charAt(end - 1) != '/') {
+				// the pattern ends in the middle of a component, all children starting with that text are in
+				final String partial = pattern.substring(pos);
+
+				final List<Integer> ordinals = new ArrayList<>();
+
+				for (final Map.Entry<String, Node> child : n.children.entrySet())
+					if (child.getKey().startsWith(partial))
+						collect(child.getValue(), ordinals);
+
+				addInOrder(ret, ordinals);
+
+				return ret;
+			}
+
+			n = n.children.get(pattern.substring(pos, end));
+
+			pos = end;
+
+			if (n != null && pos == pattern.length()) {
+				final List<Integer> ordinals = new ArrayList<>();
+
+				collect(n, ordinals);
+
+				addInOrder(ret, ordinals);
+
+				return ret;
+			}
+		}
+
+		return ret;
+	}
+
+	private void addInOrder(final Set<IndexTableEntry> target, final List<Integer> ordinals) {
+		Collections.sort(ordinals);
+
+		for (final Integer i : ordinals)
+			target.add(entries.get(i.intValue()));
+	}
+
+	private static void collect(final Node n, final List<Integer> ordinals) {
+		ordinals.addAll(n.ordinals);
+
+		for (final Node child : n.children.values())
+			collect(child, ordinals);
+	}
+}
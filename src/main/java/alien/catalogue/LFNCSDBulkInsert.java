@@ -0,0 +1,315 @@
+package alien.catalogue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.test.cassandra.DBCassandra;
+
+/**
+ * Pipelined insertion of many LFN_CSD entries. The statements of a group of entries are collected and grouped by table and partition key, each group is sent as one unlogged batch
+ * with <code>executeAsync</code>, and at most <code>maxInFlight</code> requests are outstanding at any time: when the window is full the producer blocks, which gives backpressure
+ * to whoever feeds the iterator.<br>
+ * <br>
+ * Unlike {@link LFN_CSD#insert(String, ConsistencyLevel)} the rows of one entry are not written atomically. An entry is reported as successful only if all the batches holding its
+ * rows were applied, and since all statements are upserts a failed entry can simply be inserted again.
+ *
+ * @since Oct 17, 2026
+ */
+public class LFNCSDBulkInsert {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(LFNCSDBulkInsert.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(LFNCSDBulkInsert.class.getCanonicalName());
+
+	private static final int defaultMaxInFlight = ConfigUtils.getConfig().geti("alien.catalogue.LFNCSDBulkInsert.maxInFlight", 64);
+
+	private static final int defaultEntriesPerRound = ConfigUtils.getConfig().geti("alien.catalogue.LFNCSDBulkInsert.entriesPerRound", 500);
+
+	private static final int maxStatementsPerBatch = ConfigUtils.getConfig().geti("alien.catalogue.LFNCSDBulkInsert.maxStatementsPerBatch", 50);
+
+	private final String append_table;
+
+	private final ConsistencyLevel cl;
+
+	private final int maxInFlight;
+
+	private final int entriesPerRound;
+
+	/**
+	 * @param append_table
+	 *            table suffix, can be <code>null</code>
+	 * @param level
+	 *            consistency level, QUORUM if <code>null</code>
+	 */
+	public LFNCSDBulkInsert(final String append_table, final ConsistencyLevel level) {
+		this(append_table, level, defaultMaxInFlight, defaultEntriesPerRound);
+	}
+
+	/**
+	 * @param append_table
+	 *            table suffix, can be <code>null</code>
+	 * @param level
+	 *            consistency level, QUORUM if <code>null</code>
+	 * @param maxInFlight
+	 *            how many asynchronous requests can be outstanding
+	 * @param entriesPerRound
+	 *            how many entries are taken from the input to build one set of batches
+	 */
+	public LFNCSDBulkInsert(final String append_table, final ConsistencyLevel level, final int maxInFlight, final int entriesPerRound) {
+		this.append_table = append_table;
+		this.cl = level != null ? level : ConsistencyLevel.QUORUM;
+		this.maxInFlight = Math.max(maxInFlight, 1);
+		this.entriesPerRound = Math.max(entriesPerRound, 1);
+	}
+
+	/**
+	 * One entry waiting for its batches to complete
+	 */
+	private static final class PendingEntry {
+		final LFN_CSD lfnc;
+
+		final AtomicInteger remaining = new AtomicInteger(0);
+
+		volatile boolean failed = false;
+
+		PendingEntry(final LFN_CSD lfnc) {
+			this.lfnc = lfnc;
+		}
+	}
+
+	/**
+	 * Statements going to the same partition of the same table
+	 */
+	private static final class Group {
+		final List<Statement> statements = new ArrayList<>();
+
+		/**
+		 * Entry that produced each of the statements
+		 */
+		final List<PendingEntry> owners = new ArrayList<>();
+
+		/**
+		 * @param start
+		 * @return the entries having statements in the batch starting at this position
+		 */
+		Set<PendingEntry> getOwners(final int start) {
+			return new LinkedHashSet<>(owners.subList(start, Math.min(start + maxStatementsPerBatch, owners.size())));
+		}
+	}
+
+	/**
+	 * Key of a group: prepared query and routing key
+	 */
+	private static final class GroupKey {
+		final String query;
+
+		final ByteBuffer routingKey;
+
+		GroupKey(final String query, final ByteBuffer routingKey) {
+			this.query = query;
+			this.routingKey = routingKey;
+		}
+
+		@Override
+		public int hashCode() {
+			return query.hashCode() * 31 + routingKey.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof GroupKey))
+				return false;
+
+			final GroupKey other = (GroupKey) obj;
+
+			return query.equals(other.query) && routingKey.equals(other.routingKey);
+		}
+	}
+
+	/**
+	 * Insert all entries
+	 *
+	 * @param entries
+	 *            what to insert. Parent directories must already exist.
+	 * @param callback
+	 *            receives each entry and whether it was inserted, can be <code>null</code>. It is called from the driver I/O threads, so it should be quick.
+	 * @return how many entries were successfully inserted
+	 */
+	public int insert(final Iterator<LFN_CSD> entries, final BiConsumer<LFN_CSD, Boolean> callback) {
+		@SuppressWarnings("resource")
+		final Session session = DBCassandra.getInstance();
+
+		final AtomicInteger ok = new AtomicInteger(0);
+
+		final BiConsumer<PendingEntry, Boolean> report = (pe, res) -> {
+			pe.lfnc.insertDone(res.booleanValue());
+
+			if (res.booleanValue())
+				ok.incrementAndGet();
+			else if (monitor != null)
+				monitor.incrementCounter("bulk_insert_failed");
+
+			if (callback != null)
+				callback.accept(pe.lfnc, res);
+		};
+
+		if (session == null) {
+			while (entries.hasNext())
+				report.accept(new PendingEntry(entries.next()), Boolean.FALSE);
+
+			return 0;
+		}
+
+		final ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+		final CodecRegistry codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+
+		final Semaphore window = new Semaphore(maxInFlight);
+
+		while (entries.hasNext()) {
+			final Map<GroupKey, Group> groups = new LinkedHashMap<>();
+			final List<Group> ungrouped = new ArrayList<>();
+
+			for (int i = 0; i < entriesPerRound && entries.hasNext(); i++) {
+				final PendingEntry pe = new PendingEntry(entries.next());
+
+				final List<Statement> statements = new ArrayList<>();
+
+				if (!pe.lfnc.prepareInsert(session, append_table, statements::add)) {
+					report.accept(pe, Boolean.FALSE);
+					continue;
+				}
+
+				for (final Statement statement : statements) {
+					final BoundStatement bound = (BoundStatement) statement;
+
+					final ByteBuffer routingKey = bound.getRoutingKey(protocolVersion, codecRegistry);
+
+					final Group g;
+
+					if (routingKey != null)
+						g = groups.computeIfAbsent(new GroupKey(bound.preparedStatement().getQueryString(), routingKey), k -> new Group());
+					else {
+						// statements whose partition cannot be determined are sent alone
+						g = new Group();
+						ungrouped.add(g);
+					}
+
+					g.statements.add(statement);
+					g.owners.add(pe);
+				}
+			}
+
+			final List<Group> all = new ArrayList<>(groups.values());
+			all.addAll(ungrouped);
+
+			final List<Set<PendingEntry>> involved = new ArrayList<>();
+
+			// all counters have to be known before the first request is sent
+			for (final Group g : all)
+				for (int start = 0; start < g.statements.size(); start += maxStatementsPerBatch) {
+					final Set<PendingEntry> owners = g.getOwners(start);
+
+					for (final PendingEntry pe : owners)
+						pe.remaining.incrementAndGet();
+
+					involved.add(owners);
+				}
+
+			int idx = 0;
+
+			for (final Group g : all)
+				for (int start = 0; start < g.statements.size(); start += maxStatementsPerBatch)
+					submit(session, window, g.statements.subList(start, Math.min(start + maxStatementsPerBatch, g.statements.size())), involved.get(idx++), report);
+
+			if (monitor != null)
+				monitor.incrementCounter("bulk_insert_requests", involved.size());
+		}
+
+		// wait for the last requests to complete
+		window.acquireUninterruptibly(maxInFlight);
+		window.release(maxInFlight);
+
+		return ok.get();
+	}
+
+	private void submit(final Session session, final Semaphore window, final List<Statement> statements, final Set<PendingEntry> involved, final BiConsumer<PendingEntry, Boolean> report) {
+		final Statement toExecute;
+
+		if (statements.size() == 1)
+			toExecute = statements.get(0);
+		else {
+			final BatchStatement bs = new BatchStatement(BatchStatement.Type.UNLOGGED);
+			bs.addAll(statements);
+			toExecute = bs;
+		}
+
+		toExecute.setConsistencyLevel(cl);
+
+		// backpressure: block the producer while the window is full
+		window.acquireUninterruptibly();
+
+		final FutureCallback<ResultSet> done = new FutureCallback<>() {
+			@Override
+			public void onSuccess(final ResultSet rs) {
+				complete(rs == null || rs.wasApplied());
+			}
+
+			@Override
+			public void onFailure(final Throwable t) {
+				logger.log(Level.WARNING, "Bulk insert batch failed", t);
+				complete(false);
+			}
+
+			private void complete(final boolean applied) {
+				window.release();
+
+				for (final PendingEntry pe : involved) {
+					if (!applied)
+						pe.failed = true;
+
+					if (pe.remaining.decrementAndGet() == 0)
+						report.accept(pe, Boolean.valueOf(!pe.failed));
+				}
+			}
+		};
+
+		try {
+			Futures.addCallback(session.executeAsync(toExecute), done, MoreExecutors.directExecutor());
+		}
+		catch (final Throwable t) {
+			done.onFailure(t);
+		}
+	}
+}
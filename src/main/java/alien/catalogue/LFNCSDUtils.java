@@ -183,6 +183,7 @@ public class LFNCSDUtils {
 		LFN_CSD dir = null;
 		LFN_CSD lfnc_dir = null;
 		int submitted = 0;
+		int listed = 0;
 
 		public RecurseLFNs(final RecurseLFNs parent, final RecursiveOp operation, final String base, final Pattern file_pattern, final int index, final ArrayList<String> parts, final int flags,
 				final String metadata, final LFN_CSD lfnc_dir) {
@@ -225,31 +226,20 @@ public class LFNCSDUtils {
 		public void run() {
 			final boolean lastpart = (!operation.getRecurseInfinitely() && index >= parts.size());
 
-			boolean includeDirs = false;
-			if ((flags & LFNCSDUtils.FIND_INCLUDE_DIRS) != 0)
-				includeDirs = true;
+			final boolean includeDirs = (flags & LFNCSDUtils.FIND_INCLUDE_DIRS) != 0;
 
 			if (!dir.exists || dir.type != 'd') {
 				logger.severe("LFNCSDUtils recurseAndFilterLFNs: initial dir invalid - " + base);
 				return;
 			}
 
-			final List<LFN_CSD> list = dir.list(true, append_table, clevel);
-
-			// if the dir is empty, do the operation and notify
-			if (list.isEmpty()) {
-				if (!operation.getOnlyAppend() && !operation.callback(dir))
-					parent.critical_errors = true;
-				parent.notifyUp();
-			}
-
-			Pattern p;
+			final Pattern p;
 			if (lastpart || operation.getRecurseInfinitely())
 				p = this.file_pattern;
 			else
 				p = Pattern.compile(parts.get(index));
 
-			JEP jep = null;
+			final JEP jep;
 
 			if (metadata != null && !"".equals(metadata)) {
 				jep = new JEP();
@@ -258,13 +248,18 @@ public class LFNCSDUtils {
 				expression = expression.replace("\"", "");
 				jep.parseExpression(expression);
 			}
+			else
+				jep = null;
+
+			final ArrayList<LFN_CSD> filesVersion = (flags & LFNCSDUtils.FIND_BIGGEST_VERSION) != 0 ? new ArrayList<>() : null;
+
+			// hold a reference while listing, so that subdirectories completing before the listing ends cannot notify the parent too early
+			this.counter_left.incrementAndGet();
 
-			ArrayList<LFN_CSD> filesVersion = null;
-			if ((flags & LFNCSDUtils.FIND_BIGGEST_VERSION) != 0)
-				filesVersion = new ArrayList<>();
+			// loop entries, as they are streamed by the bulk listing
+			final boolean listedAll = dir.list(append_table, clevel, lfnc -> {
+				listed++;
 
-			// loop entries
-			for (final LFN_CSD lfnc : list) {
 				if (lfnc.type != 'd') {
 					// no dir
 					if (lastpart || operation.getRecurseInfinitely()) {
@@ -367,6 +362,21 @@ public class LFNCSDUtils {
 						}
 					}
 				}
+			});
+
+			if (!listedAll) {
+				// the operation must not be applied to a directory whose content is not fully known (e.g. rm)
+				logger.severe("LFNCSDUtils recurseAndFilterLFNs: cannot list - " + base);
+				critical_errors = true;
+				parent.critical_errors = true;
+			}
+
+			// if the dir is empty, do the operation and notify
+			if (listed == 0 && listedAll) {
+				this.counter_left.decrementAndGet();
+				if (!operation.getOnlyAppend() && !operation.callback(dir))
+					parent.critical_errors = true;
+				parent.notifyUp();
 			}
 
 			// we filter and add the file if -y and metadata
@@ -404,8 +414,8 @@ public class LFNCSDUtils {
 
 			}
 
-			// check if there are submitted or notify
-			if (submitted == 0 && !list.isEmpty()) {
+			// release the listing reference, notifying if there are no pending subdirectories (without the callback if the listing failed)
+			if (listed > 0 || !listedAll) {
 				notifyUp();
 			}
 
@@ -429,7 +439,7 @@ public class LFNCSDUtils {
 
 	/**
 	 * @param path
-	 * @return list of files for ls command
+	 * @return list of files for ls command, or <code>null</code> if the directory could not be listed
 	 */
 	public static Collection<LFN_CSD> ls(final String path) {
 		// if need to resolve wildcard and recurse, we call the recurse method
@@ -444,8 +454,10 @@ public class LFNCSDUtils {
 		final Set<LFN_CSD> ret = new TreeSet<>();
 		final LFN_CSD lfnc = new LFN_CSD(path, true, append_table, null, null);
 		if (lfnc.isDirectory()) {
-			final List<LFN_CSD> list = lfnc.list(true, append_table, clevel);
-			ret.addAll(list);
+			if (!lfnc.list(append_table, clevel, ret::add)) {
+				logger.severe("LFNCSDUtils ls: cannot list - " + path);
+				return null;
+			}
 		}
 		else {
 			ret.add(lfnc);
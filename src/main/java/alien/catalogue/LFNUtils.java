@@ -15,10 +15,19 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -642,6 +651,170 @@ public class LFNUtils {
 	 */
 	public static final int FIND_FILTER_JOBID = 32;
 
+	/**
+	 * Total number of threads querying index tables in parallel for {@link #find(String, String, String, int, AliEnPrincipal, String, Long, long, Collection)}
+	 */
+	private static final int findThreads = ConfigUtils.getConfig().geti("alien.catalogue.LFNUtils.findThreads", 16);
+
+	/**
+	 * How many of the tables living on the same database host can be queried at the same time by one find operation
+	 */
+	private static final int findThreadsPerHost = Math.max(ConfigUtils.getConfig().geti("alien.catalogue.LFNUtils.findThreadsPerHost", 4), 1);
+
+	private static final AtomicInteger findThreadIndex = new AtomicInteger(0);
+
+	private static final ThreadPoolExecutor findExecutor = new ThreadPoolExecutor(Math.max(findThreads, 1), Math.max(findThreads, 1), 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), r -> {
+		final Thread t = new Thread(r);
+
+		t.setName("alien.catalogue.LFNUtils.find - " + findThreadIndex.incrementAndGet());
+		t.setDaemon(true);
+
+		return t;
+	});
+
+	static {
+		findExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Outcome of querying one index table, <code>lfns</code> is <code>null</code> if the query failed
+	 */
+	private static final class TableFindResult {
+		final int order;
+		final List<LFN> lfns;
+
+		TableFindResult(final int order, final List<LFN> lfns) {
+			this.order = order;
+			this.lfns = lfns;
+		}
+	}
+
+	/**
+	 * Query all the given tables concurrently. The tables are grouped by database host and each host gets at most {@link #findThreadsPerHost} workers, each of them taking the
+	 * next table of that host from a shared queue. Once <code>queryLimit</code> results were collected the tables that were not queried yet are skipped.<br>
+	 * <br>
+	 * Since LFNs sort first by their index table, the sorted result is the concatenation of the individually sorted table results, in table order. The workers sort what they
+	 * get and the results are appended as soon as all the tables before them have completed.
+	 *
+	 * @return the matching entries, or <code>null</code> if any of the queries failed
+	 */
+	private static Set<LFN> parallelFind(final Collection<IndexTableEntry> matchingTables, final String path, final String processedPattern, final int flags, final Long queueid,
+			final long queryLimit, final Collection<String> excludedPatterns) {
+		final boolean sort = (flags & FIND_NO_SORT) == 0;
+
+		final List<IndexTableEntry> tables = new ArrayList<>(matchingTables);
+
+		if (sort)
+			Collections.sort(tables);
+
+		final BlockingQueue<TableFindResult> results = new LinkedBlockingQueue<>();
+
+		final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+		final AtomicLong collected = new AtomicLong(0);
+
+		final Map<Integer, Queue<Integer>> tablesPerHost = new HashMap<>();
+
+		for (int i = 0; i < tables.size(); i++)
+			tablesPerHost.computeIfAbsent(Integer.valueOf(tables.get(i).hostIndex), (k) -> new ConcurrentLinkedQueue<>()).add(Integer.valueOf(i));
+
+		for (final Queue<Integer> hostQueue : tablesPerHost.values()) {
+			final int workers = Math.min(findThreadsPerHost, hostQueue.size());
+
+			for (int w = 0; w < workers; w++)
+				findExecutor.submit(() -> {
+					Integer idx;
+
+					while (!cancelled.get() && (idx = hostQueue.poll()) != null) {
+						final long remaining = queryLimit > 0 ? queryLimit - collected.get() : 0;
+
+						if (queryLimit > 0 && remaining <= 0) {
+							results.add(new TableFindResult(idx.intValue(), Collections.emptyList()));
+							continue;
+						}
+
+						List<LFN> lfns = null;
+
+						try {
+							lfns = tables.get(idx.intValue()).find(path, processedPattern, flags, queueid, remaining, excludedPatterns);
+
+							if (lfns != null) {
+								collected.addAndGet(lfns.size());
+
+								if (sort)
+									Collections.sort(lfns);
+							}
+						}
+						catch (final Throwable t) {
+							logger.log(Level.WARNING, "Exception querying " + tables.get(idx.intValue()), t);
+						}
+
+						results.add(new TableFindResult(idx.intValue(), lfns));
+					}
+				});
+		}
+
+		if (monitor != null)
+			monitor.incrementCounter("LFN_parallel_find");
+
+		final Set<LFN> ret = new LinkedHashSet<>();
+
+		final List<List<LFN>> pending = new ArrayList<>(Collections.nCopies(tables.size(), null));
+
+		int nextToAppend = 0;
+
+		try {
+			for (int received = 0; received < tables.size(); received++) {
+				final TableFindResult r = results.take();
+
+				if (r.lfns == null)
+					return null;
+
+				if (sort) {
+					pending.set(r.order, r.lfns);
+
+					while (nextToAppend < tables.size() && pending.get(nextToAppend) != null) {
+						addUpTo(ret, pending.get(nextToAppend), queryLimit);
+						pending.set(nextToAppend++, null);
+					}
+				}
+				else
+					addUpTo(ret, r.lfns, queryLimit);
+
+				if (queryLimit > 0 && collected.get() >= queryLimit)
+					break;
+			}
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		finally {
+			cancelled.set(true);
+		}
+
+		// the limit was reached before all tables were queried, add what was received for the following tables
+		for (int i = nextToAppend; i < tables.size(); i++)
+			if (pending.get(i) != null)
+				addUpTo(ret, pending.get(i), queryLimit);
+
+		return ret;
+	}
+
+	private static void addUpTo(final Set<LFN> target, final List<LFN> source, final long limit) {
+		if (limit <= 0) {
+			target.addAll(source);
+			return;
+		}
+
+		for (final LFN l : source) {
+			if (target.size() >= limit)
+				return;
+
+			target.add(l);
+		}
+	}
+
 	/**
 	 * @param path
 	 * @param pattern
@@ -714,25 +887,33 @@ public class LFNUtils {
 			return findByMetadata(path, processedPattern, tag, query);
 		}
 
+		final Collection<IndexTableEntry> matchingTables = CatalogueUtils.getAllMatchingTables(path);
+
 		final Set<LFN> ret;
 
-		if ((flags & FIND_NO_SORT) != 0)
-			ret = new LinkedHashSet<>();
-		else
-			ret = new TreeSet<>();
+		if (matchingTables.size() > 1 && findThreads > 1) {
+			ret = parallelFind(matchingTables, path, processedPattern, flags, queueid, queryLimit, excludedPatterns);
 
-		final Collection<IndexTableEntry> matchingTables = CatalogueUtils.getAllMatchingTables(path);
+			if (ret == null)
+				return null;
+		}
+		else {
+			if ((flags & FIND_NO_SORT) != 0)
+				ret = new LinkedHashSet<>();
+			else
+				ret = new TreeSet<>();
 
-		for (final IndexTableEntry ite : matchingTables) {
-			final List<LFN> findResults = ite.find(path, processedPattern, flags, queueid, queryLimit > 0 ? queryLimit - ret.size() : 0, excludedPatterns);
+			for (final IndexTableEntry ite : matchingTables) {
+				final List<LFN> findResults = ite.find(path, processedPattern, flags, queueid, queryLimit > 0 ? queryLimit - ret.size() : 0, excludedPatterns);
 
-			if (findResults == null)
-				return null;
+				if (findResults == null)
+					return null;
 
-			ret.addAll(findResults);
+				ret.addAll(findResults);
 
-			if (queryLimit > 0 && ret.size() >= queryLimit)
-				break;
+				if (queryLimit > 0 && ret.size() >= queryLimit)
+					break;
+			}
 		}
 
 		if ((flags & FIND_SAVE_XML) != 0) {
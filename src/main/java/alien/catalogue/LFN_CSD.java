@@ -1,5 +1,6 @@
 package alien.catalogue;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -9,6 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,7 +20,10 @@ import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import alien.config.ConfigUtils;
 import alien.monitoring.Monitor;
@@ -63,28 +68,35 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 	private static final ConcurrentHashMap<String, Integer> folderBookingMap = new ConcurrentHashMap<>();
 
 	/**
-	 * dirCache stats
+	 * Unique Ctime for auto insertion
 	 */
-	static int dirCache_get_hit = 0;
+	public static final Date ctime_fixed = new Date(1483225200000L);
+
 	/**
-	 * dirCache stats
+	 * Modulo of seNumber to partition balance
 	 */
-	static int dirCache_put = 0;
+	private static final int modulo_se_lookup = 100;
 
 	/**
-	 * Unique Ctime for auto insertion
+	 * Number of lfn_index rows fetched per page by the bulk listing
 	 */
-	public static final Date ctime_fixed = new Date(1483225200000L);
+	private static final int list_page_size = ConfigUtils.getConfig().geti("alien.catalogue.LFN_CSD.list_page_size", 1000);
 
 	/**
-	 * Modulo of seNumber to partition balance
+	 * Number of children whose metadata is fetched with a single IN query by the bulk listing
 	 */
-	private static final int modulo_se_lookup = 100;
+	private static final int list_in_batch_size = ConfigUtils.getConfig().geti("alien.catalogue.LFN_CSD.list_in_batch_size", 100);
+
+	/**
+	 * Maximum number of metadata queries in flight for one bulk listing
+	 */
+	private static final int list_max_in_flight = ConfigUtils.getConfig().geti("alien.catalogue.LFN_CSD.list_max_in_flight", 16);
 
 	/**
 	 * Local cache to hold the hierarchy
 	 */
-	public static final ExpirationCache<String, UUID> dirCache = new ExpirationCache<>(80000);
+	public static final DirectoryTrieCache dirCache = new DirectoryTrieCache(root_uuid, ConfigUtils.getConfig().geti("alien.catalogue.LFN_CSD.dirCache.size", 80000),
+			ConfigUtils.getConfig().geti("alien.catalogue.LFN_CSD.dirCache.ttl_seconds", 5 * 60) * 1000L, monitor);
 
 	/**
 	 * Local cache to hold recently inserted folders
@@ -366,6 +378,33 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		init(row);
 	}
 
+	/**
+	 * Build an entry from an already fetched metadata row, used by the bulk listing
+	 *
+	 * @param lfn
+	 * @param p_id
+	 * @param c_id
+	 * @param row
+	 *            metadata row, <code>null</code> if missing
+	 */
+	LFN_CSD(String lfn, UUID p_id, UUID c_id, Row row) {
+		canonicalName = lfn;
+
+		if (canonicalName.endsWith("/"))
+			type = 'd';
+		else
+			type = 'u';
+
+		String[] p_c = getPathAndChildFromCanonicalName(canonicalName);
+		path = p_c[0];
+		child = p_c[1];
+
+		parent_id = p_id;
+		id = c_id;
+
+		init(row);
+	}
+
 	private void init(Row row) {
 		if (row == null) {
 			logger.log(Level.SEVERE, "Row null creating LFN_CSD ");
@@ -415,42 +454,38 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 			if (parent_path.equals("/"))
 				return path_id;
 
-			parent_path = parent_path.replaceAll("^/", "");
-			String[] path_chunks = parent_path.split("/");
+			final List<String> levels = DirectoryTrieCache.getLevels(parent_path);
+
+			// start from the deepest level that is already known and only fetch the missing ones
+			DirectoryTrieCache.Node node = dirCache.longestPrefix(levels);
+			path_id = node.id;
+
+			if (node.depth == levels.size())
+				return path_id;
 
 			Session session = DBCassandra.getInstance();
 			if (session == null)
 				return null;
 
-			// We loop from root until we reach our dir
-			String pathAppended = "/";
-			int chunksize = path_chunks.length;
-			for (int i = 0; i < chunksize + 1; i++) {
-				final UUID cachedUuid = dirCache.get(pathAppended);
-				if (cachedUuid == null) {
-					PreparedStatement statement = getOrInsertPreparedStatement(session, "select child_id from " + t + " where path_id = ? and path = ?");
-					BoundStatement boundStatement = new BoundStatement(statement);
-					boundStatement.bind(path_id, (i == 0 ? "/" : path_chunks[i - 1]));
-					boundStatement.setConsistencyLevel(ConsistencyLevel.QUORUM);
-					ResultSet results = session.execute(boundStatement);
-					if (results.getAvailableWithoutFetching() != 1)
-						return null;
-
-					path_id = results.one().getUUID("child_id");
-					if (path_id == null) {
-						logger.severe("Error getting parent id for path_id for path: " + (i == 0 ? "/" : path_chunks[i - 1]));
-						return null;
-					}
+			PreparedStatement statement = getOrInsertPreparedStatement(session, "select child_id from " + t + " where path_id = ? and path = ?");
 
-					dirCache.put(pathAppended, path_id, 5 * 60 * 1000); // 5 minutes
-					dirCache_put++;
-				}
-				else {
-					path_id = cachedUuid;
-					dirCache_get_hit++;
+			for (int i = node.depth; i < levels.size(); i++) {
+				final String level = levels.get(i);
+
+				BoundStatement boundStatement = new BoundStatement(statement);
+				boundStatement.bind(path_id, level);
+				boundStatement.setConsistencyLevel(ConsistencyLevel.QUORUM);
+				ResultSet results = session.execute(boundStatement);
+				if (results.getAvailableWithoutFetching() != 1)
+					return null;
+
+				path_id = results.one().getUUID("child_id");
+				if (path_id == null) {
+					logger.severe("Error getting parent id for path_id for path: " + level);
+					return null;
 				}
-				if (i < chunksize)
-					pathAppended += path_chunks[i] + "/";
+
+				node = dirCache.addChild(node, level, path_id);
 			}
 			return path_id;
 		}
@@ -647,10 +682,18 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		if (!exists)
 			return null;
 
+		final List<LFN_CSD> ret = new ArrayList<>();
+
+		if (get_metadata && type == 'd') {
+			if (!list(append_table, level, ret::add))
+				return null;
+
+			return ret;
+		}
+
 		if (monitor != null)
 			monitor.incrementCounter("LFN_CSD_list");
 
-		final List<LFN_CSD> ret = new ArrayList<>();
 		if (type != 'd' && (!get_metadata || this.perm != null)) {
 			ret.add(this);
 			return ret;
@@ -706,6 +749,152 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		return ret;
 	}
 
+	/**
+	 * Bulk listing of a directory, with the metadata of all children. The index is paged with the asynchronous API (the next page is requested while the current one is processed)
+	 * and the metadata of each page is fetched with <code>IN</code> queries on the parent partition, keeping at most <code>list_max_in_flight</code> of them in flight. Entries
+	 * are passed to the consumer, in the calling thread, as soon as their metadata arrives, so the full listing is never held in memory.
+	 *
+	 * @param append_table
+	 * @param level
+	 * @param consumer
+	 *            receives each child entry
+	 * @return <code>true</code> if the whole directory was listed, <code>false</code> on errors (some entries might have been passed to the consumer already)
+	 */
+	public boolean list(final String append_table, final ConsistencyLevel level, final Consumer<LFN_CSD> consumer) {
+		if (!exists)
+			return false;
+
+		if (monitor != null)
+			monitor.incrementCounter("LFN_CSD_list_bulk");
+
+		if (type != 'd') {
+			if (this.perm == null) {
+				final LFN_CSD full = new LFN_CSD(this.canonicalName, true, append_table, this.parent_id, this.id);
+
+				if (!full.exists)
+					return false;
+
+				consumer.accept(full);
+			}
+			else
+				consumer.accept(this);
+
+			return true;
+		}
+
+		String t = lfn_index_table;
+		String tm = lfn_metadata_table;
+		if (append_table != null) {
+			t += append_table;
+			tm += append_table;
+		}
+
+		final ConsistencyLevel cl = level != null ? level : ConsistencyLevel.QUORUM;
+
+		try {
+			if (parent_id == null)
+				parent_id = getParentIdFromPath(path, append_table);
+			if (parent_id == null)
+				return false;
+
+			if (id == null)
+				id = getChildIdFromParentIdAndName(parent_id, child, append_table);
+			if (id == null)
+				return false;
+
+			@SuppressWarnings("resource")
+			final Session session = DBCassandra.getInstance();
+			if (session == null)
+				return false;
+
+			final BoundStatement indexStatement = getOrInsertPreparedStatement(session, "select path,child_id from " + t + " where path_id = ?").bind(this.id);
+			indexStatement.setConsistencyLevel(cl);
+			indexStatement.setFetchSize(list_page_size);
+
+			final PreparedStatement metadataStatement = getOrInsertPreparedStatement(session,
+					"select id,checksum,ctime,gowner,jobid,metadata,owner,perm,pfns,size,type from " + tm + " where parent_id = ? and id in ?");
+
+			final ArrayDeque<MetadataChunk> inFlight = new ArrayDeque<>();
+
+			ResultSet page = session.executeAsync(indexStatement).get();
+
+			while (page != null) {
+				final int available = page.getAvailableWithoutFetching();
+
+				// ask for the next page while the metadata of this one is being retrieved
+				final ListenableFuture<ResultSet> nextPage = page.isFullyFetched() ? null : page.fetchMoreResults();
+
+				MetadataChunk chunk = null;
+
+				for (int i = 0; i < available; i++) {
+					final Row row = page.one();
+
+					if (chunk == null)
+						chunk = new MetadataChunk();
+
+					chunk.names.add(row.getString("path"));
+					chunk.ids.add(row.getUUID("child_id"));
+
+					if (chunk.ids.size() >= list_in_batch_size) {
+						submitMetadataChunk(session, metadataStatement, cl, chunk, inFlight, consumer);
+						chunk = null;
+					}
+				}
+
+				if (chunk != null)
+					submitMetadataChunk(session, metadataStatement, cl, chunk, inFlight, consumer);
+
+				page = nextPage != null ? nextPage.get() : null;
+			}
+
+			while (!inFlight.isEmpty())
+				emitMetadataChunk(inFlight.poll(), consumer);
+		}
+		catch (Exception e) {
+			logger.severe("Exception trying to list " + canonicalName + ": " + e);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * One <code>IN</code> query of the bulk listing
+	 */
+	private static final class MetadataChunk {
+		final List<String> names = new ArrayList<>(list_in_batch_size);
+		final List<UUID> ids = new ArrayList<>(list_in_batch_size);
+		ResultSetFuture future;
+	}
+
+	private void submitMetadataChunk(final Session session, final PreparedStatement metadataStatement, final ConsistencyLevel cl, final MetadataChunk chunk, final ArrayDeque<MetadataChunk> inFlight,
+			final Consumer<LFN_CSD> consumer) throws Exception {
+		// bounded window: drain the oldest request before issuing a new one
+		while (inFlight.size() >= list_max_in_flight)
+			emitMetadataChunk(inFlight.poll(), consumer);
+
+		final BoundStatement boundStatement = metadataStatement.bind(this.id, chunk.ids);
+		boundStatement.setConsistencyLevel(cl);
+
+		chunk.future = session.executeAsync(boundStatement);
+		inFlight.add(chunk);
+
+		if (monitor != null)
+			monitor.incrementCounter("LFN_CSD_list_bulk_queries");
+	}
+
+	private void emitMetadataChunk(final MetadataChunk chunk, final Consumer<LFN_CSD> consumer) throws Exception {
+		final Map<UUID, Row> rows = new HashMap<>(chunk.ids.size() * 2);
+
+		for (final Row row : chunk.future.get())
+			rows.put(row.getUUID("id"), row);
+
+		for (int i = 0; i < chunk.ids.size(); i++) {
+			final UUID c_id = chunk.ids.get(i);
+			consumer.accept(new LFN_CSD(this.canonicalName + chunk.names.get(i), this.id, c_id, rows.get(c_id)));
+		}
+	}
+
 	/**
 	 * @return physical locations of the file
 	 */
@@ -782,6 +971,45 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		// | size | type
 		boolean res = false;
 
+		ConsistencyLevel cl = ConsistencyLevel.QUORUM;
+		if (level != null)
+			cl = level;
+
+		try {
+			@SuppressWarnings("resource")
+			final Session session = DBCassandra.getInstance();
+			if (session == null)
+				return false;
+
+			BatchStatement bs = new BatchStatement(BatchStatement.Type.LOGGED);
+			bs.setConsistencyLevel(cl);
+
+			if (!this.prepareInsert(session, append_table, bs::add))
+				return false;
+
+			ResultSet rs = session.execute(bs);
+			res = rs.wasApplied();
+		}
+		catch (Exception e) {
+			logger.severe("Exception trying to insert: " + e);
+			return false;
+		}
+
+		insertDone(res);
+
+		return res;
+	}
+
+	/**
+	 * Resolve the parent of this entry and produce all its insert statements, without executing them
+	 *
+	 * @param session
+	 * @param append_table
+	 * @param sink
+	 *            receives the statements
+	 * @return <code>false</code> if the parent cannot be resolved
+	 */
+	boolean prepareInsert(final Session session, final String append_table, final Consumer<Statement> sink) {
 		String tindex = lfn_index_table;
 		if (append_table != null)
 			tindex += append_table;
@@ -798,10 +1026,6 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		if (append_table != null)
 			ts += append_table;
 
-		ConsistencyLevel cl = ConsistencyLevel.QUORUM;
-		if (level != null)
-			cl = level;
-
 		if (this.parent_id == null) {
 			try {
 				this.parent_id = getParentIdFromPath(this.path, append_table);
@@ -820,44 +1044,39 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 		if (this.id == null)
 			id = UUID.randomUUID();
 
-		try {
-			@SuppressWarnings("resource")
-			final Session session = DBCassandra.getInstance();
-			if (session == null)
-				return false;
-
-			BatchStatement bs = new BatchStatement(BatchStatement.Type.LOGGED);
-			bs.setConsistencyLevel(cl);
-
-			this.prepareInsertStatements(bs, session, true, true, tindex, tids, t, ts);
+		this.prepareInsertStatements(sink, session, true, true, tindex, tids, t, ts);
 
-			ResultSet rs = session.execute(bs);
-			res = rs.wasApplied();
-		}
-		catch (Exception e) {
-			logger.severe("Exception trying to insert: " + e);
-			return false;
-		}
+		return true;
+	}
 
-		if (res)
+	/**
+	 * Update the local state once the insert statements were executed
+	 *
+	 * @param res
+	 *            whether or not all statements were applied
+	 */
+	void insertDone(final boolean res) {
+		if (res) {
 			exists = true;
 
-		return res;
+			if (type == 'd')
+				dirCache.put(this.canonicalName, id);
+		}
 	}
 
-	private BatchStatement prepareInsertStatements(BatchStatement bs, Session session, final boolean insert_se_lookup, final boolean insert_metadata, final String tindex, final String tids,
+	private void prepareInsertStatements(Consumer<Statement> bs, Session session, final boolean insert_se_lookup, final boolean insert_metadata, final String tindex, final String tids,
 			final String t, final String ts) {
 		PreparedStatement statement;
 		BoundStatement boundStatement;
 
 		// Insert the entry in the index // TODO: (double-check) use IF NOT EXISTS to avoid collisions when inserting paths ?
 		statement = getOrInsertPreparedStatement(session, "INSERT INTO " + tindex + " (path_id,path,ctime,child_id,flag)" + " VALUES (?,?,?,?,?)");
-		bs.add(statement.bind(parent_id, child, ctime, id, Integer.valueOf(flag)));
+		bs.accept(statement.bind(parent_id, child, ctime, id, Integer.valueOf(flag)));
 
 		// Insert the entry in the ids // TODO: (double-check) use IF NOT EXISTS to avoid collisions when inserting paths ?
 		// if (!isDirectory()) {
 		statement = getOrInsertPreparedStatement(session, "INSERT INTO " + tids + " (child_id,path_id,path,ctime,flag)" + " VALUES (?,?,?,?,?)");
-		bs.add(statement.bind(id, parent_id, child, ctime, Integer.valueOf(flag)));
+		bs.accept(statement.bind(id, parent_id, child, ctime, Integer.valueOf(flag)));
 		// }
 
 		// Insert the entry in the metadata
@@ -874,15 +1093,7 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 				boundStatement.bind(parent_id, id, ctime, gowner, Long.valueOf(jobid), owner, perm, Long.valueOf(size), String.valueOf(type));
 			}
 
-			bs.add(boundStatement);
-		}
-
-		// Fake -1 seNumber for dirs in se_lookup
-		if (type == 'd') {
-			// pfns = new HashMap<>();
-			// pfns.put(Integer.valueOf(-1), "");
-			dirCache.put(this.canonicalName, id, 5 * 60 * 1000); // 5 minutes
-			dirCache_put++;
+			bs.accept(boundStatement);
 		}
 
 		// Insert into se_lookup
@@ -893,10 +1104,9 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 
 			for (int seNumber : seNumbers) {
 				statement = getOrInsertPreparedStatement(session, "INSERT INTO " + ts + " (seNumber, modulo, id, size, owner)" + " VALUES (?,?,?,?,?)");
-				bs.add(statement.bind(Integer.valueOf(seNumber), Integer.valueOf(moduloc), id, Long.valueOf(size), owner));
+				bs.accept(statement.bind(Integer.valueOf(seNumber), Integer.valueOf(moduloc), id, Long.valueOf(size), owner));
 			}
 		}
-		return bs;
 	}
 
 	/**
@@ -947,10 +1157,8 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 
 		try {
 			// return if in the cache
-			if (dirCache.get(folder) != null) {
-				dirCache_get_hit++;
+			if (dirCache.get(folder) != null)
 				return true;
-			}
 
 			// get parent and create it if doesn't exist
 			String[] p_c = getPathAndChildFromCanonicalName(folder);
@@ -981,6 +1189,9 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 			newdir.flag = 0;
 			newdir.type = 'd';
 
+			// drop anything still cached from a previous directory with the same name
+			dirCache.invalidate(folder);
+
 			return newdir.insert(table, level);
 		}
 		catch (Exception e) {
@@ -1001,10 +1212,8 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 	 *             passing through from other methods explicitely
 	 */
 	public static boolean existsLfn(String lfn, String append_table) throws Exception {
-		if (dirCache.get(lfn) != null) { // If the cache has the folder, return directly
-			dirCache_get_hit++;
+		if (dirCache.get(lfn) != null) // If the cache has the folder, return directly
 			return true;
-		}
 
 		String[] p_c = getPathAndChildFromCanonicalName(lfn);
 		String parent_of_lfn = p_c[0];
@@ -1039,15 +1248,15 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 	/**
 	 * @return dirCache get
 	 */
-	public static int dirCacheGet() {
-		return dirCache_get_hit;
+	public static long dirCacheGet() {
+		return dirCache.getHits();
 	}
 
 	/**
 	 * @return dirCache put
 	 */
-	public static int dirCachePut() {
-		return dirCache_put;
+	public static long dirCachePut() {
+		return dirCache.getPuts();
 	}
 
 	/**
@@ -1144,6 +1353,9 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 				return false;
 			}
 
+			if (isDirectory())
+				dirCache.invalidate(getCanonicalName());
+
 		}
 		catch (Exception e) {
 			logger.severe("LFN_CSD: delete: problem deleting folders/file: " + e.toString());
@@ -1252,7 +1464,9 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 				bs.add(statement.bind(final_parent_id, lfnc_source.child, lfnc_source.id));
 			}
 
-			lfnc_source.prepareInsertStatements(bs, session, false, different_parent, lfn_index_table, lfn_ids_table, lfn_metadata_table, se_lookup_table);
+			lfnc_source.prepareInsertStatements(bs::add, session, false, different_parent, lfn_index_table, lfn_ids_table, lfn_metadata_table, se_lookup_table);
+
+			final String source_name = lfnc_source.getCanonicalName();
 
 			if (different_parent || different_name) {
 				lfnc_source.path = (lfnc_target.isDirectory() && !different_name ? lfnc_target.getCanonicalName() : lfnc_target.path);
@@ -1264,6 +1478,12 @@ public class LFN_CSD implements Comparable<LFN_CSD>, CatalogEntity {
 				logger.severe("LFN_CSD: mv: problem moving: " + lfnc_source.getCanonicalName() + " -> " + lfnc_target.getCanonicalName());
 			}
 			else {
+				if (lfnc_source.isDirectory()) {
+					// the old location is gone, the new one is picked up on the next lookup
+					dirCache.invalidate(source_name);
+					dirCache.invalidate(lfnc_source.getCanonicalName());
+				}
+
 				lfnc_final = lfnc_source;
 			}
 		}
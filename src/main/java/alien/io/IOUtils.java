@@ -236,10 +236,13 @@ public class IOUtils {
 		final String site = ConfigUtils.getCloseSite();
 		File f = null;
 
-		if (realPFNsSet.size() > 1 && guid.size < ConfigUtils.getConfig().getl("alien.io.IOUtils.parallel_downloads.size_limit", 10 * 1024 * 1024)
+		if (!zipArchive && SegmentedDownload.isApplicable(guid, realPFNsSet))
+			f = SegmentedDownload.download(guid, SEUtils.sortBySite(realPFNsSet, site, false, false), localFile);
+
+		if (f == null && realPFNsSet.size() > 1 && guid.size < ConfigUtils.getConfig().getl("alien.io.IOUtils.parallel_downloads.size_limit", 10 * 1024 * 1024)
 				&& PARALLEL_DW_THREAD_POOL.getActiveCount() < ConfigUtils.getConfig().geti("alien.io.IOUtils.parallel_downloads.threads", 100))
 			f = parallelDownload(guid, realPFNsSet, zipArchive ? null : localFile);
-		else {
+		else if (f == null) {
 			final List<PFN> sortedRealPFNs = SEUtils.sortBySite(realPFNsSet, site, false, false);
 
 			for (final PFN realPfn : sortedRealPFNs) {
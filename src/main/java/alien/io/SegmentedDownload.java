@@ -0,0 +1,442 @@
+package alien.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.catalogue.GUID;
+import alien.catalogue.PFN;
+import alien.config.ConfigUtils;
+import alien.io.protocols.Factory;
+import alien.io.protocols.Protocol;
+import alien.io.protocols.TempFileManager;
+import alien.io.protocols.Xrootd;
+import alien.io.xrootd.XrdClient;
+import alien.io.xrootd.XrdRemoteFile;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import utils.CachedThreadPool;
+
+/**
+ * Download one file in fixed size segments, fetched concurrently from several replicas with the in-JVM xrootd client and written in place in a preallocated local file.
+ * Replicas that answer faster naturally take more segments. When there is nothing left to start, idle streams also fetch the segments that have been in flight for too long
+ * on a slow replica, the first copy to arrive wins. A replica that fails gives its segment back and is replaced by the next one in the list, keeping everything that was
+ * already written. The complete file is verified against the catalogue before being returned.
+ *
+ * @since Oct 17, 2026
+ */
+public final class SegmentedDownload {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(SegmentedDownload.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(SegmentedDownload.class.getCanonicalName());
+
+	/**
+	 * Segmented downloads rely on the native xrootd client, so they are enabled together with it unless configured otherwise
+	 */
+	private static final boolean ENABLED = ConfigUtils.getConfig().getb("alien.io.SegmentedDownload.enabled", Factory.xrootdNative.isSupported());
+
+	/**
+	 * Smaller files are downloaded in one go
+	 */
+	private static final long MIN_SIZE = ConfigUtils.getConfig().getl("alien.io.SegmentedDownload.minSize", 32 * 1024 * 1024);
+
+	private static final int SEGMENT_SIZE = ConfigUtils.getConfig().geti("alien.io.SegmentedDownload.segmentSize", 8 * 1024 * 1024);
+
+	/**
+	 * How many replicas to read from at the same time
+	 */
+	private static final int STREAMS = ConfigUtils.getConfig().geti("alien.io.SegmentedDownload.streams", 4);
+
+	/**
+	 * A segment is considered stalled after this many times the average segment time, but not before {@link #MIN_STALL_TIME}
+	 */
+	private static final int STALL_FACTOR = ConfigUtils.getConfig().geti("alien.io.SegmentedDownload.stallFactor", 4);
+
+	private static final long MIN_STALL_TIME = ConfigUtils.getConfig().getl("alien.io.SegmentedDownload.minStallTime", 2000);
+
+	private static final CachedThreadPool STREAM_THREAD_POOL = new CachedThreadPool(Integer.MAX_VALUE, ConfigUtils.getConfig().getl("alien.io.SegmentedDownload.timeOutSeconds", 2),
+			TimeUnit.SECONDS, r -> {
+				final Thread t = new Thread(r, "SegmentedDownload");
+				t.setDaemon(true);
+
+				return t;
+			});
+
+	private static final int PENDING = 0;
+	private static final int IN_FLIGHT = 1;
+	private static final int DONE = 2;
+
+	private final GUID guid;
+
+	/**
+	 * Replicas that were not tried yet
+	 */
+	private final Deque<PFN> candidates;
+
+	private final FileChannel channel;
+
+	private final int segments;
+
+	private final AtomicIntegerArray state;
+
+	/**
+	 * When the fetching of each segment started, for the stall detection
+	 */
+	private final AtomicLongArray started;
+
+	private final AtomicInteger remaining;
+
+	private final AtomicInteger activeStreams = new AtomicInteger(0);
+
+	private final AtomicLong segmentTimeTotal = new AtomicLong(0);
+
+	private final AtomicInteger segmentTimeCount = new AtomicInteger(0);
+
+	/**
+	 * Files opened by the streams, to be dropped when the download completes while some stream is still waiting for a slow replica
+	 */
+	private final Set<XrdRemoteFile> openFiles = ConcurrentHashMap.newKeySet();
+
+	private final Object lock = new Object();
+
+	private SegmentedDownload(final GUID guid, final List<PFN> replicas, final FileChannel channel) {
+		this.guid = guid;
+		this.candidates = new ArrayDeque<>(replicas);
+		this.channel = channel;
+
+		segments = (int) ((guid.size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		state = new AtomicIntegerArray(segments);
+		started = new AtomicLongArray(segments);
+		remaining = new AtomicInteger(segments);
+	}
+
+	/**
+	 * @param pfns
+	 * @return the replicas that can be read in segments, in the same order
+	 */
+	private static List<PFN> getEligibleReplicas(final Collection<PFN> pfns) {
+		final List<PFN> ret = new ArrayList<>(pfns.size());
+
+		for (final PFN pfn : pfns)
+			if (pfn.pfn.startsWith("root://") && !pfn.isCsd && pfn.ticket != null)
+				ret.add(pfn);
+
+		return ret;
+	}
+
+	/**
+	 * @param guid
+	 * @param pfns
+	 * @return <code>true</code> if the file is large enough and can be read in segments from at least one of these replicas
+	 */
+	public static boolean isApplicable(final GUID guid, final Collection<PFN> pfns) {
+		return ENABLED && guid != null && guid.size >= MIN_SIZE && pfns != null && !isArchiveMember(pfns) && getEligibleReplicas(pfns).size() > 0;
+	}
+
+	/**
+	 * @param pfns
+	 * @return <code>true</code> if the replicas point to a member of a zip archive, in which case the GUID and the envelopes are the archive's and the member has to be
+	 *         extracted after the download, which only the regular protocols do
+	 */
+	static boolean isArchiveMember(final Collection<PFN> pfns) {
+		for (final PFN pfn : pfns) {
+			if (pfn.pfn.startsWith("guid:/") && pfn.pfn.indexOf("?ZIP=") >= 0)
+				return true;
+
+			if (pfn.ticket != null && pfn.ticket.envelope != null && pfn.ticket.envelope.getArchiveAnchorFileName() != null)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Download a file in segments
+	 *
+	 * @param guid
+	 *            the file to download, its size and checksum are checked at the end
+	 * @param pfns
+	 *            replicas with read envelopes, sorted by preference
+	 * @param localFile
+	 *            where to save the file, or <code>null</code> for a temporary file
+	 * @return the downloaded file, or <code>null</code> if the segmented download is not possible or failed, in which case the caller should use the regular protocols
+	 */
+	public static File download(final GUID guid, final Collection<PFN> pfns, final File localFile) {
+		if (!isApplicable(guid, pfns))
+			return null;
+
+		if (localFile != null && localFile.exists())
+			return null;
+
+		final long startTime = System.nanoTime();
+
+		File target = localFile;
+
+		try {
+			if (target == null)
+				target = File.createTempFile("segmented-get", null, IOUtils.getTemporaryDirectory());
+
+			final List<PFN> replicas = getEligibleReplicas(pfns);
+
+			boolean ok = false;
+
+			try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+				raf.setLength(guid.size);
+
+				ok = new SegmentedDownload(guid, replicas, raf.getChannel()).run();
+			}
+
+			if (ok && !Protocol.checkDownloadedFile(target, replicas.get(0))) {
+				logger.log(Level.WARNING, "Segmented download of " + guid.guid + " doesn't match the catalogue size or checksum");
+
+				if (monitor != null)
+					monitor.incrementCounter("verification_failed");
+
+				ok = false;
+			}
+
+			if (!ok) {
+				if (!target.delete())
+					logger.log(Level.WARNING, "Could not delete the incomplete download " + target);
+
+				if (monitor != null)
+					monitor.incrementCounter("download_failed");
+
+				return null;
+			}
+		}
+		catch (final IOException ioe) {
+			logger.log(Level.WARNING, "Segmented download of " + guid.guid + " failed", ioe);
+
+			if (target != null && target.exists() && !target.delete())
+				logger.log(Level.WARNING, "Could not delete the incomplete download " + target);
+
+			if (monitor != null)
+				monitor.incrementCounter("download_failed");
+
+			return null;
+		}
+
+		if (monitor != null) {
+			monitor.incrementCounter("download_ok");
+			monitor.incrementCounter("download_bytes", guid.size);
+			monitor.addMeasurement("download_time_ms", (System.nanoTime() - startTime) / 1000000d);
+		}
+
+		if (localFile == null)
+			TempFileManager.putTemp(guid, target);
+		else
+			TempFileManager.putPersistent(guid, target);
+
+		return target;
+	}
+
+	/**
+	 * @return <code>true</code> if all segments were written
+	 */
+	private boolean run() {
+		final int streams = Math.min(STREAMS, Math.min(candidates.size(), segments));
+
+		for (int i = 0; i < streams; i++) {
+			activeStreams.incrementAndGet();
+			STREAM_THREAD_POOL.submit(this::stream);
+		}
+
+		synchronized (lock) {
+			while (remaining.get() > 0 && activeStreams.get() > 0)
+				try {
+					lock.wait(1000);
+				}
+				catch (@SuppressWarnings("unused") final InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+		}
+
+		// streams that are still waiting for a stalled segment are not needed any more
+		for (final XrdRemoteFile f : openFiles)
+			f.abort();
+
+		if (remaining.get() > 0) {
+			logger.log(Level.WARNING, "Could not download " + remaining.get() + " of the " + segments + " segments of " + guid.guid + " from any replica");
+			return false;
+		}
+
+		return true;
+	}
+
+	private PFN nextCandidate() {
+		synchronized (candidates) {
+			return candidates.pollFirst();
+		}
+	}
+
+	/**
+	 * @return the index of the next segment to fetch, <code>-1</code> if there is nothing to do at the moment
+	 */
+	private int nextSegment() {
+		for (int i = 0; i < segments; i++)
+			if (state.get(i) == PENDING && state.compareAndSet(i, PENDING, IN_FLIGHT)) {
+				started.set(i, System.currentTimeMillis());
+				return i;
+			}
+
+		// nothing new to start, help with the oldest segment that is taking too long
+		final int cnt = segmentTimeCount.get();
+		final long stallTime = Math.max(MIN_STALL_TIME, cnt > 0 ? STALL_FACTOR * segmentTimeTotal.get() / cnt : 0);
+		final long now = System.currentTimeMillis();
+
+		int oldest = -1;
+
+		for (int i = 0; i < segments; i++)
+			if (state.get(i) == IN_FLIGHT && now - started.get(i) > stallTime && (oldest < 0 || started.get(i) < started.get(oldest)))
+				oldest = i;
+
+		if (oldest >= 0) {
+			// reset the timer so that the other idle streams don't all pick the same one
+			started.set(oldest, now);
+
+			if (monitor != null)
+				monitor.incrementCounter("segments_stolen");
+		}
+
+		return oldest;
+	}
+
+	/**
+	 * One stream, reading segments from one replica at a time until there is nothing left to do
+	 */
+	private void stream() {
+		try {
+			PFN pfn;
+
+			while (remaining.get() > 0 && (pfn = nextCandidate()) != null) {
+				XrdRemoteFile file = null;
+
+				int segment = -1;
+
+				try {
+					file = XrdClient.open(Xrootd.getReadURL(pfn), false);
+					openFiles.add(file);
+
+					while (remaining.get() > 0) {
+						segment = nextSegment();
+
+						if (segment < 0) {
+							synchronized (lock) {
+								lock.wait(100);
+							}
+
+							continue;
+						}
+
+						fetch(file, segment);
+						segment = -1;
+					}
+
+					openFiles.remove(file);
+					file.close();
+				}
+				catch (final IOException ioe) {
+					if (logger.isLoggable(Level.FINE))
+						logger.log(Level.FINE, "Stream from " + pfn.pfn + " failed, continuing with the next replica", ioe);
+
+					if (monitor != null)
+						monitor.incrementCounter("stream_failed");
+
+					// give the segment back, whatever was written from it will be overwritten
+					if (segment >= 0)
+						state.compareAndSet(segment, IN_FLIGHT, PENDING);
+
+					if (file != null) {
+						openFiles.remove(file);
+						file.abort();
+					}
+				}
+			}
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			activeStreams.decrementAndGet();
+
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void fetch(final XrdRemoteFile file, final int segment) throws IOException {
+		final long offset = (long) segment * SEGMENT_SIZE;
+		final int length = (int) Math.min(SEGMENT_SIZE, guid.size - offset);
+
+		final long segmentStart = System.currentTimeMillis();
+
+		final long read = file.read(offset, length, new PositionalOutputStream(channel, offset));
+
+		if (read != length)
+			throw new IOException("Short read of segment " + segment + " of " + guid.guid + " from " + file + ": " + read + " instead of " + length);
+
+		if (state.compareAndSet(segment, IN_FLIGHT, DONE)) {
+			segmentTimeTotal.addAndGet(System.currentTimeMillis() - segmentStart);
+			segmentTimeCount.incrementAndGet();
+
+			if (remaining.decrementAndGet() == 0)
+				synchronized (lock) {
+					lock.notifyAll();
+				}
+		}
+	}
+
+	/**
+	 * Writes the received bytes at their place in the target file, independently of the other streams
+	 */
+	private static final class PositionalOutputStream extends OutputStream {
+		private final FileChannel channel;
+
+		private long position;
+
+		PositionalOutputStream(final FileChannel channel, final long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+			while (buffer.hasRemaining())
+				position += channel.write(buffer, position);
+		}
+	}
+}
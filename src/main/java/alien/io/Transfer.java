@@ -193,10 +193,12 @@ public class Transfer implements Serializable, Runnable {
 			}
 
 			if (Factory.xrootd.isSupported()) {
-				if (!pfn.isCsd)
-					ret.add((Protocol) Factory.xrootd.clone());
-				else
+				if (pfn.isCsd)
 					ret.add((Protocol) Factory.xrootdcsd.clone());
+				else if (Factory.xrootdNative.isSupported())
+					ret.add((Protocol) Factory.xrootdNative.clone());
+				else
+					ret.add((Protocol) Factory.xrootd.clone());
 			}
 		}
 		else if (s.equals("http")) {
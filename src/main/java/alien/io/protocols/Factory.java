@@ -14,6 +14,11 @@ public final class Factory {
 	 */
 	public static final Xrootd xrootd = new Xrootd();
 
+	/**
+	 * Transfers with the in-JVM xrootd client, falling back to xrdcp
+	 */
+	public static final XrootdNative xrootdNative = new XrootdNative();
+
 	/**
 	 * Normal (xrdcp) transfers for LFN_CSDs
 	 */
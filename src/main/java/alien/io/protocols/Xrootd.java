@@ -580,6 +580,68 @@ public class Xrootd extends Protocol {
 		}
 	}
 
+	/**
+	 * @param pfn
+	 * @return the URL to read (or, with a delete envelope, remove) this replica, with the access envelope in the opaque part
+	 */
+	public static String getReadURL(final PFN pfn) {
+		String transactionURL = pfn.pfn;
+
+		if (pfn.ticket != null && pfn.ticket.envelope != null) {
+			transactionURL = pfn.ticket.envelope.getTransactionURL();
+
+			if (pfn.ticket.envelope.getEncryptedEnvelope() != null)
+				transactionURL += "?authz=" + pfn.ticket.envelope.getEncryptedEnvelope();
+			else if (pfn.ticket.envelope.getSignedEnvelope() != null)
+				transactionURL += "?" + pfn.ticket.envelope.getSignedEnvelope();
+		}
+
+		return transactionURL;
+	}
+
+	/**
+	 * Download the file without forking xrdcp. The default implementation doesn't do anything, see {@link XrootdNative}.
+	 *
+	 * @param pfn
+	 * @param transactionURL
+	 *            full URL, including the access envelope
+	 * @param target
+	 *            local file to create
+	 * @return <code>true</code> if the file was downloaded, <code>false</code> to use xrdcp
+	 * @throws IOException
+	 *             if the download failed in a way that xrdcp is not expected to fix
+	 */
+	protected boolean downloadNatively(final PFN pfn, final String transactionURL, final File target) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Upload the file without forking xrdcp. The default implementation doesn't do anything, see {@link XrootdNative}.
+	 *
+	 * @param pfn
+	 * @param localFile
+	 * @param transactionURL
+	 *            full URL, including the access envelope
+	 * @return the MD5 checksum of the uploaded content, or <code>null</code> to use xrdcp
+	 * @throws IOException
+	 *             if the upload failed in a way that xrdcp is not expected to fix
+	 */
+	protected String uploadNatively(final PFN pfn, final File localFile, final String transactionURL) throws IOException {
+		return null;
+	}
+
+	/**
+	 * Confirm a natively uploaded file without forking xrdfs. The default implementation doesn't do anything, see {@link XrootdNative}.
+	 *
+	 * @param pfn
+	 * @return the stat information, or <code>null</code> to use {@link #xrdstat(PFN, boolean)}
+	 * @throws IOException
+	 *             if the file doesn't have the expected size
+	 */
+	protected String statNatively(final PFN pfn) throws IOException {
+		return null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -661,111 +723,102 @@ public class Xrootd extends Protocol {
 				logger.log(Level.FINE, "The envelope for PFN " + pfn.toString() + (pfn.ticket == null ? " could not be found" : " is not a READ one"));
 
 		try {
-			final List<String> command = new LinkedList<>();
-
-			if (preferEoscp) {
-				command.add(eoscpPath);
-				command.add("-s");
-				command.add("-n");
-				command.add("-b");
-				command.add("33554432");
-			}
-			else {
-				if (xrdcpPath == null) {
-					logger.log(Level.SEVERE, "Could not find xrdcp in path.");
-					throw new SourceException(XRDCP_NOT_FOUND_IN_PATH, "Could not find xrdcp in path.");
-				}
-
-				command.add(xrdcpPath);
-			}
-
-			/*
-			 * TODO: enable when servers support checksum queries, at the moment most don't if (xrootdNewerThan4 && guid.md5 != null && guid.md5.length() > 0) { command.add("-C"); command.add("md5:" +
-			 * guid.md5); }
-			 */
+			final String transactionURL = decorateOpaqueParams(getReadURL(pfn), applicationName, sciTag);
 
-			String transactionURL = pfn.pfn;
+			if (!downloadNatively(pfn, transactionURL, target)) {
+				final List<String> command = new LinkedList<>();
 
-			if (pfn.ticket != null && pfn.ticket.envelope != null)
-				transactionURL = pfn.ticket.envelope.getTransactionURL();
+				if (preferEoscp) {
+					command.add(eoscpPath);
+					command.add("-s");
+					command.add("-n");
+					command.add("-b");
+					command.add("33554432");
+				}
+				else {
+					if (xrdcpPath == null) {
+						logger.log(Level.SEVERE, "Could not find xrdcp in path.");
+						throw new SourceException(XRDCP_NOT_FOUND_IN_PATH, "Could not find xrdcp in path.");
+					}
 
-			if (pfn.ticket != null && pfn.ticket.envelope != null)
-				if (pfn.ticket.envelope.getEncryptedEnvelope() != null)
-					transactionURL += "?authz=" + pfn.ticket.envelope.getEncryptedEnvelope();
-				else if (pfn.ticket.envelope.getSignedEnvelope() != null)
-					transactionURL += "?" + pfn.ticket.envelope.getSignedEnvelope();
+					command.add(xrdcpPath);
+				}
 
-			transactionURL = decorateOpaqueParams(transactionURL, applicationName, sciTag);
+				/*
+				 * TODO: enable when servers support checksum queries, at the moment most don't if (xrootdNewerThan4 && guid.md5 != null && guid.md5.length() > 0) { command.add("-C"); command.add("md5:" +
+				 * guid.md5); }
+				 */
 
-			command.add(transactionURL);
-			command.add(target.getCanonicalPath());
+				command.add(transactionURL);
+				command.add(target.getCanonicalPath());
 
-			setRateLimit(command);
+				setRateLimit(command);
 
-			setLastCommand(command);
+				setLastCommand(command);
 
-			final ProcessBuilder pBuilder = new ProcessBuilder(command);
+				final ProcessBuilder pBuilder = new ProcessBuilder(command);
 
-			checkLibraryPath(pBuilder);
-			setCommonEnv(pBuilder, applicationName);
+				checkLibraryPath(pBuilder);
+				setCommonEnv(pBuilder, applicationName);
 
-			// 20KB/s should be available to anybody
-			long maxTime = guid.size / 20000;
+				// 20KB/s should be available to anybody
+				long maxTime = guid.size / 20000;
 
-			maxTime += timeout;
+				maxTime += timeout;
 
-			pBuilder.redirectErrorStream(true);
+				pBuilder.redirectErrorStream(true);
 
-			final ExitStatus exitStatus;
+				final ExitStatus exitStatus;
 
-			Process p = null;
+				Process p = null;
 
-			try {
-				p = pBuilder.start();
+				try {
+					p = pBuilder.start();
 
-				if (p != null) {
-					final ProcessWithTimeout ptimeout = new ProcessWithTimeout(p, pBuilder);
-					ptimeout.waitFor(maxTime, TimeUnit.SECONDS);
-					exitStatus = ptimeout.getExitStatus();
-					setLastExitStatus(exitStatus);
+					if (p != null) {
+						final ProcessWithTimeout ptimeout = new ProcessWithTimeout(p, pBuilder);
+						ptimeout.waitFor(maxTime, TimeUnit.SECONDS);
+						exitStatus = ptimeout.getExitStatus();
+						setLastExitStatus(exitStatus);
+					}
+					else
+						throw new SourceException(CANNOT_START_PROCESS, "Cannot start the process");
 				}
-				else
-					throw new SourceException(CANNOT_START_PROCESS, "Cannot start the process");
-			}
-			catch (final InterruptedException ie) {
-				setLastExitStatus(null);
+				catch (final InterruptedException ie) {
+					setLastExitStatus(null);
 
-				p.destroy();
+					p.destroy();
 
-				throw new SourceException(INTERRUPTED_WHILE_WAITING_FOR_COMMAND, "Interrupted while waiting for the following command to finish:\n" + getFormattedLastCommand(), ie);
-			}
+					throw new SourceException(INTERRUPTED_WHILE_WAITING_FOR_COMMAND, "Interrupted while waiting for the following command to finish:\n" + getFormattedLastCommand(), ie);
+				}
 
-			if (exitStatus.getExtProcExitStatus() != 0) {
-				String sMessage = parseXrootdError(exitStatus.getStdOut());
-				SourceExceptionCode errCode;
+				if (exitStatus.getExtProcExitStatus() != 0) {
+					String sMessage = parseXrootdError(exitStatus.getStdOut());
+					SourceExceptionCode errCode;
 
-				logger.log(Level.WARNING, "GET of " + pfn.pfn + " failed with " + exitStatus.getStdOut());
+					logger.log(Level.WARNING, "GET of " + pfn.pfn + " failed with " + exitStatus.getStdOut());
 
-				if (sMessage != null) {
-					if (exitStatus.getExtProcExitStatus() < 0) {
+					if (sMessage != null) {
+						if (exitStatus.getExtProcExitStatus() < 0) {
+							errCode = XROOTD_TIMED_OUT;
+							sMessage = xrdcpPath + " timed out and was killed after " + maxTime + "s: " + sMessage;
+						}
+						else {
+							errCode = XROOTD_EXITED_WITH_CODE;
+							sMessage = xrdcpPath + " exited with exit code " + exitStatus.getExtProcExitStatus() + ": " + sMessage;
+						}
+					}
+					else if (exitStatus.getExtProcExitStatus() < 0) {
 						errCode = XROOTD_TIMED_OUT;
-						sMessage = xrdcpPath + " timed out and was killed after " + maxTime + "s: " + sMessage;
+						sMessage = "The following command has timed out and was killed after " + maxTime + "s:\n" + getFormattedLastCommand();
 					}
 					else {
 						errCode = XROOTD_EXITED_WITH_CODE;
-						sMessage = xrdcpPath + " exited with exit code " + exitStatus.getExtProcExitStatus() + ": " + sMessage;
+						sMessage = "Exit code was " + exitStatus.getExtProcExitStatus() + " for command:\n" + getFormattedLastCommand();
 					}
-				}
-				else if (exitStatus.getExtProcExitStatus() < 0) {
-					errCode = XROOTD_TIMED_OUT;
-					sMessage = "The following command has timed out and was killed after " + maxTime + "s:\n" + getFormattedLastCommand();
-				}
-				else {
-					errCode = XROOTD_EXITED_WITH_CODE;
-					sMessage = "Exit code was " + exitStatus.getExtProcExitStatus() + " for command:\n" + getFormattedLastCommand();
-				}
 
-				throw new SourceException(errCode, sMessage);
+					throw new SourceException(errCode, sMessage);
+				}
 			}
 
 			if (!checkDownloadedFile(target, pfn)) {
@@ -856,51 +909,6 @@ public class Xrootd extends Protocol {
 			throw new TargetException("Difference in sizes: local=" + localFile.length() + " / pfn=" + guid.size);
 
 		try {
-			final List<String> command = new LinkedList<>();
-
-			if (preferEoscp) {
-				command.add(eoscpPath);
-				command.add("-s");
-				command.add("-n");
-				command.add("-b");
-				command.add("33554432");
-			}
-			else {
-				if (xrdcpPath == null) {
-					logger.log(Level.SEVERE, "Could not find xrdcp in path.");
-					throw new TargetException("Could not find xrdcp in path.");
-				}
-
-				command.add(xrdcpPath);
-
-				// no progress bar
-				if (xrootdNewerThan4)
-					command.add("--nopbar");
-				else
-					command.add("-np");
-
-				/**
-				 * // explicitly ask to create intermediate paths
-				 * if (xrootdNewerThan4)
-				 * command.add("--path");
-				 */
-
-				command.add("--verbose"); // display summary output
-				command.add("--force"); // re-create a file if already present
-				command.add("--posc"); // request POSC (persist-on-successful-close) processing to create a new file
-				command.add("--cksum");
-				command.add("md5:source");
-			}
-
-			/*
-			 * TODO: enable when storages support checksum queries, at the moment most don't if (xrootdNewerThan4 && guid.md5!=null && guid.md5.length()>0){ command.add("-C");
-			 * command.add("md5:"+guid.md5); }
-			 */
-
-			setRateLimit(command);
-
-			command.add(localFile.getCanonicalPath());
-
 			String transactionURL = pfn.pfn;
 
 			if (pfn.ticket != null && pfn.ticket.envelope != null) {
@@ -920,70 +928,127 @@ public class Xrootd extends Protocol {
 
 			transactionURL = decorateOpaqueParams(transactionURL, applicationName, tag);
 
-			command.add(transactionURL);
+			final String nativeMd5 = uploadNatively(pfn, localFile, transactionURL);
 
-			setLastCommand(command);
+			if (nativeMd5 != null)
+				setMd5Value(nativeMd5);
+			else {
+				final List<String> command = new LinkedList<>();
 
-			final ProcessBuilder pBuilder = new ProcessBuilder(command);
+				if (preferEoscp) {
+					command.add(eoscpPath);
+					command.add("-s");
+					command.add("-n");
+					command.add("-b");
+					command.add("33554432");
+				}
+				else {
+					if (xrdcpPath == null) {
+						logger.log(Level.SEVERE, "Could not find xrdcp in path.");
+						throw new TargetException("Could not find xrdcp in path.");
+					}
 
-			checkLibraryPath(pBuilder);
-			setCommonEnv(pBuilder, applicationName);
+					command.add(xrdcpPath);
 
-			// 20KB/s should be available to anybody
-			final long maxTime = timeout + guid.size / 20000;
+					// no progress bar
+					if (xrootdNewerThan4)
+						command.add("--nopbar");
+					else
+						command.add("-np");
+
+					/**
+					 * // explicitly ask to create intermediate paths
+					 * if (xrootdNewerThan4)
+					 * command.add("--path");
+					 */
+
+					command.add("--verbose"); // display summary output
+					command.add("--force"); // re-create a file if already present
+					command.add("--posc"); // request POSC (persist-on-successful-close) processing to create a new file
+					command.add("--cksum");
+					command.add("md5:source");
+				}
 
-			pBuilder.redirectErrorStream(true);
+				/*
+				 * TODO: enable when storages support checksum queries, at the moment most don't if (xrootdNewerThan4 && guid.md5!=null && guid.md5.length()>0){ command.add("-C");
+				 * command.add("md5:"+guid.md5); }
+				 */
 
-			final ExitStatus exitStatus;
+				setRateLimit(command);
 
-			try {
-				final Process p = pBuilder.start();
+				command.add(localFile.getCanonicalPath());
 
-				if (p != null) {
-					final ProcessWithTimeout pTimeout = new ProcessWithTimeout(p, pBuilder);
-					pTimeout.waitFor(maxTime, TimeUnit.SECONDS);
-					exitStatus = pTimeout.getExitStatus();
-					setLastExitStatus(exitStatus);
-				}
-				else
-					throw new TargetException("Cannot start the process");
-			}
-			catch (final InterruptedException ie) {
-				setLastExitStatus(null);
-				throw new TargetException("Interrupted while waiting for the following command to finish:\n" + getFormattedLastCommand(), ie);
-			}
+				command.add(transactionURL);
 
-			if (exitStatus.getExtProcExitStatus() != 0) {
-				String sMessage = parseXrootdError(exitStatus.getStdOut());
+				setLastCommand(command);
 
-				if (logger.isLoggable(Level.WARNING))
-					logger.log(Level.WARNING, "PUT of " + pfn.pfn + " failed with " + exitStatus.getStdOut());
+				final ProcessBuilder pBuilder = new ProcessBuilder(command);
 
-				if (sMessage != null) {
-					if (exitStatus.getExtProcExitStatus() < 0)
-						sMessage = xrdcpPath + " timed out and was killed after " + maxTime + "s: " + sMessage;
+				checkLibraryPath(pBuilder);
+				setCommonEnv(pBuilder, applicationName);
+
+				// 20KB/s should be available to anybody
+				final long maxTime = timeout + guid.size / 20000;
+
+				pBuilder.redirectErrorStream(true);
+
+				final ExitStatus exitStatus;
+
+				try {
+					final Process p = pBuilder.start();
+
+					if (p != null) {
+						final ProcessWithTimeout pTimeout = new ProcessWithTimeout(p, pBuilder);
+						pTimeout.waitFor(maxTime, TimeUnit.SECONDS);
+						exitStatus = pTimeout.getExitStatus();
+						setLastExitStatus(exitStatus);
+					}
 					else
-						sMessage = xrdcpPath + " exited with exit code " + exitStatus.getExtProcExitStatus() + ": " + sMessage;
+						throw new TargetException("Cannot start the process");
+				}
+				catch (final InterruptedException ie) {
+					setLastExitStatus(null);
+					throw new TargetException("Interrupted while waiting for the following command to finish:\n" + getFormattedLastCommand(), ie);
 				}
-				else if (exitStatus.getExtProcExitStatus() < 0)
-					sMessage = "The following command had timed out and was killed after " + maxTime + "s:\n" + getFormattedLastCommand();
-				else
-					sMessage = "Exit code was " + exitStatus.getExtProcExitStatus() + " for command:\n" + getFormattedLastCommand();
 
-				throw new TargetException(sMessage);
-			}
+				if (exitStatus.getExtProcExitStatus() != 0) {
+					String sMessage = parseXrootdError(exitStatus.getStdOut());
 
-			final String outputMessage = exitStatus.getStdOut();
-			if (outputMessage.contains("md5:")) {
-				final String[] outputList = outputMessage.split(" ");
-				final int indexMd5 = Arrays.asList(outputList).indexOf("md5:");
-				if (outputList.length > indexMd5 + 1) {
-					setMd5Value(outputList[indexMd5 + 1].trim());
+					if (logger.isLoggable(Level.WARNING))
+						logger.log(Level.WARNING, "PUT of " + pfn.pfn + " failed with " + exitStatus.getStdOut());
+
+					if (sMessage != null) {
+						if (exitStatus.getExtProcExitStatus() < 0)
+							sMessage = xrdcpPath + " timed out and was killed after " + maxTime + "s: " + sMessage;
+						else
+							sMessage = xrdcpPath + " exited with exit code " + exitStatus.getExtProcExitStatus() + ": " + sMessage;
+					}
+					else if (exitStatus.getExtProcExitStatus() < 0)
+						sMessage = "The following command had timed out and was killed after " + maxTime + "s:\n" + getFormattedLastCommand();
+					else
+						sMessage = "Exit code was " + exitStatus.getExtProcExitStatus() + " for command:\n" + getFormattedLastCommand();
+
+					throw new TargetException(sMessage);
+				}
+
+				final String outputMessage = exitStatus.getStdOut();
+				if (outputMessage.contains("md5:")) {
+					final String[] outputList = outputMessage.split(" ");
+					final int indexMd5 = Arrays.asList(outputList).indexOf("md5:");
+					if (outputList.length > indexMd5 + 1) {
+						setMd5Value(outputList[indexMd5 + 1].trim());
+					}
 				}
 			}
 
-			if (pfn.ticket != null && pfn.ticket.envelope.getEncryptedEnvelope() != null)
+			if (pfn.ticket != null && pfn.ticket.envelope.getEncryptedEnvelope() != null) {
+				final String nativeStat = nativeMd5 != null ? statNatively(pfn) : null;
+
+				if (nativeStat != null)
+					return nativeStat;
+
 				return xrdstat(pfn, false);
+			}
 
 			return xrdstat(pfn, true);
 		}
@@ -0,0 +1,173 @@
+package alien.io.protocols;
+
+import static alien.io.protocols.SourceExceptionCode.INTERNAL_ERROR;
+import static alien.io.protocols.SourceExceptionCode.NO_SUCH_FILE_OR_DIRECTORY;
+import static alien.io.protocols.SourceExceptionCode.XROOTD_TIMED_OUT;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.logging.Level;
+
+import alien.catalogue.PFN;
+import alien.catalogue.access.AccessType;
+import alien.config.ConfigUtils;
+import alien.io.xrootd.XrdClient;
+import alien.io.xrootd.XrdException;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+
+/**
+ * Xrootd transfers done by the in-JVM {@link XrdClient} instead of forking one xrdcp process per file. Whatever the client cannot do (authentication, TLS, asynchronous
+ * responses) is retried with the command line tools, as for {@link Xrootd}. Any other error fails the transfer, as an xrdcp failure would.
+ *
+ * @since Oct 17, 2026
+ */
+public class XrootdNative extends Xrootd {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2519024773416426171L;
+
+	/**
+	 * Monitoring component
+	 */
+	static transient final Monitor monitor = MonitorFactory.getMonitor(XrootdNative.class.getCanonicalName());
+
+	/**
+	 * package protected
+	 */
+	XrootdNative() {
+		// package protected
+	}
+
+	/**
+	 * @return <code>true</code> if the operation should be retried with the command line tools, because the server asked for something that the client doesn't support
+	 */
+	private static boolean fallback(final String operation, final String url, final IOException e) {
+		if (!(e instanceof XrdException) || !((XrdException) e).isUnsupported()) {
+			if (monitor != null)
+				monitor.incrementCounter(operation + "_failed");
+
+			return false;
+		}
+
+		if (monitor != null)
+			monitor.incrementCounter(operation + "_fallback");
+
+		if (logger.isLoggable(Level.FINE))
+			logger.log(Level.FINE, "Native " + operation + " of " + url + " is not supported, falling back to the command line tools", e);
+
+		return true;
+	}
+
+	private static void success(final String operation) {
+		if (monitor != null)
+			monitor.incrementCounter(operation + "_native");
+	}
+
+	@Override
+	protected boolean downloadNatively(final PFN pfn, final String transactionURL, final File target) throws IOException {
+		try {
+			XrdClient.download(transactionURL, target);
+			success("get");
+			return true;
+		}
+		catch (final IOException ioe) {
+			if (target.exists() && !target.delete())
+				logger.log(Level.WARNING, "Could not delete the partially downloaded file " + target);
+
+			if (ioe instanceof XrdException && ((XrdException) ioe).getErrorCode() == XrdException.NOT_FOUND)
+				throw new SourceException(NO_SUCH_FILE_OR_DIRECTORY, "No such file or directory: " + pfn.pfn);
+
+			if (fallback("get", pfn.pfn, ioe))
+				return false;
+
+			throw new SourceException(ioe instanceof SocketTimeoutException ? XROOTD_TIMED_OUT : INTERNAL_ERROR, "Native download of " + pfn.pfn + " failed: " + ioe.getMessage(), ioe);
+		}
+	}
+
+	@Override
+	protected String uploadNatively(final PFN pfn, final File localFile, final String transactionURL) throws IOException {
+		try {
+			final String md5 = XrdClient.upload(localFile, transactionURL);
+			success("put");
+			return md5;
+		}
+		catch (final IOException ioe) {
+			if (fallback("put", pfn.pfn, ioe))
+				return null;
+
+			throw new TargetException("Native upload of " + pfn.pfn + " failed: " + ioe.getMessage(), ioe);
+		}
+	}
+
+	@Override
+	protected String statNatively(final PFN pfn) throws IOException {
+		final long size;
+
+		try {
+			size = XrdClient.stat(pfn.getPFN());
+		}
+		catch (final IOException ioe) {
+			if (fallback("stat", pfn.pfn, ioe))
+				return null;
+
+			throw new TargetException(pfn.getPFN() + ": could not confirm the upload: " + ioe.getMessage(), ioe);
+		}
+
+		if (pfn.getGuid().size > 0 && pfn.getGuid().size != size)
+			throw new TargetException(pfn.getPFN() + ": could not confirm the upload, the storage reports " + size + " bytes instead of " + pfn.getGuid().size);
+
+		success("stat");
+
+		return "Size: " + size;
+	}
+
+	@Override
+	public boolean delete(final PFN pfn, final boolean enforceTicket) throws IOException {
+		if (enforceTicket && (pfn == null || pfn.ticket == null || pfn.ticket.type != AccessType.DELETE))
+			throw new IOException("You didn't get the rights to delete this PFN");
+
+		try {
+			XrdClient.rm(getReadURL(pfn));
+			success("rm");
+			return true;
+		}
+		catch (final IOException ioe) {
+			if (ioe instanceof XrdException && ((XrdException) ioe).getErrorCode() == XrdException.NOT_FOUND)
+				throw new TargetException(ioe.getMessage());
+
+			if (!fallback("rm", pfn.pfn, ioe))
+				throw ioe;
+		}
+
+		return super.delete(pfn, enforceTicket);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "xrootd-native";
+	}
+
+	@Override
+	int getPreference() {
+		return 9;
+	}
+
+	@Override
+	public boolean isSupported() {
+		return ConfigUtils.getConfig().getb("alien.io.protocols.XrootdNative.enabled", false);
+	}
+
+	@Override
+	public byte protocolID() {
+		return 3;
+	}
+}
@@ -0,0 +1,391 @@
+package alien.io.xrootd;
+
+import static alien.io.xrootd.XrdConnection.DEFAULT_MODE;
+import static alien.io.xrootd.XrdConnection.kXR_delete;
+import static alien.io.xrootd.XrdConnection.kXR_mkpath;
+import static alien.io.xrootd.XrdConnection.kXR_open;
+import static alien.io.xrootd.XrdConnection.kXR_open_read;
+import static alien.io.xrootd.XrdConnection.kXR_posc;
+import static alien.io.xrootd.XrdConnection.kXR_rm;
+import static alien.io.xrootd.XrdConnection.kXR_stat;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+
+/**
+ * Minimal in-JVM xrootd client (open, read, readv, write, stat, rm) for the transfers that would otherwise fork one xrdcp process each. It only speaks the unauthenticated,
+ * clear text flavour of the protocol that the AliEn storages use together with the access envelopes passed in the opaque part of the URL. Anything else (security
+ * protocols, TLS, asynchronous responses) is reported as an {@link XrdException} with {@link XrdException#isUnsupported()} set, for the caller to fall back to the
+ * command line tools.
+ *
+ * @since Oct 17, 2026
+ */
+public final class XrdClient {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(XrdClient.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(XrdClient.class.getCanonicalName());
+
+	/**
+	 * Default xrootd port
+	 */
+	public static final int DEFAULT_PORT = 1094;
+
+	private static final int MAX_REDIRECTS = 16;
+
+	/**
+	 * Block size for downloads and uploads
+	 */
+	private static final int BLOCK_SIZE = ConfigUtils.getConfig().geti("alien.io.xrootd.XrdClient.blockSize", 4 * 1024 * 1024);
+
+	private XrdClient() {
+		// static methods only
+	}
+
+	/**
+	 * Parsed root:// URL
+	 */
+	static final class Endpoint {
+		final String host;
+
+		final int port;
+
+		/**
+		 * Path on the server, starting with a single '/'
+		 */
+		final String path;
+
+		/**
+		 * CGI, without the leading '?', can be empty
+		 */
+		final String opaque;
+
+		Endpoint(final String host, final int port, final String path, final String opaque) {
+			this.host = host;
+			this.port = port;
+			this.path = path;
+			this.opaque = opaque;
+		}
+
+		/**
+		 * @return what to send to the server as the file name
+		 */
+		byte[] pathWithOpaque() {
+			return (opaque.length() > 0 ? path + "?" + opaque : path).getBytes(StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @param redirect
+		 * @return the same file on the server that we were redirected to
+		 */
+		Endpoint redirect(final XrdConnection.Redirect redirect) {
+			String newOpaque = opaque;
+
+			if (redirect.opaque.length() > 0)
+				newOpaque = newOpaque.length() > 0 ? newOpaque + "&" + redirect.opaque : redirect.opaque;
+
+			return new Endpoint(redirect.host, redirect.port, path, newOpaque);
+		}
+
+		@Override
+		public String toString() {
+			return "root://" + host + ":" + port + "/" + path;
+		}
+	}
+
+	/**
+	 * @param url
+	 *            <code>root://host[:port]//path[?opaque]</code>
+	 * @return the parsed URL
+	 * @throws IOException
+	 *             if the URL cannot be parsed
+	 */
+	static Endpoint parse(final String url) throws IOException {
+		if (url == null || !url.startsWith("root://"))
+			throw new XrdException(0, "Not an xrootd URL: " + url);
+
+		final int pathStart = url.indexOf('/', 7);
+
+		if (pathStart < 0)
+			throw new XrdException(0, "No path in " + url);
+
+		final String hostPort = url.substring(7, pathStart);
+
+		String host = hostPort;
+		int port = DEFAULT_PORT;
+
+		final int portIdx = hostPort.lastIndexOf(':');
+
+		// IPv6 addresses come between brackets
+		if (portIdx > 0 && portIdx > hostPort.lastIndexOf(']')) {
+			host = hostPort.substring(0, portIdx);
+
+			try {
+				port = Integer.parseInt(hostPort.substring(portIdx + 1));
+			}
+			catch (@SuppressWarnings("unused") final NumberFormatException nfe) {
+				throw new XrdException(0, "Invalid port in " + url);
+			}
+		}
+
+		if (host.startsWith("[") && host.endsWith("]"))
+			host = host.substring(1, host.length() - 1);
+
+		String path = url.substring(pathStart);
+		String opaque = "";
+
+		final int qIdx = path.indexOf('?');
+
+		if (qIdx >= 0) {
+			opaque = path.substring(qIdx + 1);
+			path = path.substring(0, qIdx);
+		}
+
+		// root://host:port//path has the path starting with "//"
+		while (path.startsWith("//"))
+			path = path.substring(1);
+
+		return new Endpoint(host, port, path, opaque);
+	}
+
+	/**
+	 * One request that targets a path, to be replayed on the server we get redirected to
+	 */
+	private interface PathRequest<T> {
+		T execute(XrdConnection connection, Endpoint endpoint) throws IOException;
+	}
+
+	/**
+	 * Run the request, following the redirections
+	 *
+	 * @param keepConnection
+	 *            whether the successful request keeps the connection (for <code>open</code>)
+	 */
+	private static <T> T execute(final String url, final PathRequest<T> request, final boolean keepConnection) throws IOException {
+		Endpoint endpoint = parse(url);
+
+		boolean retried = false;
+
+		for (int redirects = 0; redirects <= MAX_REDIRECTS;) {
+			final XrdConnection connection = XrdConnectionPool.acquire(endpoint.host, endpoint.port);
+
+			try {
+				final T ret = request.execute(connection, endpoint);
+
+				if (keepConnection)
+					return ret;
+
+				XrdConnectionPool.release(connection, true);
+
+				return ret;
+			}
+			catch (final XrdConnection.Redirect r) {
+				XrdConnectionPool.release(connection, true);
+
+				if (logger.isLoggable(Level.FINE))
+					logger.log(Level.FINE, endpoint + " redirected to " + r.host + ":" + r.port);
+
+				endpoint = endpoint.redirect(r);
+				redirects++;
+			}
+			catch (final XrdException e) {
+				// after an unsupported response the state of the stream is unknown
+				XrdConnectionPool.release(connection, !e.isUnsupported());
+				throw e;
+			}
+			catch (final IOException ioe) {
+				XrdConnectionPool.release(connection, false);
+
+				// a pooled connection could have been closed by the server in the mean time
+				if (retried)
+					throw ioe;
+
+				retried = true;
+			}
+			catch (final RuntimeException re) {
+				XrdConnectionPool.release(connection, false);
+
+				throw re;
+			}
+		}
+
+		throw new XrdException(0, "Too many redirections for " + url);
+	}
+
+	/**
+	 * @param url
+	 *            <code>root://host[:port]//path[?opaque]</code>, the opaque part being typically the access envelope
+	 * @param write
+	 *            <code>false</code> to open for reading, <code>true</code> to create (or overwrite) the file with persist-on-successful-close
+	 * @return the open file
+	 * @throws IOException
+	 */
+	public static XrdRemoteFile open(final String url, final boolean write) throws IOException {
+		return execute(url, (connection, endpoint) -> {
+			final byte[] body = new byte[16];
+
+			body[0] = (byte) ((write ? DEFAULT_MODE : 0) >>> 8);
+			body[1] = (byte) (write ? DEFAULT_MODE : 0);
+
+			final int options = write ? kXR_delete | kXR_mkpath | kXR_posc : kXR_open_read;
+
+			body[2] = (byte) (options >>> 8);
+			body[3] = (byte) options;
+
+			final byte[] path = endpoint.pathWithOpaque();
+
+			final XrdConnection.Response r = connection.request(kXR_open, body, path, 0, path.length, null);
+
+			if (r.data.length < 4)
+				throw new XrdException(0, "No file handle in the open response from " + connection + " for " + endpoint);
+
+			final byte[] fhandle = new byte[4];
+			System.arraycopy(r.data, 0, fhandle, 0, 4);
+
+			return new XrdRemoteFile(connection, fhandle, endpoint.toString());
+		}, true);
+	}
+
+	/**
+	 * @param url
+	 * @return the size of the file
+	 * @throws IOException
+	 *             {@link XrdException} with the {@link XrdException#NOT_FOUND} code if the file doesn't exist
+	 */
+	public static long stat(final String url) throws IOException {
+		return execute(url, (connection, endpoint) -> {
+			final byte[] path = endpoint.pathWithOpaque();
+
+			final XrdConnection.Response r = connection.request(kXR_stat, new byte[16], path, 0, path.length, null);
+
+			// "id size flags modtime"
+			final StringTokenizer st = new StringTokenizer(XrdConnection.cString(r.data, 0));
+
+			try {
+				st.nextToken();
+				return Long.valueOf(st.nextToken());
+			}
+			catch (@SuppressWarnings("unused") final RuntimeException e) {
+				throw new XrdException(0, "Cannot parse the stat response from " + connection + " for " + endpoint + ": " + XrdConnection.cString(r.data, 0));
+			}
+		}, false).longValue();
+	}
+
+	/**
+	 * @param url
+	 * @throws IOException
+	 *             {@link XrdException} with the {@link XrdException#NOT_FOUND} code if the file doesn't exist
+	 */
+	public static void rm(final String url) throws IOException {
+		execute(url, (connection, endpoint) -> {
+			final byte[] path = endpoint.pathWithOpaque();
+
+			connection.request(kXR_rm, new byte[16], path, 0, path.length, null);
+
+			return null;
+		}, false);
+	}
+
+	/**
+	 * Copy a remote file to the local disk
+	 *
+	 * @param url
+	 * @param target
+	 *            local file, overwritten if it exists
+	 * @return number of bytes that were read
+	 * @throws IOException
+	 */
+	public static long download(final String url, final File target) throws IOException {
+		final long started = System.nanoTime();
+
+		long offset = 0;
+
+		try (XrdRemoteFile f = open(url, false); OutputStream os = new BufferedOutputStream(new FileOutputStream(target), 1024 * 1024)) {
+			long cnt;
+
+			do {
+				cnt = f.read(offset, BLOCK_SIZE, os);
+				offset += cnt;
+			} while (cnt == BLOCK_SIZE);
+		}
+
+		if (monitor != null) {
+			monitor.incrementCounter("download_bytes", offset);
+			monitor.addMeasurement("download_time_ms", (System.nanoTime() - started) / 1000000d);
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Upload a local file
+	 *
+	 * @param source
+	 * @param url
+	 * @return the MD5 checksum of the uploaded content
+	 * @throws IOException
+	 */
+	public static String upload(final File source, final String url) throws IOException {
+		final long started = System.nanoTime();
+
+		MessageDigest md5;
+
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IOException("MD5 is not available", e);
+		}
+
+		final XrdRemoteFile f = open(url, true);
+
+		long offset = 0;
+
+		try (InputStream is = new FileInputStream(source)) {
+			final byte[] buffer = new byte[BLOCK_SIZE];
+
+			int cnt;
+
+			while ((cnt = is.readNBytes(buffer, 0, buffer.length)) > 0) {
+				f.write(offset, buffer, 0, cnt);
+				md5.update(buffer, 0, cnt);
+				offset += cnt;
+			}
+		}
+		catch (final IOException ioe) {
+			f.abort();
+			throw ioe;
+		}
+
+		f.close();
+
+		if (monitor != null) {
+			monitor.incrementCounter("upload_bytes", offset);
+			monitor.addMeasurement("upload_time_ms", (System.nanoTime() - started) / 1000000d);
+		}
+
+		return String.format("%032x", new BigInteger(1, md5.digest()));
+	}
+}
@@ -0,0 +1,398 @@
+package alien.io.xrootd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+
+/**
+ * One TCP connection to an xrootd server, after the handshake and an anonymous login. Requests are synchronous, one at a time, so a connection is used by a single thread
+ * between {@link XrdConnectionPool#acquire(String, int)} and {@link XrdConnectionPool#release(XrdConnection, boolean)}.
+ *
+ * @since Oct 17, 2026
+ */
+final class XrdConnection implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(XrdConnection.class.getCanonicalName());
+
+	// request codes
+	static final int kXR_protocol = 3006;
+	static final int kXR_login = 3007;
+	static final int kXR_close = 3003;
+	static final int kXR_open = 3010;
+	static final int kXR_query = 3001;
+	static final int kXR_read = 3013;
+	static final int kXR_rm = 3014;
+	static final int kXR_stat = 3017;
+	static final int kXR_write = 3019;
+	static final int kXR_readv = 3025;
+
+	// response status codes
+	static final int kXR_ok = 0;
+	static final int kXR_oksofar = 4000;
+	static final int kXR_attn = 4001;
+	static final int kXR_authmore = 4002;
+	static final int kXR_error = 4003;
+	static final int kXR_redirect = 4004;
+	static final int kXR_wait = 4005;
+	static final int kXR_waitresp = 4006;
+
+	// open options
+	static final int kXR_delete = 2;
+	static final int kXR_open_read = 16;
+	static final int kXR_mkpath = 256;
+	static final int kXR_posc = 4096;
+
+	// query types
+	static final int kXR_Qcksum = 3;
+
+	/**
+	 * rw-r--r--
+	 */
+	static final int DEFAULT_MODE = 0x100 | 0x080 | 0x020 | 0x004;
+
+	private static final int PROTOCOL_VERSION = 0x00000500;
+
+	/**
+	 * kXR_gotoTLS flag in the protocol response, the server wants to switch the connection to TLS
+	 */
+	private static final int kXR_gotoTLS = 0x40000000;
+
+	private static final int MAX_WAITS = 10;
+
+	final String host;
+
+	final int port;
+
+	private final Socket socket;
+
+	private final DataInputStream in;
+
+	private final DataOutputStream out;
+
+	private final byte[] header = new byte[8];
+
+	private final byte[] streamId = new byte[] { 0, 1 };
+
+	/**
+	 * When the connection was last returned to the pool
+	 */
+	long lastUsed = System.currentTimeMillis();
+
+	/**
+	 * Outcome of one request
+	 */
+	static final class Response {
+		/**
+		 * Payload, unless it was streamed to a sink
+		 */
+		final byte[] data;
+
+		/**
+		 * Total payload length
+		 */
+		final long length;
+
+		Response(final byte[] data, final long length) {
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The server sent us somewhere else
+	 */
+	static final class Redirect extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		final String host;
+
+		final int port;
+
+		/**
+		 * CGI to add to the next request, can be empty
+		 */
+		final String opaque;
+
+		Redirect(final String host, final int port, final String opaque) {
+			super("Redirected to " + host + ":" + port);
+			this.host = host;
+			this.port = port;
+			this.opaque = opaque;
+		}
+	}
+
+	/**
+	 * Connect, do the handshake and log in
+	 *
+	 * @param host
+	 * @param port
+	 * @param timeout
+	 *            connect and read timeout, in milliseconds
+	 * @throws IOException
+	 */
+	XrdConnection(final String host, final int port, final int timeout) throws IOException {
+		this.host = host;
+		this.port = port;
+
+		socket = new Socket();
+
+		try {
+			socket.connect(new InetSocketAddress(host, port), timeout);
+			socket.setSoTimeout(timeout);
+			socket.setTcpNoDelay(true);
+
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 65536));
+
+			handshake();
+			login();
+		}
+		catch (final IOException ioe) {
+			close();
+			throw ioe;
+		}
+	}
+
+	private void handshake() throws IOException {
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(4);
+		out.writeInt(2012);
+		out.flush();
+
+		in.readFully(header);
+
+		final int dlen = readInt(header, 4);
+
+		if (dlen < 8)
+			throw new XrdException(0, "Unexpected handshake response from " + host + ":" + port);
+
+		in.readFully(new byte[dlen]);
+
+		final byte[] body = new byte[16];
+		writeInt(body, 0, PROTOCOL_VERSION);
+
+		final Response r = request(kXR_protocol, body, null, 0, 0, null);
+
+		if (r.data.length >= 8 && (readInt(r.data, 4) & kXR_gotoTLS) != 0)
+			throw new XrdException(0, host + ":" + port + " requires TLS", true);
+	}
+
+	private void login() throws IOException {
+		final byte[] body = new byte[16];
+
+		writeInt(body, 0, (int) ProcessHandle.current().pid());
+
+		final byte[] user = "alien".getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(user, 0, body, 4, user.length);
+
+		// capver, kXR_ver004
+		body[14] = 4;
+
+		final Response r = request(kXR_login, body, null, 0, 0, null);
+
+		// anything after the session ID is a list of security protocols that we would have to go through
+		if (r.data.length > 16) {
+			final String sec = new String(r.data, 16, r.data.length - 16, StandardCharsets.US_ASCII).trim();
+
+			if (sec.length() > 0 && sec.indexOf("&P=") >= 0)
+				throw new XrdException(0, host + ":" + port + " requires authentication: " + sec, true);
+		}
+	}
+
+	/**
+	 * Send one request and wait for the complete response
+	 *
+	 * @param requestId
+	 * @param body
+	 *            the 16 bytes of parameters
+	 * @param data
+	 *            request payload, can be <code>null</code>
+	 * @param offset
+	 * @param length
+	 * @param sink
+	 *            if not <code>null</code>, the response payload is written here instead of being returned
+	 * @return the response
+	 * @throws IOException
+	 *             {@link Redirect} if the request has to be sent to another server, {@link XrdException} for errors reported by the server
+	 */
+	Response request(final int requestId, final byte[] body, final byte[] data, final int offset, final int length, final OutputStream sink) throws IOException {
+		for (int attempt = 0;; attempt++) {
+			out.write(streamId);
+			out.writeShort(requestId);
+			out.write(body, 0, 16);
+			out.writeInt(length);
+
+			if (length > 0)
+				out.write(data, offset, length);
+
+			out.flush();
+
+			byte[] payload = null;
+			long total = 0;
+
+			while (true) {
+				in.readFully(header);
+
+				final int status = ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+				final int dlen = readInt(header, 4);
+
+				if (status == kXR_ok || status == kXR_oksofar) {
+					if (sink != null) {
+						copy(dlen, sink);
+					}
+					else {
+						final byte[] chunk = new byte[dlen];
+						in.readFully(chunk);
+
+						if (payload == null)
+							payload = chunk;
+						else {
+							final byte[] merged = new byte[payload.length + dlen];
+							System.arraycopy(payload, 0, merged, 0, payload.length);
+							System.arraycopy(chunk, 0, merged, payload.length, dlen);
+							payload = merged;
+						}
+					}
+
+					total += dlen;
+
+					if (status == kXR_ok)
+						return new Response(payload != null ? payload : new byte[0], total);
+
+					continue;
+				}
+
+				final byte[] chunk = new byte[dlen];
+				in.readFully(chunk);
+
+				if (status == kXR_error) {
+					final int errnum = dlen >= 4 ? readInt(chunk, 0) : 0;
+					throw new XrdException(errnum, host + ":" + port + ": " + cString(chunk, 4));
+				}
+
+				if (status == kXR_redirect) {
+					final int newPort = readInt(chunk, 0);
+					final String target = cString(chunk, 4);
+
+					if (newPort <= 0 || target.indexOf("://") >= 0)
+						throw new XrdException(0, "Cannot follow the redirection to " + target + ":" + newPort, true);
+
+					final int idx = target.indexOf('?');
+
+					throw new Redirect(idx >= 0 ? target.substring(0, idx) : target, newPort, idx >= 0 ? target.substring(idx + 1) : "");
+				}
+
+				if (status == kXR_wait) {
+					if (attempt >= MAX_WAITS)
+						throw new XrdException(0, host + ":" + port + " kept asking to wait: " + cString(chunk, 4));
+
+					final int seconds = Math.max(1, Math.min(readInt(chunk, 0), 30));
+
+					if (logger.isLoggable(Level.FINE))
+						logger.log(Level.FINE, host + ":" + port + " asked to wait " + seconds + "s: " + cString(chunk, 4));
+
+					try {
+						Thread.sleep(seconds * 1000L);
+					}
+					catch (final InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new XrdException(0, "Interrupted while waiting for " + host + ":" + port);
+					}
+
+					break;
+				}
+
+				// kXR_attn, kXR_authmore, kXR_waitresp: the server could still send the real answer later on this stream, which must not be read as the reply to another request
+				close();
+
+				throw new XrdException(0, host + ":" + port + " sent status " + status + ", which is not handled by this client", true);
+			}
+		}
+	}
+
+	private final byte[] copyBuffer = new byte[65536];
+
+	private void copy(final int length, final OutputStream sink) throws IOException {
+		int left = length;
+
+		while (left > 0) {
+			final int cnt = in.read(copyBuffer, 0, Math.min(left, copyBuffer.length));
+
+			if (cnt < 0)
+				throw new IOException("Connection to " + host + ":" + port + " closed while reading the response");
+
+			sink.write(copyBuffer, 0, cnt);
+			left -= cnt;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the connection can still be used
+	 */
+	boolean isUsable() {
+		return !socket.isClosed() && socket.isConnected();
+	}
+
+	@Override
+	public void close() {
+		try {
+			socket.close();
+		}
+		catch (@SuppressWarnings("unused") final IOException ioe) {
+			// ignore
+		}
+	}
+
+	@Override
+	public String toString() {
+		return host + ":" + port;
+	}
+
+	static int readInt(final byte[] b, final int offset) {
+		return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+	}
+
+	static void writeInt(final byte[] b, final int offset, final int value) {
+		b[offset] = (byte) (value >>> 24);
+		b[offset + 1] = (byte) (value >>> 16);
+		b[offset + 2] = (byte) (value >>> 8);
+		b[offset + 3] = (byte) value;
+	}
+
+	static void writeLong(final byte[] b, final int offset, final long value) {
+		writeInt(b, offset, (int) (value >>> 32));
+		writeInt(b, offset + 4, (int) value);
+	}
+
+	static long readLong(final byte[] b, final int offset) {
+		return ((long) readInt(b, offset) << 32) | (readInt(b, offset + 4) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the NUL-terminated string starting at this offset
+	 */
+	static String cString(final byte[] b, final int offset) {
+		int end = offset;
+
+		while (end < b.length && b[end] != 0)
+			end++;
+
+		return offset < b.length ? new String(b, offset, end - offset, StandardCharsets.UTF_8) : "";
+	}
+}
@@ -0,0 +1,121 @@
+package alien.io.xrootd;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+
+/**
+ * Idle, logged in connections to each xrootd endpoint, so that consecutive transfers from the same server skip the TCP setup, the handshake and the login
+ *
+ * @since Oct 17, 2026
+ */
+final class XrdConnectionPool {
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(XrdConnectionPool.class.getCanonicalName());
+
+	/**
+	 * Connect and read timeout, in milliseconds
+	 */
+	static final int TIMEOUT = ConfigUtils.getConfig().geti("alien.io.xrootd.XrdConnectionPool.timeout", 60) * 1000;
+
+	private static final int MAX_IDLE_PER_ENDPOINT = ConfigUtils.getConfig().geti("alien.io.xrootd.XrdConnectionPool.maxIdle", 4);
+
+	/**
+	 * Servers close idle connections after a while, don't reuse the ones that have been sitting around for longer than this
+	 */
+	private static final long MAX_IDLE_TIME = ConfigUtils.getConfig().getl("alien.io.xrootd.XrdConnectionPool.maxIdleTime", 60) * 1000;
+
+	private static final Map<String, Deque<XrdConnection>> idle = new HashMap<>();
+
+	private XrdConnectionPool() {
+		// static methods only
+	}
+
+	private static String key(final String host, final int port) {
+		return host + ":" + port;
+	}
+
+	/**
+	 * @param host
+	 * @param port
+	 * @return a logged in connection to this server, either an idle one or a new one
+	 * @throws IOException
+	 */
+	static XrdConnection acquire(final String host, final int port) throws IOException {
+		final long now = System.currentTimeMillis();
+
+		synchronized (idle) {
+			final Deque<XrdConnection> q = idle.get(key(host, port));
+
+			if (q != null) {
+				XrdConnection c;
+
+				while ((c = q.pollFirst()) != null) {
+					if (now - c.lastUsed < MAX_IDLE_TIME && c.isUsable()) {
+						if (monitor != null)
+							monitor.incrementCounter("connection_reused");
+
+						return c;
+					}
+
+					c.close();
+				}
+			}
+		}
+
+		if (monitor != null)
+			monitor.incrementCounter("connection_new");
+
+		return new XrdConnection(host, port, TIMEOUT);
+	}
+
+	/**
+	 * Give back a connection after use
+	 *
+	 * @param c
+	 * @param reusable
+	 *            <code>false</code> if the connection is in an unknown state (I/O error in the middle of a request) and has to be closed
+	 */
+	static void release(final XrdConnection c, final boolean reusable) {
+		if (c == null)
+			return;
+
+		if (reusable && c.isUsable()) {
+			c.lastUsed = System.currentTimeMillis();
+
+			synchronized (idle) {
+				final Deque<XrdConnection> q = idle.computeIfAbsent(key(c.host, c.port), (k) -> new ArrayDeque<>());
+
+				if (q.size() < MAX_IDLE_PER_ENDPOINT) {
+					// the most recently used one is taken first
+					q.addFirst(c);
+					return;
+				}
+			}
+		}
+
+		c.close();
+	}
+
+	/**
+	 * Close all idle connections
+	 */
+	static void clear() {
+		synchronized (idle) {
+			for (final Deque<XrdConnection> q : idle.values())
+				for (final XrdConnection c : q)
+					c.close();
+
+			idle.clear();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package alien.io.xrootd;
+
+import java.io.IOException;
+
+/**
+ * Error reported by an xrootd server, or a server feature that the in-JVM client cannot handle
+ *
+ * @since Oct 17, 2026
+ */
+public class XrdException extends IOException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 4188127370826393510L;
+
+	/**
+	 * kXR_NotFound, the server doesn't have the file
+	 */
+	public static final int NOT_FOUND = 3011;
+
+	/**
+	 * The error number given by the server, <code>0</code> if the error was detected on the client side
+	 */
+	private final int errorCode;
+
+	/**
+	 * Whether the server asked for something that only the external tools can do (authentication, TLS, asynchronous responses)
+	 */
+	private final boolean unsupported;
+
+	/**
+	 * @param errorCode
+	 * @param message
+	 */
+	public XrdException(final int errorCode, final String message) {
+		this(errorCode, message, false);
+	}
+
+	/**
+	 * @param errorCode
+	 * @param message
+	 * @param unsupported
+	 */
+	public XrdException(final int errorCode, final String message, final boolean unsupported) {
+		super(message);
+		this.errorCode = errorCode;
+		this.unsupported = unsupported;
+	}
+
+	/**
+	 * @return the kXR_* error number sent by the server
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * @return <code>true</code> if the operation should be retried with the external xrootd tools
+	 */
+	public boolean isUnsupported() {
+		return unsupported;
+	}
+}
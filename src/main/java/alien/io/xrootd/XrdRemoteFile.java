@@ -0,0 +1,228 @@
+package alien.io.xrootd;
+
+import static alien.io.xrootd.XrdConnection.kXR_close;
+import static alien.io.xrootd.XrdConnection.kXR_read;
+import static alien.io.xrootd.XrdConnection.kXR_readv;
+import static alien.io.xrootd.XrdConnection.kXR_write;
+import static alien.io.xrootd.XrdConnection.readInt;
+import static alien.io.xrootd.XrdConnection.readLong;
+import static alien.io.xrootd.XrdConnection.writeInt;
+import static alien.io.xrootd.XrdConnection.writeLong;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A file opened on an xrootd server, see {@link XrdClient#open(String, boolean)}. Holds one pooled connection until it is closed.
+ *
+ * @since Oct 17, 2026
+ */
+public final class XrdRemoteFile implements Closeable {
+
+	/**
+	 * Largest number of chunks that a server accepts in one kXR_readv request
+	 */
+	public static final int MAX_READV_CHUNKS = 1024;
+
+	private final XrdConnection connection;
+
+	private final byte[] fhandle;
+
+	private final String url;
+
+	/**
+	 * whether the connection can go back to the pool
+	 */
+	private boolean clean = true;
+
+	private volatile boolean closed = false;
+
+	XrdRemoteFile(final XrdConnection connection, final byte[] fhandle, final String url) {
+		this.connection = connection;
+		this.fhandle = fhandle;
+		this.url = url;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed)
+			throw new IOException(url + " is already closed");
+	}
+
+	/**
+	 * Run a request on the file handle, marking the connection as unusable if the request didn't complete
+	 */
+	private XrdConnection.Response request(final int requestId, final byte[] body, final byte[] data, final int offset, final int length, final OutputStream sink) throws IOException {
+		checkOpen();
+
+		boolean completed = false;
+
+		try {
+			final XrdConnection.Response r = connection.request(requestId, body, data, offset, length, sink);
+			completed = true;
+			return r;
+		}
+		catch (final XrdConnection.Redirect e) {
+			// the server answered, the stream is still in a known state
+			completed = true;
+			throw e;
+		}
+		catch (final XrdException e) {
+			// same for errors, except for the responses that this client cannot follow
+			completed = !e.isUnsupported();
+			throw e;
+		}
+		finally {
+			if (!completed)
+				clean = false;
+		}
+	}
+
+	/**
+	 * Read a block of the file, streaming it to the given sink
+	 *
+	 * @param offset
+	 * @param length
+	 * @param sink
+	 * @return number of bytes that were read, less than <code>length</code> at the end of the file
+	 * @throws IOException
+	 */
+	public long read(final long offset, final int length, final OutputStream sink) throws IOException {
+		final byte[] body = new byte[16];
+
+		System.arraycopy(fhandle, 0, body, 0, 4);
+		writeLong(body, 4, offset);
+		writeInt(body, 12, length);
+
+		return request(kXR_read, body, null, 0, 0, sink).length;
+	}
+
+	/**
+	 * Read a block of the file
+	 *
+	 * @param offset
+	 * @param length
+	 * @return the content, shorter than <code>length</code> at the end of the file
+	 * @throws IOException
+	 */
+	public byte[] read(final long offset, final int length) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(length);
+
+		read(offset, length, baos);
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Vectored read, fetching several blocks of the file with a single request
+	 *
+	 * @param offsets
+	 * @param lengths
+	 * @return the content of each block, in the order of the request
+	 * @throws IOException
+	 */
+	public byte[][] readv(final long[] offsets, final int[] lengths) throws IOException {
+		if (offsets.length != lengths.length)
+			throw new IllegalArgumentException("Got " + offsets.length + " offsets and " + lengths.length + " lengths");
+
+		final byte[][] ret = new byte[offsets.length][];
+
+		for (int start = 0; start < offsets.length; start += MAX_READV_CHUNKS) {
+			final int n = Math.min(MAX_READV_CHUNKS, offsets.length - start);
+
+			final byte[] list = new byte[n * 16];
+
+			for (int i = 0; i < n; i++) {
+				System.arraycopy(fhandle, 0, list, i * 16, 4);
+				writeInt(list, i * 16 + 4, lengths[start + i]);
+				writeLong(list, i * 16 + 8, offsets[start + i]);
+			}
+
+			final byte[] response = request(kXR_readv, new byte[16], list, 0, list.length, null).data;
+
+			// each chunk comes back with its own header, in the order of the request
+			int pos = 0;
+
+			for (int i = 0; i < n; i++) {
+				if (pos + 16 > response.length)
+					throw new XrdException(0, "Truncated vectored read response from " + connection + " for " + url);
+
+				final int rlen = readInt(response, pos + 4);
+				final long roffset = readLong(response, pos + 8);
+
+				if (roffset != offsets[start + i] || rlen < 0 || pos + 16 + rlen > response.length)
+					throw new XrdException(0, "Unexpected chunk in the vectored read response from " + connection + " for " + url);
+
+				final byte[] chunk = new byte[rlen];
+				System.arraycopy(response, pos + 16, chunk, 0, rlen);
+				ret[start + i] = chunk;
+
+				pos += 16 + rlen;
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Write a block of the file
+	 *
+	 * @param offset
+	 *            position in the remote file
+	 * @param buffer
+	 * @param bufferOffset
+	 * @param length
+	 * @throws IOException
+	 */
+	public void write(final long offset, final byte[] buffer, final int bufferOffset, final int length) throws IOException {
+		final byte[] body = new byte[16];
+
+		System.arraycopy(fhandle, 0, body, 0, 4);
+		writeLong(body, 4, offset);
+
+		request(kXR_write, body, buffer, bufferOffset, length, null);
+	}
+
+	/**
+	 * Close the file on the server (which for files opened with POSC is what makes them persistent) and give the connection back to the pool. If an earlier request was
+	 * interrupted the stream is in an unknown state, so the connection is simply dropped, as {@link #abort()} does.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		if (!clean) {
+			abort();
+			throw new IOException("A request on " + url + " was interrupted, the file was not closed on the server");
+		}
+
+		try {
+			final byte[] body = new byte[16];
+			System.arraycopy(fhandle, 0, body, 0, 4);
+
+			request(kXR_close, body, null, 0, 0, null);
+		}
+		finally {
+			closed = true;
+			XrdConnectionPool.release(connection, clean);
+		}
+	}
+
+	/**
+	 * Give the connection up without telling the server, for example after a failed upload, so that a file opened with POSC is not made persistent
+	 */
+	public void abort() {
+		if (closed)
+			return;
+
+		closed = true;
+		XrdConnectionPool.release(connection, false);
+	}
+
+	@Override
+	public String toString() {
+		return url;
+	}
+}
@@ -0,0 +1,96 @@
+package alien.monitoring;
+
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two buckets (in microseconds). Each reporting interval publishes the number of samples, the average and the 50th, 90th and 99th
+ * percentiles (as the upper bound of the bucket in which they fall, in milliseconds), then starts over.
+ *
+ * @since Oct 17, 2026
+ */
+public class LatencyHistogram implements MonitoringObject {
+
+	/**
+	 * Bucket <code>i</code> holds the values in <code>[2^(i-1), 2^i)</code> microseconds, the last one everything above ~35 minutes
+	 */
+	private static final int BUCKETS = 32;
+
+	private final String name;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * @param name
+	 *            prefix of the published parameters
+	 */
+	public LatencyHistogram(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param nanos
+	 *            duration of one operation, in nanoseconds
+	 */
+	public void addNanos(final long nanos) {
+		final long micros = nanos / 1000;
+
+		final int bucket = micros <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+
+		counts.incrementAndGet(bucket);
+		totalNanos.add(nanos);
+	}
+
+	private static double upperBoundMillis(final int bucket) {
+		return (1L << bucket) / 1000d;
+	}
+
+	@Override
+	public void fillValues(final Vector<String> paramNames, final Vector<Object> paramValues) {
+		final long[] snapshot = new long[BUCKETS];
+
+		long count = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.getAndSet(i, 0);
+			count += snapshot[i];
+		}
+
+		final long nanos = totalNanos.sumThenReset();
+
+		paramNames.add(name + "_cnt");
+		paramValues.add(Long.valueOf(count));
+
+		if (count == 0)
+			return;
+
+		paramNames.add(name + "_avg");
+		paramValues.add(Double.valueOf(nanos / 1000000d / count));
+
+		final double[] percentiles = { 0.5, 0.9, 0.99 };
+		final String[] suffixes = { "_p50", "_p90", "_p99" };
+
+		long seen = 0;
+		int p = 0;
+
+		for (int i = 0; i < BUCKETS && p < percentiles.length; i++) {
+			seen += snapshot[i];
+
+			while (p < percentiles.length && seen >= Math.ceil(count * percentiles[p])) {
+				paramNames.add(name + suffixes[p]);
+				paramValues.add(Double.valueOf(upperBoundMillis(i)));
+				p++;
+			}
+		}
+
+		for (int i = BUCKETS - 1; i >= 0; i--)
+			if (snapshot[i] > 0) {
+				paramNames.add(name + "_max");
+				paramValues.add(Double.valueOf(upperBoundMillis(i)));
+				break;
+			}
+	}
+}
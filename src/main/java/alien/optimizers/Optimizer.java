@@ -22,7 +22,7 @@ public class Optimizer extends Thread {
 			"utils.lfncrawler.LFNCrawler", "alien.optimizers.priority.JobAgentUpdater",
 			"alien.optimizers.priority.InactiveJobHandler", "alien.optimizers.sync.OverwaitingJobHandler", "alien.optimizers.sync.OldJobRemover", "alien.optimizers.sync.CheckJobStatus",
 			"alien.optimizers.priority.PriorityRapidUpdater", "alien.optimizers.priority.PriorityReconciliationService", "alien.optimizers.priority.ActiveUserReconciler",
-			"alien.optimizers.site.SitequeueReconciler"
+			"alien.optimizers.site.SitequeueReconciler", "alien.optimizers.sync.MasterjobCountersReconciler"
 	};
 
 	@Override
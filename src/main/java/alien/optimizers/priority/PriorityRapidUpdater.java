@@ -10,8 +10,11 @@ import alien.priority.CalculateComputedPriority;
 import alien.priority.PriorityRegister;
 import alien.taskQueue.TaskQueueUtils;
 import lazyj.DBFunctions;
+import lazyj.DBFunctions.DBConnection;
 
-import java.util.HashSet;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -95,22 +98,42 @@ public class PriorityRapidUpdater extends Optimizer {
                             .append(registrySize)
                             .append("\n");
 
+                    PriorityRegister.JobCounter.getRegistry().forEach((userId, v) -> {
+                        PriorityRegister.JobCounter delta = registrySnapshot.get(userId);
+                        if (isUserInactive(v) && (delta == null || isUserInactive(delta))) {
+                            logger.log(Level.INFO, "Removing inactive user from registry: " + userId);
+                            count.getAndIncrement();
+                            PriorityRegister.JobCounter.getRegistry().remove(userId);
+                        }
+                    });
+
+                    // only the users with something to flush go to the database, the snapshot is what gets written and later subtracted
+                    registrySnapshot.values().removeIf(PriorityRapidUpdater::isUserInactive);
+
                     try (Timing t2 = new Timing(monitor, "TQ_updatePriority_db_ms")) {
-                        PriorityRegister.JobCounter.getRegistry().forEach((userId, v) -> {
-                            if (isUserInactive(v)) {
-                                logger.log(Level.INFO, "Removing inactive user from registry: " + userId);
-                                count.getAndIncrement();
-                                PriorityRegister.JobCounter.getRegistry().remove(userId);
-                            } else {
-                                executeQueryAndUpdateUserCounter(userId, v, registrySnapshot, registerLog, dbdev);
-                            }
-                            t2.endTiming();
-                            registerLog.append("Flushing values row by row to the database and subtracted ")
-                                    .append(registrySize)
+                        boolean committed = flushSnapshot(registrySnapshot, dbdev);
+                        t2.endTiming();
+
+                        if (committed) {
+                            registrySnapshot.forEach((userId, delta) -> {
+                                PriorityRegister.JobCounter v = PriorityRegister.JobCounter.getRegistry().get(userId);
+                                if (v != null) {
+                                    logAndSubtractUserCounter(userId, v, delta);
+                                }
+                            });
+
+                            registerLog.append("Flushing values in one batch to the database and subtracted ")
+                                    .append(registrySnapshot.size())
                                     .append(" counters completed successfully in ")
                                     .append(t2.getMillis())
-                                    .append(" \n");
-                        });
+                                    .append(" ms\n");
+                        } else {
+                            registerLog.append("Flushing ")
+                                    .append(registrySnapshot.size())
+                                    .append(" counters to the database failed after ")
+                                    .append(t2.getMillis())
+                                    .append(" ms, the deltas are kept for the next cycle\n");
+                        }
                     }
 
                     if (count.get() > 0) {
@@ -137,28 +160,68 @@ public class PriorityRapidUpdater extends Optimizer {
         }
     }
 
-    private static void executeQueryAndUpdateUserCounter(Integer userId, PriorityRegister.JobCounter v, Map<Integer, PriorityRegister.JobCounter> registrySnapshot, StringBuilder registerLog, DBFunctions dbdev) {
-        Timing rtimer = new Timing(monitor, "TQ_single_row_update_ms");
-        rtimer.startTiming();
-        boolean res = dbdev.query(updateUserQuery(userId, v), false);
-        rtimer.endTiming();
-        logQueryTiming(rtimer, userId, registerLog);
-
-        if (res) {
-            PriorityRegister.JobCounter userCounter = registrySnapshot.get(userId);
-            if (userCounter != null) {
-                logAndSubtractUserCounter(userId, v, userCounter);
-            }
+    /**
+     * Apply all the deltas of the snapshot to the PRIORITY table as one JDBC batch, in a single transaction
+     *
+     * @param registrySnapshot deltas to apply, by userId
+     * @param dbdev connection to the database holding the PRIORITY table
+     * @return <code>true</code> if the transaction was committed, <code>false</code> if it was rolled back and the counters must not be touched
+     */
+    private static boolean flushSnapshot(Map<Integer, PriorityRegister.JobCounter> registrySnapshot, DBFunctions dbdev) {
+        if (registrySnapshot.isEmpty()) {
+            return true;
         }
-    }
 
-    private static void logQueryTiming(Timing rtimer, Integer userId, StringBuilder registerLog) {
-        logger.log(Level.INFO, "Flushing values to the database for user: " + userId + " completed in " + rtimer.getMillis() + " ms");
-        registerLog.append("Flushing values to the database for user: ")
-                .append(userId)
-                .append(" completed in ")
-                .append(rtimer.getMillis())
-                .append(" ms\n");
+        DBConnection dbc = dbdev.getConnection();
+
+        if (dbc == null) {
+            logger.log(Level.SEVERE, "PriorityRapidUpdater could not get a connection to flush the counters");
+            return false;
+        }
+
+        try {
+            @SuppressWarnings("resource")
+            Connection conn = dbc.getConnection();
+
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stat = conn.prepareStatement(UPDATE_USER_QUERY)) {
+                for (Map.Entry<Integer, PriorityRegister.JobCounter> entry : registrySnapshot.entrySet()) {
+                    PriorityRegister.JobCounter delta = entry.getValue();
+
+                    stat.setInt(1, delta.getWaiting());
+                    stat.setInt(2, delta.getRunning());
+                    stat.setLong(3, delta.getCputime());
+                    stat.setDouble(4, delta.getCost());
+                    stat.setInt(5, entry.getKey().intValue());
+                    stat.addBatch();
+                }
+
+                stat.setQueryTimeout(60);
+                stat.executeBatch();
+
+                conn.commit();
+
+                if (monitor != null) {
+                    monitor.incrementCounter("TQ_updatePriority_rows", registrySnapshot.size());
+                }
+
+                logger.log(Level.INFO, "Flushed the counters of " + registrySnapshot.size() + " users in one batch");
+
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                logger.log(Level.SEVERE, "Batch update of PRIORITY failed, rolled back", e);
+                return false;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Cannot handle the PRIORITY update transaction", e);
+            return false;
+        } finally {
+            dbc.free();
+        }
     }
 
     private static void logAndSubtractUserCounter(Integer userId, PriorityRegister.JobCounter v, PriorityRegister.JobCounter userCounter) {
@@ -183,14 +246,12 @@ public class PriorityRapidUpdater extends Optimizer {
                 + ", cost: " + v.getCost());
     }
 
-    private static String updateUserQuery(Integer userId, PriorityRegister.JobCounter v) {
-        return "UPDATE PRIORITY SET waiting = GREATEST(0, waiting + " + v.getWaiting()
-                + ", running = GREATEST(0, running + " + v.getRunning()
-                + ", totalRunningTimeLast24h = totalRunningTimeLast24h + " + v.getCputime()
-                + ", totalCpuCostLast24h = totalCpuCostLast24h + " + v.getCost()
-                + ", active = 1"
-                + " WHERE userId = " + userId;
-    }
+    private static final String UPDATE_USER_QUERY = "UPDATE PRIORITY SET waiting = GREATEST(0, waiting + ?)"
+            + ", running = GREATEST(0, running + ?)"
+            + ", totalRunningTimeLast24h = totalRunningTimeLast24h + ?"
+            + ", totalCpuCostLast24h = totalCpuCostLast24h + ?"
+            + ", active = 1"
+            + " WHERE userId = ?";
 
     private static boolean isUserInactive(PriorityRegister.JobCounter v) {
         return (v.getWaiting() == 0 && v.getRunning() == 0 && v.getCputime() == 0 && v.getCost() == 0);
@@ -0,0 +1,74 @@
+package alien.optimizers.sync;
+
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.monitoring.Timing;
+import alien.optimizers.DBSyncUtils;
+import alien.optimizers.Optimizer;
+import alien.taskQueue.MasterjobCounters;
+
+/**
+ * Periodically recompute the per-masterjob subjob counters from QUEUE, fixing whatever the incremental updates have missed
+ *
+ * @since Oct 17, 2026
+ */
+public class MasterjobCountersReconciler extends Optimizer {
+    static final Logger logger = ConfigUtils.getLogger(MasterjobCountersReconciler.class.getCanonicalName());
+
+    static final Monitor monitor = MonitorFactory.getMonitor(MasterjobCountersReconciler.class.getCanonicalName());
+
+    /**
+     * How far back to look for masterjobs, the same window as the masterjob listings
+     */
+    private static final int DAYS = ConfigUtils.getConfig().geti("alien.optimizers.sync.MasterjobCountersReconciler.days", 14);
+
+    @Override
+    public void run() {
+        this.setSleepPeriod(Duration.ofMinutes(30).toMillis()); // 30 minutes
+        int frequency = (int) this.getSleepPeriod();
+
+        if (!MasterjobCounters.isEnabled()) {
+            logger.log(Level.INFO, "Masterjob counters are not enabled, MasterjobCountersReconciler exits");
+            return;
+        }
+
+        while (true) {
+            try {
+                if (DBSyncUtils.updatePeriodic(frequency, MasterjobCountersReconciler.class.getCanonicalName(), this)) {
+                    reconcile();
+                }
+            } catch (Exception e) {
+                try {
+                    logger.log(Level.SEVERE, "Exception executing optimizer", e);
+                    DBSyncUtils.registerException(MasterjobCountersReconciler.class.getCanonicalName(), e);
+                } catch (Exception e2) {
+                    logger.log(Level.SEVERE, "Cannot register exception in the database", e2);
+                }
+            }
+
+            try {
+                logger.log(Level.INFO, "MasterjobCountersReconciler sleeping for " + this.getSleepPeriod() + " ms");
+                sleep(this.getSleepPeriod());
+            } catch (InterruptedException e) {
+                logger.log(Level.SEVERE, "MasterjobCountersReconciler interrupted", e);
+            }
+        }
+    }
+
+    private static void reconcile() {
+        try (Timing t = new Timing(monitor, "MasterjobCountersReconciler_ms")) {
+            int count = MasterjobCounters.reconcile(DAYS);
+
+            String message = count >= 0 ? "Reconciled the subjob counters of " + count + " masterjobs in " + t.getMillis() + " ms"
+                    : "Could not reconcile the masterjob counters";
+
+            logger.log(Level.INFO, message);
+            DBSyncUtils.registerLog(MasterjobCountersReconciler.class.getCanonicalName(), message + "\n");
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package alien.se;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import alien.catalogue.PFN;
+
+/**
+ * Immutable snapshot of the site to SE distances. Sites get a dense index and each of them a row of read and write ranks indexed by SE number, with the SE demotion factors
+ * already added. Missing ranks are NaN. Each row also has the SEs in increasing order of their rank, so that the closest SEs of a site don't need to be sorted at every
+ * request. {@link SEUtils} builds a new table when either the distances or the SE definitions are reloaded and swaps it in as a whole.
+ *
+ * @since Oct 17, 2026
+ */
+public final class SEDistanceTable {
+
+	/**
+	 * Upper case site name to row index
+	 */
+	private final Map<String, Integer> siteIndex;
+
+	private final String[] siteNames;
+
+	private final double[][] readRanks;
+
+	private final double[][] writeRanks;
+
+	private final int[][] readOrder;
+
+	private final int[][] writeOrder;
+
+	/**
+	 * Names as they were passed by the callers, resolved to a row (or -1), to skip the normalization and the flexible matching the next time
+	 */
+	private final Map<String, Integer> exactLookups = new ConcurrentHashMap<>();
+
+	private final Map<String, Integer> flexibleLookups = new ConcurrentHashMap<>();
+
+	private static final int MAX_LOOKUPS = 10000;
+
+	private static final Integer NOT_FOUND = Integer.valueOf(-1);
+
+	/**
+	 * @param distances
+	 *            site name to (SE number to distance), as found in the SEDistance table
+	 * @param ses
+	 *            the known SEs by number, for their demotion factors. SEs that are not in this map are not demoted.
+	 */
+	public SEDistanceTable(final Map<String, Map<Integer, Double>> distances, final Map<Integer, SE> ses) {
+		int maxSE = 0;
+
+		for (final Map<Integer, Double> row : distances.values())
+			for (final Integer seNumber : row.keySet())
+				maxSE = Math.max(maxSE, seNumber.intValue());
+
+		final int sites = distances.size();
+
+		siteIndex = new HashMap<>(sites * 2);
+		siteNames = new String[sites];
+		readRanks = new double[sites][];
+		writeRanks = new double[sites][];
+		readOrder = new int[sites][];
+		writeOrder = new int[sites][];
+
+		int idx = 0;
+
+		for (final Map.Entry<String, Map<Integer, Double>> entry : distances.entrySet()) {
+			final String name = entry.getKey().trim().toUpperCase();
+
+			siteIndex.put(name, Integer.valueOf(idx));
+			siteNames[idx] = name;
+
+			final double[] read = new double[maxSE + 1];
+			final double[] write = new double[maxSE + 1];
+
+			Arrays.fill(read, Double.NaN);
+			Arrays.fill(write, Double.NaN);
+
+			final int[] order = new int[entry.getValue().size()];
+			int cnt = 0;
+
+			for (final Map.Entry<Integer, Double> rank : entry.getValue().entrySet()) {
+				final int seNumber = rank.getKey().intValue();
+
+				if (seNumber < 0 || rank.getValue() == null)
+					continue;
+
+				final double distance = rank.getValue().doubleValue();
+				final SE se = ses != null ? ses.get(rank.getKey()) : null;
+
+				read[seNumber] = distance + (se != null ? se.demoteRead : 0);
+				write[seNumber] = distance + (se != null ? se.demoteWrite : 0);
+
+				order[cnt++] = seNumber;
+			}
+
+			readRanks[idx] = read;
+			writeRanks[idx] = write;
+			readOrder[idx] = sortedByRank(Arrays.copyOf(order, cnt), read);
+			writeOrder[idx] = sortedByRank(Arrays.copyOf(order, cnt), write);
+
+			idx++;
+		}
+	}
+
+	private static int[] sortedByRank(final int[] seNumbers, final double[] ranks) {
+		final Integer[] boxed = new Integer[seNumbers.length];
+
+		for (int i = 0; i < seNumbers.length; i++)
+			boxed[i] = Integer.valueOf(seNumbers[i]);
+
+		Arrays.sort(boxed, (a, b) -> compareRanks(ranks[a.intValue()], ranks[b.intValue()]));
+
+		for (int i = 0; i < boxed.length; i++)
+			seNumbers[i] = boxed[i].intValue();
+
+		return seNumbers;
+	}
+
+	/**
+	 * Same order as the comparators used before: lower ranks first, unknown ranks last
+	 */
+	private static int compareRanks(final double r1, final double r2) {
+		if (Double.isNaN(r1))
+			return Double.isNaN(r2) ? 0 : 1;
+
+		if (Double.isNaN(r2))
+			return -1;
+
+		return r1 < r2 ? -1 : (r1 > r2 ? 1 : 0);
+	}
+
+	/**
+	 * @return number of sites with distance information
+	 */
+	public int size() {
+		return siteNames.length;
+	}
+
+	/**
+	 * @return the (upper case) names of the sites with distance information
+	 */
+	public List<String> getSiteNames() {
+		return Collections.unmodifiableList(Arrays.asList(siteNames));
+	}
+
+	/**
+	 * @param site
+	 *            site name, in any case
+	 * @param flexibleMatching
+	 *            <code>true</code> to also accept a prefix or a suffix of a site name
+	 * @return the row of this site, or <code>-1</code> if the site is not known
+	 */
+	public int getSiteIndex(final String site, final boolean flexibleMatching) {
+		if (site == null)
+			return -1;
+
+		final Map<String, Integer> lookups = flexibleMatching ? flexibleLookups : exactLookups;
+
+		Integer ret = lookups.get(site);
+
+		if (ret != null)
+			return ret.intValue();
+
+		final String name = site.trim().toUpperCase();
+
+		ret = siteIndex.get(name);
+
+		if (ret == null && flexibleMatching)
+			for (int i = 0; i < siteNames.length; i++)
+				if (siteNames[i].startsWith(name) || siteNames[i].endsWith(name)) {
+					ret = Integer.valueOf(i);
+					break;
+				}
+
+		if (ret == null)
+			ret = NOT_FOUND;
+
+		if (lookups.size() < MAX_LOOKUPS)
+			lookups.put(site, ret);
+
+		return ret.intValue();
+	}
+
+	/**
+	 * @param siteIdx
+	 *            row index, as returned by {@link #getSiteIndex(String, boolean)}
+	 * @param seNumber
+	 * @param write
+	 *            <code>true</code> for writing, <code>false</code> for reading
+	 * @return the rank of this SE for this site, including the SE demotion, or NaN if unknown
+	 */
+	public double getRank(final int siteIdx, final int seNumber, final boolean write) {
+		if (siteIdx < 0)
+			return Double.NaN;
+
+		final double[] ranks = write ? writeRanks[siteIdx] : readRanks[siteIdx];
+
+		return seNumber >= 0 && seNumber < ranks.length ? ranks[seNumber] : Double.NaN;
+	}
+
+	/**
+	 * @param siteIdx
+	 *            row index, as returned by {@link #getSiteIndex(String, boolean)}
+	 * @param write
+	 *            <code>true</code> for writing, <code>false</code> for reading
+	 * @return the SE numbers with a known rank for this site, closest first. Not to be modified.
+	 */
+	public int[] getOrder(final int siteIdx, final boolean write) {
+		return write ? writeOrder[siteIdx] : readOrder[siteIdx];
+	}
+
+	/**
+	 * Stable sort of the given objects by the rank of their SE for this site, unknown ranks last
+	 *
+	 * @param items
+	 *            objects to sort, the collection is not modified
+	 * @param siteIdx
+	 *            row index, as returned by {@link #getSiteIndex(String, boolean)}
+	 * @param seNumber
+	 *            how to get the SE number of one object
+	 * @param removeUnknown
+	 *            whether to drop the objects on SEs without a rank for this site
+	 * @param write
+	 *            <code>true</code> for writing, <code>false</code> for reading
+	 * @return the sorted list
+	 */
+	public <T> List<T> sort(final Collection<T> items, final int siteIdx, final ToIntFunction<T> seNumber, final boolean removeUnknown, final boolean write) {
+		final int n = items.size();
+
+		@SuppressWarnings("unchecked")
+		final T[] values = (T[]) new Object[n];
+		final double[] ranks = new double[n];
+
+		int cnt = 0;
+
+		for (final T item : items) {
+			final double rank = getRank(siteIdx, seNumber.applyAsInt(item), write);
+
+			if (removeUnknown && Double.isNaN(rank))
+				continue;
+
+			values[cnt] = item;
+			ranks[cnt] = rank;
+			cnt++;
+		}
+
+		// insertion sort, the replica lists are short and mostly come in the same order
+		for (int i = 1; i < cnt; i++) {
+			final T v = values[i];
+			final double r = ranks[i];
+
+			int j = i - 1;
+
+			while (j >= 0 && compareRanks(ranks[j], r) > 0) {
+				values[j + 1] = values[j];
+				ranks[j + 1] = ranks[j];
+				j--;
+			}
+
+			values[j + 1] = v;
+			ranks[j + 1] = r;
+		}
+
+		final List<T> ret = new ArrayList<>(cnt);
+
+		for (int i = 0; i < cnt; i++)
+			ret.add(values[i]);
+
+		return ret;
+	}
+
+	/**
+	 * @param pfns
+	 * @param siteIdx
+	 *            row index, as returned by {@link #getSiteIndex(String, boolean)}
+	 * @param removeBrokenSEs
+	 * @param write
+	 *            <code>true</code> for writing, <code>false</code> for reading
+	 * @return the replicas sorted by their distance to the site
+	 */
+	public List<PFN> sortPFNs(final Collection<PFN> pfns, final int siteIdx, final boolean removeBrokenSEs, final boolean write) {
+		return sort(pfns, siteIdx, (pfn) -> pfn.seNumber, removeBrokenSEs, write);
+	}
+}
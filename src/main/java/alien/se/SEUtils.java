@@ -62,6 +62,11 @@ public final class SEUtils {
 
 	private static Map<String, Map<Integer, Double>> seDistance = null;
 
+	/**
+	 * Dense form of {@link #seDistance} combined with the SE demotions, rebuilt whenever either of them is reloaded
+	 */
+	private static volatile SEDistanceTable distanceTable = null;
+
 	private static final String SEDISTANCE_QUERY;
 
 	private static final int maxAllowedRandomPFNs = 10000;
@@ -149,6 +154,7 @@ public final class SEUtils {
 
 				if (ses.size() > 0 || seCache == null) {
 					seCache = ses;
+					rebuildDistanceTable();
 					return true;
 				}
 			}
@@ -327,57 +333,26 @@ public final class SEUtils {
 
 				if (newDistance.size() > 0 || seDistance == null) {
 					seDistance = newDistance;
+					rebuildDistanceTable();
 				}
 			}
 		}
 	}
 
-	private static final class PFNComparatorBySite implements Serializable, Comparator<PFN> {
-		/**
-		 *
-		 */
-		private static final long serialVersionUID = 3852623282834261566L;
-
-		private final Map<Integer, Double> distance;
-
-		private final boolean write;
-
-		public PFNComparatorBySite(final Map<Integer, Double> distance, final boolean write) {
-			this.distance = distance;
-			this.write = write;
-		}
-
-		@Override
-		public int compare(final PFN o1, final PFN o2) {
-			final Double distance1 = distance.get(Integer.valueOf(o1.seNumber));
-			final Double distance2 = distance.get(Integer.valueOf(o2.seNumber));
-
-			if (distance1 == null && distance2 == null)
-				// can't decide which is better, there is no ranking info for
-				// either
-				return 0;
-
-			if (distance1 != null && distance2 != null) {
-				// both ranks known, the smallest rank goes higher
-				double diff = distance1.doubleValue() - distance2.doubleValue();
-
-				final SE se1 = o1.getSE();
-				final SE se2 = o2.getSE();
+	private static synchronized void rebuildDistanceTable() {
+		final Map<String, Map<Integer, Double>> distances = seDistance;
 
-				if (se1 != null && se2 != null)
-					diff += write ? (se1.demoteWrite - se2.demoteWrite) : (se1.demoteRead - se2.demoteRead);
-
-				return Double.compare(diff, 0);
-			}
-
-			if (distance1 != null)
-				// rank is known only for the first one, then this is better
-				return -1;
+		if (distances == null)
+			return;
 
-			// the only case left, second one is best
-			return 1;
-		}
+		distanceTable = new SEDistanceTable(distances, seCache);
+	}
 
+	/**
+	 * @return the current ranking table, or <code>null</code> if the distances are not known (yet)
+	 */
+	public static SEDistanceTable getDistanceTable() {
+		return distanceTable;
 	}
 
 	/**
@@ -405,27 +380,30 @@ public final class SEUtils {
 		if (site == null || site.length() == 0)
 			return getDefaultSEList(write);
 
-		if (seDistance == null || seDistance.size() == 0)
+		final SEDistanceTable table = distanceTable;
+
+		if (table == null || table.size() == 0)
 			return getDefaultSEList(write);
 
-		final String sitename = site.trim().toUpperCase();
+		final int siteIdx = table.getSiteIndex(site, false);
 
-		final Map<Integer, Double> distance = seDistance.get(sitename);
+		if (siteIdx < 0)
+			return getDefaultSEList(write);
+
+		final int[] order = table.getOrder(siteIdx, write);
 
-		if (distance == null || distance.size() == 0)
+		if (order.length == 0)
 			return getDefaultSEList(write);
 
-		final List<SE> ret = new ArrayList<>(distance.size());
+		final List<SE> ret = new ArrayList<>(order.length);
 
-		for (final Map.Entry<Integer, Double> me : distance.entrySet()) {
-			final SE se = getSE(me.getKey());
+		for (final int seNumber : order) {
+			final SE se = getSE(seNumber);
 
 			if (se != null && (exSEs == null || !exSEs.contains(se)))
 				ret.add(se);
 		}
 
-		Collections.sort(ret, new SEComparator(distance, write));
-
 		return ret;
 	}
 
@@ -531,35 +509,20 @@ public final class SEUtils {
 		if (pfns == null)
 			return null;
 
-		final List<PFN> ret = new ArrayList<>(pfns);
-
-		if (ret.size() <= 1 || sSite == null || sSite.length() == 0)
-			return ret;
-
-		if (seDistance == null)
-			return ret;
+		if (pfns.size() <= 1 || sSite == null || sSite.length() == 0)
+			return new ArrayList<>(pfns);
 
-		final Map<Integer, Double> ranks = seDistance.get(sSite.trim().toUpperCase());
+		final SEDistanceTable table = distanceTable;
 
-		if (ranks == null)
-			return ret;
+		if (table == null)
+			return new ArrayList<>(pfns);
 
-		if (removeBrokenSEs) {
-			final Iterator<PFN> it = ret.iterator();
+		final int siteIdx = table.getSiteIndex(sSite, false);
 
-			while (it.hasNext()) {
-				final PFN pfn = it.next();
+		if (siteIdx < 0)
+			return new ArrayList<>(pfns);
 
-				if (!ranks.containsKey(Integer.valueOf(pfn.seNumber)))
-					it.remove();
-			}
-		}
-
-		final Comparator<PFN> c = new PFNComparatorBySite(ranks, write);
-
-		Collections.sort(ret, c);
-
-		return ret;
+		return table.sortPFNs(pfns, siteIdx, removeBrokenSEs, write);
 	}
 
 	/**
@@ -658,32 +621,19 @@ public final class SEUtils {
 		if ((ret.size() <= 1 || sSite == null || sSite.length() == 0) && (!removeBrokenSEs))
 			return ret;
 
-		if (seDistance == null)
+		final SEDistanceTable table = distanceTable;
+
+		if (table == null)
 			return null;
 
-		final Map<Integer, Double> ranks = sSite != null ? seDistance.get(sSite.trim().toUpperCase()) : null;
+		final int siteIdx = table.getSiteIndex(sSite, false);
 
-		if (ranks == null)
+		if (siteIdx < 0)
 			// missing information about this site, leave the storages as they
 			// are
 			return ret;
 
-		if (removeBrokenSEs) {
-			final Iterator<SE> it = ret.iterator();
-
-			while (it.hasNext()) {
-				final SE se = it.next();
-
-				if (!ranks.containsKey(Integer.valueOf(se.seNumber)))
-					it.remove();
-			}
-		}
-
-		final Comparator<SE> c = new SEComparator(ranks, write);
-
-		Collections.sort(ret, c);
-
-		return ret;
+		return table.sort(ret, siteIdx, (se) -> se.seNumber, removeBrokenSEs, write);
 	}
 
 	/**
@@ -731,30 +681,16 @@ public final class SEUtils {
 		if (se == null)
 			return null;
 
-		if (seDistance == null)
-			return null;
-
-		final String lowerSiteName = sSite.trim().toUpperCase();
-
-		Map<Integer, Double> ranks = seDistance.get(lowerSiteName);
+		final SEDistanceTable table = distanceTable;
 
-		if (ranks == null && flexibleMatching)
-			for (Map.Entry<String, Map<Integer, Double>> entry : seDistance.entrySet())
-				if (entry.getKey().startsWith(lowerSiteName) || entry.getKey().endsWith(lowerSiteName)) {
-					ranks = entry.getValue();
-					break;
-				}
-
-		if (ranks == null)
+		if (table == null)
 			return null;
 
-		final Double distance = ranks.get(Integer.valueOf(se.seNumber));
+		final double d = table.getRank(table.getSiteIndex(sSite, flexibleMatching), se.seNumber, write);
 
-		if (distance == null)
+		if (Double.isNaN(d))
 			return null;
 
-		final double d = distance.doubleValue() + (write ? se.demoteWrite : se.demoteRead);
-
 		return Double.valueOf(d);
 	}
 
@@ -3,6 +3,8 @@
  */
 package alien.servlets;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
@@ -11,6 +13,14 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.lang.management.ManagementFactory;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,9 +28,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.NavigableSet;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -37,6 +48,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import alien.config.ConfigUtils;
+import alien.monitoring.LatencyHistogram;
 import alien.monitoring.Monitor;
 import alien.monitoring.MonitorFactory;
 import alien.monitoring.Timing;
@@ -143,31 +155,36 @@ public class TextCache extends HttpServlet {
 						long soonestToExpire = 0;
 						long latestToExpire = now;
 
-						synchronized (namespace) {
-							final Iterator<Map.Entry<String, CacheValue>> it = namespace.cache.entrySet().iterator();
+						int size = 0;
 
-							while (it.hasNext()) {
-								final Map.Entry<String, CacheValue> entry = it.next();
+						for (final NotifyLRUMap segment : namespace.segments)
+							synchronized (segment) {
+								final Iterator<Map.Entry<String, CacheValue>> it = segment.entrySet().iterator();
 
-								final long expires = entry.getValue().expires;
+								while (it.hasNext()) {
+									final Map.Entry<String, CacheValue> entry = it.next();
 
-								if (expires < now) {
-									notifyEntryRemoved(namespace, entry.getKey(), entry.getValue(), true, "EXPIRED_");
+									final long expires = entry.getValue().expires;
 
-									it.remove();
-								}
-								else {
-									if (soonestToExpire == 0 || expires < soonestToExpire)
-										soonestToExpire = expires;
+									if (expires < now) {
+										notifyEntryRemoved(namespace, entry.getKey(), entry.getValue(), true, "EXPIRED_");
+
+										it.remove();
+									}
+									else {
+										if (soonestToExpire == 0 || expires < soonestToExpire)
+											soonestToExpire = expires;
 
-									if (expires > latestToExpire)
-										latestToExpire = expires;
+										if (expires > latestToExpire)
+											latestToExpire = expires;
+									}
 								}
+
+								size += segment.size();
 							}
 
-							parameters.add(nsName + "_size");
-							values.add(Integer.valueOf(namespace.cache.size()));
-						}
+						parameters.add(nsName + "_size");
+						values.add(Integer.valueOf(size));
 
 						if (soonestToExpire > 0) {
 							parameters.add(nsName + "_hours");
@@ -213,10 +230,8 @@ public class TextCache extends HttpServlet {
 			for (final Map.Entry<String, Namespace> entry : namespaces.entrySet()) {
 				final Namespace namespace = entry.getValue();
 
-				synchronized (namespace) {
-					for (final Map.Entry<String, CacheValue> entryToDelete : namespace.cache.entrySet())
-						notifyEntryRemoved(namespace, entryToDelete.getKey(), entryToDelete.getValue(), false, "SHUTDOWN_");
-				}
+				for (final Map.Entry<String, CacheValue> entryToDelete : namespace.entries())
+					notifyEntryRemoved(namespace, entryToDelete.getKey(), entryToDelete.getValue(), false, "SHUTDOWN_");
 			}
 
 			closeStreams();
@@ -254,14 +269,19 @@ public class TextCache extends HttpServlet {
 	 * @param key
 	 * @param value
 	 * @param removeFromKeysSet
+	 * @param monitorPrefix
 	 */
-	static synchronized void notifyEntryRemoved(final Namespace namespace, final String key, final CacheValue value, final boolean removeFromKeysSet, final String monitorPrefix) {
+	static void notifyEntryRemoved(final Namespace namespace, final String key, final CacheValue value, final boolean removeFromKeysSet, final String monitorPrefix) {
 		if (removeFromKeysSet)
 			namespace.keys.remove(key);
 
 		if (monitor != null)
 			monitor.incrementCounter(monitorPrefix + namespace.name);
 
+		logRemoval(namespace, key, value);
+	}
+
+	private static synchronized void logRemoval(final Namespace namespace, final String key, final CacheValue value) {
 		if (requestLogger == null)
 			try {
 				requestLogger = new PrintWriter(new OutputStreamWriter(new MyGZIPOutputStream("cache.log-" + System.currentTimeMillis() + ".gz")));
@@ -318,13 +338,26 @@ public class TextCache extends HttpServlet {
 
 	}
 
+	/**
+	 * Number of independently locked segments of each namespace, rounded down to a power of two
+	 */
+	private static final int STRIPES = Integer.highestOneBit(Math.max(ConfigUtils.getConfig().geti("alien.servlets.TextCache.stripes", 16), 1));
+
+	/**
+	 * The entries of a namespace are spread over several LRU segments, each with its own lock, so that concurrent requests only contend when they hit the same segment. The keys
+	 * are also kept in a sorted set, used to find the entries sharing a prefix without going through all of them.
+	 */
 	private static final class Namespace implements Serializable {
-		private static final long serialVersionUID = 1L;
+		private static final long serialVersionUID = 2L;
 
-		public final Map<String, CacheValue> cache;
-		public final Set<String> keys;
+		public final NotifyLRUMap[] segments;
+		public final NavigableSet<String> keys;
 		public final String name;
 
+		public final transient LatencyHistogram getLatency;
+		public final transient LatencyHistogram setLatency;
+		public final transient LatencyHistogram clearLatency;
+
 		public Namespace(final String name) {
 			int size;
 
@@ -342,8 +375,105 @@ public class TextCache extends HttpServlet {
 				size = 50000;
 			}
 
-			cache = new NotifyLRUMap(size, this);
+			final int stripes = Math.min(STRIPES, Integer.highestOneBit(Math.max(size, 1)));
+
+			segments = new NotifyLRUMap[stripes];
+
+			for (int i = 0; i < stripes; i++)
+				segments[i] = new NotifyLRUMap((size + stripes - 1) / stripes, this);
+
 			keys = new ConcurrentSkipListSet<>();
+
+			getLatency = new LatencyHistogram(name + "_get_ms");
+			setLatency = new LatencyHistogram(name + "_set_ms");
+			clearLatency = new LatencyHistogram(name + "_clear_ms");
+
+			if (monitor != null) {
+				monitor.addMonitoring("latency_get_" + name, getLatency);
+				monitor.addMonitoring("latency_set_" + name, setLatency);
+				monitor.addMonitoring("latency_clear_" + name, clearLatency);
+			}
+		}
+
+		private NotifyLRUMap segment(final String key) {
+			final int h = key.hashCode();
+
+			return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+		}
+
+		public CacheValue get(final String key) {
+			final NotifyLRUMap segment = segment(key);
+
+			synchronized (segment) {
+				return segment.get(key);
+			}
+		}
+
+		public CacheValue put(final String key, final CacheValue value) {
+			final NotifyLRUMap segment = segment(key);
+
+			synchronized (segment) {
+				return segment.put(key, value);
+			}
+		}
+
+		public CacheValue remove(final String key) {
+			final NotifyLRUMap segment = segment(key);
+
+			synchronized (segment) {
+				return segment.remove(key);
+			}
+		}
+
+		public int size() {
+			int size = 0;
+
+			for (final NotifyLRUMap segment : segments)
+				synchronized (segment) {
+					size += segment.size();
+				}
+
+			return size;
+		}
+
+		/**
+		 * @return a snapshot of the current entries
+		 */
+		public List<Map.Entry<String, CacheValue>> entries() {
+			final List<Map.Entry<String, CacheValue>> ret = new ArrayList<>();
+
+			for (final NotifyLRUMap segment : segments)
+				synchronized (segment) {
+					ret.addAll(segment.entrySet());
+				}
+
+			return ret;
+		}
+
+		/**
+		 * Remove all entries, notifying each removal
+		 *
+		 * @param monitorPrefix
+		 */
+		public void clear(final String monitorPrefix) {
+			for (final NotifyLRUMap segment : segments)
+				synchronized (segment) {
+					for (final Map.Entry<String, CacheValue> entryToDelete : segment.entrySet())
+						notifyEntryRemoved(this, entryToDelete.getKey(), entryToDelete.getValue(), true, monitorPrefix);
+
+					segment.clear();
+				}
+		}
+
+		/**
+		 * @param prefix
+		 * @return the keys starting with the given prefix, all of them for the empty string. Removing from the iterator removes from the key set.
+		 */
+		public Iterator<String> keysStartingWith(final String prefix) {
+			if (prefix.length() == 0)
+				return keys.iterator();
+
+			return keys.subSet(prefix, true, prefix + Character.MAX_VALUE, false).iterator();
 		}
 
 		@Override
@@ -353,16 +483,55 @@ public class TextCache extends HttpServlet {
 	}
 
 	private static final Namespace getNamespace(final String name) {
-		Namespace ret = namespaces.get(name);
+		return namespaces.computeIfAbsent(name, Namespace::new);
+	}
 
-		if (ret != null)
-			return ret;
+	/**
+	 * @param pattern
+	 *            a regular expression
+	 * @return the literal text that all strings fully matching the pattern start with, possibly empty
+	 */
+	static String literalPrefix(final String pattern) {
+		int depth = 0;
+		boolean inClass = false;
+
+		// a top level alternation means there is no common prefix
+		for (int i = 0; i < pattern.length(); i++) {
+			final char c = pattern.charAt(i);
+
+			if (c == '\\')
+				i++;
+			else if (inClass) {
+				if (c == ']')
+					inClass = false;
+			}
+			else if (c == '[')
+				inClass = true;
+			else if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '|' && depth == 0)
+				return "";
+		}
+
+		final StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < pattern.length(); i++) {
+			final char c = pattern.charAt(i);
 
-		ret = new Namespace(name);
+			if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+				// the previous character is optional
+				if ((c == '?' || c == '*' || c == '{') && sb.length() > 0)
+					sb.setLength(sb.length() - 1);
 
-		namespaces.put(name, ret);
+				break;
+			}
+
+			sb.append(c);
+		}
 
-		return ret;
+		return sb.toString();
 	}
 
 	private static long slowQueryThreshold = 0;
@@ -379,6 +548,232 @@ public class TextCache extends HttpServlet {
 		return slowQueryThreshold;
 	}
 
+	/**
+	 * File in which the namespaces are periodically saved, to be reloaded when the servlet starts again. Empty to disable the snapshots.
+	 */
+	private static final String snapshotFile = ConfigUtils.getConfig().gets("alien.servlets.TextCache.snapshot", "TextCache.snapshot").trim();
+
+	/**
+	 * How often to save the snapshot, in seconds
+	 */
+	private static final long snapshotInterval = ConfigUtils.getConfig().getl("alien.servlets.TextCache.snapshotInterval", 300);
+
+	/**
+	 * "TCS1", followed by the time when the snapshot was written, then for each namespace a <code>1</code> byte, its name and the number of entries, each of them as key, expiry
+	 * time, number of accesses and value. A <code>0</code> byte ends the file. Strings are written as their UTF-8 encoded length followed by the bytes.
+	 */
+	private static final int SNAPSHOT_MAGIC = 0x54435331;
+
+	private static SnapshotThread snapshotThread = null;
+
+	/**
+	 * Serializes the snapshot operations, separate from the class lock that protects the removal log
+	 */
+	private static final Object snapshotLock = new Object();
+
+	private static final class SnapshotThread extends Thread {
+		public SnapshotThread() {
+			setName("alien.servlets.TextCache.SnapshotThread");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					Thread.sleep(snapshotInterval * 1000);
+				}
+				catch (@SuppressWarnings("unused") final InterruptedException ie) {
+					return;
+				}
+
+				writeSnapshot();
+			}
+		}
+	}
+
+	private static void writeString(final DataOutputStream dos, final String s) throws IOException {
+		final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+
+		dos.writeInt(b.length);
+		dos.write(b);
+	}
+
+	private static String readString(final ByteBuffer bb) throws IOException {
+		final int length = bb.getInt();
+
+		if (length < 0 || length > bb.remaining())
+			throw new IOException("Invalid string length " + length + " at offset " + bb.position());
+
+		final byte[] b = new byte[length];
+		bb.get(b);
+
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Save the current content of all namespaces, skipping the entries that have already expired. The file is written next to the target and then renamed over it, so a crash
+	 * while writing leaves the previous snapshot in place.
+	 */
+	static void writeSnapshot() {
+		if (snapshotFile.length() == 0)
+			return;
+
+		synchronized (snapshotLock) {
+			writeSnapshot(new File(snapshotFile));
+		}
+	}
+
+	private static void writeSnapshot(final File target) {
+		final File tmp = new File(target.getPath() + ".tmp");
+
+		final long now = System.currentTimeMillis();
+
+		int count = 0;
+
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1024 * 1024))) {
+			dos.writeInt(SNAPSHOT_MAGIC);
+			dos.writeLong(now);
+
+			for (final Namespace namespace : namespaces.values()) {
+				final List<Map.Entry<String, CacheValue>> entries = namespace.entries();
+
+				entries.removeIf((e) -> e.getValue().expires < now);
+
+				dos.writeByte(1);
+				writeString(dos, namespace.name);
+				dos.writeInt(entries.size());
+
+				for (final Map.Entry<String, CacheValue> entry : entries) {
+					final CacheValue cv = entry.getValue();
+
+					writeString(dos, entry.getKey());
+					dos.writeLong(cv.expires);
+					dos.writeInt(cv.accesses.intValue());
+					writeString(dos, cv.value);
+				}
+
+				count += entries.size();
+			}
+
+			dos.writeByte(0);
+		}
+		catch (final IOException ioe) {
+			System.err.println("Cannot write the TextCache snapshot to " + tmp.getAbsolutePath() + " : " + ioe.getMessage());
+			tmp.delete();
+			return;
+		}
+
+		try {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final IOException ioe) {
+			System.err.println("Cannot rename " + tmp.getAbsolutePath() + " to " + target.getAbsolutePath() + " : " + ioe.getMessage());
+			tmp.delete();
+			return;
+		}
+
+		if (monitor != null) {
+			monitor.sendParameter("snapshot_entries", Integer.valueOf(count));
+			monitor.sendParameter("snapshot_size", Long.valueOf(target.length()));
+			monitor.sendParameter("snapshot_ms", Long.valueOf(System.currentTimeMillis() - now));
+		}
+	}
+
+	/**
+	 * Load the entries saved by {@link #writeSnapshot()}, skipping the ones that expired in the meantime. A truncated or corrupted file is loaded up to the first inconsistency.
+	 */
+	static void loadSnapshot() {
+		if (snapshotFile.length() == 0)
+			return;
+
+		final File f = new File(snapshotFile);
+
+		if (!f.exists())
+			return;
+
+		final long now = System.currentTimeMillis();
+
+		int loaded = 0;
+		int expired = 0;
+
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("file too large to be mapped: " + channel.size());
+
+			final MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (bb.remaining() < Integer.BYTES + Long.BYTES || bb.getInt() != SNAPSHOT_MAGIC)
+				throw new IOException("not a snapshot file");
+
+			final long written = bb.getLong();
+
+			while (bb.get() == 1) {
+				final Namespace namespace = getNamespace(readString(bb));
+
+				final int entries = bb.getInt();
+
+				for (int i = 0; i < entries; i++) {
+					final String key = readString(bb);
+					final long expires = bb.getLong();
+					final int accesses = bb.getInt();
+					final String value = readString(bb);
+
+					if (expires < now) {
+						expired++;
+						continue;
+					}
+
+					final CacheValue cv = new CacheValue(value.indexOf("eof") >= 0 ? StringFactory.get(value) : value, expires);
+					cv.accesses.set(accesses);
+
+					final CacheValue old = namespace.put(key, cv);
+
+					if (old != null)
+						notifyEntryRemoved(namespace, key, old, false, "OVERWRITE_");
+					else
+						namespace.keys.add(key);
+
+					loaded++;
+				}
+			}
+
+			System.err.println("TextCache: loaded " + loaded + " entries from the snapshot taken at " + new Date(written) + ", skipped " + expired + " expired ones, in "
+					+ (System.currentTimeMillis() - now) + "ms");
+		}
+		catch (final IOException | BufferUnderflowException e) {
+			System.err.println("TextCache: cannot (fully) load the snapshot from " + f.getAbsolutePath() + ", " + loaded + " entries were loaded: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void init() throws ServletException {
+		super.init();
+
+		synchronized (snapshotLock) {
+			if (snapshotThread == null && snapshotFile.length() > 0) {
+				loadSnapshot();
+
+				snapshotThread = new SnapshotThread();
+				snapshotThread.start();
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		synchronized (snapshotLock) {
+			if (snapshotThread != null) {
+				snapshotThread.interrupt();
+				snapshotThread = null;
+
+				writeSnapshot(new File(snapshotFile));
+			}
+		}
+
+		super.destroy();
+	}
+
 	@Override
 	protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 		try (Timing timing = new Timing(monitor, "ms_to_answer")) {
@@ -412,13 +807,7 @@ public class TextCache extends HttpServlet {
 					final Namespace namespace = entry.getValue();
 
 					if ("default".equals(ns) || namespace.name.equals(ns))
-						synchronized (namespace) {
-							for (final Map.Entry<String, CacheValue> entryToDelete : namespace.cache.entrySet())
-								notifyEntryRemoved(namespace, entryToDelete.getKey(), entryToDelete.getValue(), false, "CLEAN_");
-
-							namespace.cache.clear();
-							namespace.keys.clear();
-						}
+						namespace.clear("CLEAN_");
 				}
 
 				System.err.println("Clean request came from " + request.getRemoteAddr() + " / " + request.getHeader("User-Agent") + " for ns " + ns);
@@ -433,22 +822,22 @@ public class TextCache extends HttpServlet {
 
 					long hits = 0;
 
-					int nssize;
+					final List<Map.Entry<String, CacheValue>> entries = namespace.entries();
 
-					synchronized (namespace) {
-						for (final CacheValue c : namespace.cache.values()) {
-							final int size = c.value.length();
+					for (final Map.Entry<String, CacheValue> me : entries) {
+						final CacheValue c = me.getValue();
 
-							min = (min < 0 || size < min) ? size : min;
-							max = Math.max(max, size);
-							total += size;
+						final int size = c.value.length();
 
-							hits += c.accesses.intValue();
-						}
+						min = (min < 0 || size < min) ? size : min;
+						max = Math.max(max, size);
+						total += size;
 
-						nssize = namespace.cache.size();
+						hits += c.accesses.intValue();
 					}
 
+					final int nssize = entries.size();
+
 					if (min < 0)
 						pwOut.println(entry.getKey() + " : empty");
 					else
@@ -475,11 +864,7 @@ public class TextCache extends HttpServlet {
 
 					final boolean values = rw.gets("values").length() > 0;
 
-					final ArrayList<Map.Entry<String, CacheValue>> entries;
-
-					synchronized (namespace) {
-						entries = new ArrayList<>(namespace.cache.entrySet());
-					}
+					final List<Map.Entry<String, CacheValue>> entries = namespace.entries();
 
 					Collections.sort(entries, entryComparator);
 
@@ -497,7 +882,7 @@ public class TextCache extends HttpServlet {
 						pwOut.println(me.getKey() + " : size " + size + ", " + cv.accesses + " hits" + (values ? " : " + cv.value : ""));
 					}
 
-					final int nssize = namespace.cache.size();
+					final int nssize = entries.size();
 
 					pwOut.print("\n\n----------------\n\n" + nssize + " entries");
 
@@ -513,135 +898,155 @@ public class TextCache extends HttpServlet {
 
 		final Namespace namespace = getNamespace(ns);
 
-		String value = rw.gets("value", null);
+		final String value = rw.gets("value", null);
+
+		final long started = System.nanoTime();
 
 		if (value != null) {
-			// a SET operation
+			try {
+				execSet(rw, namespace, key, value);
+			}
+			finally {
+				namespace.setLatency.addNanos(System.nanoTime() - started);
+			}
 
-			CacheValue old;
+			return;
+		}
 
-			if (rw.getb("ifnull", false) == true) {
-				synchronized (namespace) {
-					old = namespace.cache.get(key);
-				}
+		if (rw.getb("clear", false)) {
+			try {
+				execClear(rw, request, namespace, pwOut);
+			}
+			finally {
+				namespace.clearLatency.addNanos(System.nanoTime() - started);
+			}
 
-				if (old != null && old.expires >= System.currentTimeMillis()) {
-					if (monitor != null)
-						monitor.incrementCounter("SET_WAITING_" + ns);
+			return;
+		}
 
-					return;
-				}
-			}
+		try {
+			execGet(namespace, key, pwOut);
+		}
+		finally {
+			namespace.getLatency.addNanos(System.nanoTime() - started);
+		}
+	}
 
-			if (monitor != null)
-				monitor.incrementCounter("SET_" + ns);
+	private static void execSet(final RequestWrapper rw, final Namespace namespace, final String key, final String originalValue) {
+		final String ns = namespace.name;
 
-			if (value.indexOf("eof") >= 0) {
-				value = StringFactory.get(value);
+		String value = originalValue;
 
-				if (monitor != null)
-					monitor.incrementCounter("SET_EOF_" + ns);
-			}
+		CacheValue old;
 
-			final CacheValue cv = new CacheValue(value, System.currentTimeMillis() + rw.getl("timeout", getDefaultExpiration(ns)) * 1000);
+		if (rw.getb("ifnull", false) == true) {
+			old = namespace.get(key);
 
-			synchronized (namespace) {
-				old = namespace.cache.put(key, cv);
+			if (old != null && old.expires >= System.currentTimeMillis()) {
+				if (monitor != null)
+					monitor.incrementCounter("SET_WAITING_" + ns);
+
+				return;
 			}
+		}
 
-			if (old != null)
-				notifyEntryRemoved(namespace, key, old, false, "OVERWRITE_");
-			else
-				namespace.keys.add(key);
+		if (monitor != null)
+			monitor.incrementCounter("SET_" + ns);
 
-			return;
+		if (value.indexOf("eof") >= 0) {
+			value = StringFactory.get(value);
+
+			if (monitor != null)
+				monitor.incrementCounter("SET_EOF_" + ns);
 		}
 
-		if (rw.getb("clear", false)) {
-			int removed = 0;
+		final CacheValue cv = new CacheValue(value, System.currentTimeMillis() + rw.getl("timeout", getDefaultExpiration(ns)) * 1000);
 
-			for (final String keyValue : rw.getValues("key")) {
-				String sLargestPart = "";
+		old = namespace.put(key, cv);
 
-				final String[] parts = keyValue.split("\\.(\\+|\\*)|\\(|\\)|\\|");
+		if (old != null)
+			notifyEntryRemoved(namespace, key, old, false, "OVERWRITE_");
+		else
+			namespace.keys.add(key);
+	}
 
-				for (final String part : parts)
-					if (part.length() > sLargestPart.length())
-						sLargestPart = part;
+	private static void execClear(final RequestWrapper rw, final HttpServletRequest request, final Namespace namespace, final PrintWriter pwOut) {
+		final String ns = namespace.name;
 
-				if (sLargestPart.equals(keyValue)) {
-					CacheValue old;
+		int removed = 0;
 
-					synchronized (namespace) {
-						old = namespace.cache.remove(keyValue);
-					}
+		for (final String keyValue : rw.getValues("key")) {
+			String sLargestPart = "";
 
-					if (old != null) {
-						notifyEntryRemoved(namespace, keyValue, old, true, "CLEAR_");
-						removed++;
-					}
+			final String[] parts = keyValue.split("\\.(\\+|\\*)|\\(|\\)|\\|");
 
-					continue;
-				}
+			for (final String part : parts)
+				if (part.length() > sLargestPart.length())
+					sLargestPart = part;
 
-				final Pattern p;
+			if (sLargestPart.equals(keyValue)) {
+				final CacheValue old = namespace.remove(keyValue);
 
-				try {
-					p = Pattern.compile("^" + keyValue + "$");
-				}
-				catch (final PatternSyntaxException e) {
-					pwOut.println("ERR: invalid pattern syntax: " + keyValue + " : " + e.getMessage());
-					return;
+				if (old != null) {
+					notifyEntryRemoved(namespace, keyValue, old, true, "CLEAR_");
+					removed++;
 				}
 
-				final int largestPartSize = sLargestPart.length();
+				continue;
+			}
 
-				Matcher m = null;
+			final Pattern p;
 
-				final Iterator<String> it = namespace.keys.iterator();
+			try {
+				p = Pattern.compile("^" + keyValue + "$");
+			}
+			catch (final PatternSyntaxException e) {
+				pwOut.println("ERR: invalid pattern syntax: " + keyValue + " : " + e.getMessage());
+				return;
+			}
 
-				while (it.hasNext()) {
-					final String itKey = it.next();
+			final int largestPartSize = sLargestPart.length();
 
-					if (largestPartSize > 0 && (itKey.length() < largestPartSize || itKey.indexOf(sLargestPart) < 0))
-						continue;
+			Matcher m = null;
 
-					if (m == null)
-						m = p.matcher(itKey);
-					else
-						m.reset(itKey);
+			// only the keys sharing the literal prefix of the pattern can match it
+			final Iterator<String> it = namespace.keysStartingWith(literalPrefix(keyValue));
 
-					if (m.matches()) {
-						final CacheValue old;
+			while (it.hasNext()) {
+				final String itKey = it.next();
 
-						synchronized (namespace) {
-							old = namespace.cache.remove(itKey);
-						}
+				if (largestPartSize > 0 && (itKey.length() < largestPartSize || itKey.indexOf(sLargestPart) < 0))
+					continue;
 
-						if (old != null) {
-							notifyEntryRemoved(namespace, itKey, old, false, "CLEARPATTERN_");
-							removed++;
-						}
+				if (m == null)
+					m = p.matcher(itKey);
+				else
+					m.reset(itKey);
+
+				if (m.matches()) {
+					final CacheValue old = namespace.remove(itKey);
 
-						it.remove();
+					if (old != null) {
+						notifyEntryRemoved(namespace, itKey, old, false, "CLEARPATTERN_");
+						removed++;
 					}
+
+					it.remove();
 				}
 			}
+		}
 
-			pwOut.println("OK: removed " + removed + " values from ns '" + ns + "' matching " + Arrays.toString(rw.getValues("key")));
-
-			if (removed > 100)
-				System.err.println("Removed " + removed + " matching values from ns '" + ns + "' matching " + Arrays.toString(rw.getValues("key")) + ", request issued by " + request.getRemoteAddr()
-						+ " / " + request.getHeader("User-Agent"));
+		pwOut.println("OK: removed " + removed + " values from ns '" + ns + "' matching " + Arrays.toString(rw.getValues("key")));
 
-			return;
-		}
+		if (removed > 100)
+			System.err.println("Removed " + removed + " matching values from ns '" + ns + "' matching " + Arrays.toString(rw.getValues("key")) + ", request issued by " + request.getRemoteAddr()
+					+ " / " + request.getHeader("User-Agent"));
+	}
 
-		final CacheValue existing;
+	private static void execGet(final Namespace namespace, final String key, final PrintWriter pwOut) {
+		final String ns = namespace.name;
 
-		synchronized (namespace) {
-			existing = namespace.cache.get(key);
-		}
+		final CacheValue existing = namespace.get(key);
 
 		if (existing == null) {
 			if (monitor != null)
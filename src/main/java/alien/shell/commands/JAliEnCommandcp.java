@@ -25,9 +25,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
@@ -44,6 +46,7 @@ import alien.catalogue.LFN;
 import alien.catalogue.PFN;
 import alien.config.ConfigUtils;
 import alien.io.IOUtils;
+import alien.io.SegmentedDownload;
 import alien.io.Transfer;
 import alien.io.protocols.Protocol;
 import alien.io.protocols.TempFileManager;
@@ -476,6 +479,45 @@ public class JAliEnCommandcp extends JAliEnBaseCommand {
 
 			Exception lastException = null;
 
+			// archive members come with the archive's replicas and have to be extracted by ProtocolAction, SegmentedDownload.isApplicable() excludes them
+			if (writeToLocalFile != null && pfns != null && pfns.size() > 0 && SegmentedDownload.isApplicable(pfns.get(0).getGuid(), pfns)) {
+				final File segmentedTarget = writeToLocalFile;
+
+				// in the background, like the ProtocolAction below, to keep the client informed while a large file is downloaded
+				final FutureTask<File> segmented = new FutureTask<>(() -> SegmentedDownload.download(pfns.get(0).getGuid(), pfns, segmentedTarget));
+
+				final Thread segmentedThread = new Thread(segmented, "JAliEnCommandcp.SegmentedDownload");
+				segmentedThread.setDaemon(true);
+				segmentedThread.start();
+
+				try {
+					while (true)
+						try {
+							resultFile = segmented.get(500, TimeUnit.MILLISECONDS);
+							break;
+						}
+						catch (@SuppressWarnings("unused") final TimeoutException te) {
+							commander.pending();
+						}
+				}
+				catch (@SuppressWarnings("unused") final InterruptedException ie) {
+					// don't fall back to another download of the same file while this one might still be writing it
+					segmented.cancel(true);
+					Thread.currentThread().interrupt();
+					commander.setReturnCode(106, "Interrupted while downloading " + lfn.getCanonicalName());
+					return;
+				}
+				catch (final ExecutionException e) {
+					logger.log(Level.WARNING, "Segmented download of " + lfn.getCanonicalName() + " failed", e);
+				}
+
+				if (resultFile != null) {
+					commander.printOutln("Downloaded file to " + resultFile.getAbsolutePath());
+					setLastModified(resultFile, lfn);
+					return;
+				}
+			}
+
 			if (pfns != null && pfns.size() > 0)
 				for (final PFN pfn : pfns) {
 					logger.log(Level.INFO, "Trying " + pfn.pfn);
@@ -495,18 +537,7 @@ public class JAliEnCommandcp extends JAliEnBaseCommand {
 
 								commander.printOutln("Downloaded file to " + transferAttempt.getCanonicalPath());
 
-								try {
-									if (!transferAttempt.setLastModified(lfn.ctime.getTime())) {
-										// alternative method of setting file times:
-										final BasicFileAttributeView attributes = Files.getFileAttributeView(Paths.get(transferAttempt.getAbsolutePath()), BasicFileAttributeView.class);
-										final FileTime time = FileTime.fromMillis(lfn.ctime.getTime());
-										attributes.setTimes(time, time, time);
-									}
-								}
-								catch (final Throwable t) {
-									// this is not worth reporting to the user
-									logger.log(Level.WARNING, "Exception setting file last modified timestamp", t);
-								}
+								setLastModified(transferAttempt, lfn);
 
 								break;
 							}
@@ -533,6 +564,21 @@ public class JAliEnCommandcp extends JAliEnBaseCommand {
 						+ (lastException != null ? ", error was: " + lastException.getMessage() : ""));
 		}
 
+		private void setLastModified(final File f, final LFN fromLFN) {
+			try {
+				if (!f.setLastModified(fromLFN.ctime.getTime())) {
+					// alternative method of setting file times:
+					final BasicFileAttributeView attributes = Files.getFileAttributeView(Paths.get(f.getAbsolutePath()), BasicFileAttributeView.class);
+					final FileTime time = FileTime.fromMillis(fromLFN.ctime.getTime());
+					attributes.setTimes(time, time, time);
+				}
+			}
+			catch (final Throwable t) {
+				// this is not worth reporting to the user
+				logger.log(Level.WARNING, "Exception setting file last modified timestamp", t);
+			}
+		}
+
 		/**
 		 * @return the local file
 		 */
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 import alien.shell.ErrNo;
 import alien.taskQueue.Job;
@@ -39,6 +41,11 @@ public class JAliEnCommandmasterjob extends JAliEnBaseCommand {
 
 	@Override
 	public void run() {
+		if (!bPrintId && !bPrintSite && id.isEmpty() && sites.isEmpty()) {
+			printCounters();
+			return;
+		}
+
 		final List<Job> subjobstates = new ArrayList<>();
 
 		for (final Long jobId : jobIDs) {
@@ -113,6 +120,45 @@ public class JAliEnCommandmasterjob extends JAliEnBaseCommand {
 		}
 	}
 
+	/**
+	 * Only the number of subjobs in each state is needed, get the counters from the server instead of the subjobs
+	 */
+	private void printCounters() {
+		final Map<JobStatus, Integer> totals = new TreeMap<>();
+
+		for (final Long jobId : jobIDs) {
+			final Job j = commander.q_api.getJob(jobId.longValue());
+
+			if (j != null) {
+				commander.printOutln("Job " + j.queueId + " is in status: " + j.status());
+
+				final Map<JobStatus, Integer> counts = commander.q_api.getMasterJobStatusCounts(j.queueId, status);
+
+				if (counts != null)
+					for (final Map.Entry<JobStatus, Integer> entry : counts.entrySet())
+						totals.merge(entry.getKey(), entry.getValue(), Integer::sum);
+			}
+			else
+				commander.printErrln("Could not load the details of " + jobId);
+		}
+
+		int total = 0;
+
+		for (final Integer count : totals.values())
+			total += count.intValue();
+
+		if (total > 0) {
+			commander.printOutln("Subjobs aggregated by state:");
+
+			for (final Map.Entry<JobStatus, Integer> entry : totals.entrySet())
+				if (entry.getValue().intValue() > 0)
+					commander.printOutln(padSpace(16) + "Subjobs in " + entry.getKey() + ": " + entry.getValue());
+
+			commander.printOutln();
+			commander.printOutln("In total, there are " + total + " subjobs" + (jobIDs.size() > 1 ? " in " + jobIDs.size() + " masterjobs" : ""));
+		}
+	}
+
 	private void printSubJobs(final HashMap<String, List<Job>> stateCount, final List<JobStatus> showStatus, final String site) {
 		String key = "";
 
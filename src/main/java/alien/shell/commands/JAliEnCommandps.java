@@ -11,6 +11,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import alien.api.taskQueue.GetPS;
+import alien.config.ConfigUtils;
 import alien.shell.ErrNo;
 import alien.shell.ShellColor;
 import alien.taskQueue.Job;
@@ -60,6 +61,8 @@ public class JAliEnCommandps extends JAliEnBaseCommand {
 
 	private boolean bIDOnly = false;
 
+	private static final int PAGE_SIZE = ConfigUtils.getConfig().geti("alien.shell.commands.JAliEnCommandps.pageSize", 1000);
+
 	private static final transient Map<String, String> SHORT_TO_LONG_STATUS = new HashMap<>() {
 		private static final long serialVersionUID = 1L;
 		{
@@ -103,74 +106,83 @@ public class JAliEnCommandps extends JAliEnBaseCommand {
 		if (users.size() == 0)
 			users.add(commander.getUsername());
 
-		final List<Job> ps = commander.q_api.getPS(states, users, sites, nodes, mjobs, jobid, filters, orderByKey, limit);
+		// print each page as soon as it arrives, stop asking for more if the client went away
+		commander.q_api.getPS(states, users, sites, nodes, mjobs, jobid, filters, orderByKey, limit, PAGE_SIZE, (page) -> {
+			for (final Job j : page) {
+				if (commander.kill)
+					return false;
 
-		if (ps != null)
-			for (final Job j : ps) {
-				commander.outNextResult();
-				final String owner = (j.getOwner() != null) ? j.getOwner() : "";
+				printJob(j);
+			}
 
-				final String name = (j.name != null) ? j.name.substring(j.name.lastIndexOf('/') + 1) : "";
+			return !commander.kill;
+		});
+	}
 
-				commander.printOut("owner", owner);
-				commander.printOut("id", String.valueOf(j.queueId));
-				commander.printOut("split", String.valueOf(j.split));
-				commander.printOut("priority", String.valueOf(j.priority));
-				commander.printOut("status", j.status().toString());
-				commander.printOut("name", name);
+	private void printJob(final Job j) {
+		commander.outNextResult();
+		final String owner = (j.getOwner() != null) ? j.getOwner() : "";
 
-				if (!getTrace && !getJDL) {
-					final String jId = commander.bColour ? ShellColor.bold() + j.queueId + ShellColor.reset() : String.valueOf(j.queueId);
+		final String name = (j.name != null) ? j.name.substring(j.name.lastIndexOf('/') + 1) : "";
 
-					if (bIDOnly) {
-						commander.printOutln(jId);
-					}
-					else if (bL) {
-						final String site = (j.site != null) ? j.site : "";
-						final String node = (j.node != null) ? j.node : "";
+		commander.printOut("owner", owner);
+		commander.printOut("id", String.valueOf(j.queueId));
+		commander.printOut("split", String.valueOf(j.split));
+		commander.printOut("priority", String.valueOf(j.priority));
+		commander.printOut("status", j.status().toString());
+		commander.printOut("name", name);
 
-						commander.printOut("site", site);
-						commander.printOut("node", node);
+		if (!getTrace && !getJDL) {
+			final String jId = commander.bColour ? ShellColor.bold() + j.queueId + ShellColor.reset() : String.valueOf(j.queueId);
 
-						commander.printOutln(padLeft(String.valueOf(owner), 10) + padSpace(4) + padLeft(jId, 10) + padSpace(2) + printPriority(j.status(), j.priority) + padSpace(2)
-								+ padLeft(String.valueOf(site), 38) + padSpace(2) + padLeft(String.valueOf(node), 40) + padSpace(2) + abbrvStatus(j.status()) + padSpace(2)
-								+ padLeft(String.valueOf(name), 30));
-					}
-					else {
-						commander.printOutln(padLeft(String.valueOf(owner), 10) + padSpace(1) + padLeft(jId, 10) + padSpace(2) + printPriority(j.status(), j.priority) + padSpace(2)
-								+ abbrvStatus(j.status()) + padSpace(2) + padLeft(String.valueOf(name), 32));
-					}
-				}
+			if (bIDOnly) {
+				commander.printOutln(jId);
+			}
+			else if (bL) {
+				final String site = (j.site != null) ? j.site : "";
+				final String node = (j.node != null) ? j.node : "";
 
-				if (getTrace) {
-					final String tracelog = commander.q_api.getTraceLog(j.queueId);
+				commander.printOut("site", site);
+				commander.printOut("node", node);
 
-					if (tracelog != null && !tracelog.isBlank()) {
-						if (commander.bColour)
-							commander.printOutln(ShellColor.jobStateBlue() + tracelog + ShellColor.reset());
-						else
-							commander.printOutln(tracelog);
+				commander.printOutln(padLeft(String.valueOf(owner), 10) + padSpace(4) + padLeft(jId, 10) + padSpace(2) + printPriority(j.status(), j.priority) + padSpace(2)
+						+ padLeft(String.valueOf(site), 38) + padSpace(2) + padLeft(String.valueOf(node), 40) + padSpace(2) + abbrvStatus(j.status()) + padSpace(2)
+						+ padLeft(String.valueOf(name), 30));
+			}
+			else {
+				commander.printOutln(padLeft(String.valueOf(owner), 10) + padSpace(1) + padLeft(jId, 10) + padSpace(2) + printPriority(j.status(), j.priority) + padSpace(2)
+						+ abbrvStatus(j.status()) + padSpace(2) + padLeft(String.valueOf(name), 32));
+			}
+		}
 
-						commander.printOut("trace", tracelog);
-					}
-					else
-						commander.setReturnCode(ErrNo.ENODATA, "No trace information for " + j.queueId);
-				}
+		if (getTrace) {
+			final String tracelog = commander.q_api.getTraceLog(j.queueId);
 
-				if (getJDL) {
-					final String jdl = commander.q_api.getJDL(j.queueId, true);
-					if (jdl != null) {
-						if (commander.bColour)
-							commander.printOutln(ShellColor.jobStateRed() + jdl + ShellColor.reset());
-						else
-							commander.printOutln(jdl);
+			if (tracelog != null && !tracelog.isBlank()) {
+				if (commander.bColour)
+					commander.printOutln(ShellColor.jobStateBlue() + tracelog + ShellColor.reset());
+				else
+					commander.printOutln(tracelog);
 
-						commander.printOut("jdl", jdl);
-					}
-					else
-						commander.setReturnCode(ErrNo.ENODATA, "JDL of " + j.queueId + " could not be retrieved");
-				}
+				commander.printOut("trace", tracelog);
 			}
+			else
+				commander.setReturnCode(ErrNo.ENODATA, "No trace information for " + j.queueId);
+		}
+
+		if (getJDL) {
+			final String jdl = commander.q_api.getJDL(j.queueId, true);
+			if (jdl != null) {
+				if (commander.bColour)
+					commander.printOutln(ShellColor.jobStateRed() + jdl + ShellColor.reset());
+				else
+					commander.printOutln(jdl);
+
+				commander.printOut("jdl", jdl);
+			}
+			else
+				commander.setReturnCode(ErrNo.ENODATA, "JDL of " + j.queueId + " could not be retrieved");
+		}
 	}
 
 	private String printPriority(final JobStatus status, final int priority) {
@@ -118,6 +118,8 @@ public class JobAgent implements Runnable {
 	private String legacyToken;
 	private String platforms;
 	private HashMap<String, Object> matchedJob;
+	private final HashMap<String, Object> assignedJob;
+	private boolean assignmentReleased = false;
 	protected static HashMap<String, Object> siteMap = null;
 	private long workdirMaxSizeMB;
 	protected long jobMaxMemoryMB;
@@ -275,6 +277,11 @@ public class JobAgent implements Runnable {
 	 */
 	static long RUNNING_JOBAGENTS;
 
+	/**
+	 * Number of jobs received by the JobRunner in a bulk match whose JobAgents have not yet reserved their resources
+	 */
+	static int PENDING_ASSIGNED_JOBS;
+
 	private Long reqCPU = Long.valueOf(0);
 	private Long reqDisk = Long.valueOf(0);
 
@@ -326,6 +333,16 @@ public class JobAgent implements Runnable {
 	/**
 	 */
 	public JobAgent() {
+		this(null);
+	}
+
+	/**
+	 * @param assignedJob
+	 *            a job that the JobRunner already got from the broker for this agent, or <code>null</code> to ask the broker for one
+	 */
+	public JobAgent(final HashMap<String, Object> assignedJob) {
+		this.assignedJob = assignedJob;
+
 		// site = env.get("site"); // or
 		// ConfigUtils.getConfig().gets("alice_close_site").trim();
 
@@ -522,8 +539,8 @@ public class JobAgent implements Runnable {
 	public void run() {
 		logger.log(Level.INFO, "Starting JobAgent " + jobNumber + " in " + hostName);
 
-		// Wait before matching if previous jobs have been failing
-		if (attempts.getAcquire() > 1) {
+		// Wait before matching if previous jobs have been failing (a job that is already assigned cannot wait)
+		if (assignedJob == null && attempts.getAcquire() > 1) {
 			final int timeToWait = attempts.getAcquire();
 			try {
 				if ((int) siteMap.get("TTL") - timeToWait > 0) {
@@ -545,42 +562,22 @@ public class JobAgent implements Runnable {
 			logger.log(Level.INFO, "Resources available: " + RUNNING_CPU + " CPU cores and " + RUNNING_DISK + " MB of disk space");
 			synchronized (requestSync) {
 				RUNNING_JOBAGENTS += 1;
-				if (!updateDynamicParameters()) {
-					// requestSync.notify();
-					return;
-				}
 
-				monitor.sendParameter("TTL", siteMap.get("TTL"));
-
-				// TODO: Hack to exclude alihyperloop jobs from nodes without avx support. Remove me soon!
-				try {
-					if (!Files.readString(Paths.get("/proc/cpuinfo")).contains("avx") && !System.getProperty("os.arch").contains("aarch64")) {
-						final ArrayList<String> noUsers = (ArrayList<String>) siteMap.computeIfAbsent("NoUsers", (k) -> new ArrayList<>());
-						if (!noUsers.contains("alihyperloop"))
-							((ArrayList<String>) siteMap.get("NoUsers")).add("alihyperloop");
-						if (!noUsers.contains("alitrain"))
-							((ArrayList<String>) siteMap.get("NoUsers")).add("alitrain");
-						if (!noUsers.contains("aliprod"))
-							((ArrayList<String>) siteMap.get("NoUsers")).add("aliprod");
-						logger.log(Level.WARNING, "This host appears to be missing AVX support, and will be blocked from running the following jobs: " + noUsers.toString());
+				if (assignedJob != null)
+					matchedJob = assignedJob;
+				else {
+					if (!prepareMatchRequest()) {
+						// requestSync.notify();
+						return;
 					}
-				}
-				catch (IOException | NullPointerException ex) {
-					logger.log(Level.WARNING, "Unable to check for AVX support", ex);
-				}
 
-				// Verify environment if there are no containers, before matching
-				if (containerizer == null && !env.getOrDefault("DISABLE_CONTAINER_ENFORCE", "").toLowerCase().contains("true")) {
-					logger.log(Level.SEVERE, "This host does not appear to support containers. Please verify that user namespaces are enabled, or disable this check in container.properties");
-					throw new EOFException("Job matching aborted due to missing containers");
-				}
-
-				setStatus(jaStatus.REQUESTING_JOB);
+					setStatus(jaStatus.REQUESTING_JOB);
 
-				// Brokering expects disk space to be expressed in KB (JOBAGENT table content)
-				final GetMatchJob jobMatch = commander.q_api.getMatchJob(new HashMap<>(siteMap));
+					// Brokering expects disk space to be expressed in KB (JOBAGENT table content)
+					final GetMatchJob jobMatch = commander.q_api.getMatchJob(new HashMap<>(siteMap));
 
-				matchedJob = jobMatch.getMatchJob();
+					matchedJob = jobMatch.getMatchJob();
+				}
 
 				// TODELETE
 				if (matchedJob == null || matchedJob.containsKey("Error")) {
@@ -596,7 +593,11 @@ public class JobAgent implements Runnable {
 
 				retries.set(0);
 
-				jdl = new JDL(Job.sanitizeJDL((String) matchedJob.get("JDL")));
+				// recent central services send the JDL already parsed
+				if (matchedJob.get("ParsedJDL") instanceof JDL)
+					jdl = (JDL) matchedJob.get("ParsedJDL");
+				else
+					jdl = new JDL(Job.sanitizeJDL((String) matchedJob.get("JDL")));
 
 				queueId = ((Long) matchedJob.get("queueId")).longValue();
 				resubmission = ((Integer) matchedJob.get("Resubmission")).intValue();
@@ -657,6 +658,8 @@ public class JobAgent implements Runnable {
 					jobPrice = Float.valueOf(1);
 				logger.log(Level.INFO, "Job Price is set to " + jobPrice);
 
+				releaseAssignment();
+
 				requestSync.notifyAll();
 			}
 
@@ -699,6 +702,8 @@ public class JobAgent implements Runnable {
 
 		}
 		finally {
+			releaseAssignment();
+
 			if (cpuIsolation == true)
 				numaExplorer.refillAvailable(jobNumber);
 
@@ -1448,6 +1453,59 @@ public class JobAgent implements Runnable {
 		return timeleft;
 	}
 
+	/**
+	 * Refresh the parameters sent to the broker before asking for jobs
+	 *
+	 * @return <code>false</code> if we can't run because of current conditions
+	 * @throws EOFException
+	 *             if this host cannot run any job
+	 */
+	@SuppressWarnings("unchecked")
+	protected boolean prepareMatchRequest() throws EOFException {
+		if (!updateDynamicParameters())
+			return false;
+
+		monitor.sendParameter("TTL", siteMap.get("TTL"));
+
+		// TODO: Hack to exclude alihyperloop jobs from nodes without avx support. Remove me soon!
+		try {
+			if (!Files.readString(Paths.get("/proc/cpuinfo")).contains("avx") && !System.getProperty("os.arch").contains("aarch64")) {
+				final ArrayList<String> noUsers = (ArrayList<String>) siteMap.computeIfAbsent("NoUsers", (k) -> new ArrayList<>());
+				if (!noUsers.contains("alihyperloop"))
+					((ArrayList<String>) siteMap.get("NoUsers")).add("alihyperloop");
+				if (!noUsers.contains("alitrain"))
+					((ArrayList<String>) siteMap.get("NoUsers")).add("alitrain");
+				if (!noUsers.contains("aliprod"))
+					((ArrayList<String>) siteMap.get("NoUsers")).add("aliprod");
+				logger.log(Level.WARNING, "This host appears to be missing AVX support, and will be blocked from running the following jobs: " + noUsers.toString());
+			}
+		}
+		catch (IOException | NullPointerException ex) {
+			logger.log(Level.WARNING, "Unable to check for AVX support", ex);
+		}
+
+		// Verify environment if there are no containers, before matching
+		if (containerizer == null && !env.getOrDefault("DISABLE_CONTAINER_ENFORCE", "").toLowerCase().contains("true")) {
+			logger.log(Level.SEVERE, "This host does not appear to support containers. Please verify that user namespaces are enabled, or disable this check in container.properties");
+			throw new EOFException("Job matching aborted due to missing containers");
+		}
+
+		return true;
+	}
+
+	/**
+	 * Let the JobRunner know that the resources of the job it assigned to this agent are now accounted for (or that the job could not be started)
+	 */
+	private void releaseAssignment() {
+		synchronized (requestSync) {
+			if (assignedJob != null && !assignmentReleased) {
+				assignmentReleased = true;
+				PENDING_ASSIGNED_JOBS--;
+				requestSync.notifyAll();
+			}
+		}
+	}
+
 	private boolean updateDynamicParameters() {
 		logger.log(Level.INFO, "Updating dynamic parameters of jobAgent map");
 
@@ -1,12 +1,16 @@
 package alien.site;
 
+import java.io.EOFException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import alien.api.DispatchSSLClient;
+import alien.api.taskQueue.GetMatchJobs;
 import alien.config.ConfigUtils;
 import alien.monitoring.Monitor;
 import alien.monitoring.MonitorFactory;
@@ -48,6 +52,49 @@ public class JobRunner extends JobAgent {
 		});
 	}
 
+	/**
+	 * Whether the broker accepts bulk match requests, turned off at the first failure
+	 */
+	private boolean bulkMatching = true;
+
+	/**
+	 * Ask the broker for as many jobs as the free resources allow, in a single request
+	 *
+	 * @param maxJobs
+	 * @return the assigned jobs, an empty list if nothing could be matched, or <code>null</code> if the bulk matching is not available
+	 */
+	private List<HashMap<String, Object>> requestJobs(final int maxJobs) {
+		try {
+			if (!prepareMatchRequest())
+				return Collections.emptyList();
+		}
+		catch (final EOFException e) {
+			logger.log(Level.WARNING, e.getMessage());
+			return Collections.emptyList();
+		}
+
+		final GetMatchJobs jobMatch = JAliEnCOMMander.getInstance().q_api.getMatchJobs(new HashMap<>(siteMap), maxJobs);
+
+		if (jobMatch == null || jobMatch.getMatchJobs() == null) {
+			logger.log(Level.WARNING, "Bulk matching failed, falling back to one job per request");
+			bulkMatching = false;
+			return null;
+		}
+
+		final List<HashMap<String, Object>> ret = new ArrayList<>();
+
+		for (final HashMap<String, Object> job : jobMatch.getMatchJobs()) {
+			if (job.containsKey("Error"))
+				logger.log(Level.INFO, "Nothing to run right now: " + job.get("Error"));
+			else
+				ret.add(job);
+		}
+
+		logger.log(Level.INFO, "Got " + ret.size() + " jobs for " + RUNNING_CPU + " free CPU cores, out of " + maxJobs + " requested");
+
+		return ret;
+	}
+
 	@Override
 	public void run() {
 		long timestamp = System.currentTimeMillis() / 1000;
@@ -57,6 +104,9 @@ public class JobRunner extends JobAgent {
 
 		final int maxRetries = Integer.parseInt(System.getenv().getOrDefault("MAX_RETRIES", "2"));
 
+		// how many jobs to ask for at once when several cores are free, 1 to get them one by one
+		final int maxJobsPerMatch = Integer.parseInt(System.getenv().getOrDefault("MAX_JOBS_PER_MATCH", "16"));
+
 		int jrPid = MonitorFactory.getSelfProcessID();
 
 		try {
@@ -72,16 +122,45 @@ public class JobRunner extends JobAgent {
 			synchronized (JobAgent.requestSync) {
 				try {
 					try {
+						List<HashMap<String, Object>> jobs = null;
+
 						if (checkParameters()) {
-							logger.log(Level.INFO, "Spawned thread nr " + i);
-							jaThread = new Thread(new JobAgent(), "JobAgent_" + i);
-							jaThread.start();
-							if (cpuIsolation == true && alreadyIsol == false) {
-								alreadyIsol = checkAndApplyIsolation(jrPid, alreadyIsol);
+							final int maxJobs = (int) Math.min(JobAgent.RUNNING_CPU.longValue(), maxJobsPerMatch);
+
+							if (bulkMatching && maxJobs > 1)
+								jobs = requestJobs(maxJobs);
+
+							if (jobs == null) {
+								logger.log(Level.INFO, "Spawned thread nr " + i);
+								jaThread = new Thread(new JobAgent(), "JobAgent_" + i);
+								jaThread.start();
+								if (cpuIsolation == true && alreadyIsol == false) {
+									alreadyIsol = checkAndApplyIsolation(jrPid, alreadyIsol);
+								}
+								monitor.sendParameter("state", "Waiting for JA to get a job");
+								monitor.sendParameter("statenumeric", Long.valueOf(1));
+								i++;
+							}
+							else if (jobs.size() > 0) {
+								// the agents reserve the resources of their jobs one after the other, as soon as this thread releases the lock
+								JobAgent.PENDING_ASSIGNED_JOBS += jobs.size();
+
+								for (final HashMap<String, Object> job : jobs) {
+									logger.log(Level.INFO, "Spawned thread nr " + i + " for job " + job.get("queueId"));
+									jaThread = new Thread(new JobAgent(job), "JobAgent_" + i);
+									jaThread.start();
+									i++;
+								}
+
+								if (cpuIsolation == true && alreadyIsol == false) {
+									alreadyIsol = checkAndApplyIsolation(jrPid, alreadyIsol);
+								}
+								monitor.sendParameter("state", "Starting " + jobs.size() + " assigned jobs");
+								monitor.sendParameter("statenumeric", Long.valueOf(1));
+								retries.set(0);
 							}
-							monitor.sendParameter("state", "Waiting for JA to get a job");
-							monitor.sendParameter("statenumeric", Long.valueOf(1));
-							i++;
+							else if (JobAgent.RUNNING_CPU.equals(JobAgent.MAX_CPU))
+								retries.getAndIncrement();
 						}
 						else {
 							monitor.sendParameter("state", "All slots busy");
@@ -89,7 +168,17 @@ public class JobRunner extends JobAgent {
 							logger.log(Level.INFO, "No new thread");
 						}
 
-						JobAgent.requestSync.wait(3 * 60 * 1000);
+						if (jobs != null && jobs.size() > 0) {
+							// wait for the new agents to account for their resources, then immediately try to fill the remaining ones
+							final long deadline = System.currentTimeMillis() + 3 * 60 * 1000;
+
+							long remaining;
+
+							while (JobAgent.PENDING_ASSIGNED_JOBS > 0 && (remaining = deadline - System.currentTimeMillis()) > 0)
+								JobAgent.requestSync.wait(remaining);
+						}
+						else
+							JobAgent.requestSync.wait(3 * 60 * 1000);
 					}
 					catch (final InterruptedException e) {
 						logger.log(Level.WARNING, "JobRunner interrupted", e);
@@ -18,6 +18,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +26,11 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -65,6 +70,7 @@ import lazyj.Format;
 import lazyj.commands.CommandOutput;
 import lazyj.commands.SystemCommand;
 import lia.util.process.ExternalProcesses;
+import utils.CachedThreadPool;
 import utils.Signals;
 
 /**
@@ -832,17 +838,11 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 			localFiles.put(l, localFile);
 		}
 
-		int duplicates = 0;
-		for (final Map.Entry<LFN, File> entry : localFiles.entrySet()) {
-			File f = entry.getValue();
+		final List<Map.Entry<LFN, File>> downloads = new ArrayList<>(localFiles.size());
 
-			if (f.exists()) {
-				duplicates++;
-				f = new File(currentDir + "/" + duplicates, f.getName());
-				f.mkdir();
-				logger.log(Level.WARNING, "Warning: Could not download to " + entry.getValue().getAbsolutePath() + ". Already exists. Will instead use: " + f.getAbsolutePath());
-				// putJobTrace("Warning: Could not download to " + entry.getValue().getAbsolutePath() + ". Already exists. Will instead use: " + f.getAbsolutePath());
-			}
+		// all the downloads run at the same time, so the targets have to be distinct before any of them starts
+		for (final Map.Entry<LFN, File> entry : getUniqueTargets(currentDir, localFiles).entrySet()) {
+			final File f = entry.getValue();
 
 			if (inputDataList != null) {
 				if (inputDataList.startsWith("<?xml"))
@@ -851,30 +851,61 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 					inputDataList = Format.replace(inputDataList, "alien://" + entry.getKey().getCanonicalName() + "\n", "file:///" + f.getAbsolutePath() + "\n");
 			}
 
-			putJobTrace("Getting InputFile: " + entry.getKey().getCanonicalName() + " to " + f.getAbsolutePath() + " (" + Format.size(entry.getKey().size) + ")");
+			downloads.add(Map.entry(entry.getKey(), f));
+		}
 
-			commander.clearLastError();
+		// largest files first, so that the small ones fill the gaps at the end instead of one large file being left alone
+		downloads.sort((a, b) -> Long.compare(b.getKey().size, a.getKey().size));
 
-			final JAliEnCommandcp cp = new JAliEnCommandcp(commander, Arrays.asList(entry.getKey().getCanonicalName(), "file:" + f.getAbsolutePath()));
+		final int threads = Math.min(getInputDownloadThreads(), downloads.size());
 
-			final File copyResult = cp.copyGridToLocal(entry.getKey(), f);
+		long totalSize = 0;
 
-			if (copyResult == null) {
-				final String commanderError = commander.getLastErrorMessage();
+		for (final Map.Entry<LFN, File> entry : downloads)
+			totalSize += entry.getKey().size;
 
-				logger.log(Level.WARNING, "Could not download " + entry.getKey().getCanonicalName() + " to " + entry.getValue().getAbsolutePath() + ":\n" + commanderError);
+		putJobTrace("Getting " + downloads.size() + " input files (" + Format.size(totalSize) + ") with " + threads + " parallel downloads");
 
-				String traceLine = "ERROR: ";
+		final AtomicInteger failureCode = new AtomicInteger(0);
 
-				if (commanderError != null)
-					traceLine += commanderError;
-				else
-					traceLine += "Could not download " + entry.getKey().getCanonicalName() + " to " + entry.getValue().getAbsolutePath();
+		// the last error is kept in the commander, so each download thread needs its own
+		final ThreadLocal<JAliEnCOMMander> commanders = ThreadLocal.withInitial(() -> new JAliEnCOMMander(commander.getUser(), commander.getCurrentDir(), commander.getSite(), null));
 
-				putJobTrace(traceLine);
+		final ThreadPoolExecutor downloader = new CachedThreadPool(threads, 1, TimeUnit.SECONDS, (r) -> new Thread(r, "JobWrapper.inputDownloader"));
 
-				return commander.getLastExitCode();
-			}
+		final List<Future<?>> futures = new ArrayList<>(downloads.size());
+
+		try (Timing total = new Timing()) {
+			for (final Map.Entry<LFN, File> entry : downloads)
+				futures.add(downloader.submit(() -> {
+					// don't start new downloads once one of them has failed
+					if (failureCode.get() != 0)
+						return;
+
+					final JAliEnCOMMander downloadCommander = commanders.get();
+
+					downloadCommander.clearLastError();
+
+					if (!getInputFile(downloadCommander, entry.getKey(), entry.getValue()))
+						failureCode.compareAndSet(0, downloadCommander.getLastExitCode() != 0 ? downloadCommander.getLastExitCode() : -1);
+				}));
+
+			for (final Future<?> future : futures)
+				try {
+					future.get();
+				}
+				catch (InterruptedException | ExecutionException e) {
+					logger.log(Level.WARNING, "Exception waiting for an input file download", e);
+					failureCode.compareAndSet(0, -1);
+				}
+
+			if (failureCode.get() != 0)
+				return failureCode.get();
+
+			putJobTrace("Got all " + downloads.size() + " input files (" + Format.size(totalSize) + ") in " + total + " (" + Format.size(totalSize / Math.max(total.getSeconds(), 0.001)) + "/s)");
+		}
+		finally {
+			downloader.shutdown();
 		}
 
 		logger.log(Level.INFO, "Sandbox populated: " + currentDir.getAbsolutePath());
@@ -897,6 +928,97 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 		return 0;
 	}
 
+	/**
+	 * Pick a distinct local file for each input. An input whose preferred target is already taken, on disk or by another input of the same job, goes to a numbered
+	 * subdirectory of the sandbox under its own name.
+	 *
+	 * @param dir
+	 *            sandbox directory
+	 * @param localFiles
+	 *            preferred target of each input
+	 * @return the target of each input, no two of them the same
+	 */
+	static <K> Map<K, File> getUniqueTargets(final File dir, final Map<K, File> localFiles) {
+		final Map<K, File> ret = new LinkedHashMap<>(localFiles.size());
+
+		final Set<File> assigned = new HashSet<>(localFiles.size());
+
+		int duplicates = 0;
+
+		for (final Map.Entry<K, File> entry : localFiles.entrySet()) {
+			File f = entry.getValue();
+
+			while (f.exists() || assigned.contains(f)) {
+				duplicates++;
+				f = new File(dir + "/" + duplicates, entry.getValue().getName());
+			}
+
+			if (f != entry.getValue()) {
+				f.getParentFile().mkdirs();
+				logger.log(Level.WARNING, "Warning: Could not download to " + entry.getValue().getAbsolutePath() + ". Already exists. Will instead use: " + f.getAbsolutePath());
+			}
+
+			assigned.add(f);
+			ret.put(entry.getKey(), f);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return how many input files to download in parallel, by default twice the number of cores of the slot but not more than
+	 *         <code>alien.site.JobWrapper.maxInputDownloadThreads</code> so that the node's network link is not overcommitted
+	 */
+	private int getInputDownloadThreads() {
+		final int configured = ConfigUtils.getConfig().geti("alien.site.JobWrapper.inputDownloadThreads", 0);
+
+		if (configured > 0)
+			return configured;
+
+		final int max = ConfigUtils.getConfig().geti("alien.site.JobWrapper.maxInputDownloadThreads", 8);
+
+		return Math.max(1, Math.min(2 * TaskQueueUtils.getCPUCores(jdl), max));
+	}
+
+	/**
+	 * Download one input file, tracing how long it took
+	 *
+	 * @param downloadCommander
+	 *            commander of the calling thread, that holds the error of the failed download
+	 * @param lfn
+	 * @param f
+	 * @return <code>true</code> if the file was downloaded
+	 */
+	private boolean getInputFile(final JAliEnCOMMander downloadCommander, final LFN lfn, final File f) {
+		try (Timing t = new Timing()) {
+			final JAliEnCommandcp cp = new JAliEnCommandcp(downloadCommander, Arrays.asList(lfn.getCanonicalName(), "file:" + f.getAbsolutePath()));
+
+			final File copyResult = cp.copyGridToLocal(lfn, f);
+
+			if (copyResult == null) {
+				final String commanderError = downloadCommander.getLastErrorMessage();
+
+				logger.log(Level.WARNING, "Could not download " + lfn.getCanonicalName() + " to " + f.getAbsolutePath() + ":\n" + commanderError);
+
+				String traceLine = "ERROR: ";
+
+				if (commanderError != null)
+					traceLine += commanderError;
+				else
+					traceLine += "Could not download " + lfn.getCanonicalName() + " to " + f.getAbsolutePath();
+
+				putJobTrace(traceLine);
+
+				return false;
+			}
+
+			putJobTrace("Got InputFile: " + lfn.getCanonicalName() + " to " + f.getAbsolutePath() + " (" + Format.size(lfn.size) + ") in " + t + " (" + Format.size(lfn.size / Math.max(t.getSeconds(), 0.001))
+					+ "/s)");
+
+			return true;
+		}
+	}
+
 	private String createInputDataList() {
 		logger.log(Level.INFO, "Starting XML creation");
 
@@ -981,9 +1103,6 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 	private boolean uploadOutputFiles(final JobStatus exitStatus, final int exitCode) {
 		cleanupProcesses(queueId, pid);
 
-		boolean uploadedAllOutFiles = true;
-		boolean uploadedNotAllCopies = false;
-
 		logger.log(Level.INFO, "Uploading output for: " + jdl);
 
 		final String outputDir = getJobOutputDir(exitStatus);
@@ -1015,74 +1134,59 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 			return false;
 		}
 
-		for (final OutputEntry entry : toUpload) {
-			try {
-				final File localFile = new File(currentDir.getAbsolutePath() + "/" + entry.getName());
-				logger.log(Level.INFO, "Processing output file: " + localFile);
-
-				if (localFile.exists() && localFile.isFile() && localFile.canRead() && localFile.length() > 0) {
-					putJobTrace("Uploading: " + entry.getName() + " to " + outputDir);
+		// largest files first, so that the small ones fill the gaps at the end instead of one large file being left alone
+		final List<OutputEntry> uploadOrder = new ArrayList<>(toUpload);
+		uploadOrder.sort((a, b) -> Long.compare(new File(currentDir, b.getName()).length(), new File(currentDir, a.getName()).length()));
 
-					final List<String> cpOptions = new ArrayList<>();
-					cpOptions.add("-m");
-					cpOptions.add("-S");
-
-					if (entry.getOptions() != null && entry.getOptions().length() > 0)
-						cpOptions.add(entry.getOptions());
-					else
-						cpOptions.add("disk:2");
+		final int threads = Math.max(1, Math.min(getOutputUploadThreads(), uploadOrder.size()));
 
-					if (entry.getAsyncTargets() != null && entry.getAsyncTargets().length() > 0) {
-						cpOptions.add("-q");
-						cpOptions.add(entry.getAsyncTargets());
-					}
+		putJobTrace("Uploading " + uploadOrder.size() + " output files with " + threads + " parallel uploads");
 
-					cpOptions.add("-j");
-					cpOptions.add(String.valueOf(queueId));
+		final AtomicBoolean allUploaded = new AtomicBoolean(true);
+		final AtomicBoolean notAllCopies = new AtomicBoolean(false);
+		final AtomicBoolean uploadAborted = new AtomicBoolean(false);
 
-					// Don't commit in case of ERROR_E or ERROR_V
-					if (exitStatus == JobStatus.ERROR_E || exitStatus == JobStatus.ERROR_V)
-						cpOptions.add("-nc");
+		final ThreadPoolExecutor uploader = new CachedThreadPool(threads, 1, TimeUnit.SECONDS, (r) -> new Thread(r, "JobWrapper.outputUploader"));
 
-					final ByteArrayOutputStream out = new ByteArrayOutputStream();
-					final LFN uploadResult = IOUtils.upload(localFile, outputDir + "/" + entry.getName(), UserFactory.getByUsername(username), out, cpOptions.toArray(new String[0]));
+		final List<Future<?>> futures = new ArrayList<>(uploadOrder.size());
 
-					final String output_upload = out.toString();
-					logger.log(Level.INFO,
-							"Output result of " + localFile.getAbsolutePath() + " to " + outputDir + "/" + entry.getName() + " is:\nLFN = " + uploadResult + "\nFull `cp` output:\n"
-									+ output_upload);
+		try (Timing total = new Timing()) {
+			for (final OutputEntry entry : uploadOrder)
+				futures.add(uploader.submit(() -> {
+					// complete failure to upload a file, mark the job as failed, not trying further to upload anything
+					if (uploadAborted.get())
+						return;
 
-					if (uploadResult == null) {
-						// complete failure to upload the file, mark the job as failed, not trying further to upload anything
-						uploadedAllOutFiles = false;
-						putJobTrace("Failed to upload to " + outputDir + "/" + entry.getName() + ": " + out.toString());
-						break;
+					try {
+						if (!uploadOutputFile(entry, outputDir, exitStatus, notAllCopies)) {
+							allUploaded.set(false);
+							uploadAborted.set(true);
+						}
 					}
-
-					// success, but could all the copies requested in the JDL be created as per user specs?
-					if (output_upload.contains("requested replicas could be uploaded")) {
-						// partial success, will lead to a DONE_WARN state
-						uploadedNotAllCopies = true;
-						putJobTrace(output_upload);
+					catch (final IOException e) {
+						logger.log(Level.WARNING, "IOException received while attempting to upload " + entry.getName(), e);
+						putJobTrace("Failed to upload " + entry.getName() + " due to: " + e.getMessage());
+						allUploaded.set(false);
 					}
-					else
-						putJobTrace(uploadResult.getCanonicalName() + ": uploaded as requested");
+				}));
 
-					// archive entries are only booked when committed, so we have to do it ourselves since -nc
-					if ((exitStatus == JobStatus.ERROR_E || exitStatus == JobStatus.ERROR_V) && entry.isArchive())
-						CatalogueApiUtils.bookArchiveEntries(entry, uploadResult, outputDir + "/", UserFactory.getByUsername(username));
+			for (final Future<?> future : futures)
+				try {
+					future.get();
 				}
-				else {
-					logger.log(Level.WARNING, "Can't upload output file " + localFile.getName() + ", does not exist or has zero size.");
-					putJobTrace("Can't upload output file " + localFile.getName() + ", does not exist or has zero size.");
+				catch (InterruptedException | ExecutionException e) {
+					logger.log(Level.WARNING, "Exception waiting for an output file upload", e);
+					allUploaded.set(false);
 				}
-			}
-			catch (final IOException e) {
-				logger.log(Level.WARNING, "IOException received while attempting to upload " + entry.getName(), e);
-				putJobTrace("Failed to upload " + entry.getName() + " due to: " + e.getMessage());
-				uploadedAllOutFiles = false;
-			}
+
+			putJobTrace("Output upload finished in " + total);
 		}
+		finally {
+			uploader.shutdown();
+		}
+
+		final boolean uploadedAllOutFiles = allUploaded.get();
+		final boolean uploadedNotAllCopies = notAllCopies.get();
 
 		if (!uploadedAllOutFiles && jobExecutedSuccessfully) {
 			changeStatus(JobStatus.ERROR_SV);
@@ -1102,6 +1206,94 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 		return uploadedAllOutFiles;
 	}
 
+	/**
+	 * @return how many output files to upload in parallel, by default twice the number of cores of the slot but not more than
+	 *         <code>alien.site.JobWrapper.maxOutputUploadThreads</code>, each upload already writing to several storage elements
+	 */
+	private int getOutputUploadThreads() {
+		final int configured = ConfigUtils.getConfig().geti("alien.site.JobWrapper.outputUploadThreads", 0);
+
+		if (configured > 0)
+			return configured;
+
+		final int max = ConfigUtils.getConfig().geti("alien.site.JobWrapper.maxOutputUploadThreads", 4);
+
+		return Math.max(1, Math.min(2 * TaskQueueUtils.getCPUCores(jdl), max));
+	}
+
+	/**
+	 * Upload one output file or archive
+	 *
+	 * @param entry
+	 * @param outputDir
+	 * @param exitStatus
+	 * @param uploadedNotAllCopies
+	 *            set if not all the replicas requested in the JDL could be created
+	 * @return <code>false</code> if the file could not be uploaded at all, <code>true</code> if it was uploaded or there was nothing to upload
+	 * @throws IOException
+	 */
+	private boolean uploadOutputFile(final OutputEntry entry, final String outputDir, final JobStatus exitStatus, final AtomicBoolean uploadedNotAllCopies) throws IOException {
+		final File localFile = new File(currentDir.getAbsolutePath() + "/" + entry.getName());
+		logger.log(Level.INFO, "Processing output file: " + localFile);
+
+		if (localFile.exists() && localFile.isFile() && localFile.canRead() && localFile.length() > 0) {
+			putJobTrace("Uploading: " + entry.getName() + " to " + outputDir);
+
+			final List<String> cpOptions = new ArrayList<>();
+			cpOptions.add("-m");
+			cpOptions.add("-S");
+
+			if (entry.getOptions() != null && entry.getOptions().length() > 0)
+				cpOptions.add(entry.getOptions());
+			else
+				cpOptions.add("disk:2");
+
+			if (entry.getAsyncTargets() != null && entry.getAsyncTargets().length() > 0) {
+				cpOptions.add("-q");
+				cpOptions.add(entry.getAsyncTargets());
+			}
+
+			cpOptions.add("-j");
+			cpOptions.add(String.valueOf(queueId));
+
+			// Don't commit in case of ERROR_E or ERROR_V
+			if (exitStatus == JobStatus.ERROR_E || exitStatus == JobStatus.ERROR_V)
+				cpOptions.add("-nc");
+
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final LFN uploadResult = IOUtils.upload(localFile, outputDir + "/" + entry.getName(), UserFactory.getByUsername(username), out, cpOptions.toArray(new String[0]));
+
+			final String output_upload = out.toString();
+			logger.log(Level.INFO,
+					"Output result of " + localFile.getAbsolutePath() + " to " + outputDir + "/" + entry.getName() + " is:\nLFN = " + uploadResult + "\nFull `cp` output:\n"
+							+ output_upload);
+
+			if (uploadResult == null) {
+				putJobTrace("Failed to upload to " + outputDir + "/" + entry.getName() + ": " + out.toString());
+				return false;
+			}
+
+			// success, but could all the copies requested in the JDL be created as per user specs?
+			if (output_upload.contains("requested replicas could be uploaded")) {
+				// partial success, will lead to a DONE_WARN state
+				uploadedNotAllCopies.set(true);
+				putJobTrace(output_upload);
+			}
+			else
+				putJobTrace(uploadResult.getCanonicalName() + ": uploaded as requested");
+
+			// archive entries are only booked when committed, so we have to do it ourselves since -nc
+			if ((exitStatus == JobStatus.ERROR_E || exitStatus == JobStatus.ERROR_V) && entry.isArchive())
+				CatalogueApiUtils.bookArchiveEntries(entry, uploadResult, outputDir + "/", UserFactory.getByUsername(username));
+		}
+		else {
+			logger.log(Level.WARNING, "Can't upload output file " + localFile.getName() + ", does not exist or has zero size.");
+			putJobTrace("Can't upload output file " + localFile.getName() + ", does not exist or has zero size.");
+		}
+
+		return true;
+	}
+
 	private void contextualizeJDL() {
 		final Set<String> tagsToPatch = new HashSet<>();
 
@@ -1404,21 +1596,23 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 	 */
 	private boolean registerEntries(final ArrayList<OutputEntry> entries, final String outputDir) {
 		boolean registeredAll = true;
-		for (final OutputEntry entry : entries) {
-			try {
-				final boolean registered = CatalogueApiUtils.registerEntry(entry, outputDir + "/", UserFactory.getByUsername(username));
-				putJobTrace("Registering: " + entry.getName() + ". Return status: " + registered);
+		try {
+			// a single round trip for all the entries
+			final boolean[] registered = CatalogueApiUtils.registerEntries(entries, outputDir + "/", UserFactory.getByUsername(username));
+
+			for (int i = 0; i < entries.size(); i++) {
+				putJobTrace("Registering: " + entries.get(i).getName() + ". Return status: " + registered[i]);
 
-				if (!registered)
+				if (!registered[i])
 					registeredAll = false;
 			}
-			catch (final NullPointerException npe) {
-				logger.log(Level.WARNING, "An error occurred while registering " + entry + ". Bad connection?", npe);
-				putJobTrace("An error occurred while registering " + entry + ". Bad connection?");
+		}
+		catch (final NullPointerException npe) {
+			logger.log(Level.WARNING, "An error occurred while registering " + entries + ". Bad connection?", npe);
+			putJobTrace("An error occurred while registering " + entries + ". Bad connection?");
 
-				changeStatus(JobStatus.ERROR_SV);
-				System.exit(1);
-			}
+			changeStatus(JobStatus.ERROR_SV);
+			System.exit(1);
 		}
 		return registeredAll;
 	}
@@ -1472,36 +1666,26 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 		final ArrayList<OutputEntry> standaloneFilesToUpload = new ArrayList<>();
 		final ArrayList<String> allArchiveEntries = new ArrayList<>();
 
+		final List<OutputEntry> archives = new ArrayList<>();
+
 		for (final String tag : outputTags) {
 			try {
 				final ParsedOutput filesTable = new ParsedOutput(queueId, jdl, currentDir.getAbsolutePath(), tag, jobExecutedSuccessfully);
 				for (final OutputEntry entry : filesTable.getEntries()) {
 					if (entry.isArchive()) {
 						logger.log(Level.INFO, "This is an archive: " + entry.getName());
-						final ArrayList<String> archiveEntries = entry.createZip(currentDir.getAbsolutePath());
-						if (archiveEntries.size() == 0) {
-							logger.log(Level.WARNING, "Ignoring empty archive: " + entry.getName());
-							putJobTrace("Ignoring empty archive: " + entry.getName());
-						}
-						else {
-							for (final String archiveEntry : archiveEntries) {
-								allArchiveEntries.add(archiveEntry);
-								logger.log(Level.INFO, "Adding to archive members: " + archiveEntry);
-							}
-							archivesToUpload.add(entry);
+
+						// the archives are created in parallel, two tags declaring the same one would write the same file at once
+						if (archives.stream().anyMatch((a) -> a.getName().equals(entry.getName()))) {
+							logger.log(Level.WARNING, "Archive " + entry.getName() + " is declared again in " + tag + ", keeping the first definition");
+							putJobTrace("Warning: archive " + entry.getName() + " is declared more than once, only the first definition is used");
 						}
+						else
+							archives.add(entry);
 					}
 					else {
 						logger.log(Level.INFO, "This is not an archive: " + entry.getName());
-						final File entryFile = new File(currentDir.getAbsolutePath() + "/" + entry.getName());
-						if (entryFile.length() <= 0) { // archive files are checked for this during createZip, but standalone files still need to be checked
-							logger.log(Level.WARNING, "The following file has size 0 and will be ignored: " + entry.getName());
-							putJobTrace("The following file has size 0 and will be ignored: " + entry.getName());
-						}
-						else {
-							standaloneFilesToUpload.add(entry);
-							logger.log(Level.INFO, "Adding to standalone: " + entry.getName());
-						}
+						standaloneFilesToUpload.add(entry);
 					}
 				}
 			}
@@ -1511,7 +1695,72 @@ public final class JobWrapper implements MonitoringObject, Runnable {
 				return null;
 			}
 		}
-		return mergeAndRemoveDuplicateEntries(standaloneFilesToUpload, archivesToUpload, allArchiveEntries);
+
+		if (archives.size() > 0) {
+			// the archives are independent of each other, compress them in parallel
+			final int threads = Math.max(1, Math.min(TaskQueueUtils.getCPUCores(jdl), archives.size()));
+
+			final ThreadPoolExecutor archiver = new CachedThreadPool(threads, 1, TimeUnit.SECONDS, (r) -> new Thread(r, "JobWrapper.archiver"));
+
+			final List<Future<ArrayList<String>>> futures = new ArrayList<>(archives.size());
+
+			try {
+				for (final OutputEntry entry : archives)
+					futures.add(archiver.submit(() -> entry.createZip(currentDir.getAbsolutePath())));
+
+				for (int i = 0; i < archives.size(); i++) {
+					final OutputEntry entry = archives.get(i);
+
+					final ArrayList<String> archiveEntries;
+
+					try {
+						archiveEntries = futures.get(i).get();
+					}
+					catch (final InterruptedException | ExecutionException e) {
+						logger.log(Level.SEVERE, "Could not create the archive " + entry.getName() + ". Aborting", e);
+						putJobTrace("Error: Could not create the archive " + entry.getName() + ". Aborting: " + e.getMessage());
+						return null;
+					}
+
+					if (archiveEntries == null) {
+						logger.log(Level.SEVERE, "A required outputfile was NOT found! Aborting: " + entry.getName());
+						putJobTrace("Error: A required outputfile was NOT found! Aborting: " + entry.getName());
+						return null;
+					}
+
+					if (archiveEntries.size() == 0) {
+						logger.log(Level.WARNING, "Ignoring empty archive: " + entry.getName());
+						putJobTrace("Ignoring empty archive: " + entry.getName());
+					}
+					else {
+						for (final String archiveEntry : archiveEntries) {
+							allArchiveEntries.add(archiveEntry);
+							logger.log(Level.INFO, "Adding to archive members: " + archiveEntry);
+						}
+						archivesToUpload.add(entry);
+					}
+				}
+			}
+			finally {
+				archiver.shutdown();
+			}
+		}
+
+		final ArrayList<OutputEntry> nonEmptyStandaloneFiles = new ArrayList<>();
+
+		for (final OutputEntry entry : standaloneFilesToUpload) {
+			final File entryFile = new File(currentDir.getAbsolutePath() + "/" + entry.getName());
+			if (entryFile.length() <= 0) { // archive files are checked for this during createZip, but standalone files still need to be checked
+				logger.log(Level.WARNING, "The following file has size 0 and will be ignored: " + entry.getName());
+				putJobTrace("The following file has size 0 and will be ignored: " + entry.getName());
+			}
+			else {
+				nonEmptyStandaloneFiles.add(entry);
+				logger.log(Level.INFO, "Adding to standalone: " + entry.getName());
+			}
+		}
+
+		return mergeAndRemoveDuplicateEntries(nonEmptyStandaloneFiles, archivesToUpload, allArchiveEntries);
 
 	}
 
@@ -95,7 +95,7 @@ public class JDL implements Serializable {
 	 * @throws IOException
 	 */
 	public JDL(final long jobID) throws IOException {
-		this(Job.sanitizeJDL(TaskQueueUtils.getJDL(jobID)));
+		this(JDLCache.parsed(Job.sanitizeJDL(TaskQueueUtils.getJDL(jobID))));
 	}
 
 	/**
@@ -107,7 +107,7 @@ public class JDL implements Serializable {
 	 * @throws IOException
 	 */
 	public JDL(final long jobID, final boolean originalJDL) throws IOException {
-		this(Job.sanitizeJDL(TaskQueueUtils.getJDL(jobID, originalJDL)));
+		this(JDLCache.parsed(Job.sanitizeJDL(TaskQueueUtils.getJDL(jobID, originalJDL))));
 	}
 
 	/**
@@ -220,6 +220,24 @@ public class JDL implements Serializable {
 		}
 	}
 
+	/**
+	 * Copy of another JDL, the two objects can be modified independently of each other afterwards
+	 *
+	 * @param other
+	 */
+	public JDL(final JDL other) {
+		for (final Map.Entry<String, Object> entry : other.jdlContent.entrySet()) {
+			final Object value = entry.getValue();
+
+			if (value instanceof Collection)
+				jdlContent.put(entry.getKey(), new LinkedHashSet<>((Collection<?>) value));
+			else if (value instanceof StringBuilder)
+				jdlContent.put(entry.getKey(), new StringBuilder((StringBuilder) value));
+			else
+				jdlContent.put(entry.getKey(), value);
+		}
+	}
+
 	private static void checkKeySyntax(final String sKey) throws IOException {
 		if (sKey == null)
 			throw new IOException("Key cannot be null");
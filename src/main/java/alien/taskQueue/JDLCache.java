@@ -0,0 +1,170 @@
+package alien.taskQueue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import lazyj.LRUMap;
+
+/**
+ * Parsed JDLs, so that the text of a job is not parsed again each time it goes through the task queue. Entries are kept in two LRU maps: one keyed by queueId and resubmission
+ * and one keyed by the SHA-256 of the JDL text, the latter also covering the subjobs of a masterjob that share the same text. The cached objects are never handed out, the
+ * callers get a copy that they are free to modify.
+ *
+ * @since Oct 17, 2026
+ */
+public final class JDLCache {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(JDLCache.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(JDLCache.class.getCanonicalName());
+
+	private static final boolean enabled = ConfigUtils.getConfig().getb("alien.taskQueue.JDLCache.enabled", true);
+
+	private static final LRUMap<Long, JDL> byJob = new LRUMap<>(ConfigUtils.getConfig().geti("alien.taskQueue.JDLCache.jobs", 10000));
+
+	private static final LRUMap<ByteBuffer, JDL> byContent = new LRUMap<>(ConfigUtils.getConfig().geti("alien.taskQueue.JDLCache.contents", 10000));
+
+	private JDLCache() {
+		// static methods only
+	}
+
+	private static Long jobKey(final long queueId, final int resubmission) {
+		// resubmissions are small numbers, keep them in the top bits
+		return Long.valueOf((queueId & 0xFFFFFFFFFFFFL) | ((long) (resubmission & 0xFFFF) << 48));
+	}
+
+	private static final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (final NoSuchAlgorithmException e) {
+			logger.log(Level.SEVERE, "SHA-256 is not available", e);
+			return null;
+		}
+	});
+
+	private static ByteBuffer contentKey(final String content) {
+		final MessageDigest md = digest.get();
+
+		if (md == null)
+			return null;
+
+		return ByteBuffer.wrap(md.digest(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @param content
+	 * @return the shared parsed form of this text, not to be modified or returned to callers
+	 * @throws IOException
+	 *             if the JDL cannot be parsed
+	 */
+	static JDL parsed(final String content) throws IOException {
+		if (!enabled || content == null || content.length() == 0)
+			return new JDL(content);
+
+		final ByteBuffer key = contentKey(content);
+
+		if (key == null)
+			return new JDL(content);
+
+		JDL ret;
+
+		synchronized (byContent) {
+			ret = byContent.get(key);
+		}
+
+		if (ret != null) {
+			if (monitor != null)
+				monitor.incrementCounter("JDL_cache_hit");
+
+			return ret;
+		}
+
+		if (monitor != null)
+			monitor.incrementCounter("JDL_cache_miss");
+
+		ret = new JDL(content);
+
+		synchronized (byContent) {
+			byContent.put(key, ret);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Parse a JDL text, or get a copy of the previous parsing of the same text
+	 *
+	 * @param content
+	 *            JDL text
+	 * @return a private copy of the parsed JDL
+	 * @throws IOException
+	 *             if the JDL cannot be parsed
+	 */
+	public static JDL get(final String content) throws IOException {
+		return new JDL(parsed(content));
+	}
+
+	/**
+	 * Get the parsed original JDL of a job, parsing the given text only if this job was not seen before. Only the original (user submitted) JDL can be looked up in this way,
+	 * the processed one is different for the same job.
+	 *
+	 * @param queueId
+	 * @param resubmission
+	 *            the JDL of a job can change when it is resubmitted
+	 * @param content
+	 *            original JDL text of the job, used on a cache miss
+	 * @return a private copy of the parsed JDL
+	 * @throws IOException
+	 *             if the JDL cannot be parsed
+	 */
+	public static JDL get(final long queueId, final int resubmission, final String content) throws IOException {
+		if (!enabled)
+			return new JDL(content);
+
+		final Long key = jobKey(queueId, resubmission);
+
+		JDL ret;
+
+		synchronized (byJob) {
+			ret = byJob.get(key);
+		}
+
+		if (ret == null) {
+			ret = parsed(content);
+
+			synchronized (byJob) {
+				byJob.put(key, ret);
+			}
+		}
+
+		return new JDL(ret);
+	}
+
+	/**
+	 * Drop all cached entries
+	 */
+	public static void clear() {
+		synchronized (byJob) {
+			byJob.clear();
+		}
+
+		synchronized (byContent) {
+			byContent.clear();
+		}
+	}
+}
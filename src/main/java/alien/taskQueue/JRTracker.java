@@ -1,29 +1,44 @@
 package alien.taskQueue;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
 import lazyj.DBFunctions;
+import lazyj.DBFunctions.DBConnection;
 
 /**
  * @author marta
  */
 public class JRTracker implements Runnable {
 
-	static final Object pinningTrackerSync = new Object();
-
 	/**
 	 * Logger
 	 */
 	static transient final Logger logger = ConfigUtils.getLogger(JRTracker.class.getCanonicalName());
 
-	public static Set<UUID> uuidToUpdate;
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(JRTracker.class.getCanonicalName());
+
+	/**
+	 * VMs that have called in since the last update. Heartbeats of the same VM are coalesced, and the tracker drains the set element by element, so neither side ever
+	 * blocks the other.
+	 */
+	private static final Set<UUID> uuidToUpdate = ConcurrentHashMap.newKeySet();
+
+	private static final AtomicBoolean started = new AtomicBoolean(false);
 
 	private long aliveThreshold;
 	public static long lockLeasingThreshold;
@@ -32,7 +47,6 @@ public class JRTracker implements Runnable {
 
 	public JRTracker() {
 		logger.log(Level.INFO, "Starting new JRTracker");
-		JRTracker.uuidToUpdate = new HashSet<>();
 		aliveThreshold = 15*60;
 		MAX_QUERY_LENGTH = 1000;
 		lockLeasingThreshold = 5000; //ms We give the lock 5s max
@@ -75,31 +89,96 @@ public class JRTracker implements Runnable {
 		db.query(q);
 	}
 
-	private static void updateJRTimestamps(DBFunctions db) {
+	/**
+	 * Record that a VM is alive, to be written to the database by the next update cycle. Starts the tracker thread on the first call.
+	 *
+	 * @param vmUID
+	 */
+	static void heartbeat(final UUID vmUID) {
+		if (!started.get() && started.compareAndSet(false, true)) {
+			final Thread t = new Thread(new JRTracker(), "JRTracker");
+			t.start();
+		}
+
+		if (uuidToUpdate.add(vmUID)) {
+			if (monitor != null)
+				monitor.incrementCounter("heartbeats_queued");
+		}
+		else if (monitor != null)
+			monitor.incrementCounter("heartbeats_coalesced");
+	}
+
+	/**
+	 * Forget the pending heartbeat of a VM that has just left
+	 *
+	 * @param vmUID
+	 */
+	static void forget(final UUID vmUID) {
+		uuidToUpdate.remove(vmUID);
+	}
+
+	private static void updateJRTimestamps(final DBFunctions db) {
+		if (uuidToUpdate.isEmpty())
+			return;
+
+		// removing each element as it is taken keeps whatever arrives in the meantime for the next cycle
 		final StringBuilder sb = new StringBuilder();
-		if (uuidToUpdate.size() > 0) {
-			synchronized(pinningTrackerSync) {
-				final ArrayList<UUID> allUUIDs = new ArrayList<>();
-				allUUIDs.addAll(uuidToUpdate);
-				for (int i = 0; i < allUUIDs.size(); i += MAX_QUERY_LENGTH) {
-					sb.setLength(0);
-					final List<UUID> sublist = allUUIDs.subList(i, Math.min(i + MAX_QUERY_LENGTH, allUUIDs.size()));
-
-					for (final UUID u : sublist) {
-						if (sb.length() > 0)
-							sb.append(',');
-
-						sb.append("string2binary('").append(u.toString()).append("')");
-					}
 
-					final String q = "update COREPINNING set updateTs = current_timestamp where uuid in (" + sb.toString() + ");";
+		final DBConnection dbc = db.getConnection();
+
+		if (dbc == null) {
+			logger.log(Level.WARNING, "Cannot get a database connection to update the JR timestamps");
+			return;
+		}
+
+		int count = 0;
+		int pending = 0;
+
+		try {
+			dbc.setReadOnly(false);
+
+			@SuppressWarnings("resource")
+			final Connection conn = dbc.getConnection();
+
+			try (Statement stat = conn.createStatement()) {
+				stat.setQueryTimeout(60);
+
+				final Iterator<UUID> it = uuidToUpdate.iterator();
 
-					if (!db.query(q))
-						throw new IllegalStateException("Failed executing query: " + q);
+				while (it.hasNext()) {
+					final UUID u = it.next();
+					it.remove();
+
+					if (sb.length() > 0)
+						sb.append(',');
+
+					sb.append("string2binary('").append(u.toString()).append("')");
+
+					count++;
+					pending++;
+
+					if (pending == MAX_QUERY_LENGTH || !it.hasNext()) {
+						stat.addBatch("update COREPINNING set updateTs = current_timestamp where uuid in (" + sb.toString() + ");");
+						sb.setLength(0);
+						pending = 0;
+					}
 				}
-				uuidToUpdate.clear();
+
+				// all the chunks go to the server in one round trip
+				stat.executeBatch();
 			}
+
+			if (monitor != null)
+				monitor.incrementCounter("heartbeats_flushed", count);
 		}
+		catch (final SQLException e) {
+			logger.log(Level.WARNING, "Failed updating the timestamps of " + count + " JRs, they will be refreshed by their next heartbeat", e);
 
+			if (monitor != null)
+				monitor.incrementCounter("heartbeats_dropped", count);
+		}
+		finally {
+			dbc.free();
+		}
 	}
 }
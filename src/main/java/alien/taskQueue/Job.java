@@ -500,7 +500,7 @@ public class Job implements Comparable<Job>, Serializable {
 		// $data->{jdl} =~ /validate\s*=\s*1/i and $validate = 1;
 
 		try {
-			final JDL j = new JDL(jdl);
+			final JDL j = JDLCache.parsed(jdl);
 
 			return Integer.parseInt(j.gets("validate")) == 1;
 		}
@@ -0,0 +1,928 @@
+package alien.taskQueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.monitoring.Timing;
+import lazyj.DBFunctions;
+
+/**
+ * In-memory copy of the active JOBAGENT entries, used by {@link JobBroker} to answer the matching queries without going to the database.<br>
+ * <br>
+ * The entries are kept in posting lists by site, CE, user and partition, each of them sorted in the broker order (priority and price descending, oldest job first). A request
+ * picks the smallest union of lists that all its candidates must belong to, takes from each list the first entry that passes the complete set of conditions (the same ones that
+ * the SQL query applies) and returns the best of them. The entries are updated when jobs are claimed or agents are inserted by this JVM and fully reloaded from the database
+ * every <code>alien.taskQueue.JobAgentIndex.resyncInterval</code> seconds, to pick up the changes done by other services. Being a cache, the index can be stale, which is fine
+ * since claiming a job is an atomic update on the QUEUE table that fails if the agent has no more waiting jobs.
+ *
+ * @since Oct 17, 2026
+ */
+final class JobAgentIndex {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(JobAgentIndex.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(JobAgentIndex.class.getCanonicalName());
+
+	/**
+	 * Whether the broker should use the index at all
+	 */
+	static final boolean enabled = ConfigUtils.getConfig().getb("alien.taskQueue.JobAgentIndex.enabled", true);
+
+	private static final long resyncInterval = ConfigUtils.getConfig().getl("alien.taskQueue.JobAgentIndex.resyncInterval", 30) * 1000;
+
+	/**
+	 * Key of the entries that are not restricted in the respective dimension
+	 */
+	private static final String ANY = "";
+
+	/**
+	 * Columns that are handled explicitly, anything else is a Site Sonar constraint column
+	 */
+	private static final Set<String> KNOWN_COLUMNS = new HashSet<>(
+			List.of("entryid", "priority", "price", "oldestqueueid", "counter", "ttl", "disk", "cpucores", "userid", "site", "ce", "noce", "partition", "packages", "revision"));
+
+	/**
+	 * One JOBAGENT row. Everything but the counter is immutable, a change in the other fields replaces the object.
+	 */
+	static final class Agent {
+		final int entryId;
+		final int priority;
+		final double price;
+		final long oldestQueueId;
+		final AtomicInteger counter;
+		final long ttl;
+		final long disk;
+		final int cpucores;
+		final int userId;
+		final String site;
+		final String ce;
+		final String noce;
+		final String partition;
+		final String packages;
+		final Map<String, Object> constraints;
+
+		Agent(final DBFunctions db) {
+			entryId = db.geti("entryId");
+			priority = db.geti("priority");
+			price = db.getd("price");
+			oldestQueueId = db.getl("oldestQueueId");
+			counter = new AtomicInteger(db.geti("counter"));
+			ttl = db.getl("ttl");
+			disk = db.getl("disk");
+			cpucores = db.geti("cpucores");
+			userId = db.geti("userId");
+			site = string(db.getObject("site"));
+			ce = string(db.getObject("ce"));
+			noce = string(db.getObject("noce"));
+			partition = string(db.getObject("partition"));
+			packages = string(db.getObject("packages"));
+
+			constraints = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+			for (final String column : db.getColumnNames())
+				if (!KNOWN_COLUMNS.contains(column.toLowerCase()))
+					constraints.put(column, db.getObject(column));
+		}
+
+		private Agent(final Agent other, final long oldestQueueId, final int counter) {
+			entryId = other.entryId;
+			priority = other.priority;
+			price = other.price;
+			this.oldestQueueId = oldestQueueId;
+			this.counter = new AtomicInteger(counter);
+			ttl = other.ttl;
+			disk = other.disk;
+			cpucores = other.cpucores;
+			userId = other.userId;
+			site = other.site;
+			ce = other.ce;
+			noce = other.noce;
+			partition = other.partition;
+			packages = other.packages;
+			constraints = other.constraints;
+		}
+
+		private static String string(final Object o) {
+			return o != null ? o.toString() : null;
+		}
+
+		@Override
+		public String toString() {
+			return "JOBAGENT " + entryId + " (priority " + priority + ", counter " + counter + ")";
+		}
+	}
+
+	/**
+	 * The order of the SQL query: <code>priority desc, price desc, oldestQueueId asc</code>, then the entry ID to tell apart the entries
+	 */
+	private static final Comparator<Agent> BROKER_ORDER = (a, b) -> {
+		if (a.priority != b.priority)
+			return a.priority > b.priority ? -1 : 1;
+
+		final int diff = Double.compare(b.price, a.price);
+
+		if (diff != 0)
+			return diff;
+
+		if (a.oldestQueueId != b.oldestQueueId)
+			return a.oldestQueueId < b.oldestQueueId ? -1 : 1;
+
+		return Integer.compare(a.entryId, b.entryId);
+	};
+
+	/**
+	 * Sorted set of agents with a size counter, since counting a skip list is linear
+	 */
+	private static final class PostingList {
+		final ConcurrentSkipListSet<Agent> agents = new ConcurrentSkipListSet<>(BROKER_ORDER);
+		final AtomicInteger size = new AtomicInteger();
+
+		void add(final Agent a) {
+			if (agents.add(a))
+				size.incrementAndGet();
+		}
+
+		void remove(final Agent a) {
+			if (agents.remove(a))
+				size.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Posting lists of one dimension, by (lower case) key
+	 */
+	private static final class Dimension {
+		final Map<String, PostingList> lists = new ConcurrentHashMap<>();
+
+		void add(final Collection<String> keys, final Agent a) {
+			for (final String key : keys)
+				lists.computeIfAbsent(key, (k) -> new PostingList()).add(a);
+		}
+
+		void remove(final Collection<String> keys, final Agent a) {
+			for (final String key : keys) {
+				final PostingList pl = lists.get(key);
+
+				if (pl != null)
+					pl.remove(a);
+			}
+		}
+
+		List<PostingList> get(final Collection<String> keys) {
+			final List<PostingList> ret = new ArrayList<>(keys.size());
+
+			for (final String key : keys) {
+				final PostingList pl = lists.get(key);
+
+				if (pl != null)
+					ret.add(pl);
+			}
+
+			return ret;
+		}
+	}
+
+	/**
+	 * @param list
+	 *            a list of values in the AliEn format, <code>,a,b,c,</code>
+	 * @return the lower case values, or {@link #ANY} if the list is empty
+	 */
+	private static List<String> tokens(final String list) {
+		if (list == null)
+			return Collections.emptyList();
+
+		final List<String> ret = new ArrayList<>();
+
+		for (final String token : list.toLowerCase().split(","))
+			if (token.length() > 0)
+				ret.add(token);
+
+		if (ret.isEmpty())
+			ret.add(ANY);
+
+		return ret;
+	}
+
+	private static List<String> partitionKey(final Agent a) {
+		return a.partition != null ? List.of(a.partition.toLowerCase()) : Collections.emptyList();
+	}
+
+	private final Map<Integer, Agent> byId = new ConcurrentHashMap<>();
+	private final PostingList all = new PostingList();
+	private final Dimension bySite = new Dimension();
+	private final Dimension byCE = new Dimension();
+	private final Dimension byUser = new Dimension();
+	private final Dimension byPartition = new Dimension();
+
+	/**
+	 * Partition values that are patterns (or lists) and not plain names, they have to be checked for any requested partition
+	 */
+	private final Set<String> wildcardPartitions = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Replacing an agent takes several steps (the ID map and each posting list), the changes of the same agent are serialized on one of these
+	 */
+	private final Object[] agentLocks = new Object[64];
+
+	{
+		for (int i = 0; i < agentLocks.length; i++)
+			agentLocks[i] = new Object();
+	}
+
+	private Object agentLock(final long entryId) {
+		return agentLocks[(int) (entryId & (agentLocks.length - 1))];
+	}
+
+	private void add(final Agent a) {
+		if (a.priority <= 0 || a.counter.get() <= 0)
+			return;
+
+		byId.put(Integer.valueOf(a.entryId), a);
+		all.add(a);
+		bySite.add(tokens(a.site), a);
+		byCE.add(tokens(a.ce), a);
+		byUser.add(List.of(String.valueOf(a.userId)), a);
+		byPartition.add(partitionKey(a), a);
+
+		if (a.partition != null && !isPlain(a.partition))
+			wildcardPartitions.add(a.partition.toLowerCase());
+	}
+
+	private void remove(final Agent a) {
+		byId.remove(Integer.valueOf(a.entryId), a);
+		all.remove(a);
+		bySite.remove(tokens(a.site), a);
+		byCE.remove(tokens(a.ce), a);
+		byUser.remove(List.of(String.valueOf(a.userId)), a);
+		byPartition.remove(partitionKey(a), a);
+	}
+
+	private static volatile JobAgentIndex instance = null;
+
+	private static volatile long lastResync = 0;
+
+	private static Thread resyncThread = null;
+
+	/**
+	 * @return the current index, loading it if needed, or <code>null</code> if it could not be loaded
+	 */
+	private static JobAgentIndex getInstance() {
+		JobAgentIndex ret = instance;
+
+		if (ret != null)
+			return ret;
+
+		synchronized (JobAgentIndex.class) {
+			if (instance == null) {
+				instance = load();
+
+				if (resyncThread == null) {
+					resyncThread = new Thread(() -> {
+						while (true) {
+							try {
+								Thread.sleep(Math.max(resyncInterval - (System.currentTimeMillis() - lastResync), 1000));
+							}
+							catch (@SuppressWarnings("unused") final InterruptedException ie) {
+								return;
+							}
+
+							final JobAgentIndex fresh = load();
+
+							if (fresh != null)
+								instance = fresh;
+						}
+					}, "alien.taskQueue.JobAgentIndex.resync");
+
+					resyncThread.setDaemon(true);
+					resyncThread.start();
+				}
+			}
+
+			ret = instance;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return a new index with the current content of the JOBAGENT table, or <code>null</code> if it could not be read
+	 */
+	private static JobAgentIndex load() {
+		try (DBFunctions db = TaskQueueUtils.getQueueDB(); Timing t = new Timing(monitor, "resync_ms")) {
+			if (db == null)
+				return null;
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(60);
+
+			if (!db.query("SELECT * FROM JOBAGENT WHERE priority>0 AND counter>0")) {
+				logger.log(Level.WARNING, "Cannot load the JOBAGENT content");
+				return null;
+			}
+
+			final JobAgentIndex ret = new JobAgentIndex();
+
+			while (db.moveNext())
+				ret.add(new Agent(db));
+
+			lastResync = System.currentTimeMillis();
+
+			if (logger.isLoggable(Level.FINE))
+				logger.log(Level.FINE, "Loaded " + ret.byId.size() + " JOBAGENT entries in " + t);
+
+			if (monitor != null)
+				monitor.sendParameter("agents", Integer.valueOf(ret.byId.size()));
+
+			return ret;
+		}
+	}
+
+	/**
+	 * Jobs of this agent were given to a JobAgent, mirroring {@link TaskQueueUtils#deleteJobAgent(long, long, int)}
+	 *
+	 * @param entryId
+	 * @param queueId
+	 *            the (last) assigned job, will become the oldestQueueId of the agent if strictly positive
+	 * @param count
+	 *            how many jobs were assigned
+	 */
+	static void jobClaimed(final long entryId, final long queueId, final int count) {
+		final JobAgentIndex idx = instance;
+
+		if (idx == null)
+			return;
+
+		synchronized (idx.agentLock(entryId)) {
+			final Agent old = idx.byId.get(Integer.valueOf((int) entryId));
+
+			if (old == null)
+				return;
+
+			idx.remove(old);
+
+			final int counter = old.counter.get() - count;
+
+			if (counter > 0)
+				idx.add(new Agent(old, queueId > 0 ? queueId : old.oldestQueueId, counter));
+		}
+	}
+
+	/**
+	 * The agent has no more jobs to give, drop it until the next reload
+	 *
+	 * @param entryId
+	 */
+	static void agentExhausted(final long entryId) {
+		final JobAgentIndex idx = instance;
+
+		if (idx == null)
+			return;
+
+		synchronized (idx.agentLock(entryId)) {
+			final Agent old = idx.byId.get(Integer.valueOf((int) entryId));
+
+			if (old != null)
+				idx.remove(old);
+		}
+	}
+
+	/**
+	 * Reload one entry after it was inserted or modified
+	 *
+	 * @param entryId
+	 */
+	static void refresh(final long entryId) {
+		final JobAgentIndex idx = instance;
+
+		if (idx == null || entryId <= 0)
+			return;
+
+		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
+			if (db == null)
+				return;
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(30);
+
+			if (!db.query("SELECT * FROM JOBAGENT WHERE entryId=?", false, Long.valueOf(entryId)))
+				return;
+
+			final Agent fresh = db.moveNext() ? new Agent(db) : null;
+
+			synchronized (idx.agentLock(entryId)) {
+				final Agent old = idx.byId.get(Integer.valueOf((int) entryId));
+
+				if (old != null)
+					idx.remove(old);
+
+				if (fresh != null)
+					idx.add(fresh);
+			}
+		}
+	}
+
+	/**
+	 * Cache of LIKE patterns translated to regular expressions
+	 */
+	private static final Map<String, Pattern> likePatterns = new ConcurrentHashMap<>();
+
+	/**
+	 * @param value
+	 * @param pattern
+	 * @return the outcome of <code>value LIKE pattern</code> with the default MySQL collation, <code>false</code> if any of them is <code>null</code>
+	 */
+	static boolean like(final String value, final String pattern) {
+		if (value == null || pattern == null)
+			return false;
+
+		Pattern p = likePatterns.get(pattern);
+
+		if (p == null) {
+			final StringBuilder sb = new StringBuilder(pattern.length() + 16);
+
+			for (int i = 0; i < pattern.length(); i++) {
+				final char c = pattern.charAt(i);
+
+				if (c == '\\' && i + 1 < pattern.length())
+					sb.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+				else if (c == '%')
+					sb.append(".*");
+				else if (c == '_')
+					sb.append('.');
+				else
+					sb.append(Pattern.quote(String.valueOf(c)));
+			}
+
+			p = Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+
+			if (likePatterns.size() > 100000)
+				likePatterns.clear();
+
+			likePatterns.put(pattern, p);
+		}
+
+		return p.matcher(value).matches();
+	}
+
+	private static boolean isPlain(final String value) {
+		return value != null && value.indexOf('%') < 0 && value.indexOf('_') < 0 && value.indexOf(',') < 0 && value.indexOf('\\') < 0;
+	}
+
+	private static Double toNumber(final Object o) {
+		if (o == null)
+			return null;
+
+		if (o instanceof Number)
+			return Double.valueOf(((Number) o).doubleValue());
+
+		if (o instanceof Boolean)
+			return Double.valueOf(((Boolean) o).booleanValue() ? 1 : 0);
+
+		try {
+			return Double.valueOf(o.toString().trim());
+		}
+		catch (@SuppressWarnings("unused") final NumberFormatException nfe) {
+			return null;
+		}
+	}
+
+	private static String toSQLString(final Object o) {
+		if (o instanceof Boolean)
+			return ((Boolean) o).booleanValue() ? "1" : "0";
+
+		return String.valueOf(o);
+	}
+
+	/**
+	 * @return <code>a = b</code> as MySQL would compare a bound parameter and a column value, numerically if any of them is a number
+	 */
+	private static boolean sqlEquals(final Object a, final Object b) {
+		if (a instanceof Number || a instanceof Boolean || b instanceof Number || b instanceof Boolean) {
+			final Double da = toNumber(a);
+			final Double db = toNumber(b);
+
+			return da != null && db != null && da.doubleValue() == db.doubleValue();
+		}
+
+		return toSQLString(a).equalsIgnoreCase(toSQLString(b));
+	}
+
+	/**
+	 * The conditions of a match request, parsed once
+	 */
+	private static final class Request {
+		Long ttl = null;
+		Long disk = null;
+		Long cpuCores = null;
+		List<String> sites = null;
+		boolean checkPackages = false;
+		String installedPackages = null;
+		String ce = null;
+		boolean ceMustMatch = false;
+		String partition = null;
+		Set<Integer> users = null;
+		Set<Integer> noUsers = new HashSet<>();
+		String requiredCpusOperator = null;
+		long requiredCpus = 0;
+		Map<String, Object> constraintValues = new HashMap<>();
+		Set<String> nullConstraints = new HashSet<>();
+		Map<String, String> constraintTypes = null;
+		Set<Integer> remoteAgents = null;
+
+		boolean matches(final Agent a) {
+			if (a.counter.get() <= 0)
+				return false;
+
+			if (ttl != null && !(a.ttl < ttl.longValue()))
+				return false;
+
+			if (disk != null && !(a.disk < disk.longValue()))
+				return false;
+
+			if (cpuCores != null && a.cpucores > cpuCores.longValue())
+				return false;
+
+			if (sites != null) {
+				if (a.site == null)
+					return false;
+
+				boolean ok = a.site.isEmpty();
+
+				for (int i = 0; !ok && i < sites.size(); i++)
+					ok = like(a.site, "%," + sites.get(i) + ",%");
+
+				if (!ok)
+					return false;
+			}
+
+			if (checkPackages && !like(installedPackages, a.packages))
+				return false;
+
+			if (ce != null) {
+				if (ceMustMatch && !(a.ce != null && (a.ce.isEmpty() || like(a.ce, "%," + ce + ",%"))))
+					return false;
+
+				if (a.noce == null || like(a.noce, "%," + ce + ",%"))
+					return false;
+			}
+
+			if (partition != null) {
+				if (a.partition == null || !like(partition, "%," + a.partition + ",%"))
+					return false;
+			}
+			else if (!"%".equals(a.partition))
+				return false;
+
+			final Integer userId = Integer.valueOf(a.userId);
+
+			if (users != null && !users.contains(userId))
+				return false;
+
+			if (noUsers.contains(userId))
+				return false;
+
+			if (requiredCpusOperator != null) {
+				final boolean ok;
+
+				switch (requiredCpusOperator) {
+					case ">=":
+						ok = a.cpucores >= requiredCpus;
+						break;
+					case "<=":
+						ok = a.cpucores <= requiredCpus;
+						break;
+					case ">":
+						ok = a.cpucores > requiredCpus;
+						break;
+					case "<":
+						ok = a.cpucores < requiredCpus;
+						break;
+					case "!=":
+						ok = a.cpucores != requiredCpus;
+						break;
+					default:
+						ok = a.cpucores == requiredCpus;
+				}
+
+				if (!ok)
+					return false;
+			}
+
+			for (final Map.Entry<String, Object> c : constraintValues.entrySet()) {
+				final Object columnValue = a.constraints.get(c.getKey());
+
+				if (columnValue == null)
+					continue;
+
+				if ("equality".equals(constraintTypes.get(c.getKey()))) {
+					if (!sqlEquals(c.getValue(), columnValue))
+						return false;
+				}
+				else if (!like(toSQLString(c.getValue()), toSQLString(columnValue)))
+					return false;
+			}
+
+			for (final String c : nullConstraints)
+				if (a.constraints.get(c) != null)
+					return false;
+
+			if (remoteAgents != null && !remoteAgents.contains(Integer.valueOf(a.entryId)))
+				return false;
+
+			return true;
+		}
+	}
+
+	private static Long parseLong(final Object o) {
+		final Double d = toNumber(o);
+
+		return d != null ? Long.valueOf(d.longValue()) : null;
+	}
+
+	/**
+	 * Translate the request in the same conditions as {@link JobBroker#getNumberWaitingForSite(HashMap)} builds for the database
+	 *
+	 * @return the parsed request, or <code>null</code> if it cannot be handled in memory
+	 */
+	@SuppressWarnings("unchecked")
+	private static Request parse(final Map<String, Object> matchRequest, final boolean isRemoteAccessAllowed, final String remoteAgents) {
+		final Request r = new Request();
+
+		if (matchRequest.containsKey("TTL") && (r.ttl = parseLong(matchRequest.get("TTL"))) == null)
+			return null;
+
+		if (matchRequest.containsKey("Disk") && (r.disk = parseLong(matchRequest.get("Disk"))) == null)
+			return null;
+
+		if (matchRequest.containsKey("CPUCores") && Integer.parseInt(matchRequest.get("CPUCores").toString()) != 0)
+			r.cpuCores = parseLong(matchRequest.get("CPUCores"));
+
+		if (matchRequest.containsKey("Site")) {
+			r.sites = new ArrayList<>();
+			r.sites.add(String.valueOf(matchRequest.get("Site")));
+
+			if (matchRequest.containsKey("Extrasites"))
+				r.sites.addAll((Collection<String>) matchRequest.get("Extrasites"));
+		}
+		else if (matchRequest.containsKey("Extrasites"))
+			return null;
+
+		if (!matchRequest.containsKey("CVMFS")) {
+			r.checkPackages = true;
+			r.installedPackages = (String) (matchRequest.containsKey("InstalledPackages") ? matchRequest.get("InstalledPackages") : matchRequest.get("Packages"));
+		}
+
+		if (matchRequest.containsKey("CE")) {
+			r.ce = String.valueOf(matchRequest.get("CE"));
+			r.ceMustMatch = !isRemoteAccessAllowed;
+		}
+
+		if (matchRequest.containsKey("Partition") && !",,".equals(matchRequest.get("Partition")))
+			r.partition = String.valueOf(matchRequest.get("Partition"));
+
+		final ArrayList<String> users = (ArrayList<String>) matchRequest.get("Users");
+
+		if (users != null && !users.isEmpty()) {
+			r.users = new HashSet<>();
+
+			for (final String user : users) {
+				final Integer userId = TaskQueueUtils.getUserId(user, true);
+
+				if (userId != null)
+					r.users.add(userId);
+			}
+
+			// an empty condition is a syntax error for the database, let it fail there
+			if (r.users.isEmpty())
+				return null;
+		}
+
+		final ArrayList<String> noUsers = (ArrayList<String>) matchRequest.get("NoUsers");
+
+		if (noUsers != null)
+			for (final String user : noUsers) {
+				final Integer userId = TaskQueueUtils.getUserId(user, true);
+
+				if (userId != null)
+					r.noUsers.add(userId);
+			}
+
+		if (matchRequest.containsKey("RequiredCpusCe")) {
+			final Matcher m = JobBroker.requiredCpusPattern.matcher((String) matchRequest.get("RequiredCpusCe"));
+
+			if (m.matches()) {
+				r.requiredCpusOperator = m.group(1);
+				r.requiredCpus = Long.parseLong(m.group(2));
+			}
+		}
+
+		final HashMap<String, String> constraintCache = TaskQueueUtils.getConstraintCache();
+
+		if (constraintCache != null && constraintCache.size() > 0) {
+			r.constraintTypes = new HashMap<>(constraintCache);
+
+			for (final Map.Entry<String, String> entry : r.constraintTypes.entrySet()) {
+				final String constraintName = entry.getKey();
+
+				if (matchRequest.containsKey(constraintName)) {
+					final Object constraintValue = matchRequest.get(constraintName);
+
+					if (constraintValue != null) {
+						if (!"equality".equals(entry.getValue()) && !"regex".equals(entry.getValue()))
+							return null;
+
+						r.constraintValues.put(constraintName, constraintValue);
+					}
+				}
+				else
+					r.nullConstraints.add(constraintName);
+			}
+		}
+
+		if (isRemoteAccessAllowed) {
+			r.remoteAgents = new HashSet<>();
+
+			if (remoteAgents != null)
+				for (final String agent : remoteAgents.split(","))
+					if (!agent.isBlank())
+						try {
+							r.remoteAgents.add(Integer.valueOf(agent.trim()));
+						}
+						catch (@SuppressWarnings("unused") final NumberFormatException nfe) {
+							return null;
+						}
+		}
+
+		return r;
+	}
+
+	/**
+	 * @return the posting lists that together hold all possible candidates for this request, the smallest such set among the indexed dimensions
+	 */
+	private List<PostingList> candidates(final Request r) {
+		List<PostingList> best = List.of(all);
+		int bestSize = all.size.get();
+
+		final List<List<PostingList>> options = new ArrayList<>();
+
+		if (r.sites != null) {
+			final List<String> keys = new ArrayList<>();
+			keys.add(ANY);
+
+			boolean plain = true;
+
+			for (final String s : r.sites) {
+				plain &= isPlain(s);
+				keys.add(s.toLowerCase());
+			}
+
+			if (plain)
+				options.add(bySite.get(keys));
+		}
+
+		if (r.ce != null && r.ceMustMatch && isPlain(r.ce))
+			options.add(byCE.get(List.of(ANY, r.ce.toLowerCase())));
+
+		if (r.users != null) {
+			final List<String> keys = new ArrayList<>();
+
+			for (final Integer userId : r.users)
+				keys.add(userId.toString());
+
+			options.add(byUser.get(keys));
+		}
+
+		if (r.partition == null)
+			options.add(byPartition.get(List.of("%")));
+		else {
+			final List<String> keys = new ArrayList<>(wildcardPartitions);
+
+			for (final String p : r.partition.toLowerCase().split(","))
+				if (p.length() > 0)
+					keys.add(p);
+
+			options.add(byPartition.get(keys));
+		}
+
+		for (final List<PostingList> option : options) {
+			int size = 0;
+
+			for (final PostingList pl : option)
+				size += pl.size.get();
+
+			if (size < bestSize) {
+				best = option;
+				bestSize = size;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * @param r
+	 * @return the best agent matching the request, in the broker order, or <code>null</code> if none
+	 */
+	private Agent match(final Request r) {
+		Agent best = null;
+
+		for (final PostingList pl : candidates(r))
+			for (final Agent a : pl.agents) {
+				if (best != null && BROKER_ORDER.compare(a, best) >= 0)
+					break;
+
+				if (r.matches(a)) {
+					best = a;
+					break;
+				}
+			}
+
+		return best;
+	}
+
+	/**
+	 * Find in memory the same answer that {@link JobBroker#getNumberWaitingForSite(HashMap)} would get from the database
+	 *
+	 * @param matchRequest
+	 * @param isRemoteAccessAllowed
+	 * @param remoteAgents
+	 *            the remote agents, if remote access is allowed
+	 * @return the match answer, or <code>null</code> if the request has to be answered by the database
+	 */
+	static HashMap<String, Object> match(final HashMap<String, Object> matchRequest, final boolean isRemoteAccessAllowed, final String remoteAgents) {
+		if (!enabled)
+			return null;
+
+		final Object ret = matchRequest.get("Return");
+
+		if (!"entryId".equals(ret) && !"packages".equals(ret))
+			return null;
+
+		final JobAgentIndex idx = getInstance();
+
+		if (idx == null)
+			return null;
+
+		final Request r = parse(matchRequest, isRemoteAccessAllowed, remoteAgents);
+
+		if (r == null) {
+			if (monitor != null)
+				monitor.incrementCounter("fallback_to_db");
+
+			return null;
+		}
+
+		final Agent a;
+
+		try (Timing t = new Timing(monitor, "match_ms")) {
+			a = idx.match(r);
+
+			t.endTiming();
+		}
+
+		final HashMap<String, Object> matchAnswer = new HashMap<>();
+		matchAnswer.put("Code", Integer.valueOf(0));
+
+		if (monitor != null)
+			monitor.incrementCounter(a != null ? "matched" : "not_matched");
+
+		if (a == null)
+			return matchAnswer;
+
+		matchAnswer.put("Code", Integer.valueOf(1));
+
+		if ("entryId".equals(ret))
+			matchAnswer.put("entryId", String.valueOf(a.entryId));
+		else
+			matchAnswer.put("packages", a.packages != null ? a.packages : "");
+
+		matchAnswer.put("CE", matchRequest.get("CE"));
+		matchAnswer.put("Host", matchRequest.get("Host"));
+
+		return matchAnswer;
+	}
+}
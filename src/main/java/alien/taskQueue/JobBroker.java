@@ -1,5 +1,9 @@
 package alien.taskQueue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -20,6 +24,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import alien.priority.PriorityRegister;
+import org.json.simple.JSONObject;
 import org.nfunk.jep.JEP;
 
 import alien.api.Dispatcher;
@@ -86,6 +91,95 @@ public class JobBroker {
 	 *         JDL...)
 	 */
 	public static HashMap<String, Object> getMatchJob(final HashMap<String, Object> matchRequest) {
+		final List<HashMap<String, Object>> matches = matchJobs(matchRequest, 1);
+
+		return matches != null ? matches.get(0) : null;
+	}
+
+	private static long toLong(final Object o) {
+		if (o instanceof Number)
+			return ((Number) o).longValue();
+
+		if (o != null)
+			try {
+				return Long.parseLong(o.toString().trim());
+			}
+			catch (@SuppressWarnings("unused") final NumberFormatException nfe) {
+				// ignore
+			}
+
+		return 0;
+	}
+
+	/**
+	 * Fill the free slots of a multi-core JobRunner in one request. Jobs are taken from the best matching agent, as many as its requirements fit in the advertised free CPU cores
+	 * and disk space, then the matching is repeated with the remaining resources until <code>maxJobs</code> jobs are assigned or nothing else fits.
+	 *
+	 * @param matchRequest
+	 *            same parameters as for {@link #getMatchJob(HashMap)}, with <code>CPUCores</code> and <code>Disk</code> being the free resources of the whole node
+	 * @param maxJobs
+	 *            how many jobs the JobRunner is ready to start
+	 * @return the assigned jobs, each in the format returned by {@link #getMatchJob(HashMap)}, or a single element with the error if no job could be assigned
+	 */
+	public static List<HashMap<String, Object>> getMatchJobs(final HashMap<String, Object> matchRequest, final int maxJobs) {
+		if (monitor != null)
+			monitor.incrementCounter("TQ_get_match_jobs");
+
+		final List<HashMap<String, Object>> ret = new ArrayList<>();
+
+		long freeCores = toLong(matchRequest.get("CPUCores"));
+		long freeDisk = toLong(matchRequest.get("Disk"));
+
+		// 0 cores means whole node scheduling, without a CPU constraint
+		final boolean limitCores = freeCores > 0;
+		final boolean limitDisk = freeDisk > 0;
+
+		List<HashMap<String, Object>> lastAnswer = null;
+
+		while (ret.size() < maxJobs) {
+			final HashMap<String, Object> request = new HashMap<>(matchRequest);
+
+			if (limitCores)
+				request.put("CPUCores", Long.valueOf(freeCores));
+
+			if (limitDisk)
+				request.put("Disk", Long.valueOf(freeDisk));
+
+			lastAnswer = matchJobs(request, maxJobs - ret.size());
+
+			if (lastAnswer == null)
+				break;
+
+			int matched = 0;
+
+			for (final HashMap<String, Object> job : lastAnswer)
+				if (Integer.valueOf(1).equals(job.get("Code"))) {
+					ret.add(job);
+					matched++;
+
+					freeCores -= toLong(job.get("CPUCores"));
+					freeDisk -= toLong(job.get("Disk"));
+				}
+
+			if (matched == 0 || (limitCores && freeCores <= 0) || (limitDisk && freeDisk <= 0))
+				break;
+		}
+
+		if (monitor != null)
+			monitor.incrementCounter("TQ_bulk_assigned_jobs", ret.size());
+
+		if (ret.isEmpty())
+			return lastAnswer;
+
+		return ret;
+	}
+
+	/**
+	 * @param matchRequest
+	 * @param maxJobs
+	 * @return the jobs assigned from the best matching agent, at least one and at most <code>maxJobs</code>, or a single element with the error
+	 */
+	private static List<HashMap<String, Object>> matchJobs(final HashMap<String, Object> matchRequest, final int maxJobs) {
 		if (!ConfigUtils.getConfig().getb("alien.taskQueue.JobBroker.enabled", true)) {
 			final HashMap<String, Object> matchAnswer = new HashMap<>();
 			
@@ -94,7 +188,7 @@ public class JobBroker {
 			
 			logger.log(Level.FINE, "JobBroker is disabled, draining the Grid of jobs");
 			
-			return matchAnswer;
+			return Collections.singletonList(matchAnswer);
 		}
 		
 		updateWithValuesInLDAP(matchRequest);
@@ -120,7 +214,7 @@ public class JobBroker {
 				final HashMap<String, Object> matchAnswer = new HashMap<>(2);
 				matchAnswer.put("Error", "CVMFS revision is outdated " + wnCVMFSRevision + " vs " + serverCVMFSRevision);
 				matchAnswer.put("Code", Integer.valueOf(-1));
-				return matchAnswer;
+				return Collections.singletonList(matchAnswer);
 			}
 		}
 
@@ -137,6 +231,10 @@ public class JobBroker {
 
 			HashMap<String, Object> matchAnswer = new HashMap<>();
 			HashMap<String, Object> waiting = new HashMap<>();
+			List<HashMap<String, Object>> assigned = null;
+
+			final long freeCores = maxJobs > 1 ? toLong(matchRequest.get("CPUCores")) : 0;
+			final long freeDisk = maxJobs > 1 ? toLong(matchRequest.get("Disk")) : 0;
 
 			logger.log(Level.INFO, "We received parameters: " + matchRequest.toString());
 
@@ -153,7 +251,7 @@ public class JobBroker {
 				logger.log(Level.INFO, "Queue is not open! Check queueinfo");
 				matchAnswer.put("Error", "Queue is not open! Check queueinfo");
 				setRejectionReason(String.valueOf(matchAnswer.get("Error")), String.valueOf(matchRequest.get("CE")));
-				return matchAnswer;
+				return Collections.singletonList(matchAnswer);
 			}
 
 			matchRequest.put("Remote", Integer.valueOf(0));
@@ -167,7 +265,7 @@ public class JobBroker {
 				logger.log(Level.INFO, "Updating host failed!");
 				matchAnswer.put("Error", "Updating host failed");
 				setRejectionReason(String.valueOf(matchAnswer.get("Error")), String.valueOf(matchRequest.get("CE")));
-				return matchAnswer;
+				return Collections.singletonList(matchAnswer);
 			}
 
 			waiting = getNumberWaitingForSite(matchRequest);
@@ -175,7 +273,12 @@ public class JobBroker {
 			// we got something back fitting all requirements :-)
 			if (waiting.containsKey("entryId")) {
 				logger.log(Level.INFO, "We have a job back");
-				matchAnswer = getWaitingJobForAgentId(waiting);
+				assigned = getWaitingJobsForAgentId(waiting, maxJobs, freeCores, freeDisk);
+
+				if (assigned == null)
+					return null;
+
+				matchAnswer = assigned.get(0);
 				if (matchAnswer.containsKey("Error"))
 					setRejectionReason(String.valueOf(matchAnswer.get("Error")), String.valueOf(matchRequest.get("CE")));
 			}
@@ -220,7 +323,12 @@ public class JobBroker {
 
 					if (waiting.containsKey("entryId")) {
 						logger.log(Level.INFO, "We have a job back for remote");
-						matchAnswer = getWaitingJobForAgentId(waiting);
+						assigned = getWaitingJobsForAgentId(waiting, maxJobs, freeCores, freeDisk);
+
+						if (assigned == null)
+							return null;
+
+						matchAnswer = assigned.get(0);
 					}
 					else {
 						if (!matchRequest.containsKey("CVMFS")) {
@@ -260,49 +368,17 @@ public class JobBroker {
 
 			// we get back the needed information
 			if (matchAnswer.containsKey("queueId")) {
-				// success!!
-				matchAnswer.put("Code", Integer.valueOf(1));
-				final Long queueId = (Long) matchAnswer.get("queueId");
-				final String username = (String) matchAnswer.get("User");
-
-				int resubmission = ((Integer) matchAnswer.getOrDefault("Resubmission", Integer.valueOf(-1))).intValue();
-				final JobToken jobToken = TaskQueueUtils.insertJobToken(queueId.longValue(), (String) matchAnswer.get("User"), resubmission);
-				if (jobToken != null) {
-					resubmission = jobToken.resubmission;
+				final List<HashMap<String, Object>> ret = new ArrayList<>(assigned.size());
 
-					if (jobToken.legacyToken != null && jobToken.legacyToken.length() == 32)
-						matchAnswer.put("LegacyToken", jobToken.legacyToken);
-				}
-
-				if (resubmission >= 0) {
-					GetTokenCertificate gtc = new GetTokenCertificate((AliEnPrincipal) matchRequest.get("AliEnPrincipal"), username, TokenCertificateType.JOB_TOKEN,
-							"queueid=" + queueId + "/resubmission=" + resubmission, 1);
-					try {
-						gtc = Dispatcher.execute(gtc);
-						matchAnswer.put("TokenCertificate", gtc.getCertificateAsString());
-						matchAnswer.put("TokenKey", gtc.getPrivateKeyAsString());
-					}
-					catch (final Exception e) {
-						logger.info("Getting TokenCertificate for job " + queueId + " failed: " + e);
-					}
-				}
+				for (final HashMap<String, Object> job : assigned)
+					if (issueJobToken(job, matchRequest, db))
+						ret.add(job);
 
-				if (!matchAnswer.containsKey("TokenCertificate") || !matchAnswer.containsKey("TokenKey")) {
-					logger.log(Level.INFO, "The job could not create token: " + queueId);
+				// none of the jobs could get a token, report the error of the first one
+				if (ret.isEmpty())
+					return Collections.singletonList(matchAnswer);
 
-					db.setReadOnly(true);
-					TaskQueueUtils.setJobStatus(queueId.longValue(), JobStatus.ERROR_A);
-					matchAnswer.put("Code", Integer.valueOf(-1));
-					matchAnswer.put("Error", "Error getting the TokenCertificate of the job " + queueId);
-					setRejectionReason(String.valueOf(matchAnswer.get("Error")), String.valueOf(matchRequest.get("CE")));
-					if (jobToken != null)
-						jobToken.destroy(db);
-				}
-				else {
-					logger.log(Level.INFO, "Created a TokenCertificate for the job...");
-					TaskQueueUtils.setSiteQueueStatus((String) matchRequest.get("CE"), "jobagent-match");
-					TaskQueueUtils.putJobLog(queueId.longValue(), "state", "Job ASSIGNED to: " + (String) matchRequest.get("CE"), null);
-				}
+				return ret;
 			} // nothing back, something went wrong while obtaining queueId
 				// from the positive cases
 			else if (!matchAnswer.containsKey("Code")) {
@@ -312,8 +388,65 @@ public class JobBroker {
 				setRejectionReason(String.valueOf(matchAnswer.get("Error")), String.valueOf(matchRequest.get("CE")));
 			}
 
-			return matchAnswer;
+			return Collections.singletonList(matchAnswer);
+		}
+	}
+
+	/**
+	 * Create the token and the certificate with which an assigned job will run
+	 *
+	 * @param job
+	 *            one of the jobs assigned to the requester, will be completed with the token or with the error
+	 * @param matchRequest
+	 * @param db
+	 * @return <code>true</code> if the job can be started
+	 */
+	private static boolean issueJobToken(final HashMap<String, Object> job, final HashMap<String, Object> matchRequest, final DBFunctions db) {
+		// success!!
+		job.put("Code", Integer.valueOf(1));
+		final Long queueId = (Long) job.get("queueId");
+		final String username = (String) job.get("User");
+
+		int resubmission = ((Integer) job.getOrDefault("Resubmission", Integer.valueOf(-1))).intValue();
+		final JobToken jobToken = TaskQueueUtils.insertJobToken(queueId.longValue(), (String) job.get("User"), resubmission);
+		if (jobToken != null) {
+			resubmission = jobToken.resubmission;
+
+			if (jobToken.legacyToken != null && jobToken.legacyToken.length() == 32)
+				job.put("LegacyToken", jobToken.legacyToken);
+		}
+
+		if (resubmission >= 0) {
+			GetTokenCertificate gtc = new GetTokenCertificate((AliEnPrincipal) matchRequest.get("AliEnPrincipal"), username, TokenCertificateType.JOB_TOKEN,
+					"queueid=" + queueId + "/resubmission=" + resubmission, 1);
+			try {
+				gtc = Dispatcher.execute(gtc);
+				job.put("TokenCertificate", gtc.getCertificateAsString());
+				job.put("TokenKey", gtc.getPrivateKeyAsString());
+			}
+			catch (final Exception e) {
+				logger.info("Getting TokenCertificate for job " + queueId + " failed: " + e);
+			}
+		}
+
+		if (!job.containsKey("TokenCertificate") || !job.containsKey("TokenKey")) {
+			logger.log(Level.INFO, "The job could not create token: " + queueId);
+
+			db.setReadOnly(true);
+			TaskQueueUtils.setJobStatus(queueId.longValue(), JobStatus.ERROR_A);
+			job.put("Code", Integer.valueOf(-1));
+			job.put("Error", "Error getting the TokenCertificate of the job " + queueId);
+			setRejectionReason(String.valueOf(job.get("Error")), String.valueOf(matchRequest.get("CE")));
+			if (jobToken != null)
+				jobToken.destroy(db);
+		}
+		else {
+			logger.log(Level.INFO, "Created a TokenCertificate for the job...");
+			TaskQueueUtils.setSiteQueueStatus((String) matchRequest.get("CE"), "jobagent-match");
+			TaskQueueUtils.putJobLog(queueId.longValue(), "state", "Job ASSIGNED to: " + (String) matchRequest.get("CE"), null);
 		}
+
+		return Integer.valueOf(1).equals(job.get("Code"));
 	}
 
 	private static void setRejectionReason(String error, String ce) {
@@ -405,7 +538,7 @@ public class JobBroker {
 		return matchingCEs;
 	}
 
-	private static HashMap<String, Object> getWaitingJobForAgentId(final HashMap<String, Object> waiting) {
+	private static List<HashMap<String, Object>> getWaitingJobsForAgentId(final HashMap<String, Object> waiting, final int maxJobs, final long freeCores, final long freeDisk) {
 		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
 			if (db == null)
 				return null;
@@ -430,9 +563,33 @@ public class JobBroker {
 			if (waiting.containsKey("Remote") && ((Integer) waiting.get("Remote")).intValue() == 1)
 				extra = " and timestampdiff(SECOND,mtime,now())>=ifnull(remoteTimeout,43200)";
 
+			// all the jobs of an agent have the same requirements, so as many of them as fit in the free resources can be taken in one go
+			int count = 1;
+			long agentDisk = 0;
+
+			if (maxJobs > 1) {
+				db.setReadOnly(true);
+
+				if (db.query("select cpucores, disk, counter from JOBAGENT where entryId=?", false, agentId) && db.moveNext()) {
+					agentDisk = db.getl(2);
+
+					count = Math.min(maxJobs, Math.max(db.geti(3), 1));
+
+					if (freeCores > 0)
+						count = (int) Math.min(count, freeCores / Math.max(db.geti(1), 1));
+
+					if (freeDisk > 0 && agentDisk > 0)
+						count = (int) Math.min(count, freeDisk / agentDisk);
+
+					count = Math.max(count, 1);
+				}
+
+				db.setReadOnly(false);
+			}
+
 			final DBConnection dbc = db.getConnection();
 
-			long queueId;
+			final List<Long> queueIds = new ArrayList<>(count);
 
 			try {
 				dbc.setReadOnly(false);
@@ -440,42 +597,96 @@ public class JobBroker {
 				@SuppressWarnings("resource")
 				final Connection conn = dbc.getConnection();
 
-				try (Statement stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
-					stat.execute("SET @update_id := 0;", Statement.NO_GENERATED_KEYS);
-				}
+				if (count == 1) {
+					try (Statement stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
+						stat.execute("SET @update_id := 0;", Statement.NO_GENERATED_KEYS);
+					}
 
-				final String updateQuery = "UPDATE QUEUE SET statusId=6, siteid=?, exechostid=?, queueId = (SELECT @update_id := queueId) WHERE statusId=5 and agentId=?" + extra
-						+ " ORDER BY queueId ASC LIMIT 1;";
+					final String updateQuery = "UPDATE QUEUE SET statusId=6, siteid=?, exechostid=?, queueId = (SELECT @update_id := queueId) WHERE statusId=5 and agentId=?" + extra
+							+ " ORDER BY queueId ASC LIMIT 1;";
 
-				try (PreparedStatement stat = conn.prepareStatement(updateQuery, Statement.NO_GENERATED_KEYS)) {
-					stat.setObject(1, Long.valueOf(siteId));
-					stat.setObject(2, Long.valueOf(hostId));
-					stat.setObject(3, agentId);
+					try (PreparedStatement stat = conn.prepareStatement(updateQuery, Statement.NO_GENERATED_KEYS)) {
+						stat.setObject(1, Long.valueOf(siteId));
+						stat.setObject(2, Long.valueOf(hostId));
+						stat.setObject(3, agentId);
 
-					stat.setQueryTimeout(60); // don't wait more than 1 minute for an UPDATE operation, bail out and let the JA fail
+						stat.setQueryTimeout(60); // don't wait more than 1 minute for an UPDATE operation, bail out and let the JA fail
 
-					stat.execute();
+						stat.execute();
 
-					if (stat.getUpdateCount() == 0) {
-						logger.log(Level.INFO, "No jobs to give back");
-						job.put("Error", "No jobs to give back");
-						job.put("Code", Integer.valueOf(-2));
-						return job;
+						if (stat.getUpdateCount() == 0) {
+							// the agent has no waiting jobs left, whatever its counter says
+							JobAgentIndex.agentExhausted(agentId.longValue());
+
+							logger.log(Level.INFO, "No jobs to give back");
+							job.put("Error", "No jobs to give back");
+							job.put("Code", Integer.valueOf(-2));
+							return Collections.singletonList(job);
+						}
+					}
+
+					try (Statement stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
+						stat.execute("SELECT @update_id;", Statement.NO_GENERATED_KEYS);
+
+						try (ResultSet resultSet = stat.getResultSet()) {
+							if (!resultSet.first()) {
+								logger.log(Level.INFO, "Couldn't get the updated queueId for agentId: " + agentId);
+								job.put("Error", "Couldn't get the updated queueId for the agentId: " + agentId);
+								job.put("Code", Integer.valueOf(-6));
+								return Collections.singletonList(job);
+							}
+
+							queueIds.add(Long.valueOf(resultSet.getLong(1)));
+						}
 					}
 				}
+				else {
+					// lock the first waiting jobs of the agent and assign all of them in the same transaction
+					conn.setAutoCommit(false);
+
+					try {
+						try (PreparedStatement stat = conn.prepareStatement("SELECT queueId FROM QUEUE WHERE statusId=5 and agentId=?" + extra + " ORDER BY queueId ASC LIMIT ? FOR UPDATE")) {
+							stat.setObject(1, agentId);
+							stat.setInt(2, count);
+							stat.setQueryTimeout(60);
+
+							try (ResultSet resultSet = stat.executeQuery()) {
+								while (resultSet.next())
+									queueIds.add(Long.valueOf(resultSet.getLong(1)));
+							}
+						}
 
-				try (Statement stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
-					stat.execute("SELECT @update_id;", Statement.NO_GENERATED_KEYS);
+						if (queueIds.size() > 0) {
+							try (PreparedStatement stat = conn.prepareStatement("UPDATE QUEUE SET statusId=6, siteid=?, exechostid=? WHERE statusId=5 and queueId IN (" + placeholders(queueIds.size()) + ")")) {
+								stat.setObject(1, Long.valueOf(siteId));
+								stat.setObject(2, Long.valueOf(hostId));
 
-					try (ResultSet resultSet = stat.getResultSet()) {
-						if (!resultSet.first()) {
-							logger.log(Level.INFO, "Couldn't get the updated queueId for agentId: " + agentId);
-							job.put("Error", "Couldn't get the updated queueId for the agentId: " + agentId);
-							job.put("Code", Integer.valueOf(-6));
-							return job;
+								for (int i = 0; i < queueIds.size(); i++)
+									stat.setObject(i + 3, queueIds.get(i));
+
+								stat.setQueryTimeout(60);
+
+								stat.execute();
+							}
 						}
 
-						queueId = resultSet.getLong(1);
+						conn.commit();
+					}
+					catch (final SQLException e) {
+						conn.rollback();
+						throw e;
+					}
+					finally {
+						conn.setAutoCommit(true);
+					}
+
+					if (queueIds.isEmpty()) {
+						JobAgentIndex.agentExhausted(agentId.longValue());
+
+						logger.log(Level.INFO, "No jobs to give back");
+						job.put("Error", "No jobs to give back");
+						job.put("Code", Integer.valueOf(-2));
+						return Collections.singletonList(job);
 					}
 				}
 			}
@@ -486,87 +697,137 @@ public class JobBroker {
 				logger.log(Level.INFO, "Some other SQL exception while updating the queue for agentId " + agentId, e);
 				job.put("Error", "Could not get you a job for agentId: " + agentId);
 				job.put("Code", Integer.valueOf(-6));
-				return job;
+				return Collections.singletonList(job);
 			}
 			finally {
 				dbc.free();
 			}
 
 			// we got something to run
-			String jdl, user;
-			int userId, cpucores;
+			final Map<Long, HashMap<String, Object>> jobs = new HashMap<>(queueIds.size());
 
-			db.query("select origjdl jdl, user, resubmission, userId, cpucores from QUEUEJDL join QUEUE using (queueid) join QUEUE_USER using (userId) where queueId=?", false, Long.valueOf(queueId));
+			final Map<Long, Integer> assignedPerMasterjob = new HashMap<>();
 
-			int resubmission = -1;
+			db.query("select queueId, origjdl jdl, user, resubmission, userId, cpucores, split from QUEUEJDL join QUEUE using (queueid) join QUEUE_USER using (userId) where queueId in ("
+					+ placeholders(queueIds.size()) + ")", false, queueIds.toArray());
+
+			while (db.moveNext()) {
+				final Long queueId = Long.valueOf(db.getl(1));
 
-			if (db.moveNext()) {
 				logger.log(Level.INFO, "Updated and getting fields queueId, jdl, user for queueId " + queueId);
-				jdl = db.gets(1);
-				user = db.gets(2);
-				resubmission = db.geti(3);
-				userId = db.geti(4);
-				cpucores = db.geti(5);
+
+				final HashMap<String, Object> assigned = new HashMap<>();
+				assigned.put("queueId", queueId);
+				assigned.put("JDL", db.gets(2));
+				assigned.put("User", db.gets(3));
+				assigned.put("Resubmission", Integer.valueOf(db.geti(4)));
+				assigned.put("userId", Integer.valueOf(db.geti(5)));
+				assigned.put("CPUCores", Integer.valueOf(db.geti(6)));
+
+				if (db.getl(7) > 0)
+					assignedPerMasterjob.merge(Long.valueOf(db.getl(7)), Integer.valueOf(1), Integer::sum);
+
+				if (agentDisk > 0)
+					assigned.put("Disk", Long.valueOf(agentDisk));
+
+				jobs.put(queueId, assigned);
 			}
-			else {
+
+			if (jobs.isEmpty()) {
 				logger.log(Level.INFO, "Couldn't get the queueId, jdl and user for the agentId: " + agentId);
 				job.put("Error", "Couldn't get the queueId, jdl and user for the agentId: " + agentId);
 				job.put("Code", Integer.valueOf(-7));
-				return job;
+				return Collections.singletonList(job);
 			}
 
-			db.query("update QUEUEPROC set lastupdate=CURRENT_TIMESTAMP where queueId=?", false, Long.valueOf(queueId));
+			db.query("update QUEUEPROC set lastupdate=CURRENT_TIMESTAMP where queueId in (" + placeholders(queueIds.size()) + ")", false, queueIds.toArray());
 
-			db.query("update SITEQUEUES set ASSIGNED=GREATEST(ASSIGNED,0)+1, WAITING=GREATEST(WAITING-1,0) where siteid=?", false, Integer.valueOf(siteId));
+			db.query("update SITEQUEUES set ASSIGNED=GREATEST(ASSIGNED,0)+?, WAITING=GREATEST(WAITING-?,0) where siteid=?", false, Integer.valueOf(queueIds.size()), Integer.valueOf(queueIds.size()),
+					Integer.valueOf(siteId));
 
-			TaskQueueUtils.deleteJobAgent(agentId.longValue(), queueId);
+			TaskQueueUtils.deleteJobAgent(agentId.longValue(), queueIds.get(queueIds.size() - 1).longValue(), queueIds.size());
 
-			job.put("queueId", Long.valueOf(queueId));
-			job.put("JDL", jdl);
-			job.put("User", user);
-			job.put("Resubmission", Integer.valueOf(resubmission));
+			for (final Map.Entry<Long, Integer> entry : assignedPerMasterjob.entrySet())
+				MasterjobCounters.statusChanged(entry.getKey().longValue(), JobStatus.WAITING, JobStatus.ASSIGNED, entry.getValue().intValue());
 
-			try {
-				final JDL j = new JDL(Job.sanitizeJDL(jdl));
+			final List<HashMap<String, Object>> ret = new ArrayList<>(jobs.size());
 
-				final Collection<String> packages = j.getList("Packages");
+			for (final Long queueId : queueIds) {
+				final HashMap<String, Object> assigned = jobs.get(queueId);
 
-				if (packages != null && packages.size() > 0) {
-					Set<String> platforms = null;
+				if (assigned == null) {
+					logger.log(Level.WARNING, "Couldn't get the jdl and user of " + queueId + " for the agentId: " + agentId);
+					continue;
+				}
 
-					for (final String pEntry : packages) {
-						final alien.catalogue.Package p = PackageUtils.getPackage(pEntry);
+				final String jdl = (String) assigned.get("JDL");
+				final int userId = ((Integer) assigned.remove("userId")).intValue();
+				final int cpucores = ((Integer) assigned.get("CPUCores")).intValue();
 
-						if (p.getPlatforms().contains("source"))
-							continue;
+				try {
+					final JDL j = JDLCache.get(queueId.longValue(), ((Integer) assigned.get("Resubmission")).intValue(), Job.sanitizeJDL(jdl));
 
-						if (platforms == null)
-							platforms = p.getPlatforms();
-						else
-							platforms.retainAll(p.getPlatforms());
-					}
+					// let the agent use the parsed form directly
+					assigned.put("ParsedJDL", j);
+
+					final Collection<String> packages = j.getList("Packages");
 
-					if (platforms != null && platforms.size() > 0) {
-						if (logger.isLoggable(Level.INFO))
-							logger.log(Level.INFO, "Platforms for " + queueId + ": " + platforms);
+					if (packages != null && packages.size() > 0) {
+						Set<String> platforms = null;
+
+						for (final String pEntry : packages) {
+							final alien.catalogue.Package p = PackageUtils.getPackage(pEntry);
+
+							if (p.getPlatforms().contains("source"))
+								continue;
+
+							if (platforms == null)
+								platforms = p.getPlatforms();
+							else
+								platforms.retainAll(p.getPlatforms());
+						}
 
-						job.put("Platforms", String.valueOf(platforms));
+						if (platforms != null && platforms.size() > 0) {
+							if (logger.isLoggable(Level.INFO))
+								logger.log(Level.INFO, "Platforms for " + queueId + ": " + platforms);
+
+							assigned.put("Platforms", String.valueOf(platforms));
+						}
+						else
+							logger.log(Level.WARNING, "No common platforms for the packages of " + queueId + " : " + packages);
 					}
-					else
-						logger.log(Level.WARNING, "No common platforms for the packages of " + queueId + " : " + packages);
 				}
+				catch (final Exception e) {
+					logger.log(Level.SEVERE, "Exception parsing the JDL of " + queueId, e);
+				}
+
+				if (logger.isLoggable(Level.FINE))
+					logger.log(Level.FINE, "Going to return " + queueId + " and " + assigned.get("User") + " and " + jdl);
+
+				PriorityRegister.JobCounter.getCounterForUser(Integer.valueOf(userId)).incRunningAndDecWaiting(cpucores);
+
+				ret.add(assigned);
 			}
-			catch (final Exception e) {
-				logger.log(Level.SEVERE, "Exception parsing the JDL of " + queueId, e);
-			}
 
-			if (logger.isLoggable(Level.FINE))
-				logger.log(Level.FINE, "Going to return " + queueId + " and " + user + " and " + jdl);
+			return ret;
+		}
+	}
+
+	/**
+	 * @param count
+	 * @return <code>?,?,...</code> with <code>count</code> bind placeholders
+	 */
+	private static String placeholders(final int count) {
+		final StringBuilder sb = new StringBuilder(count * 2);
 
-			PriorityRegister.JobCounter.getCounterForUser(Integer.valueOf(userId)).incRunningAndDecWaiting(cpucores);
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				sb.append(',');
 
-			return job;
+			sb.append('?');
 		}
+
+		return sb.toString();
 	}
 
 	private static int checkQueueOpen(final String ce) {
@@ -614,13 +875,51 @@ public class JobBroker {
 		return lastRemoteAgents;
 	}
 
+	/**
+	 * Operators accepted in the RequiredCpusCe field of a CE
+	 */
+	static final Pattern requiredCpusPattern = Pattern.compile("\\s*(>=|<=|>|<|==|=|!=)\\s*([0-9]+)");
+
+	/**
+	 * File in which to append the incoming match requests, one JSON object per line, to be replayed by {@link utils.benchmark.JobMatchLoadGenerator}
+	 */
+	private static final String matchRequestsRecording = ConfigUtils.getConfig().gets("alien.taskQueue.JobBroker.recordMatchRequests", "");
+
+	private static synchronized void recordMatchRequest(final HashMap<String, Object> matchRequest) {
+		final Map<String, Object> recorded = new HashMap<>(matchRequest);
+		recorded.remove("AliEnPrincipal");
+
+		final JSONObject json = new JSONObject(recorded);
+
+		try {
+			Files.writeString(Path.of(matchRequestsRecording), json.toJSONString() + "\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+		catch (final IOException ioe) {
+			logger.log(Level.WARNING, "Cannot record the match request in " + matchRequestsRecording, ioe);
+		}
+	}
+
 	/**
 	 * @param matchRequest
 	 * @return number of jobs waiting for a site given its parameters, or an
 	 *         entry to JOBAGENT if asked for
 	 */
-	@SuppressWarnings("unchecked")
 	public static HashMap<String, Object> getNumberWaitingForSite(final HashMap<String, Object> matchRequest) {
+		if (!matchRequestsRecording.isEmpty())
+			recordMatchRequest(matchRequest);
+
+		return getNumberWaitingForSite(matchRequest, JobAgentIndex.enabled);
+	}
+
+	/**
+	 * @param matchRequest
+	 * @param useIndex
+	 *            whether the in-memory {@link JobAgentIndex} can answer the request instead of the database
+	 * @return number of jobs waiting for a site given its parameters, or an
+	 *         entry to JOBAGENT if asked for
+	 */
+	@SuppressWarnings("unchecked")
+	public static HashMap<String, Object> getNumberWaitingForSite(final HashMap<String, Object> matchRequest, final boolean useIndex) {
 		final HashMap<String, Object> matchAnswer = new HashMap<>();
 		matchAnswer.put("Code", Integer.valueOf(0));
 
@@ -638,6 +937,18 @@ public class JobBroker {
 		if (remoteValue != null && (remoteValue instanceof Number))
 			isRemoteAccessAllowed = ((Number) remoteValue).intValue() > 0;
 
+		final String CeRequirements = Objects.isNull(matchRequest.get("ce_requirements")) ? "" : matchRequest.get("ce_requirements").toString();
+
+		matchRequest.putIfAbsent("Users", SiteMap.getFieldContentsFromCerequirements(CeRequirements, SiteMap.CE_FIELD.Users));
+		matchRequest.putIfAbsent("NoUsers", SiteMap.getFieldContentsFromCerequirements(CeRequirements, SiteMap.CE_FIELD.NoUsers));
+
+		if (useIndex) {
+			final HashMap<String, Object> indexAnswer = JobAgentIndex.match(matchRequest, isRemoteAccessAllowed, isRemoteAccessAllowed ? getRemoteAgents() : null);
+
+			if (indexAnswer != null)
+				return indexAnswer;
+		}
+
 		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
 			if (db == null)
 				return null;
@@ -716,9 +1027,6 @@ public class JobBroker {
 				where += " and `partition`='%' ";
 			}
 
-			final String CeRequirements = Objects.isNull(matchRequest.get("ce_requirements")) ? "" : matchRequest.get("ce_requirements").toString();
-
-			matchRequest.putIfAbsent("Users", SiteMap.getFieldContentsFromCerequirements(CeRequirements, SiteMap.CE_FIELD.Users));
 			if (matchRequest.get("Users") != null && !((ArrayList<String>) matchRequest.get("Users")).isEmpty()) {
 				final ArrayList<String> users = (ArrayList<String>) matchRequest.get("Users");
 				String orconcat = " and (";
@@ -734,7 +1042,6 @@ public class JobBroker {
 				where += ")";
 			}
 
-			matchRequest.putIfAbsent("NoUsers", SiteMap.getFieldContentsFromCerequirements(CeRequirements, SiteMap.CE_FIELD.NoUsers));
 			if (matchRequest.get("NoUsers") != null && !((ArrayList<String>) matchRequest.get("NoUsers")).isEmpty()) {
 				final ArrayList<String> users = (ArrayList<String>) matchRequest.get("NoUsers");
 				for (final String user : users) {
@@ -748,8 +1055,7 @@ public class JobBroker {
 			}
 
 			if (matchRequest.containsKey("RequiredCpusCe")) {
-				final Pattern pat = Pattern.compile("\\s*(>=|<=|>|<|==|=|!=)\\s*([0-9]+)");
-				final Matcher m = pat.matcher((String) matchRequest.get("RequiredCpusCe"));
+				final Matcher m = requiredCpusPattern.matcher((String) matchRequest.get("RequiredCpusCe"));
 				if (m.matches()) {
 					final String operator = "==".equals(m.group(1)) ? "=" : m.group(1);
 					where += " and cpucores " + operator + " ? ";
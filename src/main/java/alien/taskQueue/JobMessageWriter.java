@@ -0,0 +1,362 @@
+package alien.taskQueue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.monitoring.Timing;
+import lazyj.DBFunctions;
+
+/**
+ * Write-behind queue for the JOBMESSAGES table. The trace lines of all jobs are buffered in memory and inserted with multi-row statements, either when
+ * <code>alien.taskQueue.JobMessageWriter.batchSize</code> lines are pending or every <code>alien.taskQueue.JobMessageWriter.flushInterval</code> milliseconds. When the buffer
+ * (<code>alien.taskQueue.JobMessageWriter.capacity</code> lines) is full the callers wait for room, at most <code>alien.taskQueue.JobMessageWriter.offerTimeout</code>
+ * milliseconds, so that their lines are still written after the ones already queued. Only then, or while the JVM stops, they fall back to inserting the line themselves.
+ * Whatever is still queued when the JVM stops is flushed from a shutdown hook.
+ *
+ * @since Oct 17, 2026
+ */
+final class JobMessageWriter {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(JobMessageWriter.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(JobMessageWriter.class.getCanonicalName());
+
+	private static final int batchSize = Math.max(ConfigUtils.getConfig().geti("alien.taskQueue.JobMessageWriter.batchSize", 500), 1);
+
+	private static final long flushInterval = Math.max(ConfigUtils.getConfig().getl("alien.taskQueue.JobMessageWriter.flushInterval", 1000), 10);
+
+	private static final int capacity = Math.max(ConfigUtils.getConfig().geti("alien.taskQueue.JobMessageWriter.capacity", 100000), batchSize);
+
+	private static final long offerTimeout = Math.max(ConfigUtils.getConfig().getl("alien.taskQueue.JobMessageWriter.offerTimeout", 60000), 0);
+
+	/**
+	 * One JOBMESSAGES row
+	 */
+	private static final class JobMessage {
+		final Long timestamp;
+		final Long jobId;
+		final String procinfo;
+		final String tag;
+
+		JobMessage(final Long timestamp, final Long jobId, final String procinfo, final String tag) {
+			this.timestamp = timestamp;
+			this.jobId = jobId;
+			this.procinfo = procinfo;
+			this.tag = tag;
+		}
+	}
+
+	/**
+	 * What happened to one INSERT
+	 */
+	private enum Outcome {
+		/**
+		 * All the rows were written
+		 */
+		INSERTED,
+		/**
+		 * The database refused the statement, possibly because of one of the rows
+		 */
+		REJECTED,
+		/**
+		 * The database could not be reached
+		 */
+		UNAVAILABLE
+	}
+
+	private static final LinkedBlockingQueue<JobMessage> queue = new LinkedBlockingQueue<>(capacity);
+
+	private static final AtomicLong overflows = new AtomicLong();
+
+	private static final AtomicLong written = new AtomicLong();
+
+	private static final AtomicLong failed = new AtomicLong();
+
+	private static volatile boolean shuttingDown = false;
+
+	private static final Thread writerThread;
+
+	static {
+		writerThread = new Thread(JobMessageWriter::writerLoop, "alien.taskQueue.JobMessageWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				shutdown();
+			}
+		});
+
+		if (monitor != null)
+			monitor.addMonitoring("queue_status", (names, values) -> {
+				names.add("queued");
+				values.add(Integer.valueOf(queue.size()));
+
+				names.add("written_total");
+				values.add(Long.valueOf(written.get()));
+
+				names.add("overflows_total");
+				values.add(Long.valueOf(overflows.get()));
+
+				names.add("failed_total");
+				values.add(Long.valueOf(failed.get()));
+			});
+	}
+
+	private JobMessageWriter() {
+		// static methods only
+	}
+
+	/**
+	 * Queue one line for writing, waiting for room if the buffer is full
+	 *
+	 * @param timestamp
+	 *            epoch time in seconds
+	 * @param jobId
+	 * @param procinfo
+	 * @param tag
+	 * @return <code>true</code> if the line was queued, <code>false</code> if the buffer stayed full or the writer is stopping, and the caller has to write it
+	 */
+	static boolean offer(final Long timestamp, final Long jobId, final String procinfo, final String tag) {
+		if (shuttingDown)
+			return false;
+
+		final JobMessage m = new JobMessage(timestamp, jobId, procinfo, tag);
+
+		if (queue.offer(m))
+			return true;
+
+		if (monitor != null)
+			monitor.incrementCounter("JOBMESSAGES_full");
+
+		try {
+			if (queue.offer(m, offerTimeout, TimeUnit.MILLISECONDS))
+				return true;
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException ie) {
+			// write it directly
+		}
+
+		overflows.incrementAndGet();
+
+		if (monitor != null)
+			monitor.incrementCounter("JOBMESSAGES_overflow");
+
+		return false;
+	}
+
+	private static void writerLoop() {
+		final List<JobMessage> batch = new ArrayList<>(batchSize);
+
+		while (!shuttingDown) {
+			try {
+				final JobMessage first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+
+				if (first == null)
+					continue;
+
+				batch.add(first);
+
+				// give the other lines of this period a chance to join the batch
+				final long deadline = System.currentTimeMillis() + flushInterval;
+
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+
+					final long left = deadline - System.currentTimeMillis();
+
+					if (batch.size() >= batchSize || left <= 0)
+						break;
+
+					final JobMessage next = queue.poll(left, TimeUnit.MILLISECONDS);
+
+					if (next == null)
+						break;
+
+					batch.add(next);
+				}
+
+				write(batch);
+			}
+			catch (@SuppressWarnings("unused") final InterruptedException ie) {
+				// the shutdown hook will flush what is left
+				if (batch.size() > 0)
+					queue.addAll(batch);
+
+				return;
+			}
+			catch (final Throwable t) {
+				logger.log(Level.WARNING, "Exception writing job messages", t);
+			}
+
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Insert the lines with one statement, retrying a few times if the database is not available. If the statement still fails, the batch is split to find the rows that the
+	 * database rejects, so that only those are lost.
+	 *
+	 * @param batch
+	 */
+	private static void write(final List<JobMessage> batch) {
+		if (batch.isEmpty())
+			return;
+
+		Outcome outcome = Outcome.UNAVAILABLE;
+
+		for (int attempt = 0; attempt < 3; attempt++) {
+			outcome = insert(batch);
+
+			if (outcome == Outcome.INSERTED)
+				return;
+
+			if (shuttingDown)
+				break;
+
+			try {
+				Thread.sleep(1000L << attempt);
+			}
+			catch (@SuppressWarnings("unused") final InterruptedException ie) {
+				break;
+			}
+		}
+
+		if (outcome == Outcome.REJECTED)
+			bisect(batch);
+		else
+			lost(batch);
+	}
+
+	private static void lost(final List<JobMessage> rows) {
+		failed.addAndGet(rows.size());
+
+		logger.log(Level.WARNING, "Could not insert " + rows.size() + " job messages, they are lost");
+	}
+
+	/**
+	 * Insert the two halves of a failed batch separately, down to single rows
+	 *
+	 * @param rows
+	 */
+	private static void bisect(final List<JobMessage> rows) {
+		if (rows.size() == 1) {
+			failed.incrementAndGet();
+
+			final JobMessage m = rows.get(0);
+
+			logger.log(Level.WARNING, "The database rejected the job message of " + m.jobId + " (" + m.tag + "), it is lost");
+			return;
+		}
+
+		final int middle = rows.size() / 2;
+
+		final List<JobMessage> first = rows.subList(0, middle);
+		final List<JobMessage> second = rows.subList(middle, rows.size());
+
+		for (final List<JobMessage> half : List.of(first, second))
+			switch (insert(half)) {
+				case INSERTED:
+					break;
+				case REJECTED:
+					bisect(half);
+					break;
+				case UNAVAILABLE:
+					// don't hammer a database that went away, give up on what is left
+					lost(half == first ? rows : second);
+					return;
+			}
+	}
+
+	/**
+	 * @param rows
+	 * @return whether all the rows were inserted, with one statement
+	 */
+	private static Outcome insert(final List<JobMessage> rows) {
+		final StringBuilder sb = new StringBuilder(64 + rows.size() * 10);
+		sb.append("INSERT INTO JOBMESSAGES (timestamp, jobId, procinfo, tag) VALUES ");
+
+		final Object[] bind = new Object[rows.size() * 4];
+
+		int i = 0;
+
+		for (final JobMessage m : rows) {
+			if (i > 0)
+				sb.append(',');
+
+			sb.append("(?,?,?,?)");
+
+			bind[i++] = m.timestamp;
+			bind[i++] = m.jobId;
+			bind[i++] = m.procinfo;
+			bind[i++] = m.tag;
+		}
+
+		try (DBFunctions db = TaskQueueUtils.getQueueDB(); Timing t = new Timing(monitor, "JOBMESSAGES_batch_ms")) {
+			if (db == null)
+				return Outcome.UNAVAILABLE;
+
+			db.setQueryTimeout(60);
+
+			if (!db.query(sb.toString(), false, bind)) {
+				final Exception e = db.getLastError();
+
+				// SQL state class 08 is a connection problem, anything else was a reply of the database to this statement
+				if (e instanceof SQLException && ((SQLException) e).getSQLState() != null && !((SQLException) e).getSQLState().startsWith("08"))
+					return Outcome.REJECTED;
+
+				return Outcome.UNAVAILABLE;
+			}
+
+			t.endTiming();
+
+			written.addAndGet(rows.size());
+
+			if (monitor != null) {
+				monitor.incrementCounter("TQ_db_lookup");
+				monitor.incrementCounter("TQ_JOBMESSAGES_insert", rows.size());
+				monitor.incrementCounter("JOBMESSAGES_batches");
+			}
+
+			return Outcome.INSERTED;
+		}
+	}
+
+	/**
+	 * Stop the background writer and flush everything that is still queued
+	 */
+	static void shutdown() {
+		shuttingDown = true;
+
+		// let the writer finish the batch it is working on, it stops at the latest after one more polling interval
+		try {
+			writerThread.join(flushInterval * 2 + 10000);
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException ie) {
+			// ignore
+		}
+
+		final List<JobMessage> batch = new ArrayList<>(batchSize);
+
+		while (queue.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch.clear();
+		}
+	}
+}
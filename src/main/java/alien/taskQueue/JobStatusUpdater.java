@@ -0,0 +1,500 @@
+package alien.taskQueue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.monitoring.Timing;
+import lazyj.DBFunctions;
+import lazyj.DBFunctions.DBConnection;
+
+/**
+ * Write-combining front end of {@link TaskQueueUtils#setJobStatus(long, JobStatus, JobStatus, java.util.HashMap)}. The status changes requested by all threads within
+ * <code>alien.taskQueue.JobStatusUpdater.window</code> milliseconds (at most <code>alien.taskQueue.JobStatusUpdater.batchSize</code> of them) are checked against one SELECT
+ * of the current states and then applied with one conditional UPDATE for each (old state, new state) pair. Each job moves at most once per UPDATE round, so a burst such as
+ * SAVING, SAVED, DONE for the same job is still applied in order. The callers block until their change was done and then run the side effects (trace, registries, extra
+ * fields) themselves. If the batch cannot be done the callers fall back to updating their job directly. A caller that gives up waiting withdraws its change, unless the
+ * updater has already started applying it, in which case it waits for the outcome.
+ *
+ * @since Oct 17, 2026
+ */
+final class JobStatusUpdater {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(JobStatusUpdater.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(JobStatusUpdater.class.getCanonicalName());
+
+	/**
+	 * The batched UPDATE conditions on statusId, a column of the 2.20 schema
+	 */
+	private static final boolean enabled = TaskQueueUtils.dbStructure2_20 && ConfigUtils.getConfig().getb("alien.taskQueue.JobStatusUpdater.enabled", true);
+
+	private static final long window = Math.max(ConfigUtils.getConfig().getl("alien.taskQueue.JobStatusUpdater.window", 20), 0);
+
+	private static final int batchSize = Math.max(ConfigUtils.getConfig().geti("alien.taskQueue.JobStatusUpdater.batchSize", 1000), 1);
+
+	/**
+	 * How long a caller waits for its change, the same as the query timeout of the direct update
+	 */
+	private static final long callerTimeout = 120;
+
+	/**
+	 * What the batch found and did for one job
+	 */
+	static final class Result {
+		/**
+		 * State of the job before the change
+		 */
+		final JobStatus oldStatus;
+
+		/**
+		 * Masterjob ID, 0 for single jobs
+		 */
+		final long parentPID;
+
+		final int cpucores;
+
+		final int userId;
+
+		/**
+		 * Whether the UPDATE changed the row
+		 */
+		final boolean updated;
+
+		Result(final JobStatus oldStatus, final long parentPID, final int cpucores, final int userId, final boolean updated) {
+			this.oldStatus = oldStatus;
+			this.parentPID = parentPID;
+			this.cpucores = cpucores;
+			this.userId = userId;
+			this.updated = updated;
+		}
+	}
+
+	/**
+	 * The job doesn't exist or is not in the expected state, nothing was changed
+	 */
+	static final Result REFUSED = new Result(null, 0, 0, 0, false);
+
+	/**
+	 * One pending status change
+	 */
+	private static final class Request {
+		final long job;
+		final JobStatus newStatus;
+		final JobStatus oldStatusConstraint;
+		final long queued = System.nanoTime();
+		final CompletableFuture<Result> result = new CompletableFuture<>();
+
+		/**
+		 * Set either by the updater when it starts applying the change or by the caller when it withdraws it, whichever comes first
+		 */
+		private final AtomicBoolean taken = new AtomicBoolean();
+
+		Request(final long job, final JobStatus newStatus, final JobStatus oldStatusConstraint) {
+			this.job = job;
+			this.newStatus = newStatus;
+			this.oldStatusConstraint = oldStatusConstraint;
+		}
+
+		/**
+		 * @return <code>true</code> if the caller has not withdrawn the change and it is now up to the updater to apply it
+		 */
+		boolean take() {
+			return taken.compareAndSet(false, true);
+		}
+
+		void complete(final Result r) {
+			if (result.complete(r) && monitor != null)
+				monitor.addMeasurement("status_latency_ms", (System.nanoTime() - queued) / 1000000d);
+		}
+	}
+
+	private static final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+	private static final AtomicLong batched = new AtomicLong();
+
+	private static final AtomicLong fallbacks = new AtomicLong();
+
+	private static final AtomicLong mlDropped = new AtomicLong();
+
+	/**
+	 * MonALISA notifications are sent from here, not from the threads that change the states
+	 */
+	private static final ThreadPoolExecutor mlSender = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(100000), (r) -> {
+		final Thread t = new Thread(r, "alien.taskQueue.JobStatusUpdater.ML");
+		t.setDaemon(true);
+		return t;
+	}, (r, executor) -> mlDropped.incrementAndGet());
+
+	static {
+		if (enabled) {
+			final Thread t = new Thread(JobStatusUpdater::updaterLoop, "alien.taskQueue.JobStatusUpdater");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		if (monitor != null)
+			monitor.addMonitoring("queue_status", (names, values) -> {
+				names.add("queued");
+				values.add(Integer.valueOf(queue.size()));
+
+				names.add("batched_total");
+				values.add(Long.valueOf(batched.get()));
+
+				names.add("fallbacks_total");
+				values.add(Long.valueOf(fallbacks.get()));
+
+				names.add("ml_queued");
+				values.add(Integer.valueOf(mlSender.getQueue().size()));
+
+				names.add("ml_dropped_total");
+				values.add(Long.valueOf(mlDropped.get()));
+			});
+	}
+
+	private JobStatusUpdater() {
+		// static methods only
+	}
+
+	/**
+	 * @return <code>true</code> if the status changes go through the batches
+	 */
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Queue a status change and wait for it to be applied
+	 *
+	 * @param job
+	 * @param newStatus
+	 * @param oldStatusConstraint
+	 *            change the status only if the job is still in this state. Can be <code>null</code> to disable checking the current status.
+	 * @return the outcome, {@link #REFUSED} if the job was not changed, or <code>null</code> if the batch could not do it and the caller should update the job directly
+	 */
+	static Result update(final long job, final JobStatus newStatus, final JobStatus oldStatusConstraint) {
+		final Request r = new Request(job, newStatus, oldStatusConstraint);
+
+		queue.add(r);
+
+		try {
+			final Result ret = r.result.get(callerTimeout, TimeUnit.SECONDS);
+
+			if (ret == null)
+				fallbacks.incrementAndGet();
+
+			return ret;
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException | ExecutionException e) {
+			return REFUSED;
+		}
+		catch (@SuppressWarnings("unused") final TimeoutException te) {
+			if (r.take()) {
+				// withdrawn, the updater will skip it
+				logger.log(Level.WARNING, "Timed out waiting for the status change of " + job + " to " + newStatus);
+				r.complete(REFUSED);
+				return REFUSED;
+			}
+		}
+
+		// the updater is applying it right now, the outcome is bounded by its query timeout
+		try {
+			final Result ret = r.result.get();
+
+			if (ret == null)
+				fallbacks.incrementAndGet();
+
+			return ret;
+		}
+		catch (@SuppressWarnings("unused") final InterruptedException | ExecutionException e) {
+			return REFUSED;
+		}
+	}
+
+	/**
+	 * Tell the central ML instance about a status change, in the background
+	 *
+	 * @param job
+	 * @param newStatus
+	 * @param execHost
+	 */
+	static void sendToML(final long job, final JobStatus newStatus, final String execHost) {
+		mlSender.execute(() -> TaskQueueUtils.sendJobStatusToML(job, newStatus, execHost));
+	}
+
+	private static void updaterLoop() {
+		final List<Request> batch = new ArrayList<>(batchSize);
+
+		while (true) {
+			try {
+				batch.add(queue.take());
+
+				// give the other changes of this window a chance to join the batch
+				final long deadline = System.currentTimeMillis() + window;
+
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+
+					final long left = deadline - System.currentTimeMillis();
+
+					if (batch.size() >= batchSize || left <= 0)
+						break;
+
+					final Request next = queue.poll(left, TimeUnit.MILLISECONDS);
+
+					if (next == null)
+						break;
+
+					batch.add(next);
+				}
+
+				process(batch);
+			}
+			catch (@SuppressWarnings("unused") final InterruptedException ie) {
+				// keep going
+			}
+			catch (final Throwable t) {
+				logger.log(Level.SEVERE, "Exception processing a batch of " + batch.size() + " status changes", t);
+			}
+			finally {
+				// whoever was not answered updates the job directly
+				for (final Request r : batch)
+					r.complete(null);
+
+				batch.clear();
+			}
+		}
+	}
+
+	private static void process(final List<Request> batch) {
+		List<Request> pending = batch;
+
+		while (!pending.isEmpty()) {
+			// at most one change per job in each round, the next ones see the outcome of the previous
+			final Map<Long, Request> round = new LinkedHashMap<>();
+			final List<Request> next = new ArrayList<>();
+
+			for (final Request r : pending)
+				if (round.putIfAbsent(Long.valueOf(r.job), r) != null)
+					next.add(r);
+
+			processRound(round);
+
+			pending = next;
+		}
+	}
+
+	private static final class Row {
+		final JobStatus status;
+		final long parentPID;
+		final int cpucores;
+		final int userId;
+
+		Row(final JobStatus status, final long parentPID, final int cpucores, final int userId) {
+			this.status = status;
+			this.parentPID = parentPID;
+			this.cpucores = cpucores;
+			this.userId = userId;
+		}
+	}
+
+	private static String idList(final Iterable<Long> ids) {
+		final StringBuilder sb = new StringBuilder();
+
+		for (final Long id : ids) {
+			if (sb.length() > 0)
+				sb.append(',');
+
+			sb.append(id);
+		}
+
+		return sb.toString();
+	}
+
+	private static void processRound(final Map<Long, Request> round) {
+		try (DBFunctions db = TaskQueueUtils.getQueueDB(); Timing t = new Timing(monitor, "status_batch_ms")) {
+			if (db == null)
+				return;
+
+			db.setQueryTimeout(120);
+			db.setReadOnly(true);
+
+			if (!db.query("SELECT queueId,statusId,split,cpucores,userId FROM QUEUE WHERE queueId IN (" + idList(round.keySet()) + ");"))
+				return;
+
+			final Map<Long, Row> rows = new HashMap<>(round.size());
+
+			while (db.moveNext())
+				rows.put(Long.valueOf(db.getl(1)), new Row(JobStatus.getStatusByAlien(Integer.valueOf(db.geti(2))), db.getl(3), db.geti(4), db.geti(5)));
+
+			// old state -> new state -> jobs
+			final Map<JobStatus, Map<JobStatus, List<Request>>> groups = new EnumMap<>(JobStatus.class);
+
+			for (final Request r : round.values()) {
+				final Row row = rows.get(Long.valueOf(r.job));
+
+				if (row == null) {
+					logger.log(Level.WARNING, "Could not find queueId " + r.job + " in the queue");
+					r.complete(REFUSED);
+					continue;
+				}
+
+				if (row.status == null) {
+					logger.log(Level.WARNING, "Cannot get the status of " + r.job);
+					r.complete(REFUSED);
+					continue;
+				}
+
+				if (r.oldStatusConstraint != null && row.status != r.oldStatusConstraint) {
+					if (logger.isLoggable(Level.FINE))
+						logger.log(Level.FINE, "Refusing to do the update of " + r.job + " to state " + r.newStatus.name() + " because old status is not " + r.oldStatusConstraint.name()
+								+ " but " + row.status.name());
+
+					r.complete(REFUSED);
+					continue;
+				}
+
+				if (!r.take()) {
+					// the caller has given up waiting for it
+					continue;
+				}
+
+				groups.computeIfAbsent(row.status, (k) -> new EnumMap<>(JobStatus.class)).computeIfAbsent(r.newStatus, (k) -> new ArrayList<>()).add(r);
+			}
+
+			for (final Map.Entry<JobStatus, Map<JobStatus, List<Request>>> byOld : groups.entrySet())
+				for (final Map.Entry<JobStatus, List<Request>> byNew : byOld.getValue().entrySet())
+					update(db, byOld.getKey(), byNew.getKey(), byNew.getValue(), rows);
+
+			if (monitor != null) {
+				monitor.addMeasurement("status_batch_size", round.size());
+				monitor.incrementCounter("TQ_db_update", groups.size());
+			}
+
+			batched.addAndGet(round.size());
+
+			t.endTiming();
+		}
+	}
+
+	private static void update(final DBFunctions db, final JobStatus oldStatus, final JobStatus newStatus, final List<Request> requests, final Map<Long, Row> rows) {
+		if (oldStatus == newStatus) {
+			// nothing to change, in particular not the fields that come with entering the new state
+			for (final Request r : requests) {
+				final Row row = rows.get(Long.valueOf(r.job));
+				r.complete(new Result(oldStatus, row.parentPID, row.cpucores, row.userId, false));
+			}
+
+			return;
+		}
+
+		String extra = "";
+
+		if (newStatus == JobStatus.RUNNING)
+			extra = ",started=UNIX_TIMESTAMP()";
+
+		if (newStatus == JobStatus.ERROR_EW || newStatus == JobStatus.WAITING)
+			extra += ",resubmission=resubmission+1";
+
+		final List<Long> ids = new ArrayList<>(requests.size());
+
+		for (final Request r : requests)
+			ids.add(Long.valueOf(r.job));
+
+		final DBConnection dbc = db.getConnection();
+
+		if (dbc == null)
+			return;
+
+		// the jobs that this UPDATE has moved
+		final Set<Long> moved = new HashSet<>(ids.size());
+
+		try {
+			dbc.setReadOnly(false);
+
+			@SuppressWarnings("resource")
+			final Connection conn = dbc.getConnection();
+
+			conn.setAutoCommit(false);
+
+			try (Statement stat = conn.createStatement()) {
+				stat.setQueryTimeout(120);
+
+				// the SELECT has seen the jobs in oldStatus, only move those that are still there
+				final String update = "UPDATE QUEUE SET statusId=" + newStatus.getAliEnLevel() + extra + " WHERE statusId=" + oldStatus.getAliEnLevel() + " AND queueId IN (";
+
+				if (stat.executeUpdate(update + idList(ids) + ");") == ids.size())
+					moved.addAll(ids);
+				else {
+					// some jobs have moved in the meantime, lock the ones that are still in oldStatus so that exactly those are moved
+					conn.rollback();
+
+					try (ResultSet rs = stat.executeQuery("SELECT queueId FROM QUEUE WHERE statusId=" + oldStatus.getAliEnLevel() + " AND queueId IN (" + idList(ids) + ") FOR UPDATE;")) {
+						while (rs.next())
+							moved.add(Long.valueOf(rs.getLong(1)));
+					}
+
+					if (moved.size() > 0)
+						stat.executeUpdate(update + idList(moved) + ");");
+				}
+
+				conn.commit();
+			}
+			catch (final SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+			finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		catch (final SQLException e) {
+			logger.log(Level.WARNING, "Could not move " + ids.size() + " jobs from " + oldStatus + " to " + newStatus, e);
+			return;
+		}
+		finally {
+			dbc.free();
+		}
+
+		for (final Request r : requests) {
+			final Long id = Long.valueOf(r.job);
+
+			if (moved.contains(id)) {
+				final Row row = rows.get(id);
+				r.complete(new Result(oldStatus, row.parentPID, row.cpucores, row.userId, true));
+			}
+			else {
+				// moved by someone else, and the caller didn't ask for a particular old state
+				r.complete(r.oldStatusConstraint != null ? REFUSED : null);
+			}
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package alien.taskQueue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alien.config.ConfigUtils;
+import alien.monitoring.Monitor;
+import alien.monitoring.MonitorFactory;
+import alien.monitoring.Timing;
+import lazyj.DBFunctions;
+import lazyj.DBFunctions.DBConnection;
+
+/**
+ * Number of subjobs in each state, per masterjob, kept in the MASTERJOB_STATUS table. The counters are updated as the subjobs are inserted and change state, so the masterjob
+ * listings don't have to group all the subjobs of a production in QUEUE each time. The counters of a masterjob are only trusted once they have been computed from QUEUE by
+ * {@link #reconcile(int)}, called periodically by <code>alien.optimizers.sync.MasterjobCountersReconciler</code>, which leaves a marker row for it. Until then (for example for
+ * the masterjobs that existed before the table) the listings keep looking at the subjobs themselves.
+ *
+ * @since Oct 17, 2026
+ */
+public final class MasterjobCounters {
+
+	/**
+	 * Logger
+	 */
+	static final Logger logger = ConfigUtils.getLogger(MasterjobCounters.class.getCanonicalName());
+
+	/**
+	 * Monitoring component
+	 */
+	static final Monitor monitor = MonitorFactory.getMonitor(MasterjobCounters.class.getCanonicalName());
+
+	/**
+	 * The counters need the statusId column of the 2.20 schema
+	 */
+	private static final boolean enabled = TaskQueueUtils.dbStructure2_20 && ConfigUtils.getConfig().getb("alien.taskQueue.MasterjobCounters.enabled", true);
+
+	private static volatile boolean tableChecked = false;
+
+	/**
+	 * statusId of the marker row telling that the counters of a masterjob were computed from QUEUE and are complete
+	 */
+	private static final int COMPLETE = -1;
+
+	private MasterjobCounters() {
+		// static methods only
+	}
+
+	/**
+	 * @return <code>true</code> if the counters are maintained
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	private static boolean checkTable(final DBFunctions db) {
+		if (tableChecked)
+			return true;
+
+		if (!db.query("CREATE TABLE IF NOT EXISTS MASTERJOB_STATUS (masterjobId bigint NOT NULL, statusId int NOT NULL, count int NOT NULL DEFAULT 0, "
+				+ "PRIMARY KEY (masterjobId, statusId)) ENGINE=InnoDB;")) {
+			logger.log(Level.SEVERE, "Could not create the MASTERJOB_STATUS table");
+			return false;
+		}
+
+		tableChecked = true;
+
+		return true;
+	}
+
+	/**
+	 * A subjob was inserted
+	 *
+	 * @param masterjobId
+	 * @param status
+	 */
+	public static void jobInserted(final long masterjobId, final JobStatus status) {
+		statusChanged(masterjobId, null, status, 1);
+	}
+
+	/**
+	 * A subjob has changed its state
+	 *
+	 * @param masterjobId
+	 * @param oldStatus
+	 * @param newStatus
+	 */
+	public static void statusChanged(final long masterjobId, final JobStatus oldStatus, final JobStatus newStatus) {
+		statusChanged(masterjobId, oldStatus, newStatus, 1);
+	}
+
+	/**
+	 * Several subjobs of the same masterjob have changed their state
+	 *
+	 * @param masterjobId
+	 * @param oldStatus
+	 *            previous state, <code>null</code> for newly inserted subjobs
+	 * @param newStatus
+	 * @param count
+	 *            number of subjobs
+	 */
+	public static void statusChanged(final long masterjobId, final JobStatus oldStatus, final JobStatus newStatus, final int count) {
+		if (!enabled || masterjobId <= 0 || count <= 0 || oldStatus == newStatus || newStatus == null)
+			return;
+
+		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
+			if (db == null || !checkTable(db))
+				return;
+
+			db.setQueryTimeout(60);
+
+			if (oldStatus != null)
+				db.query("UPDATE MASTERJOB_STATUS SET count=GREATEST(count-?,0) WHERE masterjobId=? AND statusId=?;", false, Integer.valueOf(count), Long.valueOf(masterjobId),
+						Integer.valueOf(oldStatus.getAliEnLevel()));
+
+			db.query("INSERT INTO MASTERJOB_STATUS (masterjobId, statusId, count) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE count=count+VALUES(count);", false, Long.valueOf(masterjobId),
+					Integer.valueOf(newStatus.getAliEnLevel()), Integer.valueOf(count));
+
+			if (monitor != null)
+				monitor.incrementCounter("MASTERJOB_STATUS_update");
+		}
+	}
+
+	/**
+	 * @param masterjobIds
+	 * @return the subjob counters of those masterjobs whose counters are complete, by masterjob ID. KILLED subjobs are not counted, as in the other masterjob listings. Returns
+	 *         <code>null</code> if the counters are not available at all, the caller has to look at the subjobs themselves for the masterjobs missing from the result.
+	 */
+	public static Map<Long, Map<JobStatus, Integer>> getCounters(final Collection<Long> masterjobIds) {
+		if (!enabled)
+			return null;
+
+		final Map<Long, Map<JobStatus, Integer>> ret = new HashMap<>();
+
+		if (masterjobIds == null || masterjobIds.isEmpty())
+			return ret;
+
+		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
+			if (db == null || !checkTable(db))
+				return null;
+
+			if (monitor != null) {
+				monitor.incrementCounter("TQ_db_lookup");
+				monitor.incrementCounter("MASTERJOB_STATUS_lookup");
+			}
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(60);
+
+			final StringBuilder ids = new StringBuilder(masterjobIds.size() * 11);
+
+			for (final Long id : masterjobIds) {
+				if (ids.length() > 0)
+					ids.append(',');
+
+				ids.append(id);
+			}
+
+			try (Timing t = new Timing(monitor, "MASTERJOB_STATUS_lookup_ms")) {
+				final boolean ok = db.query("SELECT masterjobId, statusId, count FROM MASTERJOB_STATUS WHERE masterjobId IN (" + ids + ") AND (count>0 OR statusId=" + COMPLETE
+						+ ") AND statusId!=" + JobStatus.KILLED.getAliEnLevel());
+
+				t.endTiming();
+
+				if (!ok)
+					return null;
+			}
+
+			final Set<Long> complete = new HashSet<>();
+
+			while (db.moveNext()) {
+				final Long masterjobId = Long.valueOf(db.getl(1));
+
+				final Map<JobStatus, Integer> counters = ret.computeIfAbsent(masterjobId, (k) -> new HashMap<>());
+
+				if (db.geti(2) == COMPLETE) {
+					complete.add(masterjobId);
+					continue;
+				}
+
+				final JobStatus status = JobStatus.getStatusByAlien(Integer.valueOf(db.geti(2)));
+
+				if (status == null) {
+					logger.log(Level.SEVERE, "Unknown jobs status code " + db.geti(2) + " for " + masterjobId);
+					continue;
+				}
+
+				counters.put(status, Integer.valueOf(db.geti(3)));
+			}
+
+			// partial counters, for example of a masterjob older than the table, only get its latest transitions
+			ret.keySet().retainAll(complete);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Recompute the counters from the subjobs in QUEUE, and mark them as complete, for the masterjobs that were submitted in the last days, for those that were touched
+	 * without having complete counters yet and for those that still have subjobs in a non-final state, whatever their age, so that any drift of the incremental updates is
+	 * corrected while the masterjob is active. Drop the counters of the masterjobs that are no longer in QUEUE.
+	 *
+	 * @param days
+	 *            how far back to look for masterjobs
+	 * @return number of masterjobs that were reconciled, or <code>-1</code> if the operation could not be done
+	 */
+	public static int reconcile(final int days) {
+		if (!enabled)
+			return -1;
+
+		try (DBFunctions db = TaskQueueUtils.getQueueDB()) {
+			if (db == null || !checkTable(db))
+				return -1;
+
+			db.setQueryTimeout(600);
+
+			db.setReadOnly(true);
+
+			final Set<Long> masterjobIds = new TreeSet<>();
+
+			if (!db.query("SELECT queueId FROM QUEUE WHERE split=0 AND masterjob=1 AND received>UNIX_TIMESTAMP(now())-60*60*24*?;", false, Integer.valueOf(days)))
+				return -1;
+
+			while (db.moveNext())
+				masterjobIds.add(Long.valueOf(db.getl(1)));
+
+			if (!db.query("SELECT DISTINCT masterjobId FROM MASTERJOB_STATUS M WHERE NOT EXISTS (SELECT 1 FROM MASTERJOB_STATUS C WHERE C.masterjobId=M.masterjobId AND C.statusId="
+					+ COMPLETE + ");"))
+				return -1;
+
+			while (db.moveNext())
+				masterjobIds.add(Long.valueOf(db.getl(1)));
+
+			final StringBuilder finalStates = new StringBuilder();
+
+			for (final JobStatus status : JobStatus.finalStates()) {
+				if (finalStates.length() > 0)
+					finalStates.append(',');
+
+				finalStates.append(status.getAliEnLevel());
+			}
+
+			if (!db.query("SELECT DISTINCT masterjobId FROM MASTERJOB_STATUS WHERE count>0 AND statusId NOT IN (" + COMPLETE + "," + finalStates + ");"))
+				return -1;
+
+			while (db.moveNext())
+				masterjobIds.add(Long.valueOf(db.getl(1)));
+
+			db.setReadOnly(false);
+
+			if (masterjobIds.size() > 0 && !recompute(db, masterjobIds))
+				return -1;
+
+			db.query("DELETE M FROM MASTERJOB_STATUS M LEFT JOIN QUEUE Q ON Q.queueId=M.masterjobId WHERE Q.queueId IS NULL;");
+
+			return masterjobIds.size();
+		}
+	}
+
+	/**
+	 * Replace the counters of the given masterjobs with the subjob counts in QUEUE, in one transaction so that the incremental updates don't see the counters half way through
+	 */
+	private static boolean recompute(final DBFunctions db, final Collection<Long> masterjobIds) {
+		final StringBuilder ids = new StringBuilder(masterjobIds.size() * 11);
+
+		for (final Long id : masterjobIds) {
+			if (ids.length() > 0)
+				ids.append(',');
+
+			ids.append(id);
+		}
+
+		final DBConnection dbc = db.getConnection();
+
+		if (dbc == null)
+			return false;
+
+		try {
+			dbc.setReadOnly(false);
+
+			@SuppressWarnings("resource")
+			final Connection conn = dbc.getConnection();
+
+			conn.setAutoCommit(false);
+
+			try (Statement stat = conn.createStatement()) {
+				stat.setQueryTimeout(600);
+
+				// the GROUP BY only produces the states that still have subjobs, so start from zero
+				stat.executeUpdate("UPDATE MASTERJOB_STATUS SET count=0 WHERE masterjobId IN (" + ids + ");");
+
+				stat.executeUpdate("INSERT INTO MASTERJOB_STATUS (masterjobId, statusId, count) SELECT split, statusId, count(1) FROM QUEUE WHERE split IN (" + ids
+						+ ") GROUP BY split, statusId ON DUPLICATE KEY UPDATE count=VALUES(count);");
+
+				stat.executeUpdate("INSERT IGNORE INTO MASTERJOB_STATUS (masterjobId, statusId, count) SELECT queueId, " + COMPLETE + ", 0 FROM QUEUE WHERE queueId IN (" + ids + ");");
+
+				conn.commit();
+			}
+			catch (final SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+			finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		catch (final SQLException e) {
+			logger.log(Level.WARNING, "Could not recompute the counters of " + masterjobIds.size() + " masterjobs", e);
+			return false;
+		}
+		finally {
+			dbc.free();
+		}
+
+		return true;
+	}
+}
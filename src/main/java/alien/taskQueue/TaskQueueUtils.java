@@ -10,6 +10,11 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -64,6 +69,7 @@ import alien.user.LDAPHelperRemote;
 import alien.user.UsersHelper;
 import apmon.ApMon;
 import lazyj.DBFunctions;
+import lazyj.DBFunctions.DBConnection;
 import lazyj.Format;
 import lazyj.StringFactory;
 import lazyj.Utils;
@@ -99,8 +105,6 @@ public class TaskQueueUtils {
 
 	private static final Map<String, String> fieldMap;
 
-	private static Thread jrTrackerThread;
-
 	private static final int REMOTE_TIMEOUT_DEFAULT = 12 * 60 * 60;
 
 	private static final int REMOTE_TIMEOUT_ABSMAX = 7 * 24 * 60 * 60;
@@ -381,21 +385,45 @@ public class TaskQueueUtils {
 		if (jobs.size() == 0)
 			return ret;
 
+		final Map<Long, Job> reverse = new HashMap<>();
+
+		for (final Job j : jobs)
+			reverse.put(Long.valueOf(j.queueId), j);
+
+		// answer from the materialized counters, only the masterjobs they don't know about are looked up in QUEUE
+		final Map<Long, Map<JobStatus, Integer>> counters = MasterjobCounters.getCounters(reverse.keySet());
+
+		if (counters != null)
+			for (final Map.Entry<Long, Map<JobStatus, Integer>> entry : counters.entrySet()) {
+				final Job j = reverse.remove(entry.getKey());
+
+				if (j != null) {
+					Map<JobStatus, Integer> m = entry.getValue();
+
+					if (m.isEmpty()) {
+						// no (more) subjobs, as below
+						m = new HashMap<>(1);
+						m.put(j.status(), Integer.valueOf(1));
+					}
+
+					ret.put(j, m);
+				}
+			}
+
+		if (reverse.isEmpty())
+			return ret;
+
 		try (DBFunctions db = getQueueDB()) {
 			if (db == null)
 				return ret;
 
-			final StringBuilder sb = new StringBuilder(jobs.size() * 10);
-
-			final Map<Long, Job> reverse = new HashMap<>();
+			final StringBuilder sb = new StringBuilder(reverse.size() * 10);
 
-			for (final Job j : jobs) {
+			for (final Long queueId : reverse.keySet()) {
 				if (sb.length() > 0)
 					sb.append(',');
 
-				sb.append(j.queueId);
-
-				reverse.put(Long.valueOf(j.queueId), j);
+				sb.append(queueId);
 			}
 
 			if (monitor != null) {
@@ -457,6 +485,52 @@ public class TaskQueueUtils {
 		}
 	}
 
+	/**
+	 * @param queueId
+	 *            masterjob ID
+	 * @return the number of subjobs of this masterjob in each state (KILLED ones excepted), or <code>null</code> if they cannot be counted
+	 */
+	public static Map<JobStatus, Integer> getSubjobStats(final long queueId) {
+		final Map<Long, Map<JobStatus, Integer>> counters = MasterjobCounters.getCounters(List.of(Long.valueOf(queueId)));
+
+		if (counters != null && counters.containsKey(Long.valueOf(queueId)))
+			return counters.get(Long.valueOf(queueId));
+
+		try (DBFunctions db = getQueueDB()) {
+			if (db == null)
+				return null;
+
+			if (monitor != null) {
+				monitor.incrementCounter("TQ_db_lookup");
+				monitor.incrementCounter("TQ_getmasterjob_stats");
+			}
+
+			final String q;
+
+			if (dbStructure2_20)
+				q = "select statusId,count(1) from QUEUE where split=? AND statusId!=" + JobStatus.KILLED.getAliEnLevel() + " group by statusId;";
+			else
+				q = "select status,count(1) from QUEUE where split=? AND status!='KILLED' group by status;";
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(600);
+
+			if (!db.query(q, false, Long.valueOf(queueId)))
+				return null;
+
+			final Map<JobStatus, Integer> ret = new HashMap<>();
+
+			while (db.moveNext()) {
+				final JobStatus status = dbStructure2_20 ? JobStatus.getStatusByAlien(Integer.valueOf(db.geti(1))) : JobStatus.getStatus(db.gets(1));
+
+				if (status != null)
+					ret.put(status, Integer.valueOf(db.geti(2)));
+			}
+
+			return ret;
+		}
+	}
+
 	/**
 	 * Get the subjobs of this masterjob
 	 *
@@ -728,6 +802,16 @@ public class TaskQueueUtils {
 		if (newStatus == null)
 			throw new IllegalArgumentException("The new status code cannot be null");
 
+		if (JobStatusUpdater.isEnabled()) {
+			final JobStatusUpdater.Result r = JobStatusUpdater.update(job, newStatus, oldStatusConstraint);
+
+			if (r == JobStatusUpdater.REFUSED)
+				return false;
+
+			if (r != null)
+				return statusChanged(job, r.parentPID, r.cpucores, r.userId, r.oldStatus, newStatus, extrafields, r.updated);
+		}
+
 		long parentPID = 0;
 
 		try (DBFunctions db = getQueueDB()) {
@@ -860,30 +944,39 @@ public class TaskQueueUtils {
 				}
 			}
 
-			final boolean updated = db.getUpdateCount() != 0;
+			return statusChanged(job, parentPID, cpucores, userId, oldStatus, newStatus, extrafields, db.getUpdateCount() != 0);
+		}
+	}
+
+	/**
+	 * Everything that follows a job status change, once the QUEUE row was updated
+	 */
+	private static boolean statusChanged(final long job, final long parentPID, final int cpucores, final int userId, final JobStatus oldStatus, final JobStatus newStatus,
+			final HashMap<String, Object> extrafields, final boolean updated) {
+		if (updated && parentPID > 0 && parentPID != job)
+			MasterjobCounters.statusChanged(parentPID, oldStatus, newStatus);
 
-			putJobLog(job, "state", "Job state transition from " + oldStatus.name() + " to " + newStatus.name(), null);
+		putJobLog(job, "state", "Job state transition from " + oldStatus.name() + " to " + newStatus.name(), null);
 
-			updatePriorityRegistry(Integer.valueOf(userId), cpucores, extrafields, oldStatus, newStatus);
+		updatePriorityRegistry(Integer.valueOf(userId), cpucores, extrafields, oldStatus, newStatus);
 
-			if (JobStatus.finalStates().contains(newStatus) || newStatus == JobStatus.SAVED_WARN || newStatus == JobStatus.SAVED) {
-				deleteJobToken(job);
-			}
+		if (JobStatus.finalStates().contains(newStatus) || newStatus == JobStatus.SAVED_WARN || newStatus == JobStatus.SAVED) {
+			deleteJobToken(job);
+		}
 
-			if (newStatus == JobStatus.EXPIRED || newStatus == JobStatus.ZOMBIE) {
-				final int expectedResubmissionCount = TaskQueueUtils.getResubmission(Long.valueOf(job));
-				setFinalStatusOOM(job, newStatus, expectedResubmissionCount);
-			}
+		if (newStatus == JobStatus.EXPIRED || newStatus == JobStatus.ZOMBIE) {
+			final int expectedResubmissionCount = TaskQueueUtils.getResubmission(Long.valueOf(job));
+			setFinalStatusOOM(job, newStatus, expectedResubmissionCount);
+		}
 
-			final String execHost = setJobExtraFields(job, extrafields);
+		final String execHost = setJobExtraFields(job, extrafields);
 
-			sendJobStatusToML(job, newStatus, execHost);
+		JobStatusUpdater.sendToML(job, newStatus, execHost);
 
-			if (parentPID > 0 && parentPID != job && JobStatus.finalStates().contains(newStatus))
-				checkMasterjobStatus(parentPID);
+		if (parentPID > 0 && parentPID != job && JobStatus.finalStates().contains(newStatus))
+			checkMasterjobStatus(parentPID);
 
-			return updated;
-		}
+		return updated;
 	}
 
 	private static void updatePriorityRegistry(Integer userId, final int activeCores, HashMap<String, Object> extrafields, JobStatus oldStatus, JobStatus newStatus) {
@@ -1270,208 +1363,340 @@ public class TaskQueueUtils {
 			if (limit > 0 && limit < job_limit)
 				lim = limit;
 
-			String where = "";
+			String where = getPSConstraints(states, users, sites, nodes, mjobs, jobids, filters);
 
-			if (states != null && states.size() > 0 && !states.contains(JobStatus.ANY)) {
-				final StringBuilder whe = new StringBuilder();
+			if (where == null)
+				return ret;
 
-				if (dbStructure2_20)
-					whe.append(" (statusId in (");
-				else
-					whe.append(" (status in (");
+			if (where.endsWith(" and "))
+				where = where.substring(0, where.length() - 5);
 
-				boolean first = true;
+			String orderBy = " order by ";
 
-				for (final JobStatus s : states) {
-					if (!first)
-						whe.append(",");
-					else
-						first = false;
+			if (orderByKey == null || orderByKey.length() == 0)
+				orderBy += "queueId";
+			else
+				orderBy += "`" + orderByKey + "`";
 
-					if (dbStructure2_20)
-						whe.append(s.getAliEnLevel());
-					else
-						whe.append('\'').append(s.toSQL()).append('\'');
-				}
+			if (where.length() > 0)
+				where = " WHERE " + where;
 
-				if (!first)
-					where += whe + ") ) and ";
-			}
+			final String q;
 
-			// Iterating time filter
-			for (Map.Entry<GetPS.PsFilters, Collection<Object>> filterEntry : filters.entrySet()) {
-
-				// Filter name
-				GetPS.PsFilters filter = filterEntry.getKey();
-				// List of values for the filter
-				Collection<Object> filterValues = filterEntry.getValue();
-
-				// Custom logic for each filter
-				switch (filter) {
-					case mtime:
-						if (filterValues != null) {
-							ArrayList<Object> filterValuesList = new ArrayList<>(filterValues);
-							// mtime filter must have two elements. If the endTime is not defined, 0 is added from the parser.
-							if (filterValuesList.size() == 2) {
-								String startTime = String.valueOf(filterValuesList.get(0));
-								String endTime = String.valueOf(filterValuesList.get(1));
-								if (Integer.parseInt(startTime) >= Integer.parseInt(endTime)) {
-									where += " (mtime between (NOW() - INTERVAL " + startTime + " HOUR) " +
-											"and (NOW() - INTERVAL " + endTime + " HOUR)) and ";
-									break;
-								}
-								else {
-									// incorrect time intervals
-								}
-							}
-							else {
-								// we cannot accept more than 2 parameters
-							}
-						}
-						break;
-					// add more filters...
-					default:
-						break;
-				}
+			if (dbStructure2_20)
+				q = "SELECT * FROM (SELECT * FROM QUEUE " + where + " ORDER BY queueId DESC " + " limit " + lim + ") x " + orderBy;
+			else
+				q = "SELECT " + ALL_BUT_JDL + " FROM QUEUE " + where + orderBy + " limit " + lim + ";";
+
+			if (logger.isLoggable(Level.FINE))
+				logger.log(Level.FINE, "selection query: " + q);
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(600);
+
+			if (!db.query(q))
+				return null;
+
+			while (db.moveNext()) {
+				final Job j = new Job(db, false);
+				ret.add(j);
 			}
+		}
 
-			if (users != null && users.size() > 0 && !users.contains("%")) {
-				final StringBuilder whe = new StringBuilder(" ( ");
+		return ret;
 
-				boolean first = true;
+	}
 
-				for (final String u : users) {
-					if (!first)
-						whe.append(" or ");
-					else
-						first = false;
+	/**
+	 * Lowest queueId that a {@link #getPS(Collection, Collection, Collection, Collection, Collection, Collection, HashMap, String, int)} call with the same arguments would
+	 * return, so that the same selection can then be read in pages with {@link #getPSPage(Collection, Collection, Collection, Collection, Collection, Collection, HashMap, long, long, int)}.
+	 * The listing is made of the most recent <code>limit</code> jobs, so only their IDs are scanned to find where it starts.
+	 *
+	 * @param states
+	 * @param users
+	 * @param sites
+	 * @param nodes
+	 * @param mjobs
+	 * @param jobids
+	 * @param filters
+	 * @param limit
+	 * @return the first queueId to list, <code>0</code> if all matching jobs fit in the limit (also when no job matches), or <code>-1</code> if the constraints cannot match
+	 *         anything or the query failed
+	 */
+	public static long getPSLowerBound(final Collection<JobStatus> states, final Collection<String> users, final Collection<String> sites, final Collection<String> nodes,
+			final Collection<Long> mjobs, final Collection<Long> jobids, final HashMap<GetPS.PsFilters, Collection<Object>> filters, final int limit) {
+		// the old schema lists the oldest jobs first, the pages simply stop at the limit
+		if (!dbStructure2_20)
+			return 0;
 
-					if (dbStructure2_20)
-						whe.append("userId=").append(getUserId(u, true));
-					else
-						whe.append("submitHost like '").append(Format.escSQL(u)).append("@%'");
-				}
+		try (DBFunctions db = getQueueDB()) {
+			if (db == null)
+				return -1;
 
-				if (!first)
-					where += whe + " ) and ";
+			if (monitor != null)
+				monitor.incrementCounter("TQ_db_lookup");
+
+			int lim = job_limit;
+
+			if (limit > 0 && limit < job_limit)
+				lim = limit;
+
+			final String where = getPSConstraints(states, users, sites, nodes, mjobs, jobids, filters);
+
+			if (where == null)
+				return -1;
+
+			final String q = "SELECT queueId FROM QUEUE WHERE " + where + " 1=1 ORDER BY queueId DESC LIMIT 1 OFFSET " + (lim - 1);
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(600);
+
+			if (!db.query(q))
+				return -1;
+
+			return db.moveNext() ? db.getl(1) : 0;
+		}
+	}
+
+	/**
+	 * One page of a ps listing, ordered by queueId. The constraints are applied in the database and the rows are read by their queueId key, so a listing of any size can be
+	 * streamed without loading it all in memory.
+	 *
+	 * @param states
+	 * @param users
+	 * @param sites
+	 * @param nodes
+	 * @param mjobs
+	 * @param jobids
+	 * @param filters
+	 * @param lowerBound
+	 *            lowest queueId to list, as returned by {@link #getPSLowerBound(Collection, Collection, Collection, Collection, Collection, Collection, HashMap, int)}
+	 * @param afterQueueId
+	 *            last queueId of the previous page, <code>0</code> for the first page
+	 * @param pageSize
+	 *            maximum number of jobs to return
+	 * @return the next jobs, at most <code>pageSize</code> of them, or <code>null</code> if the query failed
+	 */
+	public static List<Job> getPSPage(final Collection<JobStatus> states, final Collection<String> users, final Collection<String> sites, final Collection<String> nodes,
+			final Collection<Long> mjobs, final Collection<Long> jobids, final HashMap<GetPS.PsFilters, Collection<Object>> filters, final long lowerBound, final long afterQueueId,
+			final int pageSize) {
+		final List<Job> ret = new ArrayList<>();
+
+		if (lowerBound < 0 || pageSize <= 0)
+			return ret;
+
+		try (DBFunctions db = getQueueDB()) {
+			if (db == null)
+				return null;
+
+			if (monitor != null) {
+				monitor.incrementCounter("TQ_db_lookup");
+				monitor.incrementCounter("TQ_ps_page");
 			}
 
-			if (sites != null && sites.size() > 0 && !sites.contains("%")) {
-				final Collection<Integer> siteIDs = new HashSet<>();
+			final String where = getPSConstraints(states, users, sites, nodes, mjobs, jobids, filters);
 
-				for (final String s : sites) {
-					final Collection<Integer> ids = getSiteIDs(s);
+			if (where == null)
+				return ret;
 
-					if (ids != null)
-						siteIDs.addAll(ids);
-				}
+			// QUEUE doesn't hold the JDL in the 2.20 schema
+			final String q = "SELECT " + (dbStructure2_20 ? "*" : ALL_BUT_JDL) + " FROM QUEUE WHERE " + where + " queueId>=? AND queueId>? ORDER BY queueId ASC LIMIT "
+					+ Math.min(pageSize, job_limit);
+
+			if (logger.isLoggable(Level.FINE))
+				logger.log(Level.FINE, "page query: " + q);
+
+			db.setReadOnly(true);
+			db.setQueryTimeout(600);
+
+			if (!db.query(q, false, Long.valueOf(lowerBound), Long.valueOf(afterQueueId)))
+				return null;
+
+			while (db.moveNext())
+				ret.add(new Job(db, false));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @param states
+	 * @param users
+	 * @param sites
+	 * @param nodes
+	 * @param mjobs
+	 * @param jobids
+	 * @param filters
+	 * @return the SQL constraints of a ps listing, each followed by <code>and</code>, or <code>null</code> if nothing can match them
+	 */
+	private static String getPSConstraints(final Collection<JobStatus> states, final Collection<String> users, final Collection<String> sites, final Collection<String> nodes,
+			final Collection<Long> mjobs, final Collection<Long> jobids, final HashMap<GetPS.PsFilters, Collection<Object>> filters) {
+		String where = "";
+
+		if (states != null && states.size() > 0 && !states.contains(JobStatus.ANY)) {
+			final StringBuilder whe = new StringBuilder();
+
+			if (dbStructure2_20)
+				whe.append(" (statusId in (");
+			else
+				whe.append(" (status in (");
 
-				if (siteIDs.size() > 0)
-					where += " ( siteId in (" + Format.toCommaList(siteIDs) + ") ) and ";
+			boolean first = true;
+
+			for (final JobStatus s : states) {
+				if (!first)
+					whe.append(",");
+				else
+					first = false;
+
+				if (dbStructure2_20)
+					whe.append(s.getAliEnLevel());
 				else
-					return ret;
+					whe.append('\'').append(s.toSQL()).append('\'');
 			}
 
-			if (nodes != null && nodes.size() > 0 && !nodes.contains("%")) {
-				final StringBuilder whe = new StringBuilder(" ( nodeId in (");
+			if (!first)
+				where += whe + ") ) and ";
+		}
 
-				boolean first = true;
+		// Iterating time filter
+		for (Map.Entry<GetPS.PsFilters, Collection<Object>> filterEntry : filters.entrySet()) {
+
+			// Filter name
+			GetPS.PsFilters filter = filterEntry.getKey();
+			// List of values for the filter
+			Collection<Object> filterValues = filterEntry.getValue();
+
+			// Custom logic for each filter
+			switch (filter) {
+				case mtime:
+					if (filterValues != null) {
+						ArrayList<Object> filterValuesList = new ArrayList<>(filterValues);
+						// mtime filter must have two elements. If the endTime is not defined, 0 is added from the parser.
+						if (filterValuesList.size() == 2) {
+							String startTime = String.valueOf(filterValuesList.get(0));
+							String endTime = String.valueOf(filterValuesList.get(1));
+							if (Integer.parseInt(startTime) >= Integer.parseInt(endTime)) {
+								where += " (mtime between (NOW() - INTERVAL " + startTime + " HOUR) " +
+										"and (NOW() - INTERVAL " + endTime + " HOUR)) and ";
+								break;
+							}
+							else {
+								// incorrect time intervals
+							}
+						}
+						else {
+							// we cannot accept more than 2 parameters
+						}
+					}
+					break;
+				// add more filters...
+				default:
+					break;
+			}
+		}
 
-				for (final String n : nodes) {
-					final Integer nodeId = getHostId(n, true);
+		if (users != null && users.size() > 0 && !users.contains("%")) {
+			final StringBuilder whe = new StringBuilder(" ( ");
 
-					final int id = nodeId != null ? nodeId.intValue() : -1;
+			boolean first = true;
 
-					if (!first)
-						whe.append(',');
-					else
-						first = false;
+			for (final String u : users) {
+				if (!first)
+					whe.append(" or ");
+				else
+					first = false;
 
-					whe.append(id);
-				}
+				if (dbStructure2_20)
+					whe.append("userId=").append(getUserId(u, true));
+				else
+					whe.append("submitHost like '").append(Format.escSQL(u)).append("@%'");
+			}
 
-				if (!first)
-					where += whe + ") ) and ";
+			if (!first)
+				where += whe + " ) and ";
+		}
+
+		if (sites != null && sites.size() > 0 && !sites.contains("%")) {
+			final Collection<Integer> siteIDs = new HashSet<>();
+
+			for (final String s : sites) {
+				final Collection<Integer> ids = getSiteIDs(s);
+
+				if (ids != null)
+					siteIDs.addAll(ids);
 			}
 
-			if (mjobs != null && mjobs.size() > 0) {
-				if (!mjobs.contains(Long.valueOf(0))) {
-					final StringBuilder whe = new StringBuilder(" ( split in (");
+			if (siteIDs.size() > 0)
+				where += " ( siteId in (" + Format.toCommaList(siteIDs) + ") ) and ";
+			else
+				return null;
+		}
 
-					boolean first = true;
+		if (nodes != null && nodes.size() > 0 && !nodes.contains("%")) {
+			final StringBuilder whe = new StringBuilder(" ( nodeId in (");
 
-					for (final Long m : mjobs) {
-						if (!first)
-							whe.append(',');
-						else
-							first = false;
+			boolean first = true;
 
-						whe.append(m);
-					}
+			for (final String n : nodes) {
+				final Integer nodeId = getHostId(n, true);
 
-					if (!first)
-						where += whe + ") ) and ";
-				}
-				else {
-					where += " ( split = 0 ) and ";
-				}
+				final int id = nodeId != null ? nodeId.intValue() : -1;
+
+				if (!first)
+					whe.append(',');
+				else
+					first = false;
+
+				whe.append(id);
 			}
 
-			if (jobids != null && jobids.size() > 0 && !jobids.contains(Long.valueOf(0))) {
-				final StringBuilder whe = new StringBuilder(" ( queueId in (");
+			if (!first)
+				where += whe + ") ) and ";
+		}
+
+		if (mjobs != null && mjobs.size() > 0) {
+			if (!mjobs.contains(Long.valueOf(0))) {
+				final StringBuilder whe = new StringBuilder(" ( split in (");
 
 				boolean first = true;
 
-				for (final Long i : jobids) {
+				for (final Long m : mjobs) {
 					if (!first)
 						whe.append(',');
 					else
 						first = false;
 
-					whe.append(i);
+					whe.append(m);
 				}
 
 				if (!first)
 					where += whe + ") ) and ";
 			}
+			else {
+				where += " ( split = 0 ) and ";
+			}
+		}
 
-			if (where.endsWith(" and "))
-				where = where.substring(0, where.length() - 5);
-
-			String orderBy = " order by ";
-
-			if (orderByKey == null || orderByKey.length() == 0)
-				orderBy += "queueId";
-			else
-				orderBy += "`" + orderByKey + "`";
-
-			if (where.length() > 0)
-				where = " WHERE " + where;
-
-			final String q;
-
-			if (dbStructure2_20)
-				q = "SELECT * FROM (SELECT * FROM QUEUE " + where + " ORDER BY queueId DESC " + " limit " + lim + ") x " + orderBy;
-			else
-				q = "SELECT " + ALL_BUT_JDL + " FROM QUEUE " + where + orderBy + " limit " + lim + ";";
-
-			if (logger.isLoggable(Level.FINE))
-				logger.log(Level.FINE, "selection query: " + q);
+		if (jobids != null && jobids.size() > 0 && !jobids.contains(Long.valueOf(0))) {
+			final StringBuilder whe = new StringBuilder(" ( queueId in (");
 
-			db.setReadOnly(true);
-			db.setQueryTimeout(600);
+			boolean first = true;
 
-			if (!db.query(q))
-				return null;
+			for (final Long i : jobids) {
+				if (!first)
+					whe.append(',');
+				else
+					first = false;
 
-			while (db.moveNext()) {
-				final Job j = new Job(db, false);
-				ret.add(j);
+				whe.append(i);
 			}
-		}
 
-		return ret;
+			if (!first)
+				where += whe + ") ) and ";
+		}
 
+		return where;
 	}
 
 	/**
@@ -1973,8 +2198,6 @@ public class TaskQueueUtils {
 
 			final String executable = j.getExecutable();
 
-			final Float price = j.getFloat("Price");
-
 			values.put("priority", Integer.valueOf(0));
 
 			final String notify = j.gets("email");
@@ -1998,37 +2221,7 @@ public class TaskQueueUtils {
 				values.put("name", executable);
 			}
 
-			values.put("chargeStatus", Integer.valueOf(0));
-			values.put("price", price);
-			values.put("received", Long.valueOf(System.currentTimeMillis() / 1000));
-
-			Long masterjobID = j.getLong("MasterJobID");
-
-			if (JobStatus.SPLIT.equals(jobStatus) || j.get("Split") != null) {
-				values.put("masterjob", Integer.valueOf(1));
-				masterjobID = null;
-			}
-			else
-				values.put("masterjob", Integer.valueOf(0));
-
-			if (masterjobID != null)
-				values.put("split", masterjobID);
-			else
-				values.put("split", Integer.valueOf(0));
-
-			final Integer cpuCores = j.getInteger("CPUCores");
-
-			values.put("cpucores", cpuCores == null || cpuCores.intValue() < 0 || cpuCores.intValue() > 100 ? Integer.valueOf(1) : cpuCores);
-
-			final Integer maxWaitingTime = j.getInteger("MaxWaitingTime");
-
-			values.put("expires",
-					maxWaitingTime == null || maxWaitingTime.intValue() <= 0 || maxWaitingTime.intValue() > MAX_WAITING_TIME_ABSMAX ? Integer.valueOf(MAX_WAITING_TIME_DEFAULT) : maxWaitingTime);
-
-			final Integer remoteTimeout = j.getInteger("RemoteTimeout");
-
-			values.put("remoteTimeout",
-					remoteTimeout == null || remoteTimeout.intValue() <= 0 || remoteTimeout.intValue() > REMOTE_TIMEOUT_ABSMAX ? Integer.valueOf(REMOTE_TIMEOUT_DEFAULT) : remoteTimeout);
+			final Long masterjobID = fillQueueValues(j, jobStatus, values);
 
 			final String insert = DBFunctions.composeInsert("QUEUE", values);
 
@@ -2044,6 +2237,9 @@ public class TaskQueueUtils {
 
 			db.query("INSERT INTO QUEUEPROC (queueId) VALUES (?);", false, pid);
 
+			if (masterjobID != null)
+				MasterjobCounters.jobInserted(masterjobID.longValue(), jobStatus);
+
 			if (dbStructure2_20) {
 				final Map<String, Object> valuesJDL = new HashMap<>();
 
@@ -2064,6 +2260,328 @@ public class TaskQueueUtils {
 		}
 	}
 
+	/**
+	 * Fill in the QUEUE columns that only depend on the JDL and the target status
+	 *
+	 * @param j
+	 * @param jobStatus
+	 * @param values
+	 *            column values to complete
+	 * @return the masterjob that this job belongs to, if any
+	 */
+	private static Long fillQueueValues(final JDL j, final JobStatus jobStatus, final Map<String, Object> values) {
+		values.put("chargeStatus", Integer.valueOf(0));
+		values.put("price", j.getFloat("Price"));
+		values.put("received", Long.valueOf(System.currentTimeMillis() / 1000));
+
+		Long masterjobID = j.getLong("MasterJobID");
+
+		if (JobStatus.SPLIT.equals(jobStatus) || j.get("Split") != null) {
+			values.put("masterjob", Integer.valueOf(1));
+			masterjobID = null;
+		}
+		else
+			values.put("masterjob", Integer.valueOf(0));
+
+		if (masterjobID != null)
+			values.put("split", masterjobID);
+		else
+			values.put("split", Integer.valueOf(0));
+
+		final Integer cpuCores = j.getInteger("CPUCores");
+
+		values.put("cpucores", cpuCores == null || cpuCores.intValue() < 0 || cpuCores.intValue() > 100 ? Integer.valueOf(1) : cpuCores);
+
+		final Integer maxWaitingTime = j.getInteger("MaxWaitingTime");
+
+		values.put("expires",
+				maxWaitingTime == null || maxWaitingTime.intValue() <= 0 || maxWaitingTime.intValue() > MAX_WAITING_TIME_ABSMAX ? Integer.valueOf(MAX_WAITING_TIME_DEFAULT) : maxWaitingTime);
+
+		final Integer remoteTimeout = j.getInteger("RemoteTimeout");
+
+		values.put("remoteTimeout",
+				remoteTimeout == null || remoteTimeout.intValue() <= 0 || remoteTimeout.intValue() > REMOTE_TIMEOUT_ABSMAX ? Integer.valueOf(REMOTE_TIMEOUT_DEFAULT) : remoteTimeout);
+
+		return masterjobID;
+	}
+
+	/**
+	 * How many jobs go in one multi-row INSERT and one transaction of {@link #insertJobs(List, AliEnPrincipal, String, JobStatus)}
+	 */
+	private static final int INSERT_BATCH_SIZE = ConfigUtils.getConfig().geti("alien.taskQueue.TaskQueueUtils.insertBatchSize", 200);
+
+	/**
+	 * Insert many jobs of the same owner at once, typically the subjobs of a masterjob. The lookup IDs are resolved once for all jobs and the QUEUE, QUEUEPROC and QUEUEJDL
+	 * rows are written with multi-row INSERTs, one transaction for each chunk of <code>alien.taskQueue.TaskQueueUtils.insertBatchSize</code> jobs (200 by default). Jobs
+	 * inserted directly as <code>WAITING</code> are attached to their JOBAGENT entries, whose counters are incremented once per distinct set of requirements.
+	 *
+	 * @param jdls
+	 *            full JDLs
+	 * @param account
+	 *            AliEn account
+	 * @param owner
+	 *            AliEn account name that the indicated account has access to
+	 * @param targetStatus
+	 *            job status. Can be <code>null</code> to have the default behavior of putting them to <code>INSERTING</code> and letting AliEn process them.
+	 * @return the inserted job IDs, in the same order as the JDLs
+	 * @throws IOException
+	 *             if any chunk could not be inserted. The chunks before it are kept in the queue.
+	 */
+	public static List<Long> insertJobs(final List<JDL> jdls, final AliEnPrincipal account, final String owner, final JobStatus targetStatus) throws IOException {
+		final List<Long> ret = new ArrayList<>(jdls.size());
+
+		if (!dbStructure2_20) {
+			// the old schema keeps the JDL and the names in QUEUE itself, nothing to share between the jobs
+			for (final JDL j : jdls)
+				ret.add(Long.valueOf(insertJob(j, account, owner, targetStatus)));
+
+			return ret;
+		}
+
+		if (jdls.isEmpty())
+			return ret;
+
+		final String clientAddress;
+
+		final InetAddress addr = account.getRemoteEndpoint();
+
+		if (addr != null)
+			clientAddress = Utils.getHostName(addr.getHostAddress());
+		else
+			clientAddress = ConfigUtils.getLocalHostname();
+
+		final JobStatus jobStatus = targetStatus != null ? targetStatus : JobStatus.INSERTING;
+
+		final Integer userId = getUserId(owner, false);
+		final Integer hostId = getHostId(clientAddress, false);
+
+		if (userId == null || hostId == null)
+			throw new IOException("Cannot resolve the user or the submit host IDs");
+
+		final Map<String, Integer> commandIds = new HashMap<>();
+		final Map<String, Integer> notifyIds = new HashMap<>();
+
+		final List<Map<String, Object>> rows = new ArrayList<>(jdls.size());
+		final List<Long> masterjobs = new ArrayList<>(jdls.size());
+
+		// JOBAGENT requirements (without the counter) of each job, only for jobs that go straight to WAITING
+		final List<Map<String, Object>> agentRequirements = jobStatus == JobStatus.WAITING ? new ArrayList<>(jdls.size()) : null;
+
+		for (final JDL j : jdls) {
+			final Map<String, Object> values = new HashMap<>();
+
+			values.put("priority", Integer.valueOf(0));
+			values.put("statusId", Integer.valueOf(jobStatus.getAliEnLevel()));
+			values.put("userId", userId);
+			values.put("submitHostId", hostId);
+			values.put("commandId", commandIds.computeIfAbsent(j.getExecutable(), (k) -> getCommandId(k)));
+
+			final String notify = j.gets("email");
+
+			if (notify != null && notify.length() > 0)
+				values.put("notifyId", notifyIds.computeIfAbsent(notify, (k) -> getNotifyId(k)));
+
+			masterjobs.add(fillQueueValues(j, jobStatus, values));
+
+			rows.add(values);
+
+			if (agentRequirements != null) {
+				final HashMap<String, Object> params = extractJAParametersFromJDL(j);
+				params.remove("counter");
+				agentRequirements.add(params);
+			}
+		}
+
+		final Map<Long, Integer> perMasterjob = new HashMap<>();
+
+		int waiting = 0;
+
+		try (DBFunctions db = getQueueDB()) {
+			if (db == null)
+				throw new IOException("This service has no direct database connection");
+
+			for (int start = 0; start < rows.size(); start += INSERT_BATCH_SIZE) {
+				final int end = Math.min(start + INSERT_BATCH_SIZE, rows.size());
+
+				// one JOBAGENT update for all the jobs of this chunk that have the same requirements
+				final Map<Map<String, Object>, Integer> agentCounts = new HashMap<>();
+
+				if (agentRequirements != null) {
+					for (int i = start; i < end; i++)
+						agentCounts.merge(agentRequirements.get(i), Integer.valueOf(1), Integer::sum);
+
+					final Map<Map<String, Object>, Integer> agentIds = new HashMap<>(agentCounts.size());
+
+					for (final Map.Entry<Map<String, Object>, Integer> entry : agentCounts.entrySet()) {
+						final HashMap<String, Object> params = new HashMap<>(entry.getKey());
+						params.put("counter", entry.getValue());
+
+						final int agentId = insertJobAgent(params);
+
+						if (agentId == 0) {
+							releaseAgents(agentIds, agentCounts);
+							throw new IOException("Could not insert the JOBAGENT entry, " + ret.size() + " jobs out of " + rows.size() + " were inserted");
+						}
+
+						agentIds.put(entry.getKey(), Integer.valueOf(agentId));
+					}
+
+					for (int i = start; i < end; i++)
+						rows.get(i).put("agentId", agentIds.get(agentRequirements.get(i)));
+
+					try {
+						ret.addAll(insertJobChunk(db, rows.subList(start, end), jdls.subList(start, end)));
+					}
+					catch (final IOException ioe) {
+						releaseAgents(agentIds, agentCounts);
+						throw ioe;
+					}
+
+					waiting += end - start;
+				}
+				else
+					ret.addAll(insertJobChunk(db, rows.subList(start, end), jdls.subList(start, end)));
+
+				for (int i = start; i < end; i++)
+					if (masterjobs.get(i) != null)
+						perMasterjob.merge(masterjobs.get(i), Integer.valueOf(1), Integer::sum);
+			}
+		}
+		finally {
+			for (final Map.Entry<Long, Integer> entry : perMasterjob.entrySet())
+				MasterjobCounters.statusChanged(entry.getKey().longValue(), null, jobStatus, entry.getValue().intValue());
+
+			if (waiting > 0)
+				PriorityRegister.JobCounter.getCounterForUser(userId).addWaiting(waiting);
+
+			if (ret.size() > 0) {
+				setAction(jobStatus);
+
+				for (final Long pid : ret) {
+					putJobLog(pid.longValue(), "trace", "Job inserted by " + ConfigUtils.getLocalHostname() + ", request came from " + clientAddress, null);
+					putJobLog(pid.longValue(), "state", "Job state transition to " + jobStatus.toString(), null);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static void releaseAgents(final Map<Map<String, Object>, Integer> agentIds, final Map<Map<String, Object>, Integer> agentCounts) {
+		for (final Map.Entry<Map<String, Object>, Integer> entry : agentIds.entrySet())
+			deleteJobAgent(entry.getValue().longValue(), 0, agentCounts.get(entry.getKey()).intValue());
+	}
+
+	/**
+	 * Write one chunk of jobs in a single transaction
+	 *
+	 * @param db
+	 * @param rows
+	 *            QUEUE column values of each job
+	 * @param jdls
+	 *            the respective JDLs
+	 * @return the generated job IDs
+	 * @throws IOException
+	 */
+	private static List<Long> insertJobChunk(final DBFunctions db, final List<Map<String, Object>> rows, final List<JDL> jdls) throws IOException {
+		final Set<String> columns = new LinkedHashSet<>();
+
+		for (final Map<String, Object> row : rows)
+			columns.addAll(row.keySet());
+
+		final StringBuilder queueInsert = new StringBuilder("INSERT INTO QUEUE (").append(String.join(",", columns)).append(") VALUES ");
+		final StringBuilder procInsert = new StringBuilder("INSERT INTO QUEUEPROC (queueId) VALUES ");
+		final StringBuilder jdlInsert = new StringBuilder("INSERT INTO QUEUEJDL (queueId, origJdl) VALUES ");
+
+		final String rowPlaceholders = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+
+		for (int i = 0; i < rows.size(); i++) {
+			final String separator = i > 0 ? "," : "";
+
+			queueInsert.append(separator).append(rowPlaceholders);
+			procInsert.append(separator).append("(?)");
+			jdlInsert.append(separator).append("(?,?)");
+		}
+
+		final List<Long> ids = new ArrayList<>(rows.size());
+
+		final DBConnection dbc = db.getConnection();
+
+		if (dbc == null)
+			throw new IOException("Cannot get a database connection");
+
+		try {
+			dbc.setReadOnly(false);
+
+			@SuppressWarnings("resource")
+			final Connection conn = dbc.getConnection();
+
+			conn.setAutoCommit(false);
+
+			try {
+				try (PreparedStatement stat = conn.prepareStatement(queueInsert.toString(), Statement.RETURN_GENERATED_KEYS)) {
+					int idx = 1;
+
+					for (final Map<String, Object> row : rows)
+						for (final String column : columns)
+							stat.setObject(idx++, row.get(column));
+
+					stat.setQueryTimeout(300);
+					stat.execute();
+
+					try (ResultSet keys = stat.getGeneratedKeys()) {
+						while (keys.next())
+							ids.add(Long.valueOf(keys.getLong(1)));
+					}
+				}
+
+				if (ids.size() != rows.size())
+					throw new SQLException("Got " + ids.size() + " generated keys for " + rows.size() + " jobs");
+
+				try (PreparedStatement stat = conn.prepareStatement(procInsert.toString())) {
+					for (int i = 0; i < ids.size(); i++)
+						stat.setObject(i + 1, ids.get(i));
+
+					stat.setQueryTimeout(300);
+					stat.execute();
+				}
+
+				try (PreparedStatement stat = conn.prepareStatement(jdlInsert.toString())) {
+					for (int i = 0; i < ids.size(); i++) {
+						stat.setObject(2 * i + 1, ids.get(i));
+						stat.setObject(2 * i + 2, "\n    [\n" + jdls.get(i).toString() + "\n    ]");
+					}
+
+					stat.setQueryTimeout(300);
+					stat.execute();
+				}
+
+				conn.commit();
+			}
+			catch (final SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+			finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		catch (final SQLException e) {
+			logger.log(Level.WARNING, "Could not insert a chunk of " + rows.size() + " jobs", e);
+			throw new IOException("Could not insert the jobs in the queue: " + e.getMessage(), e);
+		}
+		finally {
+			dbc.free();
+		}
+
+		if (monitor != null) {
+			monitor.incrementCounter("TQ_db_insert");
+			monitor.incrementCounter("TQ_jobs_bulk_inserted", rows.size());
+		}
+
+		return ids;
+	}
+
 	private static final GenericLastValuesCache<String, Integer> userIdCache = new GenericLastValuesCache<>() {
 		private static final long serialVersionUID = 1L;
 
@@ -2580,6 +3098,9 @@ public class TaskQueueUtils {
 				if (db.getUpdateCount() > 0) {
 					// job stats was updated correctly, let's update the queue table too
 
+					if (j.split > 0)
+						MasterjobCounters.statusChanged(j.split, j.status(), newStatus);
+
 					if (j.site != null) {
 						final int siteId = getSiteId(j.site);
 
@@ -2770,6 +3291,11 @@ public class TaskQueueUtils {
 
 	private static final String JOBMESSAGES_INSERT = "INSERT INTO JOBMESSAGES (timestamp, jobId, procinfo, tag) VALUES (?, ?, ?, ?);";
 
+	/**
+	 * Whether the job messages go through the {@link JobMessageWriter} write-behind queue instead of being inserted by the caller
+	 */
+	private static final boolean asyncJobLog = ConfigUtils.getConfig().getb("alien.taskQueue.TaskQueueUtils.asyncJobLog", true);
+
 	/**
 	 * @param queueId
 	 * @param action
@@ -2787,7 +3313,7 @@ public class TaskQueueUtils {
 	 * @param action
 	 * @param message
 	 * @param joblogtags
-	 * @return <code>true</code> if the log was successfully added
+	 * @return <code>true</code> if the log was successfully added (or queued for insertion)
 	 */
 	public static boolean putJobLog(final long timestamp, final long queueId, final String action, final String message, final HashMap<String, String> joblogtags) {
 		final Long now = Long.valueOf((timestamp <= 0 ? System.currentTimeMillis() : timestamp) / 1000);
@@ -2816,6 +3342,30 @@ public class TaskQueueUtils {
 			return true;
 		}
 
+		final Long qid = Long.valueOf(queueId);
+
+		// (procinfo, tag) pairs to insert
+		final List<String[]> rows = new ArrayList<>(1 + (joblogtags != null ? joblogtags.size() : 0));
+
+		rows.add(new String[] { message, action });
+
+		if (joblogtags != null && joblogtags.size() > 0)
+			for (final Map.Entry<String, String> entry : joblogtags.entrySet())
+				rows.add(new String[] { entry.getValue(), entry.getKey() });
+
+		if (asyncJobLog) {
+			// once a line doesn't fit in the write-behind buffer, it and the following ones are written directly
+			int queued = 0;
+
+			while (queued < rows.size() && JobMessageWriter.offer(now, qid, rows.get(queued)[0], rows.get(queued)[1]))
+				queued++;
+
+			if (queued == rows.size())
+				return true;
+
+			rows.subList(0, queued).clear();
+		}
+
 		try (DBFunctions db = getQueueDB()) {
 			if (db == null)
 				return false;
@@ -2827,16 +3377,9 @@ public class TaskQueueUtils {
 				monitor.incrementCounter("TQ_JOBMESSAGES_insert");
 			}
 
-			final Long qid = Long.valueOf(queueId);
-
-			if (!db.query(JOBMESSAGES_INSERT, false, now, qid, message, action))
-				return false;
-
-			if (joblogtags != null && joblogtags.size() > 0)
-				for (final Map.Entry<String, String> entry : joblogtags.entrySet()) {
-					if (!db.query(JOBMESSAGES_INSERT, false, now, qid, entry.getValue(), entry.getKey()))
-						return false;
-				}
+			for (final String[] row : rows)
+				if (!db.query(JOBMESSAGES_INSERT, false, now, qid, row[0], row[1]))
+					return false;
 		}
 
 		return true;
@@ -2874,6 +3417,9 @@ public class TaskQueueUtils {
 
 			final int updated = db.getUpdateCount();
 
+			if (updated > 0)
+				JobAgentIndex.jobClaimed(jobagentId, 0, 1);
+
 			deleteEmptyAgents();
 
 			return updated > 0;
@@ -3591,6 +4137,18 @@ public class TaskQueueUtils {
 	 * @return 0 if no action was taken, 1 if the query succeeded (though this is no guarantee that anything was actually deleted)
 	 */
 	public static int deleteJobAgent(final long agentId, final long queueId) {
+		return deleteJobAgent(agentId, queueId, 1);
+	}
+
+	/**
+	 * @param agentId
+	 * @param queueId
+	 *            the last job that was assigned from this agent
+	 * @param count
+	 *            how many jobs were assigned from this agent
+	 * @return 0 if no action was taken, 1 if the query succeeded (though this is no guarantee that anything was actually deleted)
+	 */
+	public static int deleteJobAgent(final long agentId, final long queueId, final int count) {
 		try (DBFunctions db = getQueueDB()) {
 			if (db == null)
 				return 0;
@@ -3600,6 +4158,8 @@ public class TaskQueueUtils {
 			final ArrayList<Object> bindValues = new ArrayList<>();
 			String oldestQueueIdQ = "";
 
+			bindValues.add(Integer.valueOf(count));
+
 			if (queueId > 0) {
 				bindValues.add(Long.valueOf(queueId));
 				oldestQueueIdQ = ",oldestQueueId=?";
@@ -3607,7 +4167,8 @@ public class TaskQueueUtils {
 
 			bindValues.add(Long.valueOf(agentId));
 
-			db.query("update JOBAGENT set counter=counter-1 " + oldestQueueIdQ + " where entryId=?", false, bindValues.toArray(new Object[0]));
+			if (db.query("update JOBAGENT set counter=counter-? " + oldestQueueIdQ + " where entryId=?", false, bindValues.toArray(new Object[0])))
+				JobAgentIndex.jobClaimed(agentId, queueId, count);
 
 			deleteEmptyAgents();
 		}
@@ -3767,7 +4328,7 @@ public class TaskQueueUtils {
 			// get the Path (folder of stored files) to cleanup if necessary
 			JDL jdl;
 			try {
-				jdl = new JDL(j.getJDL());
+				jdl = JDLCache.get(j.getJDL());
 			}
 			catch (final IOException e) {
 				logger.severe("Resubmit: cannot create JDL for job: " + queueId + " Exception: " + e);
@@ -3823,6 +4384,9 @@ public class TaskQueueUtils {
 					return new AbstractMap.SimpleEntry<>(Integer.valueOf(ErrNo.EBADFD.getErrorCode()), "Resubmit: cannot update job to WAITING: " + queueId);
 				}
 
+				if (j.split > 0)
+					MasterjobCounters.statusChanged(j.split, j.status(), targetStatus);
+
 				logger.fine("Resubmit: update SITEQUEUES of " + queueId);
 
 				// update queue counters
@@ -4050,19 +4614,25 @@ public class TaskQueueUtils {
 					return 0;
 				}
 
+				final int insertedId = db.getLastGeneratedKey().intValue();
+
 				if (logger.isLoggable(Level.FINE))
-					logger.log(Level.FINE, "insertJobAgent: insertion done: " + db.getLastGeneratedKey().intValue());
+					logger.log(Level.FINE, "insertJobAgent: insertion done: " + insertedId);
 
-				return db.getLastGeneratedKey().intValue();
+				JobAgentIndex.refresh(insertedId);
+
+				return insertedId;
 			}
 
 			// otherwise there is an entry that matches our reqs already, update it
 			db.setReadOnly(false);
 			db.setQueryTimeout(60);
 
-			if (!db.query("update JOBAGENT set counter=counter+1 where entryId=?", false, Integer.valueOf(entryId)))
+			if (!db.query("update JOBAGENT set counter=counter+? where entryId=?", false, params.get("counter"), Integer.valueOf(entryId)))
 				return 0;
 
+			JobAgentIndex.refresh(entryId);
+
 			return entryId;
 		}
 	}
@@ -4566,9 +5136,7 @@ public class TaskQueueUtils {
 
 			// When the JR finishes and we want to delete the db entry
 			if (proposedMask == null) {
-				synchronized (JRTracker.pinningTrackerSync) {
-					JRTracker.uuidToUpdate.remove(vmUID);
-				}
+				JRTracker.forget(vmUID);
 				String subQ = "delete from COREPINNING where hostId=" + hostId + " and binary2string(uuid)='" + vmUID + "';";
 				db.query(subQ);
 				return null;
@@ -4700,14 +5268,7 @@ public class TaskQueueUtils {
 	 * @param vmUID uuid of the JA VM
 	 */
 	public static void notifyJRAlive(UUID vmUID) {
-		if (jrTrackerThread == null) {
-			jrTrackerThread = new Thread(new JRTracker());
-			jrTrackerThread.start();
-		}
-		synchronized (JRTracker.pinningTrackerSync) {
-			if (JRTracker.uuidToUpdate.size() < 10000)
-				JRTracker.uuidToUpdate.add(vmUID);
-		}
+		JRTracker.heartbeat(vmUID);
 	}
 
 	static String getMaskString(byte[] cpuRange) {
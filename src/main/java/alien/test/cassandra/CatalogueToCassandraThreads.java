@@ -26,6 +26,7 @@ import com.datastax.driver.core.ConsistencyLevel;
 import alien.catalogue.GUID;
 import alien.catalogue.GUIDUtils;
 import alien.catalogue.LFN;
+import alien.catalogue.LFNCSDBulkInsert;
 import alien.catalogue.LFNUtils;
 import alien.catalogue.LFN_CSD;
 import alien.catalogue.PFN;
@@ -581,6 +582,9 @@ public class CatalogueToCassandraThreads {
 			// Sort the list by archive
 			Collections.sort(list, comparator);
 
+			// Collections and files to be inserted once the folder was processed
+			final List<LFN_CSD> toInsert = new ArrayList<>();
+
 			// Files that will excluded since they are included in archives
 			final Set<LFN> members_of_archives = new HashSet<>();
 
@@ -659,19 +663,7 @@ public class CatalogueToCassandraThreads {
 					}
 				}
 				else if (l.isCollection()) {
-					final LFN_CSD lfnc = new LFN_CSD(l, false, true);
-					final long start = System.nanoTime();
-					if (!lfnc.insert(null, clevel)) {
-						final String msg = "Error inserting collection: " + l.getCanonicalName() + " Time: " + new Date();
-						System.err.println(msg);
-						failed_collections.println(msg);
-						failed_collections.flush();
-					}
-					else {
-						final long duration_ns = System.nanoTime() - start;
-						ns_count.addAndGet(duration_ns);
-						timing_count.incrementAndGet();
-					}
+					toInsert.add(new LFN_CSD(l, false, true));
 				}
 				else if (l.isFile()) {
 					if (members_of_archives.contains(l))
@@ -712,21 +704,29 @@ public class CatalogueToCassandraThreads {
 						lfnc.pfns = pfnset;
 					}
 
-					try (Timing timing = new Timing(monitor, "ms_insert_cassandra")) {
-						if (!lfnc.insert(null, clevel)) {
-							final String msg = "Error inserting file: " + l.getCanonicalName() + " Time: " + new Date();
+					toInsert.add(lfnc);
+				}
+			}
+
+			// files and collections of this folder are written in one pipelined bulk operation
+			if (!toInsert.isEmpty()) {
+				try (Timing timing = new Timing(monitor, "ms_insert_cassandra")) {
+					final int inserted = new LFNCSDBulkInsert(null, clevel).insert(toInsert.iterator(), (lfnc, ok) -> {
+						if (!ok.booleanValue()) {
+							final String msg = "Error inserting " + (lfnc.isCollection() ? "collection" : "file") + ": " + lfnc.getCanonicalName() + " Time: " + new Date();
 							System.err.println(msg);
-							failed_files.println(msg);
-							failed_files.flush();
+							final PrintWriter pw = lfnc.isCollection() ? failed_collections : failed_files;
+							synchronized (pw) {
+								pw.println(msg);
+								pw.flush();
+							}
 						}
-						else {
-							timing.endTiming();
+					});
 
-							final long duration_ns = timing.getNanos();
-							ns_count.addAndGet(duration_ns);
-							timing_count.incrementAndGet();
-						}
-					}
+					timing.endTiming();
+
+					ns_count.addAndGet(timing.getNanos());
+					timing_count.addAndGet(inserted);
 				}
 			}
 			// Remove from list
@@ -117,6 +117,17 @@ public class SSLEngineBuffer {
 		return send(socketChannel, networkOutboundBuffer);
 	}
 
+	/**
+	 * @return <code>true</code> if all the already encrypted data was sent out
+	 * @throws IOException
+	 */
+	boolean flushPendingOutbound() throws IOException {
+		if (networkOutboundBuffer.hasRemaining() && send(socketChannel, networkOutboundBuffer) < 0)
+			throw new IOException("Channel is closed");
+
+		return !networkOutboundBuffer.hasRemaining();
+	}
+
 	int send(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
 		int totalWritten = 0;
 		while (buffer.hasRemaining()) {
@@ -184,6 +184,16 @@ public class SSLSocketChannel extends SocketChannel {
 		return totalWritten;
 	}
 
+	/**
+	 * Try to send the data that {@link #write(ByteBuffer)} has already encrypted but could not pass to the socket yet, without blocking.
+	 *
+	 * @return <code>true</code> if nothing is left to send
+	 * @throws IOException
+	 */
+	synchronized public boolean flushPending() throws IOException {
+		return sslEngineBuffer.flushPendingOutbound();
+	}
+
 	/**
 	 * <p>
 	 * Reads a sequence of bytes from this channel into a subsequence of the given buffers.
@@ -0,0 +1,137 @@
+package utils.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.datastax.driver.core.ConsistencyLevel;
+
+import alien.catalogue.LFNCSDBulkInsert;
+import alien.catalogue.LFN_CSD;
+import alien.monitoring.Timing;
+import alien.test.cassandra.DBCassandra;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+
+/**
+ * Compare the throughput of {@link LFN_CSD#insert(String, ConsistencyLevel)} with the pipelined {@link LFNCSDBulkInsert}. It writes synthetic file entries in a scratch set of
+ * tables (<code>catalogue.lfn_*_bench</code> by default), so point the <code>cassandra</code> configuration to a local test instance before running it.
+ *
+ * @since Oct 17, 2026
+ */
+public class CassandraInsertBenchmark {
+
+	private static final int DEFAULT_ENTRIES = 100000;
+	private static final int DEFAULT_THREADS = 16;
+
+	private static List<LFN_CSD> generate(final String dir, final int count) {
+		final List<LFN_CSD> ret = new ArrayList<>(count);
+
+		final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+		for (int i = 0; i < count; i++) {
+			final LFN_CSD lfnc = new LFN_CSD(dir + "file_" + i + "_" + rnd.nextInt(1000000), false, null, null, null);
+			lfnc.type = 'f';
+			lfnc.size = 1 + rnd.nextInt(1 << 30);
+			lfnc.checksum = Long.toHexString(rnd.nextLong()) + Long.toHexString(rnd.nextLong());
+			lfnc.owner = "aliprod";
+			lfnc.gowner = "aliprod";
+			lfnc.perm = "755";
+			lfnc.ctime = new Date();
+			lfnc.jobid = rnd.nextLong(1, Long.MAX_VALUE);
+			lfnc.metadata = new HashMap<>();
+			lfnc.pfns = new HashMap<>();
+
+			for (int r = 0; r < 2; r++) {
+				final int se = 1 + rnd.nextInt(100);
+				lfnc.pfns.put(Integer.valueOf(se), "root://se" + se + ".example.org:1094//" + i);
+			}
+
+			ret.add(lfnc);
+		}
+
+		return ret;
+	}
+
+	private static void report(final String what, final int ok, final int total, final Timing t) {
+		System.out.println(what + ": " + ok + "/" + total + " entries in " + t + " = " + Format.point(ok * 1000. / Math.max(t.getMillis(), 1)) + " entries/s");
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("n").withRequiredArg().ofType(Integer.class);
+		parser.accepts("j").withRequiredArg().ofType(Integer.class);
+		parser.accepts("w").withRequiredArg().ofType(Integer.class);
+		parser.accepts("t").withRequiredArg();
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h")) {
+			System.err.println("Run it with: java " + CassandraInsertBenchmark.class.getCanonicalName() + " [options]");
+			System.err.println("\t-n <entries>\t\t(optional, default " + DEFAULT_ENTRIES + ")");
+			System.err.println("\t-j <threads>\t\t(threads for the synchronous inserts, optional, default " + DEFAULT_THREADS + ")");
+			System.err.println("\t-w <requests>\t\t(in-flight window of the bulk inserts, optional, default from configuration)");
+			System.err.println("\t-t <table suffix>\t(optional, default _bench)");
+			return;
+		}
+
+		final int entries = options.has("n") ? ((Integer) options.valueOf("n")).intValue() : DEFAULT_ENTRIES;
+		final int threads = options.has("j") ? ((Integer) options.valueOf("j")).intValue() : DEFAULT_THREADS;
+		final String table = options.has("t") ? (String) options.valueOf("t") : "_bench";
+
+		final String base = "/bench/" + System.currentTimeMillis() + "/";
+
+		if (!LFN_CSD.createDirectory(base + "sync/", table, ConsistencyLevel.ONE) || !LFN_CSD.createDirectory(base + "bulk/", table, ConsistencyLevel.ONE)) {
+			System.err.println("Cannot create the test directories under " + base + " in the tables with suffix " + table);
+			return;
+		}
+
+		// synchronous, one logged batch per entry, in parallel threads
+		final List<LFN_CSD> syncEntries = generate(base + "sync/", entries);
+		final AtomicInteger syncOk = new AtomicInteger();
+
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try (Timing t = new Timing()) {
+			for (final LFN_CSD lfnc : syncEntries)
+				pool.submit(() -> {
+					if (lfnc.insert(table, ConsistencyLevel.ONE))
+						syncOk.incrementAndGet();
+				});
+
+			pool.shutdown();
+			pool.awaitTermination(1, TimeUnit.DAYS);
+
+			t.endTiming();
+			report("Synchronous insert, " + threads + " threads", syncOk.get(), entries, t);
+		}
+
+		// pipelined bulk insert, from a single producer
+		final List<LFN_CSD> bulkEntries = generate(base + "bulk/", entries);
+
+		final LFNCSDBulkInsert bulk = options.has("w") ? new LFNCSDBulkInsert(table, ConsistencyLevel.ONE, ((Integer) options.valueOf("w")).intValue(), 500)
+				: new LFNCSDBulkInsert(table, ConsistencyLevel.ONE);
+
+		try (Timing t = new Timing()) {
+			final int ok = bulk.insert(bulkEntries.iterator(), null);
+
+			t.endTiming();
+			report("Bulk insert", ok, entries, t);
+		}
+
+		DBCassandra.shutdown();
+	}
+}
@@ -0,0 +1,208 @@
+package utils.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import alien.catalogue.CatalogueUtils;
+import alien.catalogue.GUIDIndex;
+import alien.catalogue.IndexTableEntry;
+import alien.monitoring.Timing;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+
+/**
+ * Compare the index table and GUID index lookups of {@link CatalogueUtils} with the previous implementation (probing the path and its parents in a hash map, scanning the whole
+ * table list for subtrees and scanning the GUID index list), on the real INDEXTABLE and GUIDINDEX content.
+ *
+ * @since Oct 17, 2026
+ */
+public class CatalogueRoutingBenchmark {
+
+	private static final int DEFAULT_LOOKUPS = 1000000;
+
+	private static IndexTableEntry legacyClosestMatch(final Map<String, IndexTableEntry> tableentries, final String pattern) {
+		String searchFor = pattern;
+
+		while (searchFor.length() > 0) {
+			final IndexTableEntry entry = tableentries.get(searchFor);
+
+			if (entry != null)
+				return entry;
+
+			final int idx = searchFor.lastIndexOf('/', searchFor.length() - 2);
+
+			if (idx >= 0)
+				searchFor = searchFor.substring(0, idx + 1);
+			else
+				break;
+		}
+
+		return null;
+	}
+
+	private static Set<IndexTableEntry> legacyAllMatchingTables(final Collection<IndexTableEntry> indextable, final Map<String, IndexTableEntry> tableentries, final String pattern) {
+		final IndexTableEntry best = legacyClosestMatch(tableentries, pattern);
+
+		if (best == null)
+			return Collections.emptySet();
+
+		final Set<IndexTableEntry> ret = new LinkedHashSet<>();
+
+		ret.add(best);
+
+		for (final IndexTableEntry ite : indextable)
+			if (ite.lfn.startsWith(pattern))
+				ret.add(ite);
+
+		return ret;
+	}
+
+	private static GUIDIndex legacyGUIDIndex(final List<GUIDIndex> guidIndexCache, final long timestamp) {
+		GUIDIndex old = null;
+
+		for (final GUIDIndex idx : guidIndexCache) {
+			if (idx.guidTime > timestamp)
+				return old;
+
+			old = idx;
+		}
+
+		return old;
+	}
+
+	private static void print(final String what, final int lookups, final double legacyMillis, final double newMillis) {
+		System.out.println(what + ": previous " + Format.point(legacyMillis * 1000000 / lookups) + " ns/lookup, now " + Format.point(newMillis * 1000000 / lookups) + " ns/lookup ("
+				+ Format.point(legacyMillis / newMillis) + "x)");
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("n").withRequiredArg().ofType(Integer.class);
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h")) {
+			System.err.println("Run it with: java " + CatalogueRoutingBenchmark.class.getCanonicalName() + " [options]");
+			System.err.println("\t-n <lookups>\t\t(optional, default " + DEFAULT_LOOKUPS + ")");
+			return;
+		}
+
+		final int lookups = options.has("n") ? ((Integer) options.valueOf("n")).intValue() : DEFAULT_LOOKUPS;
+
+		final Collection<IndexTableEntry> indextable = CatalogueUtils.getAllIndexTables();
+		final List<GUIDIndex> guidIndexes = CatalogueUtils.getAllGUIDIndexes();
+
+		if (indextable == null || indextable.isEmpty() || guidIndexes == null || guidIndexes.isEmpty()) {
+			System.err.println("Cannot load the INDEXTABLE / GUIDINDEX content");
+			return;
+		}
+
+		System.out.println(indextable.size() + " index tables, " + guidIndexes.size() + " GUID index entries");
+
+		final Map<String, IndexTableEntry> tableentries = new HashMap<>();
+
+		for (final IndexTableEntry ite : indextable)
+			tableentries.put(ite.lfn, ite);
+
+		final List<IndexTableEntry> tables = new ArrayList<>(indextable);
+
+		final String[] suffixes = { "", "000123456/", "000123456/AliESDs.root", "pass1/AOD/001/AO2D.root", "a" };
+
+		final String[] paths = new String[Math.min(lookups, 100000)];
+
+		for (int i = 0; i < paths.length; i++)
+			paths[i] = tables.get(ThreadLocalRandom.current().nextInt(tables.size())).lfn + suffixes[ThreadLocalRandom.current().nextInt(suffixes.length)];
+
+		final long minTime = guidIndexes.get(0).guidTime;
+		final long maxTime = guidIndexes.get(guidIndexes.size() - 1).guidTime;
+
+		final long[] timestamps = new long[paths.length];
+
+		for (int i = 0; i < timestamps.length; i++)
+			timestamps[i] = minTime - 1000 + (long) (ThreadLocalRandom.current().nextDouble() * (maxTime - minTime + 2000));
+
+		int mismatches = 0;
+
+		for (int i = 0; i < paths.length; i++) {
+			if (legacyClosestMatch(tableentries, paths[i]) != CatalogueUtils.getClosestMatch(paths[i]))
+				mismatches++;
+
+			if (!new ArrayList<>(legacyAllMatchingTables(tables, tableentries, paths[i])).equals(new ArrayList<>(CatalogueUtils.getAllMatchingTables(paths[i]))))
+				mismatches++;
+
+			if (legacyGUIDIndex(guidIndexes, timestamps[i]) != CatalogueUtils.getGUIDIndex(timestamps[i]))
+				mismatches++;
+		}
+
+		if (mismatches > 0)
+			System.err.println(mismatches + " lookups gave different results");
+		else
+			System.out.println("All " + paths.length + " sample lookups gave the same results");
+
+		double legacy;
+		double current;
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < lookups; i++)
+				legacyClosestMatch(tableentries, paths[i % paths.length]);
+
+			legacy = t.getMillis();
+		}
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < lookups; i++)
+				CatalogueUtils.getClosestMatch(paths[i % paths.length]);
+
+			current = t.getMillis();
+		}
+
+		print("getClosestMatch", lookups, legacy, current);
+
+		final int subtreeLookups = Math.max(lookups / 100, 1);
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < subtreeLookups; i++)
+				legacyAllMatchingTables(tables, tableentries, paths[i % paths.length]);
+
+			legacy = t.getMillis();
+		}
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < subtreeLookups; i++)
+				CatalogueUtils.getAllMatchingTables(paths[i % paths.length]);
+
+			current = t.getMillis();
+		}
+
+		print("getAllMatchingTables", subtreeLookups, legacy, current);
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < lookups; i++)
+				legacyGUIDIndex(guidIndexes, timestamps[i % timestamps.length]);
+
+			legacy = t.getMillis();
+		}
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < lookups; i++)
+				CatalogueUtils.getGUIDIndex(timestamps[i % timestamps.length]);
+
+			current = t.getMillis();
+		}
+
+		print("getGUIDIndex", lookups, legacy, current);
+	}
+}
@@ -0,0 +1,141 @@
+package utils.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import alien.monitoring.Timing;
+import alien.taskQueue.JDL;
+import alien.taskQueue.JDLCache;
+import alien.taskQueue.Job;
+import alien.taskQueue.TaskQueueUtils;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+import lazyj.Utils;
+
+/**
+ * Compare the cost of parsing real JDLs from scratch with getting them from {@link JDLCache}, either from files or from the task queue of the given jobs.
+ *
+ * @since Oct 17, 2026
+ */
+public class JDLParseBenchmark {
+
+	private static final int DEFAULT_ITERATIONS = 100000;
+
+	private static void load(final File f, final List<String> target) {
+		if (f.isDirectory()) {
+			final File[] files = f.listFiles();
+
+			if (files != null)
+				for (final File child : files)
+					load(child, target);
+
+			return;
+		}
+
+		final String content = Utils.readFile(f.getAbsolutePath());
+
+		if (content != null && content.length() > 0)
+			target.add(content);
+	}
+
+	/**
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("f").withRequiredArg();
+		parser.accepts("q").withRequiredArg().ofType(Long.class);
+		parser.accepts("n").withRequiredArg().ofType(Integer.class);
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h") || (!options.has("f") && !options.has("q"))) {
+			System.err.println("Run it with: java " + JDLParseBenchmark.class.getCanonicalName() + " [options]");
+			System.err.println("\t-f <file or directory>\t(JDL files, can be repeated)");
+			System.err.println("\t-q <queueId>\t\t(load the JDL of this job from the task queue, can be repeated)");
+			System.err.println("\t-n <iterations>\t\t(optional, default " + DEFAULT_ITERATIONS + ")");
+			return;
+		}
+
+		final List<String> jdls = new ArrayList<>();
+
+		for (final Object f : options.valuesOf("f"))
+			load(new File(f.toString()), jdls);
+
+		for (final Object queueId : options.valuesOf("q")) {
+			final String jdl = TaskQueueUtils.getJDL(((Long) queueId).longValue());
+
+			if (jdl != null)
+				jdls.add(Job.sanitizeJDL(jdl));
+			else
+				System.err.println("Cannot load the JDL of " + queueId);
+		}
+
+		// only keep what the parser accepts
+		final List<String> valid = new ArrayList<>(jdls.size());
+
+		long totalSize = 0;
+
+		for (final String jdl : jdls)
+			try {
+				if (!new JDL(jdl).toString().equals(JDLCache.get(jdl).toString()))
+					System.err.println("The cached copy differs from the parsed JDL:\n" + jdl);
+
+				valid.add(jdl);
+				totalSize += jdl.length();
+			}
+			catch (final IOException ioe) {
+				System.err.println("Skipping a JDL that cannot be parsed: " + ioe.getMessage());
+			}
+
+		if (valid.isEmpty()) {
+			System.err.println("No JDLs to work with");
+			return;
+		}
+
+		final int iterations = options.has("n") ? ((Integer) options.valueOf("n")).intValue() : DEFAULT_ITERATIONS;
+
+		System.out.println(valid.size() + " JDLs, average size " + Format.size(totalSize / valid.size()) + ", " + iterations + " iterations");
+
+		// warm up
+		for (int i = 0; i < Math.min(iterations, 10000); i++) {
+			new JDL(valid.get(i % valid.size()));
+			JDLCache.get(valid.get(i % valid.size()));
+		}
+
+		double parse;
+		double cached;
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				new JDL(valid.get(i % valid.size()));
+
+			parse = t.getMillis();
+		}
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				JDLCache.get(valid.get(i % valid.size()));
+
+			cached = t.getMillis();
+		}
+
+		System.out.println("Parsing: " + Format.point(parse * 1000 / iterations) + " us/JDL");
+		System.out.println("Content cache: " + Format.point(cached * 1000 / iterations) + " us/JDL (" + Format.point(parse / cached) + "x)");
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				JDLCache.get(i % valid.size(), 0, valid.get(i % valid.size()));
+
+			cached = t.getMillis();
+		}
+
+		System.out.println("Job cache: " + Format.point(cached * 1000 / iterations) + " us/JDL (" + Format.point(parse / cached) + "x)");
+	}
+}
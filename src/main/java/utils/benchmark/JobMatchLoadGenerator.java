@@ -0,0 +1,191 @@
+package utils.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import alien.monitoring.Timing;
+import alien.taskQueue.JobBroker;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+
+/**
+ * Replay the match requests recorded by {@link JobBroker} (set <code>alien.taskQueue.JobBroker.recordMatchRequests</code> to a file name on the central services) against the
+ * SQL query on JOBAGENT and against the in-memory agent index, checking that they pick the same agents and comparing the number of matches per second.
+ *
+ * @since Oct 17, 2026
+ */
+public class JobMatchLoadGenerator {
+
+	private static Object convert(final Object o) {
+		if (o instanceof Long) {
+			final long l = ((Long) o).longValue();
+
+			// the JobAgents send integers, keep the same types as the original requests
+			if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE)
+				return Integer.valueOf((int) l);
+		}
+		else if (o instanceof JSONArray) {
+			final ArrayList<Object> ret = new ArrayList<>();
+
+			for (final Object item : (JSONArray) o)
+				ret.add(convert(item));
+
+			return ret;
+		}
+
+		return o;
+	}
+
+	private static List<HashMap<String, Object>> load(final String fileName) throws IOException, ParseException {
+		final List<HashMap<String, Object>> ret = new ArrayList<>();
+
+		final JSONParser parser = new JSONParser();
+
+		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+			String line;
+
+			while ((line = br.readLine()) != null) {
+				if (line.isBlank())
+					continue;
+
+				final JSONObject json = (JSONObject) parser.parse(line);
+
+				final HashMap<String, Object> request = new HashMap<>();
+
+				for (final Object key : json.keySet())
+					request.put(key.toString(), convert(json.get(key)));
+
+				ret.add(request);
+			}
+		}
+
+		return ret;
+	}
+
+	private static String answer(final HashMap<String, Object> matchAnswer) {
+		if (matchAnswer == null)
+			return "null";
+
+		final Object code = matchAnswer.get("Code");
+
+		if (!(code instanceof Integer) || ((Integer) code).intValue() != 1)
+			return "no match";
+
+		return matchAnswer.containsKey("entryId") ? "entryId " + matchAnswer.get("entryId") : "packages " + matchAnswer.get("packages");
+	}
+
+	/**
+	 * @return the number of requests that found an agent
+	 */
+	private static int replay(final List<HashMap<String, Object>> requests, final int count, final int threads, final boolean useIndex) {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger matched = new AtomicInteger();
+
+		final List<Thread> workers = new ArrayList<>(threads);
+
+		for (int i = 0; i < threads; i++) {
+			final Thread t = new Thread(() -> {
+				int idx;
+
+				while ((idx = next.getAndIncrement()) < count) {
+					final HashMap<String, Object> matchAnswer = JobBroker.getNumberWaitingForSite(new HashMap<>(requests.get(idx % requests.size())), useIndex);
+
+					if (matchAnswer != null && Integer.valueOf(1).equals(matchAnswer.get("Code")))
+						matched.incrementAndGet();
+				}
+			});
+
+			t.start();
+			workers.add(t);
+		}
+
+		for (final Thread t : workers)
+			try {
+				t.join();
+			}
+			catch (@SuppressWarnings("unused") final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+
+		return matched.get();
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("f").withRequiredArg();
+		parser.accepts("n").withRequiredArg().ofType(Integer.class);
+		parser.accepts("t").withRequiredArg().ofType(Integer.class);
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h") || !options.has("f")) {
+			System.err.println("Run it with: java " + JobMatchLoadGenerator.class.getCanonicalName() + " -f <recorded requests> [options]");
+			System.err.println("\t-n <requests>\t\t(optional, default the number of recorded requests)");
+			System.err.println("\t-t <threads>\t\t(optional, default 1)");
+			return;
+		}
+
+		final List<HashMap<String, Object>> requests = load((String) options.valueOf("f"));
+
+		if (requests.isEmpty()) {
+			System.err.println("No requests to replay");
+			return;
+		}
+
+		final int count = options.has("n") ? ((Integer) options.valueOf("n")).intValue() : requests.size();
+		final int threads = options.has("t") ? ((Integer) options.valueOf("t")).intValue() : 1;
+
+		System.out.println("Replaying " + count + " out of " + requests.size() + " recorded requests with " + threads + " threads");
+
+		int mismatches = 0;
+
+		final Map<String, Integer> differences = new HashMap<>();
+
+		for (final HashMap<String, Object> request : requests) {
+			final String sql = answer(JobBroker.getNumberWaitingForSite(new HashMap<>(request), false));
+			final String index = answer(JobBroker.getNumberWaitingForSite(new HashMap<>(request), true));
+
+			if (!sql.equals(index)) {
+				mismatches++;
+				differences.merge(sql + " vs " + index, Integer.valueOf(1), Integer::sum);
+			}
+		}
+
+		if (mismatches > 0) {
+			// agents with the same priority, price and oldest job can legitimately come in a different order
+			System.err.println(mismatches + " requests got a different answer from the database and the index (database vs index):");
+
+			for (final Map.Entry<String, Integer> entry : differences.entrySet())
+				System.err.println("\t" + entry.getKey() + " : " + entry.getValue());
+		}
+		else
+			System.out.println("All " + requests.size() + " recorded requests got the same answer from the database and the index");
+
+		for (final boolean useIndex : new boolean[] { false, true }) {
+			try (Timing t = new Timing()) {
+				final int matched = replay(requests, count, threads, useIndex);
+
+				System.out.println((useIndex ? "Index" : "SQL") + ": " + matched + " matched out of " + count + " in " + t + ", " + Format.point(count / t.getSeconds()) + " matches/s");
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package utils.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import alien.catalogue.PFN;
+import alien.monitoring.Timing;
+import alien.se.SEDistanceTable;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+
+/**
+ * Compare sorting replica sets by their distance to a site with the nested distance maps and with {@link SEDistanceTable}, on a synthetic topology
+ *
+ * @since Oct 17, 2026
+ */
+public class SEDistanceBenchmark {
+
+	private static final int DEFAULT_SITES = 100;
+
+	private static final int DEFAULT_SES = 80;
+
+	private static final int DEFAULT_REPLICAS = 10;
+
+	private static final int DEFAULT_ITERATIONS = 1000000;
+
+	/**
+	 * The previous way of sorting, by looking up the boxed ranks of each pair of replicas
+	 */
+	private static List<PFN> sortWithMaps(final Map<String, Map<Integer, Double>> distances, final List<PFN> pfns, final String site) {
+		final List<PFN> ret = new ArrayList<>(pfns);
+
+		final Map<Integer, Double> ranks = distances.get(site.trim().toUpperCase());
+
+		if (ranks == null)
+			return ret;
+
+		final Comparator<PFN> c = (o1, o2) -> {
+			final Double d1 = ranks.get(Integer.valueOf(o1.seNumber));
+			final Double d2 = ranks.get(Integer.valueOf(o2.seNumber));
+
+			if (d1 == null)
+				return d2 == null ? 0 : 1;
+
+			if (d2 == null)
+				return -1;
+
+			return Double.compare(d1.doubleValue() - d2.doubleValue(), 0);
+		};
+
+		Collections.sort(ret, c);
+
+		return ret;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("s").withRequiredArg().ofType(Integer.class);
+		parser.accepts("e").withRequiredArg().ofType(Integer.class);
+		parser.accepts("r").withRequiredArg().ofType(Integer.class);
+		parser.accepts("n").withRequiredArg().ofType(Integer.class);
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h")) {
+			System.err.println("Run it with: java " + SEDistanceBenchmark.class.getCanonicalName() + " [options]");
+			System.err.println("\t-s <sites>\t\t(optional, default " + DEFAULT_SITES + ")");
+			System.err.println("\t-e <SEs>\t\t(optional, default " + DEFAULT_SES + ")");
+			System.err.println("\t-r <replicas>\t\t(per file, optional, default " + DEFAULT_REPLICAS + ")");
+			System.err.println("\t-n <iterations>\t\t(optional, default " + DEFAULT_ITERATIONS + ")");
+			return;
+		}
+
+		final int sites = options.has("s") ? ((Integer) options.valueOf("s")).intValue() : DEFAULT_SITES;
+		final int ses = options.has("e") ? ((Integer) options.valueOf("e")).intValue() : DEFAULT_SES;
+		final int replicas = Math.min(options.has("r") ? ((Integer) options.valueOf("r")).intValue() : DEFAULT_REPLICAS, ses);
+		final int iterations = options.has("n") ? ((Integer) options.valueOf("n")).intValue() : DEFAULT_ITERATIONS;
+
+		final ThreadLocalRandom r = ThreadLocalRandom.current();
+
+		// like the SEDistance table: every site sees most SEs, some of them are broken
+		final Map<String, Map<Integer, Double>> distances = new HashMap<>();
+		final List<String> siteNames = new ArrayList<>(sites);
+
+		for (int i = 0; i < sites; i++) {
+			final String site = "SITE" + i;
+			siteNames.add(site.toLowerCase());
+
+			final Map<Integer, Double> ranks = new LinkedHashMap<>();
+
+			for (int se = 1; se <= ses; se++)
+				if (r.nextInt(10) > 0)
+					ranks.put(Integer.valueOf(se), Double.valueOf(r.nextDouble()));
+
+			distances.put(site, ranks);
+		}
+
+		final SEDistanceTable table = new SEDistanceTable(distances, null);
+
+		// a pool of replica sets to go through
+		final List<List<PFN>> files = new ArrayList<>(1024);
+
+		for (int i = 0; i < 1024; i++) {
+			final List<Integer> seNumbers = new ArrayList<>(ses);
+
+			for (int se = 1; se <= ses; se++)
+				seNumbers.add(Integer.valueOf(se));
+
+			Collections.shuffle(seNumbers, r);
+
+			final List<PFN> pfns = new ArrayList<>(replicas);
+
+			for (int j = 0; j < replicas; j++)
+				pfns.add(new PFN(seNumbers.get(j), "root://se" + seNumbers.get(j) + "//file" + i, UUID.randomUUID(), 1));
+
+			files.add(pfns);
+		}
+
+		// both ways have to give the same order
+		for (int i = 0; i < files.size(); i++) {
+			final String site = siteNames.get(i % sites);
+
+			final List<PFN> expected = sortWithMaps(distances, files.get(i), site);
+			final List<PFN> actual = table.sortPFNs(files.get(i), table.getSiteIndex(site, false), false, false);
+
+			for (int j = 0; j < expected.size(); j++)
+				if (expected.get(j).seNumber != actual.get(j).seNumber) {
+					System.err.println("Different order for " + site + ": " + expected + " vs " + actual);
+					break;
+				}
+		}
+
+		System.out.println(sites + " sites, " + ses + " SEs, " + replicas + " replicas, " + iterations + " iterations");
+
+		long sink = 0;
+
+		// warm up
+		for (int i = 0; i < Math.min(iterations, 100000); i++) {
+			final String site = siteNames.get(i % sites);
+			sink += sortWithMaps(distances, files.get(i & 1023), site).size();
+			sink += table.sortPFNs(files.get(i & 1023), table.getSiteIndex(site, false), false, false).size();
+		}
+
+		double maps;
+		double dense;
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				sink += sortWithMaps(distances, files.get(i & 1023), siteNames.get(i % sites)).get(0).seNumber;
+
+			maps = t.getMillis();
+		}
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				sink += table.sortPFNs(files.get(i & 1023), table.getSiteIndex(siteNames.get(i % sites), false), false, false).get(0).seNumber;
+
+			dense = t.getMillis();
+		}
+
+		System.out.println("Nested maps: " + Format.point(maps * 1000000 / iterations) + " ns/sort");
+		System.out.println("Dense table: " + Format.point(dense * 1000000 / iterations) + " ns/sort (" + Format.point(maps / dense) + "x)");
+
+		if (sink == 42)
+			System.out.println();
+	}
+}
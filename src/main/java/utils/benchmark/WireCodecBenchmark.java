@@ -0,0 +1,114 @@
+package utils.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import alien.api.BinaryWireCodec;
+import alien.api.Dispatcher;
+import alien.api.JavaSerializationCodec;
+import alien.api.Request;
+import alien.api.ServerException;
+import alien.api.WireCodec;
+import alien.api.catalogue.LFNListingfromString;
+import alien.api.taskQueue.GetPS;
+import alien.catalogue.access.AuthorizationFactory;
+import alien.monitoring.Timing;
+import alien.taskQueue.JobStatus;
+import alien.user.AliEnPrincipal;
+import alien.user.UsersHelper;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import lazyj.Format;
+
+/**
+ * Compare the Java serialization and the binary encoding of the API objects. A directory listing and a job listing are first retrieved from the central services with the default
+ * identity, then each of the replies is encoded and decoded repeatedly with both codecs.
+ *
+ * @since Oct 17, 2026
+ */
+public class WireCodecBenchmark {
+
+	private static final int DEFAULT_ITERATIONS = 200;
+	private static final int DEFAULT_PS_LIMIT = 10000;
+
+	private static void measure(final String what, final Request r, final WireCodec codec, final int iterations) throws Exception {
+		byte[] encoded = null;
+
+		// warm up
+		for (int i = 0; i < Math.max(iterations / 10, 1); i++)
+			codec.decode(codec.encode(r));
+
+		final double encodeTime;
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				encoded = codec.encode(r);
+
+			encodeTime = t.getMillis() / iterations;
+		}
+
+		final double decodeTime;
+
+		try (Timing t = new Timing()) {
+			for (int i = 0; i < iterations; i++)
+				codec.decode(encoded);
+
+			decodeTime = t.getMillis() / iterations;
+		}
+
+		System.out.println(what + ", " + codec.getClass().getSimpleName() + ": " + Format.size(encoded.length) + ", encode " + Format.point(encodeTime) + " ms, decode "
+				+ Format.point(decodeTime) + " ms");
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final OptionParser parser = new OptionParser();
+
+		parser.accepts("d").withRequiredArg();
+		parser.accepts("l").withRequiredArg().ofType(Integer.class);
+		parser.accepts("i").withRequiredArg().ofType(Integer.class);
+		parser.accepts("h");
+
+		final OptionSet options = parser.parse(args);
+
+		if (options.has("h")) {
+			System.err.println("Run it with: java " + WireCodecBenchmark.class.getCanonicalName() + " [options]");
+			System.err.println("\t-d <directory>\t\t(directory to list, optional, default is the home directory)");
+			System.err.println("\t-l <jobs>\t\t(how many jobs to list, optional, default " + DEFAULT_PS_LIMIT + ")");
+			System.err.println("\t-i <iterations>\t\t(optional, default " + DEFAULT_ITERATIONS + ")");
+			return;
+		}
+
+		final AliEnPrincipal user = AuthorizationFactory.getDefaultUser();
+
+		final String dir = options.has("d") ? (String) options.valueOf("d") : UsersHelper.getHomeDir(user.getDefaultUser());
+		final int psLimit = options.has("l") ? ((Integer) options.valueOf("l")).intValue() : DEFAULT_PS_LIMIT;
+		final int iterations = options.has("i") ? ((Integer) options.valueOf("i")).intValue() : DEFAULT_ITERATIONS;
+
+		final List<Request> requests = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+
+		try {
+			final LFNListingfromString listing = Dispatcher.execute(new LFNListingfromString(user, dir));
+			requests.add(listing);
+			names.add("Listing of " + dir + " (" + (listing.getLFNs() != null ? listing.getLFNs().size() : 0) + " entries)");
+
+			final GetPS ps = Dispatcher.execute(new GetPS(user, JobStatus.runningStates(), null, null, null, null, null, null, null, psLimit));
+			requests.add(ps);
+			names.add("PS of running jobs (" + (ps.returnPS() != null ? ps.returnPS().size() : 0) + " jobs)");
+		}
+		catch (final ServerException se) {
+			System.err.println("Cannot retrieve the sample replies: " + se.getMessage());
+			return;
+		}
+
+		final WireCodec[] codecs = { new JavaSerializationCodec(), new BinaryWireCodec() };
+
+		for (int i = 0; i < requests.size(); i++)
+			for (final WireCodec codec : codecs)
+				measure(names.get(i), requests.get(i), codec, iterations);
+	}
+}
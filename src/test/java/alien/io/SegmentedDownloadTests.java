@@ -0,0 +1,63 @@
+package alien.io;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import alien.catalogue.GUID;
+import alien.catalogue.PFN;
+import alien.catalogue.access.AccessTicket;
+import alien.catalogue.access.AccessType;
+import alien.catalogue.access.XrootDEnvelope;
+
+class SegmentedDownloadTests {
+
+	private static PFN replica(final GUID guid, final String member) {
+		final PFN pfn = new PFN("root://localhost:1094//01/12345/" + guid.guid, guid, null);
+
+		// no <authz> block, nothing to look up in the catalogue
+		final XrootDEnvelope envelope = new XrootDEnvelope("<envelope/>", true);
+
+		if (member != null)
+			envelope.setArchiveAnchor(member);
+
+		pfn.ticket = new AccessTicket(AccessType.READ, envelope);
+
+		return pfn;
+	}
+
+	private static GUID largeFile() {
+		final GUID guid = new GUID(UUID.randomUUID());
+		guid.size = 1024L * 1024 * 1024;
+		return guid;
+	}
+
+	@Test
+	void testPlainFile() {
+		final GUID guid = largeFile();
+
+		Assertions.assertFalse(SegmentedDownload.isArchiveMember(Arrays.asList(replica(guid, null), replica(guid, null))));
+	}
+
+	@Test
+	void testArchiveMemberIsNotSegmented() {
+		final GUID archive = largeFile();
+
+		final PFN member = replica(archive, "AO2D.root");
+
+		Assertions.assertTrue(SegmentedDownload.isArchiveMember(Arrays.asList(member)));
+		Assertions.assertFalse(SegmentedDownload.isApplicable(archive, Arrays.asList(member)));
+		Assertions.assertNull(SegmentedDownload.download(archive, Arrays.asList(member), null));
+	}
+
+	@Test
+	void testGuidArchiveLink() {
+		final GUID archive = largeFile();
+
+		final PFN link = new PFN("guid:///" + archive.guid + "?ZIP=AO2D.root", archive, null);
+
+		Assertions.assertTrue(SegmentedDownload.isArchiveMember(Arrays.asList(replica(archive, null), link)));
+	}
+}
@@ -0,0 +1,378 @@
+package alien.io.xrootd;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class XrdClientTests {
+
+	/**
+	 * Just enough of an xrootd server to talk to the client
+	 */
+	private static class MockServer implements Runnable, AutoCloseable {
+		final ServerSocket serverSocket;
+
+		final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+		/**
+		 * Port to redirect the "/redirect/..." paths to
+		 */
+		int redirectPort = -1;
+
+		/**
+		 * Security protocols to announce at login
+		 */
+		String security = null;
+
+		/**
+		 * Last opaque information received with an open
+		 */
+		volatile String lastOpaque = null;
+
+		MockServer() throws IOException {
+			serverSocket = new ServerSocket(0);
+
+			final Thread t = new Thread(this, "MockXrootd");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		int port() {
+			return serverSocket.getLocalPort();
+		}
+
+		@Override
+		public void run() {
+			while (!serverSocket.isClosed()) {
+				try {
+					final Socket s = serverSocket.accept();
+
+					final Thread t = new Thread(() -> serve(s));
+					t.setDaemon(true);
+					t.start();
+				}
+				catch (@SuppressWarnings("unused") final IOException ioe) {
+					return;
+				}
+			}
+		}
+
+		private static void respond(final DataOutputStream out, final byte[] streamId, final int status, final byte[] data) throws IOException {
+			out.write(streamId);
+			out.writeShort(status);
+			out.writeInt(data.length);
+			out.write(data);
+			out.flush();
+		}
+
+		private static byte[] error(final int code, final String message) {
+			final byte[] msg = (message + "\0").getBytes(StandardCharsets.US_ASCII);
+			final byte[] ret = new byte[4 + msg.length];
+			XrdConnection.writeInt(ret, 0, code);
+			System.arraycopy(msg, 0, ret, 4, msg.length);
+			return ret;
+		}
+
+		private void serve(final Socket s) {
+			final Map<Integer, String> handles = new ConcurrentHashMap<>();
+			final Map<Integer, byte[]> writing = new ConcurrentHashMap<>();
+			int nextHandle = 1;
+
+			try (Socket socket = s; DataInputStream in = new DataInputStream(socket.getInputStream()); DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+				in.readFully(new byte[20]);
+
+				final byte[] handshake = new byte[8];
+				XrdConnection.writeInt(handshake, 0, 0x500);
+				XrdConnection.writeInt(handshake, 4, 1);
+				respond(out, new byte[2], 0, handshake);
+
+				while (true) {
+					final byte[] streamId = new byte[2];
+					in.readFully(streamId);
+
+					final int requestId = in.readUnsignedShort();
+					final byte[] body = new byte[16];
+					in.readFully(body);
+
+					final byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+
+					String path = new String(data, StandardCharsets.UTF_8);
+					String opaque = "";
+
+					if (path.indexOf('?') >= 0) {
+						opaque = path.substring(path.indexOf('?') + 1);
+						path = path.substring(0, path.indexOf('?'));
+					}
+
+					final int fhandle = XrdConnection.readInt(body, 0);
+
+					switch (requestId) {
+						case XrdConnection.kXR_protocol:
+							respond(out, streamId, XrdConnection.kXR_ok, new byte[8]);
+							break;
+						case XrdConnection.kXR_login:
+							final byte[] sessid = new byte[16 + (security != null ? security.length() : 0)];
+
+							if (security != null)
+								System.arraycopy(security.getBytes(StandardCharsets.US_ASCII), 0, sessid, 16, security.length());
+
+							respond(out, streamId, XrdConnection.kXR_ok, sessid);
+							break;
+						case XrdConnection.kXR_open:
+							if (path.startsWith("/redirect/") && redirectPort > 0) {
+								final byte[] target = ("localhost?redirected=1").getBytes(StandardCharsets.US_ASCII);
+								final byte[] redirect = new byte[4 + target.length];
+								XrdConnection.writeInt(redirect, 0, redirectPort);
+								System.arraycopy(target, 0, redirect, 4, target.length);
+								respond(out, streamId, XrdConnection.kXR_redirect, redirect);
+								break;
+							}
+
+							lastOpaque = opaque;
+
+							final int options = ((body[2] & 0xFF) << 8) | (body[3] & 0xFF);
+
+							if ((options & XrdConnection.kXR_open_read) != 0 && !files.containsKey(path)) {
+								respond(out, streamId, XrdConnection.kXR_error, error(XrdException.NOT_FOUND, "No such file " + path));
+								break;
+							}
+
+							final int h = nextHandle++;
+							handles.put(Integer.valueOf(h), path);
+
+							if ((options & XrdConnection.kXR_open_read) == 0)
+								writing.put(Integer.valueOf(h), new byte[0]);
+
+							final byte[] handle = new byte[12];
+							XrdConnection.writeInt(handle, 0, h);
+							respond(out, streamId, XrdConnection.kXR_ok, handle);
+							break;
+						case XrdConnection.kXR_read: {
+							final byte[] content = files.get(handles.get(Integer.valueOf(fhandle)));
+							final int offset = (int) XrdConnection.readLong(body, 4);
+							final int len = Math.max(0, Math.min(XrdConnection.readInt(body, 12), content.length - offset));
+
+							// two partial responses, like the real servers do for large reads
+							final int half = len / 2;
+							respond(out, streamId, XrdConnection.kXR_oksofar, Arrays.copyOfRange(content, offset, offset + half));
+							respond(out, streamId, XrdConnection.kXR_ok, Arrays.copyOfRange(content, offset + half, offset + len));
+							break;
+						}
+						case XrdConnection.kXR_readv: {
+							int total = data.length;
+
+							for (int i = 0; i < data.length / 16; i++)
+								total += XrdConnection.readInt(data, i * 16 + 4);
+
+							final byte[] response = new byte[total];
+							int pos = 0;
+
+							for (int i = 0; i < data.length / 16; i++) {
+								final byte[] content = files.get(handles.get(Integer.valueOf(XrdConnection.readInt(data, i * 16))));
+								final int len = XrdConnection.readInt(data, i * 16 + 4);
+								final int offset = (int) XrdConnection.readLong(data, i * 16 + 8);
+
+								System.arraycopy(data, i * 16, response, pos, 16);
+								System.arraycopy(content, offset, response, pos + 16, len);
+								pos += 16 + len;
+							}
+
+							respond(out, streamId, XrdConnection.kXR_ok, response);
+							break;
+						}
+						case XrdConnection.kXR_write: {
+							final Integer key = Integer.valueOf(fhandle);
+							final int offset = (int) XrdConnection.readLong(body, 4);
+							byte[] content = writing.get(key);
+
+							if (content.length < offset + data.length)
+								content = Arrays.copyOf(content, offset + data.length);
+
+							System.arraycopy(data, 0, content, offset, data.length);
+							writing.put(key, content);
+							respond(out, streamId, XrdConnection.kXR_ok, new byte[0]);
+							break;
+						}
+						case XrdConnection.kXR_close: {
+							final Integer key = Integer.valueOf(fhandle);
+							final byte[] content = writing.remove(key);
+
+							if (content != null)
+								files.put(handles.get(key), content);
+
+							handles.remove(key);
+							respond(out, streamId, XrdConnection.kXR_ok, new byte[0]);
+							break;
+						}
+						case XrdConnection.kXR_stat:
+							if (path.startsWith("/waitresp/")) {
+								// asynchronous answer, the real one follows on the same stream
+								respond(out, streamId, XrdConnection.kXR_waitresp, new byte[4]);
+								respond(out, streamId, XrdConnection.kXR_ok, "12345 999 16 1700000000\0".getBytes(StandardCharsets.US_ASCII));
+							}
+							else if (!files.containsKey(path))
+								respond(out, streamId, XrdConnection.kXR_error, error(XrdException.NOT_FOUND, "No such file " + path));
+							else
+								respond(out, streamId, XrdConnection.kXR_ok, ("12345 " + files.get(path).length + " 16 1700000000\0").getBytes(StandardCharsets.US_ASCII));
+							break;
+						case XrdConnection.kXR_rm:
+							if (files.remove(path) == null)
+								respond(out, streamId, XrdConnection.kXR_error, error(XrdException.NOT_FOUND, "No such file " + path));
+							else
+								respond(out, streamId, XrdConnection.kXR_ok, new byte[0]);
+							break;
+						default:
+							respond(out, streamId, XrdConnection.kXR_error, error(3013, "Unsupported request " + requestId));
+					}
+				}
+			}
+			catch (@SuppressWarnings("unused") final IOException ioe) {
+				// client went away
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+	}
+
+	@AfterEach
+	void clearPool() {
+		XrdConnectionPool.clear();
+	}
+
+	private static byte[] randomContent(final int size) {
+		final byte[] ret = new byte[size];
+		new Random(size).nextBytes(ret);
+		return ret;
+	}
+
+	@Test
+	void testParse() throws IOException {
+		XrdClient.Endpoint e = XrdClient.parse("root://se.example.org:1095//02/12345/abc?authz=xyz&foo=bar");
+		Assertions.assertEquals("se.example.org", e.host);
+		Assertions.assertEquals(1095, e.port);
+		Assertions.assertEquals("/02/12345/abc", e.path);
+		Assertions.assertEquals("authz=xyz&foo=bar", e.opaque);
+
+		e = XrdClient.parse("root://[::1]//file");
+		Assertions.assertEquals("::1", e.host);
+		Assertions.assertEquals(XrdClient.DEFAULT_PORT, e.port);
+		Assertions.assertEquals("/file", e.path);
+		Assertions.assertEquals("", e.opaque);
+	}
+
+	@Test
+	void testUploadStatDownloadRm() throws Exception {
+		try (MockServer server = new MockServer()) {
+			final String url = "root://localhost:" + server.port() + "//eos/test/file?authz=token";
+
+			final byte[] content = randomContent(3 * 1024 * 1024 + 17);
+
+			final File source = File.createTempFile("xrdclient", ".src");
+			final File target = File.createTempFile("xrdclient", ".dst");
+
+			try {
+				Files.write(source.toPath(), content);
+
+				final String md5 = XrdClient.upload(source, url);
+				Assertions.assertEquals(String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content))), md5);
+				Assertions.assertEquals("authz=token", server.lastOpaque);
+				Assertions.assertArrayEquals(content, server.files.get("/eos/test/file"));
+
+				Assertions.assertEquals(content.length, XrdClient.stat(url));
+
+				Assertions.assertEquals(content.length, XrdClient.download(url, target));
+				Assertions.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+
+				XrdClient.rm(url);
+
+				final XrdException e = Assertions.assertThrows(XrdException.class, () -> XrdClient.stat(url));
+				Assertions.assertEquals(XrdException.NOT_FOUND, e.getErrorCode());
+				Assertions.assertFalse(e.isUnsupported());
+			}
+			finally {
+				source.delete();
+				target.delete();
+			}
+		}
+	}
+
+	@Test
+	void testReadv() throws Exception {
+		try (MockServer server = new MockServer()) {
+			final byte[] content = randomContent(100000);
+			server.files.put("/file", content);
+
+			final long[] offsets = { 0, 5000, 99990, 42 };
+			final int[] lengths = { 10, 1000, 10, 0 };
+
+			try (XrdRemoteFile f = XrdClient.open("root://localhost:" + server.port() + "//file", false)) {
+				final byte[][] chunks = f.readv(offsets, lengths);
+
+				for (int i = 0; i < offsets.length; i++)
+					Assertions.assertArrayEquals(Arrays.copyOfRange(content, (int) offsets[i], (int) offsets[i] + lengths[i]), chunks[i]);
+
+				Assertions.assertArrayEquals(Arrays.copyOfRange(content, 99000, 100000), f.read(99000, 4096));
+			}
+		}
+	}
+
+	@Test
+	void testRedirectAndPooling() throws Exception {
+		try (MockServer dataServer = new MockServer(); MockServer redirector = new MockServer()) {
+			final byte[] content = randomContent(1000);
+			dataServer.files.put("/redirect/file", content);
+			redirector.redirectPort = dataServer.port();
+
+			final String url = "root://localhost:" + redirector.port() + "//redirect/file?authz=token";
+
+			for (int i = 0; i < 3; i++)
+				try (XrdRemoteFile f = XrdClient.open(url, false)) {
+					Assertions.assertArrayEquals(content, f.read(0, 4096));
+				}
+
+			Assertions.assertEquals("authz=token&redirected=1", dataServer.lastOpaque);
+		}
+	}
+
+	@Test
+	void testAuthenticationIsUnsupported() throws Exception {
+		try (MockServer server = new MockServer()) {
+			server.security = "&P=gsi,v:10400";
+
+			final XrdException e = Assertions.assertThrows(XrdException.class, () -> XrdClient.stat("root://localhost:" + server.port() + "//file"));
+			Assertions.assertTrue(e.isUnsupported());
+		}
+	}
+
+	@Test
+	void testConnectionNotReusedAfterWaitresp() throws Exception {
+		try (MockServer server = new MockServer()) {
+			server.files.put("/file", randomContent(10));
+
+			final XrdException e = Assertions.assertThrows(XrdException.class, () -> XrdClient.stat("root://localhost:" + server.port() + "//waitresp/file"));
+			Assertions.assertTrue(e.isUnsupported());
+
+			// a pooled connection would return the late answer to the previous request
+			Assertions.assertEquals(10, XrdClient.stat("root://localhost:" + server.port() + "//file"));
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package alien.site;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class JobWrapperTests {
+
+	private static void delete(final File dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	void testInputsSharingAFileName() throws IOException {
+		final File dir = Files.createTempDirectory("JobWrapperTests").toFile();
+
+		try {
+			final Map<String, File> localFiles = new LinkedHashMap<>();
+			localFiles.put("/alice/data/2026/LHC26a/000123/AOD/001/AliAOD.root", new File(dir, "AliAOD.root"));
+			localFiles.put("/alice/data/2026/LHC26a/000124/AOD/001/AliAOD.root", new File(dir, "AliAOD.root"));
+			localFiles.put("/alice/data/2026/LHC26a/000125/AOD/001/AliAOD.root", new File(dir, "AliAOD.root"));
+
+			final Map<String, File> targets = JobWrapper.getUniqueTargets(dir, localFiles);
+
+			Assertions.assertEquals(3, targets.size());
+			Assertions.assertEquals(3, new HashSet<>(targets.values()).size());
+
+			for (final File f : targets.values()) {
+				Assertions.assertEquals("AliAOD.root", f.getName());
+				Assertions.assertTrue(f.getParentFile().isDirectory());
+			}
+
+			Assertions.assertEquals(new File(dir, "AliAOD.root"), targets.get("/alice/data/2026/LHC26a/000123/AOD/001/AliAOD.root"));
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void testInputAlreadyOnDisk() throws IOException {
+		final File dir = Files.createTempDirectory("JobWrapperTests").toFile();
+
+		try {
+			final File existing = new File(dir, "validation.sh");
+			Assertions.assertTrue(existing.createNewFile());
+
+			final Map<String, File> localFiles = new LinkedHashMap<>();
+			localFiles.put("/alice/cern.ch/user/a/aliprod/validation.sh", existing);
+
+			final File target = JobWrapper.getUniqueTargets(dir, localFiles).get("/alice/cern.ch/user/a/aliprod/validation.sh");
+
+			Assertions.assertEquals(new File(new File(dir, "1"), "validation.sh"), target);
+		}
+		finally {
+			delete(dir);
+		}
+	}
+}